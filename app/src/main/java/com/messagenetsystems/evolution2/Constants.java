@@ -66,6 +66,35 @@ public class Constants {
             public static final boolean DEFAULT_LOWER_PRIORITY_CAN_COEXIST_WITH_HIGH = true;
             public static final boolean DEFAULT_MSG_TYPE_OVERRIDES_PRIORITY = false;
         }
+
+        public class Network {
+            // Which socket server implementation MainService should start for receiving requests on port 8080...
+            //  THREADED:   SocketServerThread (blocking accept, one new worker thread per connection)
+            //  NIO:        SocketServerNioThread (non-blocking selector, small fixed pool of parse threads)
+            public static final byte SOCKET_SERVER_MODE_THREADED = 1;
+            public static final byte SOCKET_SERVER_MODE_NIO = 2;
+            public static final byte SOCKET_SERVER_MODE = SOCKET_SERVER_MODE_THREADED;
+
+            public static final int SOCKET_SERVER_NIO_PARSE_THREADS = 2;                            //number of threads the NIO socket server may parse requests on
+
+            // Bounds for the socket connection worker pool (SocketConnWorkerPool), so a broadcast storm can't spawn threads without limit...
+            public static final int SOCKET_CONN_WORKER_THREADS = 4;                                 //number of threads the threaded socket server may handle connections on
+            public static final int SOCKET_CONN_WORKER_QUEUE_DEPTH = 32;                            //number of connections that may wait for a worker before we respond with 503
+            public static final int SOCKET_CONN_OVERLOAD_RETRY_AFTER_SECS = 5;                      //Retry-After value sent along with a 503 overload response
+
+            // Limits for parsing received HTTP requests (HttpRequestParser)...
+            public static final int HTTP_REQUEST_MAX_HEAD_BYTES = 16 * 1024;                        //maximum size of request-line plus headers we'll accept
+            public static final int HTTP_REQUEST_MAX_BODY_BYTES = 8 * 1024 * 1024;                  //maximum Content-Length we'll accept (full active-message set pushes can be large)
+
+            // Persistent connection (HTTP/1.1 keep-alive) limits...
+            public static final int HTTP_KEEP_ALIVE_IDLE_TIMEOUT_MS = 15 * 1000;                    //how long a connection may sit idle (between or before requests) before we close it
+            public static final int HTTP_KEEP_ALIVE_POOLED_IDLE_TIMEOUT_MS = 2 * 1000;              //same, but while it holds one of the (few) SocketConnWorkerPool threads to wait (threaded server, with no selector to hand it back to)
+            public static final int HTTP_KEEP_ALIVE_MAX_REQUESTS = 100;                             //maximum number of requests we'll serve on a single connection before closing it
+
+            // Status snapshot sampling (StatusSnapshotSampler), for answering pings...
+            public static final int STATUS_SNAPSHOT_SAMPLE_INTERVAL_MS = 10 * 1000;                 //how often we sample device status for the pong reply
+            public static final int STATUS_SNAPSHOT_SLOW_SAMPLE_EVERY = 30;                         //sample the very expensive values (uptime, app versions) only every this many samples
+        }
     }
 
 
@@ -154,6 +183,51 @@ public class Constants {
         public static final String SQLITE_DTMOD_OLDERTHAN_3WEEKS = "-3 weeks";
         public static final String SQLITE_DTMOD_OLDERTHAN_4WEEKS = "-4 weeks";
         public static final String SQLITE_DTMOD_OLDERTHAN_1MONTH = "-1 month";
+
+        // Epoch-millisecond timestamps (the *_ms columns)
+        // Comparing an indexed *_ms column to one of these (rather than wrapping the column in strftime) lets SQLite use the index for a range scan.
+        // Older-than DAO usage example:
+        //  @Query("DELETE FROM messages WHERE modified_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
+        //  void deleteAll_olderThan(String modifier);
+        public static final String SQLITE_MS_NOW = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+        public static final String SQLITE_MS_CUTOFF_MODIFIER = "(CAST(strftime('%s', 'now', :modifier) AS INTEGER) * 1000)";   //now, adjusted by a date-time modifier (use with a :modifier parameter)
+        public static final String SQLITE_MS_CUTOFF_DATE = "(CAST(strftime('%s', :date) AS INTEGER) * 1000)";                   //start of a date-string (use with a :date parameter)
+
+        // Received-request ingest journal (ReceivedRequestJournal)...
+        public static final int RECEIVED_REQUEST_JOURNAL_CAPACITY_BYTES = 16 * 1024 * 1024;       //size of the memory-mapped journal file (requests that don't fit go straight to Room instead)
+        public static final int RECEIVED_REQUEST_JOURNAL_GROUP_COMMIT_WINDOW_MS = 5;               //how long to gather appends before syncing them to flash together
+        public static final int RECEIVED_REQUEST_JOURNAL_DURABLE_WAIT_MAX_MS = 1000;               //longest a socket thread will wait for its request to be synced before responding anyway
+
+        // Database query executor (AppExecutors.databaseIO)...
+        public static final int DB_EXECUTOR_THREADS = 2;                                            //how many queries may run at once (across all DB clients)
+        public static final int DB_EXECUTOR_QUEUE_SIZE = 64;                                        //how many queries may wait for a thread (beyond this, the caller runs its query itself)
+
+        // Unified database (OmniDatabaseClient)...
+        public static final int OMNI_DB_PAGE_CACHE_KB = 4096;                                       //page cache size for the (one) database connection pool (SQLite's default is 2000 KiB)
+
+        // Database writes (DatabaseWriter)...
+        public static final long DB_WRITE_BATCH_WINDOW_MS = 50;                                     //how long a DB's writer waits after the first write, for more to apply in the same transaction
+
+        // Database maintenance (HealthThreadDatabase)...
+        public static final int DB_MAINTENANCE_DELETE_CHUNK_ROWS = 200;                             //most records one maintenance delete may remove (it's repeated until done, so each of the writer's transactions stays short)
+        public static final int DB_MAINTENANCE_MAX_CHUNKS_PER_PASS = 50;                            //most delete (or vacuum) chunks one maintenance pass may do for each kind of cleanup (the rest waits for the next pass)
+        public static final long DB_MAINTENANCE_WRITE_TIMEOUT_MS = 10 * 1000;                       //longest maintenance waits for one of its writes to be committed, before giving up until the next pass
+        public static final int DB_MAINTENANCE_VACUUM_CHUNK_PAGES = 256;                            //most free pages one incremental vacuum may give back to the filesystem
+        public static final int DB_MAINTENANCE_VACUUM_MIN_FREE_PAGES = 256;                         //while storage is OK, don't bother vacuuming until at least this many pages are free (under pressure, any are worth giving back)
+
+        // Received-message de-duplication (ReceivedMessageDatabaseClient)...
+        public static final int RECEIVED_MESSAGE_DEDUPE_CACHE_SIZE = 1024;                          //how many recent message content hashes to remember in memory (older ones fall back to the DB's unique index)
+
+        // Message payload encoding (how MessageDatabaseClient saves messages' JSON, see MessagePayloadCodec)...
+        // Readers always prefer the binary encoding when a record has one, and fall back to the JSON text (e.g. new or legacy records, or if encoding failed).
+        // JSON text is the default; binary is opt-in (JSON_AND_BINARY to try it out alongside the text, then BINARY to store each message only once).
+        public static final byte MESSAGE_PAYLOAD_ENCODING_JSON = 1;                                 //JSON text only (msg_json, meta_json)
+        public static final byte MESSAGE_PAYLOAD_ENCODING_JSON_AND_BINARY = 2;                      //JSON text, plus its binary encoding (msg_bin, meta_bin)
+        public static final byte MESSAGE_PAYLOAD_ENCODING_BINARY = 3;                               //binary encoding only (the JSON text columns are emptied, to save flash)
+        public static final byte MESSAGE_PAYLOAD_ENCODING = MESSAGE_PAYLOAD_ENCODING_JSON;
+
+        // Delivery rotation snapshot (RotationSnapshot), for restoring the active rotation on startup...
+        public static final int ROTATION_SNAPSHOT_MAX_BYTES = 2 * 1024 * 1024;                      //biggest snapshot we'll save or map (beyond this, startup just waits for the DB to be read, as before)
     }
 
     public static class Colors {
@@ -0,0 +1,398 @@
+package com.messagenetsystems.evolution2.databases;
+
+/* DatabaseWriter
+ * The one writer thread for a Room database. DB clients enqueue their writes here, rather than spawning a thread for each.
+ *
+ * It sleeps until a write is enqueued, waits a short window for more to arrive, then applies everything queued
+ * in one transaction (so SQLite syncs to flash once per batch, rather than once per write).
+ *
+ * Writes are applied in the order they were enqueued, except that redundant ones are coalesced while they wait...
+ *  A write may have a coalesce key (e.g. a message UUID and the kind of update). If a write with the same key is
+ *  still waiting, the new one is merged into it (by default, it just replaces it), and keeps the waiting one's place.
+ *  That's only safe as long as nothing else has been queued for the same entity since, so any write without a
+ *  coalesce key acts as a barrier: after it, coalescing starts afresh for its entity (or for all, if it has no entity key).
+ *
+ * Failures...
+ *  A write that throws can't simply be skipped: its DAO call's own (nested) transaction has already marked the batch's transaction as failed,
+ *  so SQLite would quietly roll the whole batch back when it ends. So the batch is abandoned (rolled back) right there, the write that threw
+ *  gets onFailed, and the rest of the batch is applied again, without it, in a new transaction (as often as it takes, one bad write at a time).
+ *  That's why apply() must let exceptions through (never catch and log them itself), and why it may run more than once (so it should only
+ *  set, never add to, whatever it records).
+ *  If the batch's transaction itself fails (e.g. a commit or disk error), nothing in it was committed, so every write in it gets onFailed.
+ *  Either way, each failed write is counted (getFailedWriteCount), and only writes that were actually committed get onCommitted.
+ *
+ * DEV-NOTE...
+ *  Most writes are enqueued without waiting, as they always were, so a batch window's delay is harmless to their callers.
+ *  Callers that must know an outcome before going on use enqueueAndAwait, which blocks for up to the batch window plus the commit,
+ *  and is only true if that write was committed (by then, everything queued before it has been committed, or has failed).
+ *  Callers that must know whether any of several writes failed (e.g. before committing the received-request journal's offset) should
+ *  have those writes' onFailed tell them (getFailedWriteCount counts every failure, including ones that have nothing to do with theirs).
+ *
+ * Usage Example (create and start, in a DB client's constructor):
+ *  databaseWriter = new DatabaseWriter(messageDatabase, "db_messages", Constants.LOG_METHOD_FILELOGGER);
+ *  databaseWriter.start();
+ *
+ * Usage Example (enqueue a write, and wait for it to be committed - only from a worker thread that can afford to block):
+ *  boolean isCommitted = databaseWriter.enqueueAndAwait(write, 5000);
+ *
+ * Usage Example (enqueue a write):
+ *  databaseWriter.enqueue(new DatabaseWriter.Write(uuid, null) {
+ *      @Override
+ *      public void apply() {
+ *          messageDatabase.messageDao().delete(uuid);
+ *      }
+ *  });
+ */
+
+import android.arch.persistence.room.RoomDatabase;
+import android.util.Log;
+
+import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.Constants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+public class DatabaseWriter extends Thread {
+    private final String TAG = this.getClass().getSimpleName();
+
+    // Constants...
+    public static final String ENTITY_NEW_RECORD = "(new)";                                         //entity key for inserts of brand-new records (nothing already queued can be affected by them)
+
+    // Logging stuff...
+    private final byte LOG_SEVERITY_V = 1;
+    private final byte LOG_SEVERITY_D = 2;
+    private final byte LOG_SEVERITY_I = 3;
+    private final byte LOG_SEVERITY_W = 4;
+    private final byte LOG_SEVERITY_E = 5;
+    private byte logMethod = Constants.LOG_METHOD_FILELOGGER;
+
+    // Local stuff...
+    private final RoomDatabase roomDatabase;
+    private final String databaseName;
+    private final long batchWindowMS;
+
+    private final Object lock = new Object();
+    private ArrayList<Write> pendingWrites;                                                         //in the order they'll be applied (guard with lock)
+    private final HashMap<String, Integer> pendingIndexByCoalesceKey;                               //where in pendingWrites a coalescable write is waiting (guard with lock)
+    private volatile long failedWriteCount;                                                         //how many writes have failed so far (only changed by the writer thread)
+
+    /** A write to apply to the database.
+     * Implement apply() to do the actual DAO call(s), and override merge() if a newer write with the same coalesce key
+     * should be combined with this one, rather than simply replace it.
+     */
+    public static abstract class Write {
+        final String entityKey;
+        final String coalesceKey;
+
+        /**
+         * @param entityKey What this write affects (e.g. a message UUID), or null if it may affect anything (e.g. bulk deletes).
+         * @param kind What kind of write this is, if it may be coalesced with others of the same kind for the same entity (or null if it may not).
+         */
+        public Write(String entityKey, String kind) {
+            this.entityKey = entityKey;
+            this.coalesceKey = (entityKey != null && kind != null) ? entityKey + "/" + kind : null;
+        }
+
+        /** Do the write (this runs on the writer thread, inside the batch's transaction).
+         * Let any exception through, so the writer knows to leave this write out of the batch (see Failures, in the class doc).
+         * This runs again if some other write in the batch fails, so it should only set (never add to) whatever it records. */
+        public abstract void apply();
+
+        /** Called after the batch this write was in has been committed (this runs on the writer thread, outside the transaction).
+         * Override it to let others know about the change, once they'd actually be able to read it.
+         */
+        protected void onCommitted() {
+        }
+
+        /** Called instead of onCommitted, if this write threw, or its batch's transaction failed (this runs on the writer thread, outside the transaction).
+         * Override it if anybody is waiting on (or has assumed) this write's outcome.
+         */
+        protected void onFailed() {
+        }
+
+        /** Combine a newer write (with the same coalesce key) into this one.
+         * @return The write to keep in the queue (by default, just the newer one).
+         */
+        protected Write merge(Write newer) {
+            return newer;
+        }
+    }
+
+
+    /** Constructor */
+    public DatabaseWriter(RoomDatabase roomDatabase, String databaseName, byte logMethod) {
+        this.logMethod = logMethod;
+        this.roomDatabase = roomDatabase;
+        this.databaseName = databaseName;
+        this.batchWindowMS = Constants.Database.DB_WRITE_BATCH_WINDOW_MS;
+
+        this.pendingWrites = new ArrayList<Write>();
+        this.pendingIndexByCoalesceKey = new HashMap<String, Integer>();
+        this.failedWriteCount = 0;
+
+        this.setName(TAG + "-" + databaseName);
+        this.setDaemon(true);
+    }
+
+
+    /*============================================================================================*/
+    /* Main Methods */
+
+    /** Queue a write, to be applied with the next batch. */
+    public void enqueue(Write write) {
+        synchronized (lock) {
+            if (write.coalesceKey != null) {
+                Integer index = pendingIndexByCoalesceKey.get(write.coalesceKey);
+                if (index != null) {
+                    pendingWrites.set(index, pendingWrites.get(index).merge(write));
+                    return;
+                }
+                pendingIndexByCoalesceKey.put(write.coalesceKey, pendingWrites.size());
+            } else if (write.entityKey == null) {
+                pendingIndexByCoalesceKey.clear();
+            } else {
+                Iterator<String> iterator = pendingIndexByCoalesceKey.keySet().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().startsWith(write.entityKey + "/")) {
+                        iterator.remove();
+                    }
+                }
+            }
+
+            pendingWrites.add(write);
+            lock.notifyAll();
+        }
+    }
+
+    /** Queue a write (it's never coalesced), and wait for the batch it's in to be committed.
+     * The write itself should record whatever outcome the caller needs (e.g. how many rows it deleted).
+     * Never call this from the writer thread itself (i.e. from apply, onCommitted or onFailed), or it will just time out.
+     * @param write The write to apply.
+     * @param timeoutMS Longest to wait.
+     * @return Whether it was applied and its batch committed within the timeout (false if it failed, or we gave up waiting).
+     */
+    public boolean enqueueAndAwait(final Write write, long timeoutMS) throws InterruptedException {
+        final CountDownLatch doneLatch = new CountDownLatch(1);
+        final boolean[] isCommitted = {false};
+
+        enqueue(new Write(write.entityKey, null) {
+            @Override
+            public void apply() {
+                write.apply();
+            }
+
+            @Override
+            protected void onCommitted() {
+                try {
+                    write.onCommitted();
+                } finally {
+                    isCommitted[0] = true;
+                    doneLatch.countDown();
+                }
+            }
+
+            @Override
+            protected void onFailed() {
+                try {
+                    write.onFailed();
+                } finally {
+                    doneLatch.countDown();
+                }
+            }
+        });
+
+        return doneLatch.await(timeoutMS, TimeUnit.MILLISECONDS) && isCommitted[0];
+    }
+
+    /** How many writes have failed so far (they threw, or their batch's transaction failed).
+     * Read it before queueing some writes, and again once they're committed: if it changed, something in between may have been lost. */
+    public long getFailedWriteCount() {
+        return failedWriteCount;
+    }
+
+    /** How many writes are waiting to be applied. */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingWrites.size();
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Thread Methods */
+
+    @Override
+    public void run() {
+        final String TAGG = "run: ";
+
+        this.setPriority(Thread.MIN_PRIORITY);                                                      //same as the worker threads the DB clients used to spawn for each write
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // Wait for something to be enqueued
+                synchronized (lock) {
+                    while (pendingWrites.size() == 0) {
+                        lock.wait();
+                    }
+                }
+
+                // Give others a moment to enqueue, so we can apply them all together
+                if (batchWindowMS > 0) {
+                    Thread.sleep(batchWindowMS);
+                }
+
+                // Take everything that's waiting (new writes start a new batch)
+                final ArrayList<Write> batch;
+                synchronized (lock) {
+                    batch = pendingWrites;
+                    pendingWrites = new ArrayList<Write>();
+                    pendingIndexByCoalesceKey.clear();
+                }
+
+                // Apply them in one transaction (leaving out any that throw, and trying again without them)
+                final ArrayList<Write> failedWrites = new ArrayList<Write>();
+                boolean isBatchCommitted = applyInTransaction(batch, failedWrites);
+                if (isBatchCommitted) {
+                    logV(TAGG+"Applied "+batch.size()+" write(s) to "+databaseName+" in one transaction.");
+                } else {
+                    // Nothing in the batch was committed
+                    failedWrites.addAll(batch);
+                    batch.clear();
+                }
+                failedWriteCount += failedWrites.size();
+
+                // Now that they're committed (or not), let any that care know
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        batch.get(i).onCommitted();
+                    } catch (Exception e) {
+                        logE(TAGG+"Exception caught after committing write: "+e.getMessage());
+                    }
+                }
+                for (int i = 0; i < failedWrites.size(); i++) {
+                    try {
+                        failedWrites.get(i).onFailed();
+                    } catch (Exception e) {
+                        logE(TAGG+"Exception caught after failing write: "+e.getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                logE(TAGG+"Exception caught: "+e.getMessage());
+            }
+        }
+    }
+
+    /** Apply the given writes in one transaction, and commit it.
+     * If a write throws, the transaction is rolled back, that write is moved from writes to failedWrites, and the rest are applied again in a new one.
+     * @return Whether the remaining writes (what's left in writes) were committed; false if the transaction itself failed (writes are left as they were, then).
+     */
+    private boolean applyInTransaction(final ArrayList<Write> writes, ArrayList<Write> failedWrites) {
+        final String TAGG = "applyInTransaction: ";
+
+        while (writes.size() > 0) {
+            final int[] throwingIndex = {-1};
+            try {
+                roomDatabase.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < writes.size(); i++) {
+                            try {
+                                writes.get(i).apply();
+                            } catch (RuntimeException e) {
+                                throwingIndex[0] = i;
+                                throw new WriteFailedException(e);                                  //abandon the batch (SQLite would roll it back anyway)
+                            }
+                        }
+                    }
+                });
+                return true;
+            } catch (Exception e) {
+                if (throwingIndex[0] < 0) {
+                    logE(TAGG+"Exception caught committing "+writes.size()+" write(s) to "+databaseName+" (all of them are lost): "+e.getMessage());
+                    return false;
+                }
+                Throwable cause = (e.getCause() != null ? e.getCause() : e);
+                logE(TAGG+"Exception caught applying write #"+(throwingIndex[0]+1)+" of "+writes.size()+" to "+databaseName+" (trying the rest again without it): "+cause.getMessage());
+                failedWrites.add(writes.remove(throwingIndex[0]));
+            }
+        }
+
+        return true;
+    }
+
+    /** Thrown out of a batch's transaction when one of its writes throws, so the transaction is rolled back (and we can tell which write it was). */
+    private static class WriteFailedException extends RuntimeException {
+        WriteFailedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Logging Methods */
+
+    private void logV(String tagg) {
+        log(LOG_SEVERITY_V, tagg);
+    }
+    private void logD(String tagg) {
+        log(LOG_SEVERITY_D, tagg);
+    }
+    private void logI(String tagg) {
+        log(LOG_SEVERITY_I, tagg);
+    }
+    private void logW(String tagg) {
+        log(LOG_SEVERITY_W, tagg);
+    }
+    private void logE(String tagg) {
+        log(LOG_SEVERITY_E, tagg);
+    }
+    private void log(byte logSeverity, String tagg) {
+        switch (logMethod) {
+            case Constants.LOG_METHOD_LOGCAT:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        Log.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        Log.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        Log.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        Log.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        Log.e(TAG, tagg);
+                        break;
+                }
+                break;
+            case Constants.LOG_METHOD_FILELOGGER:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        FL.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        FL.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        FL.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        FL.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        FL.e(TAG, tagg);
+                        break;
+                }
+                break;
+        }
+    }
+}
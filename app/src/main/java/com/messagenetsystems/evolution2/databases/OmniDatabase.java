@@ -0,0 +1,57 @@
+package com.messagenetsystems.evolution2.databases;
+
+/* OmniDatabase class, as Room DB
+ *
+ * The unified store for the message pipeline: received_requests, received_messages, and messages all live here,
+ * in one SQLite file (rather than a file each), so they share one connection pool, journal, and page cache.
+ *
+ * The tables are linked by foreign key, following a message's way to delivery...
+ *  received_requests.id  <--  received_messages.received_request_id  <--  messages.received_message_id
+ * (either link is null if its source record is gone, or never made it to the database, like journaled requests)
+ * OmniDatabaseClient turns foreign keys on when the database opens, so deleting a source record nulls its links (ON DELETE SET NULL).
+ *
+ * Inserts and deletes on messages are also recorded in message_changes, by triggers (see createMessageChangeTriggers),
+ * so the RAM sync may consume just what changed since it last looked (see MessageChange).
+ *
+ * Note: Creating an object of this class is expensive, so you should create a single instance of
+ * this as a kind of dedicated "client." (see OmniDatabaseClient)
+ *
+ * DEV-NOTE...
+ *  No release has had this database yet, so version 1 is the schema as it is now (the old per-table databases' released schemas
+ *  are copied from, rather than migrated; see OmniDatabaseClient.migrateLegacyDatabases). Once it's been released, if you change
+ *  the schema, you MUST also update version number, and add a Migration here (registered in OmniDatabaseClient).
+ */
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.Database;
+import android.arch.persistence.room.RoomDatabase;
+import android.support.annotation.NonNull;
+
+import com.messagenetsystems.evolution2.databases.messages.Message;
+import com.messagenetsystems.evolution2.databases.messages.MessageChange;
+import com.messagenetsystems.evolution2.databases.messages.MessageDao;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageDao;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestDao;
+
+@Database(entities = {ReceivedRequest.class, ReceivedMessage.class, Message.class, MessageChange.class}, version = 1)
+public abstract class OmniDatabase extends RoomDatabase {
+    private final String TAG = OmniDatabase.class.getSimpleName();
+
+    public abstract ReceivedRequestDao receivedRequestDao();
+    public abstract ReceivedMessageDao receivedMessageDao();
+    public abstract MessageDao messageDao();
+
+    /** Create the triggers that record inserts and deletes on messages, in message_changes, if they don't already exist.
+     * Room has no annotation for triggers, so this is run whenever the database opens (that covers new, migrated, and rebuilt databases alike).
+     */
+    public static void createMessageChangeTriggers(@NonNull SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS `messages_after_insert_change` AFTER INSERT ON `messages` BEGIN " +
+                "INSERT INTO `message_changes` (`msg_uuid`, `change_type`) VALUES (NEW.`msg_uuid`, " + MessageChange.CHANGE_INSERTED + "); " +
+                "END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS `messages_after_delete_change` AFTER DELETE ON `messages` BEGIN " +
+                "INSERT INTO `message_changes` (`msg_uuid`, `change_type`) VALUES (OLD.`msg_uuid`, " + MessageChange.CHANGE_DELETED + "); " +
+                "END");
+    }
+}
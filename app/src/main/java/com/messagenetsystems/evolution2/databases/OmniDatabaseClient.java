@@ -0,0 +1,411 @@
+package com.messagenetsystems.evolution2.databases;
+
+/* OmniDatabaseClient class
+ *
+ * Singleton holder for the unified OmniDatabase, and the one DatabaseWriter that applies all writes to it.
+ * The per-table DB clients (ReceivedRequestDatabaseClient, ReceivedMessageDatabaseClient, MessageDatabaseClient)
+ * get both from here, so they share one connection pool and one write pipeline (and so a promotion from one
+ * table to the next may be written as one transaction).
+ *
+ * The database is opened in WAL (write-ahead log) journal mode, so readers don't block the writer (or vice versa),
+ * with synchronous=NORMAL (in WAL mode, that's still safe against corruption; it only syncs at checkpoints),
+ * a page cache sized by Constants.Database.OMNI_DB_PAGE_CACHE_KB, and foreign keys enforced (SQLite leaves them off by default).
+ *
+ * For scheduled maintenance (HealthThreadDatabase), this also provides incremental vacuum (giving free pages back to the filesystem,
+ * a bounded number at a time, through the writer), and the numbers to report the database's size and free pages with.
+ *
+ * DEV-NOTE...
+ *  The old per-table database files (from before consolidation) have their rows copied in the first time this opens (see migrateLegacyDatabases),
+ *  and each is deleted once it's been copied, so active messages (and their delivery metadata) carry over.
+ *  There's no destructive fallback: every schema change MUST come with a Migration in OmniDatabase (registered below), or Room will refuse to open it.
+ *
+ * Usage Example (normally, only the per-table DB clients need to do this):
+ *  OmniDatabaseClient omniDatabaseClient = OmniDatabaseClient.getInstance(appContext);
+ *  omniDatabaseClient.getDatabaseWriter().enqueue(...);
+ */
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.database.Cursor;
+import android.arch.persistence.room.Room;
+import android.arch.persistence.room.RoomDatabase;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
+
+import java.io.File;
+
+
+public class OmniDatabaseClient {
+    private final String TAG = OmniDatabaseClient.class.getSimpleName();
+
+    // Constants...
+    private static final String DB_FILENAME = "db_omni";                                            //this will be the filename in /data/user/0/[app]/databases/
+    private static final String LEGACY_DB_FILENAME_RECEIVED_REQUESTS = "db_receivedRequests";       //old per-table database files (from before consolidation)
+    private static final String LEGACY_DB_FILENAME_RECEIVED_MESSAGES = "db_receivedMessages";
+    private static final String LEGACY_DB_FILENAME_MESSAGES = "db_messages";
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;                                           //PRAGMA auto_vacuum value for incremental (free pages are kept until we ask for them to be given back)
+
+    // Logging stuff...
+    private final byte LOG_SEVERITY_V = 1;
+    private final byte LOG_SEVERITY_D = 2;
+    private final byte LOG_SEVERITY_I = 3;
+    private final byte LOG_SEVERITY_W = 4;
+    private final byte LOG_SEVERITY_E = 5;
+    private byte logMethod = Constants.LOG_METHOD_FILELOGGER;
+
+    // Local stuff...
+    private static OmniDatabaseClient mInstance;                                                    //to support singleton pattern (maintains a static reference to the lone singleton instance - gets returned via getInstance)
+    private OmniDatabase omniDatabase;                                                              //to support singleton pattern
+    private DatabaseWriter databaseWriter;                                                          //the one thread that applies writes to omniDatabase
+    private File databaseFile;                                                                      //where the database lives (its write-ahead log is next to it, with "-wal" appended)
+
+    /* A private Constructor prevents any other class from instantiating (singleton pattern)
+     * This should only execute when getInstance() is called. */
+    private OmniDatabaseClient(Context appContext) {
+        final String TAGG = "OmniDatabaseClient: ";
+
+        //creating the database with Room database builder
+        omniDatabase = Room.databaseBuilder(appContext, OmniDatabase.class, DB_FILENAME)
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)                       //readers and the writer don't block each other, and commits append to the log (rather than rewrite pages)
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        db.execSQL("PRAGMA synchronous = NORMAL");                                  //in WAL mode, only checkpoints need to sync
+                        db.execSQL("PRAGMA cache_size = -" + Constants.Database.OMNI_DB_PAGE_CACHE_KB);   //negative means KiB, rather than pages
+                        db.setForeignKeyConstraintsEnabled(true);                                   //PRAGMA foreign_keys is per-connection, so this sets it for the whole pool (and new connections)
+                        OmniDatabase.createMessageChangeTriggers(db);                               //change-feed of messages (for RAM sync)
+                    }
+                })
+                .build();                                                                           //no destructive fallback (a schema change without a Migration must fail loudly, not wipe the data)
+
+        // Bring over what's in the old per-table database files, if they're still around (before anybody can write to ours)
+        migrateLegacyDatabases(appContext);
+
+        databaseWriter = new DatabaseWriter(omniDatabase, DB_FILENAME, logMethod);
+        databaseWriter.start();
+
+        databaseFile = appContext.getDatabasePath(DB_FILENAME);
+    }
+
+    /* Static 'instance' method (singleton pattern)
+     * Its purpose is to instantiate the class locally and return reference to that instance. */
+    public static synchronized OmniDatabaseClient getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new OmniDatabaseClient(context);
+        }
+        return mInstance;
+    }
+
+    /* Returns a reference to the local instance (singleton pattern) */
+    public OmniDatabase getOmniDatabase() {
+        return omniDatabase;
+    }
+
+    /* Returns the write pipeline for the database (all writes should go through here) */
+    public DatabaseWriter getDatabaseWriter() {
+        return databaseWriter;
+    }
+
+
+    /*============================================================================================*/
+    /* Legacy Migration Routines... */
+
+    /** Copy the rows of the old per-table database files (from before consolidation) into our tables, deleting each file once it's copied.
+     * Their schemas are the last ones released (messages v5, received_messages v3, received_requests v6; see app/schemas), so the
+     * epoch-millisecond columns are filled in from their text timestamps (like the old per-table migrations did), and received_messages
+     * get their content hash computed as they're copied. IDs are kept, and the links between tables (which didn't exist then) are left null.
+     * Rows that are already here (e.g. from an interrupted earlier try) are skipped, and a file that can't be copied is kept (to try again next time).
+     */
+    private void migrateLegacyDatabases(Context appContext) {
+        // Parents before children (not that there are any links to copy, but so it stays right if there ever are)
+        migrateLegacyDatabase(appContext, LEGACY_DB_FILENAME_RECEIVED_REQUESTS, "received_requests",
+                "SELECT `id`, `request_method`, `request_path`, `request_protocol`, `request_user_agent`, `request_content_type`, `request_body`, `status`, " +
+                        "`request_processed_at`, CAST(`request_processed_at_ms` AS INTEGER), `created_at`, " +
+                        "IFNULL(CAST(strftime('%s', `created_at`) AS INTEGER) * 1000, 0), `modified_at` " +
+                        "FROM `received_requests`",
+                "INSERT OR IGNORE INTO `received_requests` " +
+                        "(`id`, `request_method`, `request_path`, `request_protocol`, `request_user_agent`, `request_content_type`, `request_body`, `status`, " +
+                        "`request_processed_at`, `request_processed_at_ms`, `created_at`, `created_at_ms`, `modified_at`) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                -1);
+        migrateLegacyDatabase(appContext, LEGACY_DB_FILENAME_RECEIVED_MESSAGES, "received_messages",
+                "SELECT `id`, `message_uuid`, `message_json`, `status`, `processed_at`, CAST(`processed_at_ms` AS INTEGER), `created_at`, `modified_at`, " +
+                        "IFNULL(CAST(strftime('%s', `modified_at`) AS INTEGER) * 1000, 0), `received_at` " +
+                        "FROM `received_messages`",
+                "INSERT OR IGNORE INTO `received_messages` " +
+                        "(`id`, `message_uuid`, `message_json`, `status`, `processed_at`, `processed_at_ms`, `created_at`, `modified_at`, `modified_at_ms`, `received_at`, `message_json_hash`) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                2);
+        migrateLegacyDatabase(appContext, LEGACY_DB_FILENAME_MESSAGES, "messages",
+                "SELECT `id`, `created_at`, `modified_at`, `received_at`, " +
+                        "IFNULL(CAST(strftime('%s', `modified_at`) AS INTEGER) * 1000, 0), IFNULL(CAST(strftime('%s', `received_at`) AS INTEGER) * 1000, 0), " +
+                        "`status`, `msg_uuid`, `msg_json`, `meta_json` " +
+                        "FROM `messages`",
+                "INSERT OR IGNORE INTO `messages` " +
+                        "(`id`, `created_at`, `modified_at`, `received_at`, `modified_at_ms`, `received_at_ms`, `status`, `msg_uuid`, `msg_json`, `meta_json`) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                -1);
+    }
+
+    /** Copy one old database file's table into ours (in one transaction), and delete the file if that worked.
+     * @param selectSql Query for the old table's rows (its columns in the same order as insertSql's placeholders).
+     * @param insertSql Insert for our table (with one more placeholder at the end for the content hash, if hashColumnIndex is used).
+     * @param hashColumnIndex Index of the selected column to compute a content hash of (ReceivedMessage.computeMessageJsonHash), or -1 for none.
+     */
+    private void migrateLegacyDatabase(Context appContext, String legacyDbFilename, String tableName, String selectSql, String insertSql, int hashColumnIndex) {
+        final String TAGG = "migrateLegacyDatabase("+legacyDbFilename+"): ";
+
+        File legacyDbFile = appContext.getDatabasePath(legacyDbFilename);
+        if (!legacyDbFile.exists()) {
+            return;
+        }
+
+        int copiedCount = 0;
+        SQLiteDatabase legacyDb = null;
+        Cursor cursor = null;
+        try {
+            legacyDb = SQLiteDatabase.openDatabase(legacyDbFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+
+            // An old file may never have gotten its table (nothing to copy, then)
+            cursor = legacyDb.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{tableName});
+            boolean hasTable = cursor.moveToNext();
+            cursor.close();
+            cursor = null;
+
+            if (hasTable) {
+                SupportSQLiteDatabase db = omniDatabase.getOpenHelper().getWritableDatabase();
+                cursor = legacyDb.rawQuery(selectSql, null);
+                final int columnCount = cursor.getColumnCount();
+                final Object[] bindArgs = new Object[columnCount + (hashColumnIndex >= 0 ? 1 : 0)];
+
+                db.beginTransaction();
+                try {
+                    while (cursor.moveToNext()) {
+                        for (int i = 0; i < columnCount; i++) {
+                            bindArgs[i] = getCursorValue(cursor, i);
+                        }
+                        if (hashColumnIndex >= 0) {
+                            bindArgs[columnCount] = ReceivedMessage.computeMessageJsonHash(cursor.getString(hashColumnIndex));
+                        }
+                        db.execSQL(insertSql, bindArgs);
+                        copiedCount++;
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught copying legacy database (keeping its file, to try again next time): "+e.getMessage());
+            return;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            if (legacyDb != null) {
+                legacyDb.close();
+            }
+        }
+
+        logI(TAGG+"Copied "+copiedCount+" legacy "+tableName+" record(s).");
+
+        try {
+            if (appContext.deleteDatabase(legacyDbFilename)) {
+                logI(TAGG+"Deleted legacy database file.");
+            }
+        } catch (Exception e) {
+            logW(TAGG+"Exception caught deleting legacy database file: "+e.getMessage());
+        }
+    }
+
+    /** Get a cursor's column value as whatever type it actually is (so it binds the same way). */
+    private static Object getCursorValue(Cursor cursor, int columnIndex) {
+        switch (cursor.getType(columnIndex)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(columnIndex);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(columnIndex);
+            case Cursor.FIELD_TYPE_STRING:
+                return cursor.getString(columnIndex);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(columnIndex);
+            default:
+                return null;
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Maintenance Routines... */
+    // These are for HealthThreadDatabase. They block (they run on the calling thread, or wait for the writer), so call them from a worker thread!
+
+    /** Make sure the database is in incremental auto-vacuum mode (so incrementalVacuum can give free pages back to the filesystem).
+     * A database that was created without it needs a one-time full VACUUM to switch, which rewrites the whole file (and needs as much free space again),
+     * so it's done here only if needed. It can't be run in a transaction, so it's not done through the writer (SQLite makes the writer wait for it).
+     * @return Whether the database is (now) in incremental auto-vacuum mode.
+     */
+    public boolean ensureIncrementalAutoVacuum() {
+        final String TAGG = "ensureIncrementalAutoVacuum: ";
+
+        try {
+            if (getPragmaValue("auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+                return true;
+            }
+
+            logI(TAGG+"Switching database to incremental auto-vacuum (one-time full VACUUM)...");
+            SupportSQLiteDatabase db = omniDatabase.getOpenHelper().getWritableDatabase();
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+
+        return getPragmaValue("auto_vacuum") == AUTO_VACUUM_INCREMENTAL;
+    }
+
+    /** Give up to maxPages free pages back to the filesystem (through the writer, like any other write), and wait for it to be committed.
+     * @param maxPages Most free pages to give back (this bounds how long it may hold the writer).
+     * @return How many pages were given back, or -1 if it failed (or wasn't committed in time).
+     */
+    public int incrementalVacuum(final int maxPages) {
+        final String TAGG = "incrementalVacuum: ";
+        final int[] releasedPageCount = {-1};
+
+        try {
+            boolean isCommitted = databaseWriter.enqueueAndAwait(new DatabaseWriter.Write(null, null) {
+                @Override
+                public void apply() {
+                    SupportSQLiteDatabase db = omniDatabase.getOpenHelper().getWritableDatabase();
+                    long freePagesBefore = queryPragmaValue(db, "freelist_count");
+
+                    //each step of this statement frees one page, so it must be stepped until it's done (execSQL would step it only once)
+                    Cursor cursor = db.query("PRAGMA incremental_vacuum(" + maxPages + ")");
+                    try {
+                        while (cursor.moveToNext()) {
+                            //nothing to read
+                        }
+                    } finally {
+                        cursor.close();
+                    }
+
+                    releasedPageCount[0] = (int) (freePagesBefore - queryPragmaValue(db, "freelist_count"));
+                }
+            }, Constants.Database.DB_MAINTENANCE_WRITE_TIMEOUT_MS);
+
+            if (!isCommitted) {
+                logW(TAGG+"Vacuum was not committed in time.");
+                return -1;
+            }
+        } catch (InterruptedException e) {
+            logW(TAGG+"Interrupted waiting for vacuum to be committed.");
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+
+        return releasedPageCount[0];
+    }
+
+    /** Get the value of a (single-value) PRAGMA, like "page_size", "page_count", or "freelist_count".
+     * @return The value, or -1 if it couldn't be gotten.
+     */
+    public long getPragmaValue(String pragmaName) {
+        final String TAGG = "getPragmaValue: ";
+
+        try {
+            return queryPragmaValue(omniDatabase.getOpenHelper().getReadableDatabase(), pragmaName);
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught ("+pragmaName+"): "+e.getMessage());
+            return -1;
+        }
+    }
+
+    /** Get how much space the database takes on disk (its file, plus its write-ahead log).
+     * @return Size in bytes, or -1 if it couldn't be gotten.
+     */
+    public long getFileSizeBytes() {
+        final String TAGG = "getFileSizeBytes: ";
+
+        try {
+            return databaseFile.length() + new File(databaseFile.getPath() + "-wal").length();
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+            return -1;
+        }
+    }
+
+    private static long queryPragmaValue(SupportSQLiteDatabase db, String pragmaName) {
+        Cursor cursor = db.query("PRAGMA " + pragmaName);
+        try {
+            return cursor.moveToNext() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Logging Methods */
+
+    private void logV(String tagg) {
+        log(LOG_SEVERITY_V, tagg);
+    }
+    private void logD(String tagg) {
+        log(LOG_SEVERITY_D, tagg);
+    }
+    private void logI(String tagg) {
+        log(LOG_SEVERITY_I, tagg);
+    }
+    private void logW(String tagg) {
+        log(LOG_SEVERITY_W, tagg);
+    }
+    private void logE(String tagg) {
+        log(LOG_SEVERITY_E, tagg);
+    }
+    private void log(byte logSeverity, String tagg) {
+        switch (logMethod) {
+            case Constants.LOG_METHOD_LOGCAT:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        Log.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        Log.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        Log.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        Log.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        Log.e(TAG, tagg);
+                        break;
+                }
+                break;
+            case Constants.LOG_METHOD_FILELOGGER:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        FL.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        FL.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        FL.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        FL.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        FL.e(TAG, tagg);
+                        break;
+                }
+                break;
+        }
+    }
+}
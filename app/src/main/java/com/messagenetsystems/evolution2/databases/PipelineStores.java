@@ -0,0 +1,92 @@
+package com.messagenetsystems.evolution2.databases;
+
+/* PipelineStores class
+ *
+ * The stores the message pipeline works with (received requests, received messages, and messages), as one set.
+ * Pipeline threads and models get their stores from here, rather than from the *DatabaseClient singletons, so the whole pipeline
+ * may be switched from Room to memory (e.g. to exercise or benchmark it off-device, where there's no Room) without changing them.
+ *
+ * Unless another set is installed (with setInstance, before the pipeline starts), you get the Room set (backed by the *DatabaseClient singletons).
+ * Scheduled maintenance (HealthThreadDatabase) is specific to SQLite, so it still uses the *DatabaseClient singletons directly.
+ *
+ * Usage example (normal, on-device)...
+ *  MessageStore messageStore = PipelineStores.getInstance(appContext).getMessageStore();
+ *
+ * Usage example (in memory, before the pipeline starts)...
+ *  PipelineStores.setInstance(PipelineStores.createInMemory());
+ */
+
+import android.content.Context;
+
+import com.messagenetsystems.evolution2.databases.messages.MessageMemoryStore;
+import com.messagenetsystems.evolution2.databases.messages.MessageRoomStore;
+import com.messagenetsystems.evolution2.databases.messages.MessageStore;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageMemoryStore;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageRoomStore;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageStore;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestMemoryStore;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestRoomStore;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestStore;
+
+
+public class PipelineStores {
+
+    // Local stuff...
+    private static PipelineStores mInstance;                //the set in use (maintains a static reference, like our singletons - gets returned via getInstance)
+
+    private final ReceivedRequestStore receivedRequestStore;
+    private final ReceivedMessageStore receivedMessageStore;
+    private final MessageStore messageStore;
+
+    /** Constructor */
+    public PipelineStores(ReceivedRequestStore receivedRequestStore, ReceivedMessageStore receivedMessageStore, MessageStore messageStore) {
+        this.receivedRequestStore = receivedRequestStore;
+        this.receivedMessageStore = receivedMessageStore;
+        this.messageStore = messageStore;
+    }
+
+    /* Static 'instance' method (singleton pattern)
+     * Returns the installed set, or the Room set if none has been installed. */
+    public static synchronized PipelineStores getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = createRoom(context.getApplicationContext());
+        }
+        return mInstance;
+    }
+
+    /** Install the set of stores to use (do this before anything gets its stores, e.g. before the pipeline's threads are created). */
+    public static synchronized void setInstance(PipelineStores pipelineStores) {
+        mInstance = pipelineStores;
+    }
+
+    /** Create a set of Room stores (backed by the *DatabaseClient singletons). */
+    public static PipelineStores createRoom(Context appContext) {
+        return new PipelineStores(new ReceivedRequestRoomStore(appContext),
+                new ReceivedMessageRoomStore(appContext),
+                new MessageRoomStore(appContext));
+    }
+
+    /** Create a set of (new, empty) in-memory stores, linked to each other so promotions flag their sources. */
+    public static PipelineStores createInMemory() {
+        ReceivedRequestMemoryStore receivedRequestStore = new ReceivedRequestMemoryStore();
+        ReceivedMessageMemoryStore receivedMessageStore = new ReceivedMessageMemoryStore(receivedRequestStore);
+        MessageMemoryStore messageStore = new MessageMemoryStore(receivedMessageStore);
+        return new PipelineStores(receivedRequestStore, receivedMessageStore, messageStore);
+    }
+
+
+    /*============================================================================================*/
+    /* Getter Methods */
+
+    public ReceivedRequestStore getReceivedRequestStore() {
+        return receivedRequestStore;
+    }
+
+    public ReceivedMessageStore getReceivedMessageStore() {
+        return receivedMessageStore;
+    }
+
+    public MessageStore getMessageStore() {
+        return messageStore;
+    }
+}
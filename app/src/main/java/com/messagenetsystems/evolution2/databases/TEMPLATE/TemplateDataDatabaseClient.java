@@ -24,9 +24,14 @@ import android.content.Context;
 import android.util.Log;
 
 import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.databases.DatabaseWriter;
+import com.messagenetsystems.evolution2.threads.AppExecutors;
 
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 
 public class TemplateDataDatabaseClient {
@@ -46,6 +51,7 @@ public class TemplateDataDatabaseClient {
     private final String dbFilename = "db_templateData";        //this will be the filename in /data/user/0/[app]/databases/
     private static TemplateDataDatabaseClient mInstance;        //to support singleton pattern (maintains a static reference to the lone singleton instance - gets returned via getInstance)
     private TemplateDataDatabase templateDataDatabase;          //to support singleton pattern
+    private DatabaseWriter databaseWriter;                      //the one thread that applies our writes
 
     /* A private Constructor prevents any other class from instantiating (singleton pattern)
      * This should only execute when getInstance() is called. */
@@ -54,6 +60,9 @@ public class TemplateDataDatabaseClient {
         templateDataDatabase = Room.databaseBuilder(appContext, TemplateDataDatabase.class, dbFilename)
                 .fallbackToDestructiveMigration()               //if schema updates, this database is OK to rebuild and lose its data
                 .build();
+
+        databaseWriter = new DatabaseWriter(templateDataDatabase, dbFilename, (byte) logMethod);
+        databaseWriter.start();
     }
 
     /* Static 'instance' method (singleton pattern)
@@ -82,50 +91,43 @@ public class TemplateDataDatabaseClient {
     public void addRecord(final Context appContext, final String dataToSave) {
         final String TAGG = "addRecord: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(DatabaseWriter.ENTITY_NEW_RECORD, null) {
             @Override
-            public void run() {
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //create a record...
-                    TemplateData templateData = new TemplateData();                        //this is the object that we'll insert below
+            public void apply() {
+                //create a record...
+                TemplateData templateData = new TemplateData();                        //this is the object that we'll insert below
 
-                    //add the provided data...
-                    templateData.setMY_DATA(dataToSave);
+                //add the provided data...
+                templateData.setMY_DATA(dataToSave);
 
-                    //populate timestamp fields...
-                    Date currDateTime = new Date();
-                    templateData.setCreatedAt(currDateTime);
-                    templateData.setModifiedAt(currDateTime);
+                //populate timestamp fields...
+                Date currDateTime = new Date();
+                templateData.setCreatedAt(currDateTime);
+                templateData.setModifiedAt(currDateTime);
 
-                    //add the record to database...
-                    TemplateDataDatabaseClient.getInstance(appContext).getTemplateDataDatabase().templateDataDao().addRecord(templateData);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+                //add the record to database...
+                TemplateDataDatabaseClient.getInstance(appContext).getTemplateDataDatabase().templateDataDao().addRecord(templateData);
             }
-        }.start();
+        });
     }
 
     /** Method to find and return all records.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findAllRecordsAsync instead.
      * @param appContext Application context.
      * @return List object containing any TemplateData objects that might have been found.
      */
     public List<TemplateData> findAllRecords(final Context appContext) {
         final String TAGG = "findAllRecords: ";
 
-        FindAllRecords findAllRecords;
-        findAllRecords = new FindAllRecords(appContext);
-
-        findAllRecords.start();
-
-        while (!findAllRecords.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findAllRecordsAsync(appContext), TAGG);
+    }
 
-        return findAllRecords.result;
+    /** Same as findAllRecords, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<TemplateData>> findAllRecordsAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindAllRecords(appContext));
     }
 
     /** Method to invoke the database backend to find and delete ANY old records.
@@ -136,19 +138,13 @@ public class TemplateDataDatabaseClient {
     public void deleteAll_olderThan(final Context appContext, final String sqliteDatetimeModifier) {
         final String TAGG = "deleteAll_olderThan: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the query on the database
-                    TemplateDataDatabaseClient.getInstance(appContext).getTemplateDataDatabase().templateDataDao().deleteAll_olderThan(sqliteDatetimeModifier);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            public void apply() {
+                //run the query on the database
+                TemplateDataDatabaseClient.getInstance(appContext).getTemplateDataDatabase().templateDataDao().deleteAll_olderThan(sqliteDatetimeModifier);
             }
-        }.start();
+        });
     }
 
     /** Method to update an existing record.
@@ -159,57 +155,61 @@ public class TemplateDataDatabaseClient {
     public void updateRecord(final Context appContext, final TemplateData record) {
         final String TAGG = "updateRecord: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(String.valueOf(record.getId()), "record") {
             @Override
-            public void run() {
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //update modified timestamp field...
-                    record.setModifiedAt(new Date());
+            public void apply() {
+                //update modified timestamp field...
+                record.setModifiedAt(new Date());
 
-                    //run the update on the database
-                    TemplateDataDatabaseClient.getInstance(appContext).getTemplateDataDatabase().templateDataDao().update(record);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+                //run the update on the database
+                TemplateDataDatabaseClient.getInstance(appContext).getTemplateDataDatabase().templateDataDao().update(record);
             }
-        }.start();
+        });
+    }
+
+
+    /** Wait for a query's result (the calling thread is parked while it waits, rather than spinning).
+     * @return The result, or null if the query failed or we were interrupted while waiting.
+     */
+    private <T> T waitForResult(Future<T> future, String tagg) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            logW(tagg+"Interrupted while waiting for query result.");
+            Thread.currentThread().interrupt();                                                     //preserve it for our caller (e.g. a thread-loop checking isInterrupted)
+        } catch (ExecutionException e) {
+            logE(tagg+"Exception caught running query: "+e.getMessage());
+        }
+        return null;
     }
 
 
     /*============================================================================================*/
     /* Subclasses... */
 
-    /** A thread to access the database and find all records.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all records.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindAllRecords findAllRecords;
-     *  findAllRecords = new FindAllRecords(appContext);
-     *  findAllRecords.start();
-     *  while (!findAllRecords.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findAllRecords.result;
+     *  Future<List<TemplateData>> future = AppExecutors.getInstance().databaseIO().submit(new FindAllRecords(appContext));
+     *  return waitForResult(future, TAGG);
      */
-    private class FindAllRecords extends Thread {
+    private class FindAllRecords implements Callable<List<TemplateData>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<TemplateData> result = null;
-        volatile boolean isDone = false;
         FindAllRecords(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
+        public List<TemplateData> call() {
+            final String TAGGG = "call: ";
+            List<TemplateData> result = null;
             try {
                 result = TemplateDataDatabaseClient.getInstance(appContext).getTemplateDataDatabase().templateDataDao().getAllRecords();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
@@ -9,7 +9,7 @@ package com.messagenetsystems.evolution2.databases.messages;
  *
  * DEV-NOTE...
  * If you change the schema (e.g. add fields, etc.), you MUST also update version number in the
- *  corresponding Database file's @Database annotation (e.g. ReceivedRequestDatabase.java)! If you
+ *  corresponding Database file's @Database annotation (e.g. OmniDatabase.java)! If you
  *  don't, the result will be a runtime exception.
  * Alongside this requirement, you must also be sure to provide a migration option
  *  (RoomDatabase.Builder.addMigration(Migration ...) or allow for destructive migrations via one
@@ -28,9 +28,16 @@ package com.messagenetsystems.evolution2.databases.messages;
  * | Date           created_at              |
  * | Date           modified_at             |
  * | Date           received_at             |
- * | int            status                  |
- * | String         msg_uuid                |
+ * | long           modified_at_ms          |  (indexed)
+ * | long           received_at_ms          |  (indexed)
+ * | int            status                  |  (indexed)
+ * | String         msg_uuid                |  (unique index)
  * | String         msg_json                |
+ * | String         meta_json               |
+ * | Integer        received_message_id     |  (indexed, foreign key to received_messages.id)
+ * | Long           expires_at_ms           |  (indexed)
+ * | byte[]         msg_bin                 |  (msg_json, encoded by MessagePayloadCodec)
+ * | byte[]         meta_bin                |  (meta_json, encoded by MessagePayloadCodec)
  * +----------------------------------------+
  *
  * Revisions:
@@ -43,19 +50,29 @@ package com.messagenetsystems.evolution2.databases.messages;
 
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.ForeignKey;
 import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.arch.persistence.room.TypeConverters;
 
 import com.messagenetsystems.evolution2.databases.TimestampConverter;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
 
 import java.io.Serializable;
 import java.util.Date;
 
 
 @Entity(tableName = "messages",
-        indices = {@Index(value = {"msg_uuid"},
-        unique = true)})
+        indices = {@Index(value = {"msg_uuid"}, unique = true),
+                @Index(value = {"status"}),
+                @Index(value = {"modified_at_ms"}),
+                @Index(value = {"received_at_ms"}),
+                @Index(value = {"received_message_id"}),
+                @Index(value = {"expires_at_ms"})},
+        foreignKeys = {@ForeignKey(entity = ReceivedMessage.class,
+                parentColumns = {"id"},
+                childColumns = {"received_message_id"},
+                onDelete = ForeignKey.SET_NULL)})
 public class Message implements Serializable {
 
     // Constants...
@@ -83,6 +100,12 @@ public class Message implements Serializable {
     @TypeConverters({TimestampConverter.class})
     private Date receivedAt;
 
+    @ColumnInfo(name = "modified_at_ms")
+    private long modifiedAtMs;                              //same as modified_at, but as epoch milliseconds (so older-than queries can use its index)
+
+    @ColumnInfo(name = "received_at_ms")
+    private long receivedAtMs;                              //same as received_at, but as epoch milliseconds (so sorted queries can use its index)
+
     @ColumnInfo(name = "status")
     private int status;
 
@@ -95,6 +118,18 @@ public class Message implements Serializable {
     @ColumnInfo(name = "meta_json")
     private String metaJSON;
 
+    @ColumnInfo(name = "received_message_id")
+    private Integer receivedMessageId;                      //the ReceivedMessage this came from (null if unknown or since deleted)
+
+    @ColumnInfo(name = "expires_at_ms")
+    private Long expiresAtMs;                               //when this message expires, as epoch milliseconds (null until known, e.g. not delivered yet)
+
+    @ColumnInfo(name = "msg_bin")
+    private byte[] msgBin;                                  //msg_json, as encoded by MessagePayloadCodec (null if it's only been saved as text)
+
+    @ColumnInfo(name = "meta_bin")
+    private byte[] metaBin;                                 //meta_json, as encoded by MessagePayloadCodec (null if it's only been saved as text)
+
 
     /*============================================================================================*/
     /* Getters & Setters */
@@ -127,6 +162,7 @@ public class Message implements Serializable {
     /** Package-private, since only the DB client needs to access this */
     void setModifiedAt(Date modifiedAt) {
         this.modifiedAt = modifiedAt;
+        this.modifiedAtMs = (modifiedAt == null) ? 0 : modifiedAt.getTime();
     }
     void setModifiedAt() {
         setModifiedAt(new Date());
@@ -139,11 +175,30 @@ public class Message implements Serializable {
     /** Package-private, since only the DB client needs to access this */
     void setReceivedAt(Date receivedAt) {
         this.receivedAt = receivedAt;
+        this.receivedAtMs = (receivedAt == null) ? 0 : receivedAt.getTime();
     }
     void setReceivedAt() {
         setReceivedAt(new Date());
     }
 
+    public long getModifiedAtMs() {
+        return modifiedAtMs;
+    }
+
+    /** Package-private, since only the DB client needs to access this (normally, setModifiedAt keeps it in step) */
+    void setModifiedAtMs(long modifiedAtMs) {
+        this.modifiedAtMs = modifiedAtMs;
+    }
+
+    public long getReceivedAtMs() {
+        return receivedAtMs;
+    }
+
+    /** Package-private, since only the DB client needs to access this (normally, setReceivedAt keeps it in step) */
+    void setReceivedAtMs(long receivedAtMs) {
+        this.receivedAtMs = receivedAtMs;
+    }
+
     public String getMsgUUID() {
         return msgUUID;
     }
@@ -176,4 +231,38 @@ public class Message implements Serializable {
     public void setMetaJSON(String metaJSON) {
         this.metaJSON = metaJSON;
     }
+
+    public Integer getReceivedMessageId() {
+        return receivedMessageId;
+    }
+
+    /** Package-private, since only the DB client needs to access this */
+    void setReceivedMessageId(Integer receivedMessageId) {
+        this.receivedMessageId = receivedMessageId;
+    }
+
+    public Long getExpiresAtMs() {
+        return expiresAtMs;
+    }
+
+    /** Package-private, since only the DB client needs to access this */
+    void setExpiresAtMs(Long expiresAtMs) {
+        this.expiresAtMs = expiresAtMs;
+    }
+
+    public byte[] getMsgBin() {
+        return msgBin;
+    }
+
+    public void setMsgBin(byte[] msgBin) {
+        this.msgBin = msgBin;
+    }
+
+    public byte[] getMetaBin() {
+        return metaBin;
+    }
+
+    public void setMetaBin(byte[] metaBin) {
+        this.metaBin = metaBin;
+    }
 }
@@ -0,0 +1,83 @@
+package com.messagenetsystems.evolution2.databases.messages;
+
+/* MessageChange class, as Room DB Entity
+ * This is the change-feed of the messages table: one row for each message record that got inserted or deleted.
+ * It lets MessageRawDataProcessor keep RAM (MainService.omniRawMessages) in sync by consuming only what changed
+ * since it last looked (its cursor is the last seq it consumed), rather than re-reading the whole messages table.
+ *
+ * Rows are written by SQLite triggers on the messages table (see OmniDatabase.createMessageChangeTriggers),
+ * so no code path that inserts or deletes messages can forget to record it (including bulk deletes).
+ * Updates aren't recorded, since RAM is what owns a message's content once it's there.
+ *
+ * Note: seq is AUTOINCREMENT, so it's never reused (even after consumed rows are pruned).
+ *
+ * DEV-NOTE...
+ * If you change the schema (e.g. add fields, etc.), you MUST also update version number in the
+ *  corresponding Database file's @Database annotation (e.g. OmniDatabase.java)! If you
+ *  don't, the result will be a runtime exception.
+ *
+ * +----------------------------------------+
+ * | message_changes                        |
+ * +----------------------------------------+
+ * |*long           seq                     |
+ * | String         msg_uuid                |
+ * | int            change_type             |
+ * +----------------------------------------+
+ */
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+
+
+@Entity(tableName = "message_changes")
+public class MessageChange {
+
+    // Constants...
+    public final static int CHANGE_INSERTED = 1;            //A messages record with this UUID was inserted
+    public final static int CHANGE_DELETED = 2;             //A messages record with this UUID was deleted
+
+    /*============================================================================================*/
+    /* Setup entity and columns */
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "seq")
+    private long seq;
+
+    @ColumnInfo(name = "msg_uuid")
+    private String msgUUID;
+
+    @ColumnInfo(name = "change_type")
+    private int changeType;
+
+
+    /*============================================================================================*/
+    /* Getters & Setters */
+
+    public long getSeq() {
+        return seq;
+    }
+
+    /** Package-private, since only Room needs to access this */
+    void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public String getMsgUUID() {
+        return msgUUID;
+    }
+
+    /** Package-private, since only Room needs to access this */
+    void setMsgUUID(String msgUUID) {
+        this.msgUUID = msgUUID;
+    }
+
+    public int getChangeType() {
+        return changeType;
+    }
+
+    /** Package-private, since only Room needs to access this */
+    void setChangeType(int changeType) {
+        this.changeType = changeType;
+    }
+}
@@ -22,9 +22,12 @@ package com.messagenetsystems.evolution2.databases.messages;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Delete;
 import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
 import android.arch.persistence.room.Update;
 
+import com.messagenetsystems.evolution2.Constants;
+
 import java.util.List;
 
 @Dao
@@ -36,10 +39,10 @@ public interface MessageDao {
     @Query("SELECT * FROM messages")
     List<Message> getAllRecords();
 
-    @Query("SELECT * FROM messages ORDER BY received_at ASC")
+    @Query("SELECT * FROM messages ORDER BY received_at_ms ASC")
     List<Message> getAllRecords_sortedByReceivedAscending();
 
-    @Query("SELECT * FROM messages ORDER BY received_at DESC")
+    @Query("SELECT * FROM messages ORDER BY received_at_ms DESC")
     List<Message> getAllRecords_sortedByReceivedDescending();
 
     @Query("SELECT * FROM messages WHERE msg_uuid=:uuid LIMIT 1")
@@ -48,6 +51,30 @@ public interface MessageDao {
     @Query("SELECT EXISTS(SELECT 1 FROM messages WHERE msg_uuid=:uuid LIMIT 1)")
     Boolean doesMessageExist(String uuid);
 
+    @Query("SELECT * FROM messages WHERE msg_uuid IN (:uuids) ORDER BY received_at_ms ASC")
+    List<Message> getSpecificRecords_uuids(List<String> uuids);
+
+    // The soonest expiration of any record (null if none have one)
+    @Query("SELECT MIN(expires_at_ms) FROM messages")
+    Long getNextExpiresAtMs();
+
+
+    /*============================================================================================*/
+    /* Change-feed operations... */
+    /* The message_changes rows are written by triggers on the messages table (see MessageChange). */
+
+    // Changes after the specified cursor (oldest first), up to the specified limit
+    @Query("SELECT * FROM message_changes WHERE seq > :afterSeq ORDER BY seq ASC LIMIT :limit")
+    List<MessageChange> getChangesAfter(long afterSeq, int limit);
+
+    // The most recent change's seq (0 if there aren't any)
+    @Query("SELECT IFNULL(MAX(seq), 0) FROM message_changes")
+    long getLatestChangeSeq();
+
+    // Prune changes that have been consumed
+    @Query("DELETE FROM message_changes WHERE seq <= :seq")
+    void deleteChangesThrough(long seq);
+
 
     /*============================================================================================*/
     /* Update and edit operations... */
@@ -56,24 +83,51 @@ public interface MessageDao {
     @Update
     void update(Message message);
 
+    // Also clears msg_bin (it'd be stale)
     @Query("UPDATE messages " +
             "SET msg_json = :json, " +
-                "modified_at = datetime('now') " +
+                "msg_bin = NULL, " +
+                "modified_at = datetime('now'), " +
+            "modified_at_ms = " + Constants.Database.SQLITE_MS_NOW + " " +
             "WHERE msg_uuid = :uuid")
     void updateJsonFor(String uuid, String json);
 
     @Query("UPDATE messages " +
             "SET status = :status, "+
-                "modified_at = datetime('now') " +
+                "modified_at = datetime('now'), " +
+            "modified_at_ms = " + Constants.Database.SQLITE_MS_NOW + " " +
             "WHERE msg_uuid = :uuid")
     void updateStatusFor(String uuid, int status);
 
+    // Also clears meta_bin (it'd be stale)
     @Query("UPDATE messages " +
             "SET meta_json = :meta, " +
-            "modified_at = datetime('now') " +
+            "meta_bin = NULL, " +
+            "modified_at = datetime('now'), " +
+            "modified_at_ms = " + Constants.Database.SQLITE_MS_NOW + " " +
             "WHERE msg_uuid = :uuid")
     void updateMetaFor(String uuid, String meta);
 
+    // A json (or metadata) and its binary encoding go together: if either is provided, both get set (so a null binary clears a stale one).
+    @Query("UPDATE messages " +
+            "SET msg_json = COALESCE(:json, msg_json), " +
+                "msg_bin = CASE WHEN :json IS NULL AND :jsonBin IS NULL THEN msg_bin ELSE :jsonBin END, " +
+                "meta_json = COALESCE(:meta, meta_json), " +
+                "meta_bin = CASE WHEN :meta IS NULL AND :metaBin IS NULL THEN meta_bin ELSE :metaBin END, " +
+                "status = COALESCE(:status, status), " +
+                "modified_at = datetime('now'), " +
+            "modified_at_ms = " + Constants.Database.SQLITE_MS_NOW + " " +
+            "WHERE msg_uuid = :uuid")
+    void updateColumnsFor(String uuid, String json, byte[] jsonBin, String meta, byte[] metaBin, Integer status);
+
+    // Only sets expiration if it's not already set (it's fixed at first delivery, so later deliveries, like after a restart, shouldn't move it)
+    @Query("UPDATE messages " +
+            "SET expires_at_ms = :expiresAtMs, " +
+                "modified_at = datetime('now'), " +
+            "modified_at_ms = " + Constants.Database.SQLITE_MS_NOW + " " +
+            "WHERE msg_uuid = :uuid AND expires_at_ms IS NULL")
+    void updateExpiresAtFor(String uuid, long expiresAtMs);
+
 
     /*============================================================================================*/
     /* Insert and add operations... */
@@ -81,6 +135,10 @@ public interface MessageDao {
     @Insert
     void addRecord(Message message);
 
+    // Returns the new row ID, or -1 if a record with the same msg_uuid already exists (nothing is inserted)
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long addRecordIfUnique(Message message);
+
 
     /*============================================================================================*/
     /* Delete operations... */
@@ -97,9 +155,25 @@ public interface MessageDao {
     // Modifier-format:     [+-]NNN years|months|days|hours|minutes|seconds
     // Modifier-example:    For older than 2 hours:     '-2 hours'
     @Query("DELETE FROM messages " +
-            "WHERE strftime('%s', datetime('now', :modifier)) > strftime('%s', modified_at)")
+            "WHERE modified_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
     void deleteAll_olderThan(String modifier);
 
+    // Delete up to a chunk of records that are older than what is specified by argument
+    // For scheduled maintenance (HealthThreadDatabase), which repeats it until fewer than limit get deleted (so no single delete holds the writer for long).
+    // Modifier-format:     [+-]NNN years|months|days|hours|minutes|seconds
+    // Returns: How many records were deleted.
+    @Query("DELETE FROM messages " +
+            "WHERE id IN (" +
+                "SELECT id FROM messages " +
+                "WHERE modified_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER + " " +
+                "LIMIT :limit)")
+    int deleteChunk_olderThan(String modifier, int limit);
+
+    // Delete all records that have expired as of the specified time (epoch milliseconds)
+    @Query("DELETE FROM messages " +
+            "WHERE expires_at_ms <= :nowMs")
+    void deleteAll_expiredAsOf(long nowMs);
+
     // Delete all records that have a status matching what is specified by argument
     @Query("DELETE FROM messages " +
             "WHERE status=:status")
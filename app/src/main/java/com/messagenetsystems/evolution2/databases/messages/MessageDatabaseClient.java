@@ -27,19 +27,29 @@ package com.messagenetsystems.evolution2.databases.messages;
  *  2020.08.11      Chris Rider     Implemented lower priority for all worker threads. Changed logging INT to BYTE.
  */
 
-import android.arch.persistence.room.Room;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
-
+import com.messagenetsystems.evolution2.databases.DatabaseWriter;
+import com.messagenetsystems.evolution2.databases.OmniDatabase;
+import com.messagenetsystems.evolution2.databases.OmniDatabaseClient;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
+import com.messagenetsystems.evolution2.models.ActiveMessageDigest;
+import com.messagenetsystems.evolution2.threads.AppExecutors;
+
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 
 public class MessageDatabaseClient {
@@ -48,6 +58,7 @@ public class MessageDatabaseClient {
     // Constants...
     public static final int SYNC_DB_NOEXIST_ADD = 1;
     public static final int SYNC_DB_NOEXIST_DELETE = 2;
+    public static final String WRITE_KEY_PREFIX = "messages:";                                      //our DatabaseWriter entity keys (the writer is shared with other tables' clients)
 
     // Logging stuff...
     private final byte LOG_SEVERITY_V = 1;
@@ -58,17 +69,18 @@ public class MessageDatabaseClient {
     private byte logMethod = Constants.LOG_METHOD_FILELOGGER;
 
     // Local stuff...
-    private final String dbFilename = "db_messages";        //this will be the filename in /data/user/0/[app]/databases/
     private static MessageDatabaseClient mInstance;         //to support singleton pattern (maintains a static reference to the lone singleton instance - gets returned via getInstance)
-    private MessageDatabase messageDatabase;                //to support singleton pattern
+    private OmniDatabase messageDatabase;                   //to support singleton pattern (the unified database our table lives in)
+    private DatabaseWriter databaseWriter;                  //the one thread that applies writes to it
+    private volatile long expiryScheduleVersion;            //bumped whenever a record's expiration gets set (so others may cheaply tell if the next expiration may have changed)
 
     /* A private Constructor prevents any other class from instantiating (singleton pattern)
      * This should only execute when getInstance() is called. */
     private MessageDatabaseClient(Context appContext) {
-        //creating the database with Room database builder
-        messageDatabase = Room.databaseBuilder(appContext, MessageDatabase.class, dbFilename)
-                .fallbackToDestructiveMigration()               //if schema updates, this database is OK to rebuild and lose its data   //TODO: something else?
-                .build();
+        //our table lives in the unified database (which shares its write pipeline among all its tables' clients)
+        OmniDatabaseClient omniDatabaseClient = OmniDatabaseClient.getInstance(appContext);
+        messageDatabase = omniDatabaseClient.getOmniDatabase();
+        databaseWriter = omniDatabaseClient.getDatabaseWriter();
     }
 
     /* Static 'instance' method (singleton pattern)
@@ -80,8 +92,13 @@ public class MessageDatabaseClient {
         return mInstance;
     }
 
+    /* Returns the expiry-schedule version (compare it with what you last saw, to know if you should look for the next expiration again) */
+    public long getExpiryScheduleVersion() {
+        return expiryScheduleVersion;
+    }
+
     /* Returns a reference to the local instance (singleton pattern) */
-    public MessageDatabase getMessageDatabase() {
+    public OmniDatabase getMessageDatabase() {
         return messageDatabase;
     }
 
@@ -101,41 +118,79 @@ public class MessageDatabaseClient {
     public void addRecord(final Context appContext, final String msgUUID, final String msgJSON, final int status, final Date receivedAt) {
         final String TAGG = "addRecord: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(WRITE_KEY_PREFIX + msgUUID, null) {
             @Override
-            public void run() {
-                currentThread().setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //create a record...
-                    Message message = new Message();                        //this is the object that we'll insert below
-                    message.setStatus(status);
-
-                    //add the provided data...
-                    message.setMsgUUID(msgUUID);
-                    message.setMsgJSON(msgJSON);
-                    message.setReceivedAt(receivedAt);      //saving the original ReceivedRequest's created_at field value (when we first received the message)
-
-                    //populate timestamp fields...
-                    Date currDateTime = new Date();
-                    message.setCreatedAt(currDateTime);
-                    message.setModifiedAt(currDateTime);
-
-                    //initialize metadata field...
-                    message.setMetaJSON("");
-
-                    //add the record to database...
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().addRecord(message);
-                } catch (Exception e) {
-                    if (e.getMessage().contains("UNIQUE constraint failed")) {
-                        logI(TAGG + "Possible \"exception\" caught (prevented duplicate record): " + e.getMessage());
-                    } else {
+            public void apply() {
+                insertRecord(appContext, msgUUID, msgJSON, status, receivedAt, null, TAGG);
+            }
+        });
+    }
+
+    /** Promote a received message to a new record, in one transaction with flagging the received message as forwarded.
+     * This is like addRecord (with Message.STATUS_NEW), but the new record is linked to the received message it came from (received_message_id),
+     * and the received message's status and processed-at fields are updated in the same transaction (so one never happens without the other).
+     * @param appContext        Application context.
+     * @param receivedMessage   The received message to promote.
+     * @param receivedMessageStatus Status to set for the received message (ReceivedMessage.STATUS_*).
+     */
+    public void addRecordPromotedFrom(final Context appContext, final ReceivedMessage receivedMessage, final byte receivedMessageStatus) {
+        final String TAGG = "addRecordPromotedFrom: ";
+
+        final int receivedMessageId = receivedMessage.getId();
+        final String msgUUID = receivedMessage.getMessageUUID();
+        final String msgJSON = receivedMessage.getMessageJson();
+        final Date receivedAt = receivedMessage.getReceivedAt();
+        final long receivedMessageProcessedAtMs = System.currentTimeMillis();
+
+        databaseWriter.enqueue(new DatabaseWriter.Write(WRITE_KEY_PREFIX + msgUUID, null) {
+            @Override
+            public void apply() {
+                insertRecord(appContext, msgUUID, msgJSON, Message.STATUS_NEW, receivedAt, (receivedMessageId == 0 ? null : receivedMessageId), TAGG);
+
+                if (receivedMessageId != 0) {
+                    try {
+                        MessageDatabaseClient.getInstance(appContext).getMessageDatabase().receivedMessageDao().updateProcessedFor(receivedMessageId, receivedMessageStatus, receivedMessageProcessedAtMs);
+                    } catch (Exception e) {
                         logE(TAGG + "Exception caught: " + e.getMessage());
                     }
                 }
             }
-        }.start();
+        });
+    }
+
+    /** Insert a new record (must run on the database writer). Only adds it if it's unique (the unique index on msg_uuid makes the insert a no-op otherwise).
+     * @param receivedMessageId ID of the ReceivedMessage it came from (or null if not known).
+     */
+    private void insertRecord(Context appContext, String msgUUID, String msgJSON, int status, Date receivedAt, Integer receivedMessageId, String tagg) {
+        //create a record...
+        Message message = new Message();                        //this is the object that we'll insert below
+        message.setStatus(status);
+
+        //add the provided data...
+        message.setMsgUUID(msgUUID);
+        message.setMsgJSON(msgJSON);
+        message.setReceivedAt(receivedAt);      //saving the original ReceivedRequest's created_at field value (when we first received the message)
+        message.setReceivedMessageId(receivedMessageId);
+
+        //populate timestamp fields...
+        Date currDateTime = new Date();
+        message.setCreatedAt(currDateTime);
+        message.setModifiedAt(currDateTime);
+
+        //initialize metadata field...
+        message.setMetaJSON("");
+
+        //add the record to database (without its link, if its received message got deleted in the meantime, since foreign keys are enforced)...
+        //(we're on the writer, inside its transaction, so nothing can delete the received message between this check and the insert)
+        OmniDatabase omniDatabase = MessageDatabaseClient.getInstance(appContext).getMessageDatabase();
+        if (receivedMessageId != null && omniDatabase.receivedMessageDao().countWithId(receivedMessageId) == 0) {
+            logW(tagg + "Received message (id "+receivedMessageId+") is gone, adding record without its link.");
+            message.setReceivedMessageId(null);
+        }
+        long rowId = omniDatabase.messageDao().addRecordIfUnique(message);
+        if (rowId == -1) {
+            logI(tagg + "Record already exists in database with same UUID, aborted record-add to avoid duplicate messages.");
+        }
     }
 
 
@@ -143,67 +198,65 @@ public class MessageDatabaseClient {
     /* Find/Select Routines... */
 
     /** Method to find and return all records.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findAllRecordsAsync instead.
      * @param appContext Application context.
      * @return List object containing any Message objects that might have been found.
      */
     public List<Message> findAllRecords(final Context appContext) {
         final String TAGG = "findAllRecords: ";
 
-        FindAllRecords findAllRecords;
-        findAllRecords = new FindAllRecords(appContext);
-
-        findAllRecords.start();
-
-        while (!findAllRecords.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findAllRecordsAsync(appContext), TAGG);
+    }
 
-        return findAllRecords.result;
+    /** Same as findAllRecords, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<Message>> findAllRecordsAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindAllRecords(appContext));
     }
 
     /** Method to find and return all records, sorted by ascending received_at field value.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findAllRecords_sortedOrderReceivedAscendingAsync instead.
      * @param appContext Application context.
      * @return List object containing any Message objects that might have been found.
      */
     public List<Message> findAllRecords_sortedOrderReceivedAscending(final Context appContext) {
         final String TAGG = "findAllRecords_sortedOrderReceivedAscending: ";
 
-        FindAllRecords_sortReceivedAscending findAllRecords;
-        findAllRecords = new FindAllRecords_sortReceivedAscending(appContext);
-
-        findAllRecords.start();
-
-        while (!findAllRecords.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findAllRecords_sortedOrderReceivedAscendingAsync(appContext), TAGG);
+    }
 
-        return findAllRecords.result;
+    /** Same as findAllRecords_sortedOrderReceivedAscending, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<Message>> findAllRecords_sortedOrderReceivedAscendingAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindAllRecords_sortReceivedAscending(appContext));
     }
 
     /** Method to find and return all records, sorted by descending received_at field value.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findAllRecords_sortedOrderReceivedDescendingAsync instead.
      * @param appContext Application context.
      * @return List object containing any Message objects that might have been found.
      */
     public List<Message> findAllRecords_sortedOrderReceivedDescending(final Context appContext) {
         final String TAGG = "findAllRecords_sortedOrderReceivedDescending: ";
 
-        FindAllRecords_sortReceivedDescending findAllRecords;
-        findAllRecords = new FindAllRecords_sortReceivedDescending(appContext);
-
-        findAllRecords.start();
-
-        while (!findAllRecords.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findAllRecords_sortedOrderReceivedDescendingAsync(appContext), TAGG);
+    }
 
-        return findAllRecords.result;
+    /** Same as findAllRecords_sortedOrderReceivedDescending, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<Message>> findAllRecords_sortedOrderReceivedDescendingAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindAllRecords_sortReceivedDescending(appContext));
     }
 
     /** Method to find and return specified record.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findSpecifiedRecord_uuidAsync instead.
      * @param appContext Application context.
      * @param uuid UUID to find.
      * @return Message object that might have been found, or null if none.
@@ -211,24 +264,24 @@ public class MessageDatabaseClient {
     public Message findSpecifiedRecord_uuid(final Context appContext, final UUID uuid) {
         final String TAGG = "findSpecifiedRecords_uuid: ";
 
-        FindSpecifiedRecord_uuid findSpecifiedRecord_uuid;
-        findSpecifiedRecord_uuid = new FindSpecifiedRecord_uuid(appContext, uuid);
+        List<Message> result = waitForResult(findSpecifiedRecord_uuidAsync(appContext, uuid), TAGG);
 
-        findSpecifiedRecord_uuid.start();
-
-        while (!findSpecifiedRecord_uuid.isDone) {
-            //wait here until it's done
-        }
-
-        if (findSpecifiedRecord_uuid.result.size() == 0) {
+        if (result == null || result.size() == 0) {
             //none found
             return null;
         } else {
             //record(s) found
-            return findSpecifiedRecord_uuid.result.get(0);
+            return result.get(0);
         }
     }
 
+    /** Same as findSpecifiedRecord_uuid, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<Message>> findSpecifiedRecord_uuidAsync(final Context appContext, final UUID uuid) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindSpecifiedRecord_uuid(appContext, uuid));
+    }
+
     //TODO: Does this need to be threaded?
     public boolean doesMessageExist(final Context appContext, String uuid) {
         final String TAGG = "doesMessageExist(\""+String.valueOf(uuid)+"\"): ";
@@ -244,6 +297,77 @@ public class MessageDatabaseClient {
     }
 
 
+    /** Method to find and return the specified records, sorted by ascending received_at field value.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * @param appContext Application context.
+     * @param uuids UUIDs to find (keep it to a few hundred, as SQLite limits how many parameters a query may have).
+     * @return List object containing any Message objects that might have been found.
+     */
+    public List<Message> findSpecifiedRecords_uuids(final Context appContext, final List<String> uuids) {
+        final String TAGG = "findSpecifiedRecords_uuids: ";
+
+        return waitForResult(AppExecutors.getInstance().databaseIO().submit(new FindSpecifiedRecords_uuids(appContext, uuids)), TAGG);
+    }
+
+
+    /** Method to find the soonest expiration of any record.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * @param appContext Application context.
+     * @return The soonest expiration (epoch milliseconds), Long.MAX_VALUE if no record has one, or -1 if the query failed.
+     */
+    public long findNextExpiresAtMs(final Context appContext) {
+        final String TAGG = "findNextExpiresAtMs: ";
+
+        Long result = waitForResult(AppExecutors.getInstance().databaseIO().submit(new FindNextExpiresAtMs(appContext)), TAGG);
+        return result == null ? -1 : result;
+    }
+
+    /*============================================================================================*/
+    /* Change-Feed Routines... */
+
+    /** Method to find and return changes (inserts/deletes of messages records) made after the specified cursor, oldest first.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * @param appContext Application context.
+     * @param afterSeq Cursor (the seq of the last change you've already consumed, or 0 for all).
+     * @param limit Maximum number of changes to return.
+     * @return List object containing any MessageChange objects that might have been found (or null if the query failed).
+     */
+    public List<MessageChange> findChangesAfter(final Context appContext, final long afterSeq, final int limit) {
+        final String TAGG = "findChangesAfter: ";
+
+        return waitForResult(AppExecutors.getInstance().databaseIO().submit(new FindChangesAfter(appContext, afterSeq, limit)), TAGG);
+    }
+
+    /** Method to find the most recent change's seq (e.g. to start a cursor from, just before reading the whole table).
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * @param appContext Application context.
+     * @return The most recent change's seq, 0 if there are none, or -1 if the query failed.
+     */
+    public long findLatestChangeSeq(final Context appContext) {
+        final String TAGG = "findLatestChangeSeq: ";
+
+        Long result = waitForResult(AppExecutors.getInstance().databaseIO().submit(new FindLatestChangeSeq(appContext)), TAGG);
+        return result == null ? -1 : result;
+    }
+
+    /** Method to prune changes that have been consumed (through the specified seq, inclusive).
+     * Waiting prunes are coalesced into the latest one.
+     * @param appContext Application context.
+     * @param seq The seq of the last change consumed.
+     */
+    public void pruneChangesThrough(final Context appContext, final long seq) {
+        final String TAGG = "pruneChangesThrough: ";
+
+        databaseWriter.enqueue(new DatabaseWriter.Write(WRITE_KEY_PREFIX + "changes", "prune") {
+            @Override
+            public void apply() {
+                //run the query on the database
+                MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().deleteChangesThrough(seq);
+            }
+        });
+    }
+
+
     /*============================================================================================*/
     /* Modify/Update Routines... */
 
@@ -255,23 +379,16 @@ public class MessageDatabaseClient {
     public void updateRecord(final Context appContext, final Message record) {
         final String TAGG = "updateRecord: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(WRITE_KEY_PREFIX + record.getMsgUUID(), null) {
             @Override
-            public void run() {
-                currentThread().setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //update modified timestamp field...
-                    record.setModifiedAt(new Date());
-
-                    //run the update on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().update(record);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            public void apply() {
+                //update modified timestamp field...
+                record.setModifiedAt(new Date());
+
+                //run the update on the database
+                MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().update(record);
             }
-        }.start();
+        });
     }
 
     /** Method to update an existing record's status.
@@ -282,20 +399,11 @@ public class MessageDatabaseClient {
     public void updateStatusFor(final Context appContext, final String uuid, final int status) {
         final String TAGG = "updateStatusFor: ";
 
-        new Thread(){
-            @Override
-            public void run() {
-                currentThread().setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the update on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().updateStatusFor(uuid, status);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
-            }
-        }.start();
+        try {
+            databaseWriter.enqueue(new MessageColumnsUpdate(appContext, uuid, null, null, null, null, status));
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
     }
     public void updateStatusFor(final Context appContext, final UUID uuid, final int status) {
         final String TAGG = "updateStatusFor: ";
@@ -315,26 +423,18 @@ public class MessageDatabaseClient {
     public void updateJsonFor(final Context appContext, final String uuid, final String json) {
         final String TAGG = "updateJsonFor: ";
 
-        new Thread(){
-            @Override
-            public void run() {
-                currentThread().setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the update on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().updateJsonFor(uuid, json);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
-            }
-        }.start();
+        try {
+            databaseWriter.enqueue(new MessageColumnsUpdate(appContext, uuid, json, null, null, null, null));
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
     }
     public void updateJsonFor(final Context appContext, final UUID uuid, final JSONObject json) {
         final String TAGG = "updateJsonFor: ";
 
         try {
-            updateJsonFor(appContext, uuid.toString(), json.toString());
+            final byte[] jsonBin = encodePayload(json, TAGG);
+            databaseWriter.enqueue(new MessageColumnsUpdate(appContext, uuid.toString(), textPayload(json, jsonBin), jsonBin, null, null, null));
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -348,71 +448,89 @@ public class MessageDatabaseClient {
     public void updateMetaFor(final Context appContext, final String uuid, final String json) {
         final String TAGG = "updateMetaFor: ";
 
-        new Thread(){
-            @Override
-            public void run() {
-                currentThread().setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the update on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().updateMetaFor(uuid, json);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
-            }
-        }.start();
+        try {
+            databaseWriter.enqueue(new MessageColumnsUpdate(appContext, uuid, null, null, json, null, null));
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
     }
     public void updateMetaFor(final Context appContext, final UUID uuid, final JSONObject json) {
         final String TAGG = "updateMetaFor: ";
 
         try {
-            updateMetaFor(appContext, uuid.toString(), json.toString());
+            final byte[] metaBin = encodePayload(json, TAGG);
+            databaseWriter.enqueue(new MessageColumnsUpdate(appContext, uuid.toString(), null, null, textPayload(json, metaBin), metaBin, null));
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+    }
+
+    /** Method to update an existing record's json, metadata json, and status, all in one statement.
+     * The JSON is encoded here, on the calling thread (so the database writer's transaction doesn't wait on it).
+     * @param appContext
+     * @param uuid
+     * @param json
+     * @param meta
+     * @param status
+     */
+    public void updateJsonMetaStatusFor(final Context appContext, final UUID uuid, final JSONObject json, final JSONObject meta, final int status) {
+        final String TAGG = "updateJsonMetaStatusFor: ";
+
+        try {
+            final byte[] jsonBin = encodePayload(json, TAGG);
+            final byte[] metaBin = encodePayload(meta, TAGG);
+            databaseWriter.enqueue(new MessageColumnsUpdate(appContext, uuid.toString(), textPayload(json, jsonBin), jsonBin, textPayload(meta, metaBin), metaBin, status));
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
     }
 
+    /** Method to set a record's expiration (epoch milliseconds), if it doesn't already have one.
+     * Call this once expiration is fixed (e.g. at first delivery); later calls for the same record are ignored by the database.
+     * @param appContext Application context.
+     * @param uuid UUID of the record.
+     * @param expiresAtMs When it expires, as epoch milliseconds.
+     */
+    public void updateExpiresAtFor(final Context appContext, @NonNull final UUID uuid, final long expiresAtMs) {
+        final String TAGG = "updateExpiresAtFor: ";
+
+        databaseWriter.enqueue(new DatabaseWriter.Write(WRITE_KEY_PREFIX + uuid.toString(), null) {
+            @Override
+            public void apply() {
+                //run the update on the database
+                MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().updateExpiresAtFor(uuid.toString(), expiresAtMs);
+            }
+
+            @Override
+            protected void onCommitted() {
+                //let anyone watching the schedule know to look again (now that they'd see it)
+                expiryScheduleVersion++;
+            }
+        });
+    }
+
 
     /*============================================================================================*/
     /* Delete Routines... */
 
     public void deleteRecord(final Context appContext, final Message record) {
-        final String TAGG = "deleteRecord: ";
-
-        new Thread(){
+        databaseWriter.enqueue(new MessageDelete(appContext, WRITE_KEY_PREFIX + record.getMsgUUID(), "deleteRecord: ") {
             @Override
-            public void run() {
-                currentThread().setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the delete on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().delete(record);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            void delete(MessageDao messageDao) {
+                //run the delete on the database
+                messageDao.delete(record);
             }
-        }.start();
+        });
     }
 
     public void deleteRecord(final Context appContext, final String uuid) {
-        final String TAGG = "deleteRecord: ";
-
-        new Thread(){
+        databaseWriter.enqueue(new MessageDelete(appContext, WRITE_KEY_PREFIX + uuid, "deleteRecord: ") {
             @Override
-            public void run() {
-                currentThread().setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the delete on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().delete(uuid);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            void delete(MessageDao messageDao) {
+                //run the delete on the database
+                messageDao.delete(uuid);
             }
-        }.start();
+        });
     }
 
     public void deleteRecord(final Context appContext, @NonNull final UUID uuid) {
@@ -425,22 +543,63 @@ public class MessageDatabaseClient {
      * @param appContext Application context.
      */
     public void deleteAll_olderThan(final Context appContext, final String sqliteDatetimeModifier) {
-        final String TAGG = "deleteAll_olderThan: ";
-
-        new Thread(){
+        databaseWriter.enqueue(new MessageDelete(appContext, null, "deleteAll_olderThan: ") {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
+            void delete(MessageDao messageDao) {
+                //run the query on the database
+                messageDao.deleteAll_olderThan(sqliteDatetimeModifier);
+            }
+        });
+    }
 
-                try {
+    /** Method to invoke the database backend to delete up to a chunk of old records, and wait for it to be committed.
+     * This is for scheduled maintenance (HealthThreadDatabase), which calls it repeatedly until fewer than chunkSize get deleted,
+     * so the writer (and everybody else's writes) is never held up by one huge delete.
+     * Deletes are recorded in the change-feed, so RAM sync evicts them from there.
+     * @param appContext Application context.
+     * @param sqliteDatetimeModifier How old a record must be to get deleted (e.g. Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY).
+     * @param chunkSize Most records to delete.
+     * @return How many records were deleted, or -1 if it failed (or wasn't committed in time).
+     */
+    public int deleteChunk_olderThan(final Context appContext, final String sqliteDatetimeModifier, final int chunkSize) {
+        final String TAGG = "deleteChunk_olderThan: ";
+        final int[] deletedCount = {-1};
+
+        try {
+            boolean isCommitted = databaseWriter.enqueueAndAwait(new MessageDelete(appContext, null, TAGG) {
+                @Override
+                void delete(MessageDao messageDao) {
                     //run the query on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().deleteAll_olderThan(sqliteDatetimeModifier);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
+                    deletedCount[0] = messageDao.deleteChunk_olderThan(sqliteDatetimeModifier, chunkSize);
                 }
+            }, Constants.Database.DB_MAINTENANCE_WRITE_TIMEOUT_MS);
+
+            if (!isCommitted) {
+                logW(TAGG+"Delete was not committed in time.");
+                return -1;
             }
-        }.start();
+        } catch (InterruptedException e) {
+            logW(TAGG+"Interrupted waiting for delete to be committed.");
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+
+        return deletedCount[0];
+    }
+
+    /** Method to invoke the database backend to delete all records that have expired as of the specified time (one indexed query).
+     * Deletes are recorded in the change-feed, so RAM sync evicts them from there.
+     * @param appContext Application context.
+     * @param nowMs The time to consider (epoch milliseconds).
+     */
+    public void deleteAll_expiredAsOf(final Context appContext, final long nowMs) {
+        databaseWriter.enqueue(new MessageDelete(appContext, null, "deleteAll_expiredAsOf: ") {
+            @Override
+            void delete(MessageDao messageDao) {
+                //run the query on the database
+                messageDao.deleteAll_expiredAsOf(nowMs);
+            }
+        });
     }
 
     /** Method to invoke the database backend to find and delete all records with specified status (refer to Message constants).
@@ -448,22 +607,13 @@ public class MessageDatabaseClient {
      * @param status Message status (refer to Message constants) for which to delete records.
      */
     public void deleteAll_withStatus(final Context appContext, final int status) {
-        final String TAGG = "deleteAll_withStatus: ";
-
-        new Thread(){
+        databaseWriter.enqueue(new MessageDelete(appContext, null, "deleteAll_withStatus: ") {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the query on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().deleteAll_withStatus(status);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            void delete(MessageDao messageDao) {
+                //run the query on the database
+                messageDao.deleteAll_withStatus(status);
             }
-        }.start();
+        });
     }
 
     /** Method to invoke the database backend to find and delete all records.
@@ -472,20 +622,19 @@ public class MessageDatabaseClient {
     public void deleteAll(final Context appContext) {
         final String TAGG = "deleteAll: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
+            public void apply() {
+                //run the query on the database
+                MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().deleteAll();
+            }
 
-                try {
-                    //run the query on the database
-                    MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().deleteAll();
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            @Override
+            protected void onCommitted() {
+                //nothing is part of our active-message state anymore (now that nobody could find them)
+                ActiveMessageDigest.clear();
             }
-        }.start();
+        });
     }
 
 
@@ -524,144 +673,370 @@ public class MessageDatabaseClient {
     */
 
 
+    /** Encode the provided JSON for a binary column (msg_bin/meta_bin), if the configured payload encoding uses them.
+     * @return The encoding, or null if we only save text (or it couldn't be encoded, in which case text is saved instead).
+     */
+    private byte[] encodePayload(JSONObject jsonObject, String tagg) {
+        if (Constants.Database.MESSAGE_PAYLOAD_ENCODING == Constants.Database.MESSAGE_PAYLOAD_ENCODING_JSON) {
+            return null;
+        }
+
+        try {
+            return MessagePayloadCodec.encode(jsonObject);
+        } catch (JSONException e) {
+            logW(tagg+"Could not encode JSON (saving it as text only): "+e.getMessage());
+            return null;
+        }
+    }
+
+    /** Get the text to save for the provided JSON, given its binary encoding (from encodePayload).
+     * @return The JSON string, or an empty string if only the binary encoding is to be saved.
+     */
+    private String textPayload(JSONObject jsonObject, byte[] bin) {
+        if (bin != null && Constants.Database.MESSAGE_PAYLOAD_ENCODING == Constants.Database.MESSAGE_PAYLOAD_ENCODING_BINARY) {
+            return "";
+        }
+        return jsonObject.toString();
+    }
+
+    /** Wait for a query's result (the calling thread is parked while it waits, rather than spinning).
+     * @return The result, or null if the query failed or we were interrupted while waiting.
+     */
+    private <T> T waitForResult(Future<T> future, String tagg) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            logW(tagg+"Interrupted while waiting for query result.");
+            Thread.currentThread().interrupt();                                                     //preserve it for our caller (e.g. a thread-loop checking isInterrupted)
+        } catch (ExecutionException e) {
+            logE(tagg+"Exception caught running query: "+e.getMessage());
+        }
+        return null;
+    }
+
+
     /*============================================================================================*/
     /* Subclasses... */
 
-    /** A thread to access the database and find all records.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A write that updates any of a record's json, metadata json, and status (null leaves that column as is).
+     * Each json goes with its binary encoding (null if there isn't one), so providing a json without one clears the stale encoding.
+     * Waiting updates for the same record are merged into one (newer values win), so they take one statement, not several.
+     */
+    private class MessageColumnsUpdate extends DatabaseWriter.Write {
+        private final String TAGG = this.getClass().getSimpleName();
+        private final Context appContext;
+        private final String uuid;
+        private final String json;
+        private final byte[] jsonBin;
+        private final String meta;
+        private final byte[] metaBin;
+        private final Integer status;
+
+        MessageColumnsUpdate(Context appContext, String uuid, String json, byte[] jsonBin, String meta, byte[] metaBin, Integer status) {
+            super(WRITE_KEY_PREFIX + uuid, "columns");
+            this.appContext = appContext;
+            this.uuid = uuid;
+            this.json = json;
+            this.jsonBin = jsonBin;
+            this.meta = meta;
+            this.metaBin = metaBin;
+            this.status = status;
+        }
+
+        @Override
+        public void apply() {
+            //run the update on the database
+            MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().updateColumnsFor(uuid, json, jsonBin, meta, metaBin, status);
+        }
+
+        @Override
+        protected DatabaseWriter.Write merge(DatabaseWriter.Write newer) {
+            MessageColumnsUpdate n = (MessageColumnsUpdate) newer;
+            final boolean newerJson = (n.json != null || n.jsonBin != null);
+            final boolean newerMeta = (n.meta != null || n.metaBin != null);
+            return new MessageColumnsUpdate(n.appContext, uuid,
+                    newerJson ? n.json : json,
+                    newerJson ? n.jsonBin : jsonBin,
+                    newerMeta ? n.meta : meta,
+                    newerMeta ? n.metaBin : metaBin,
+                    n.status != null ? n.status : status);
+        }
+    }
+
+    /** A write that deletes records, and (once that's committed) takes them out of our active-message state (ActiveMessageDigest).
+     * Which records actually got deleted is read back from the change-feed (the triggers record every one) in the same transaction,
+     * so bulk deletes (by age, expiration, or status) keep the digest up to date, just like single ones do.
+     */
+    private abstract class MessageDelete extends DatabaseWriter.Write {
+        private final String tagg;
+        private final Context appContext;
+        private List<String> deletedUUIDs;
+
+        /**
+         * @param entityKey What this affects (WRITE_KEY_PREFIX + UUID), or null for bulk deletes.
+         * @param tagg Logging tag of the method that made it.
+         */
+        MessageDelete(Context appContext, String entityKey, String tagg) {
+            super(entityKey, null);
+            this.appContext = appContext;
+            this.tagg = tagg;
+        }
+
+        /** Run the delete itself (this runs on the writer thread, inside the transaction). */
+        abstract void delete(MessageDao messageDao);
+
+        @Override
+        public void apply() {
+            MessageDao messageDao = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao();
+            long changeSeqBefore = messageDao.getLatestChangeSeq();
+
+            delete(messageDao);
+
+            //note what got deleted (by the change-feed rows our delete just caused)
+            List<MessageChange> messageChanges = messageDao.getChangesAfter(changeSeqBefore, Integer.MAX_VALUE);
+            deletedUUIDs = new ArrayList<String>(messageChanges.size());
+            for (MessageChange messageChange : messageChanges) {
+                if (messageChange.getChangeType() == MessageChange.CHANGE_DELETED) {
+                    deletedUUIDs.add(messageChange.getMsgUUID());
+                }
+            }
+        }
+
+        @Override
+        protected void onCommitted() {
+            if (deletedUUIDs == null) {
+                return;
+            }
+            logV(tagg+"Deleted "+deletedUUIDs.size()+" record(s).");
+
+            //they're no longer part of our active-message state (now that nobody could find them)
+            for (int i = 0; i < deletedUUIDs.size(); i++) {
+                ActiveMessageDigest.remove(deletedUUIDs.get(i));
+            }
+        }
+    }
+
+    /** A task to access the database and find all records.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindAllRecords findAllRecords;
-     *  findAllRecords = new FindAllRecords(appContext);
-     *  findAllRecords.start();
-     *  while (!findAllRecords.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findAllRecords.result;
-     */
-    private class FindAllRecords extends Thread {
+     *  Future<List<Message>> future = AppExecutors.getInstance().databaseIO().submit(new FindAllRecords(appContext));
+     *  return waitForResult(future, TAGG);
+     */
+    private class FindAllRecords implements Callable<List<Message>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<Message> result = null;
-        volatile boolean isDone = false;
         FindAllRecords(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<Message> call() {
+            final String TAGGG = "call: ";
+            List<Message> result = null;
             try {
                 result = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().getAllRecords();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and find all records, sorted by received_at field, ascending.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all records, sorted by received_at field, ascending.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindAllRecords_sortReceivedAscending findAllRecords_sorted;
-     *  findAllRecords_sorted = new FindAllRecords_sortReceivedAscending(appContext);
-     *  findAllRecords_sorted.start();
-     *  while (!findAllRecords_sorted.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findAllRecords_sorted.result;
-     */
-    private class FindAllRecords_sortReceivedAscending extends Thread {
+     *  Future<List<Message>> future = AppExecutors.getInstance().databaseIO().submit(new FindAllRecords_sortReceivedAscending(appContext));
+     *  return waitForResult(future, TAGG);
+     */
+    private class FindAllRecords_sortReceivedAscending implements Callable<List<Message>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<Message> result = null;
-        volatile boolean isDone = false;
         FindAllRecords_sortReceivedAscending(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<Message> call() {
+            final String TAGGG = "call: ";
+            List<Message> result = null;
             try {
                 result = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().getAllRecords_sortedByReceivedAscending();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and find all records, sorted by received_at field, descending.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all records, sorted by received_at field, descending.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindAllRecords_sortReceivedDescending findAllRecords_sorted;
-     *  findAllRecords_sorted = new FindAllRecords_sortReceivedDescending(appContext);
-     *  findAllRecords_sorted.start();
-     *  while (!findAllRecords_sorted.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findAllRecords_sorted.result;
-     */
-    private class FindAllRecords_sortReceivedDescending extends Thread {
+     *  Future<List<Message>> future = AppExecutors.getInstance().databaseIO().submit(new FindAllRecords_sortReceivedDescending(appContext));
+     *  return waitForResult(future, TAGG);
+     */
+    private class FindAllRecords_sortReceivedDescending implements Callable<List<Message>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<Message> result = null;
-        volatile boolean isDone = false;
         FindAllRecords_sortReceivedDescending(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<Message> call() {
+            final String TAGGG = "call: ";
+            List<Message> result = null;
             try {
                 result = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().getAllRecords_sortedByReceivedDescending();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and find the matching record.
-     * You should wrap this in a loop to monitor for when it's done and its result are ready.
+    /** A task to access the database and find the matching record.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindSpecifiedRecord_uuid findSpecifiedRecord_uuid;
-     *  findSpecifiedRecord_uuid = new FindSpecifiedRecord_uuid(appContext);
-     *  findSpecifiedRecord_uuid.start();
-     *  while (!findSpecifiedRecord_uuid.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findSpecifiedRecord_uuid.result;
-     */
-    private class FindSpecifiedRecord_uuid extends Thread {
+     *  Future<List<Message>> future = AppExecutors.getInstance().databaseIO().submit(new FindSpecifiedRecord_uuid(appContext, uuid));
+     *  return waitForResult(future, TAGG);
+     */
+    private class FindSpecifiedRecord_uuid implements Callable<List<Message>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
         private UUID uuid = UUID.randomUUID();
-        List<Message> result = null;
-        volatile boolean isDone = false;
         FindSpecifiedRecord_uuid(final Context appContext, final UUID uuid) {
             this.appContext = appContext;
             this.uuid = uuid;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<Message> call() {
+            final String TAGGG = "call: ";
+            List<Message> result = null;
             try {
                 result = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().getSpecificRecord_uuid(uuid.toString());
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
+        }
+    }
+
+
+    /** A task to access the database and find the matching records.
+     * Submit it to the database executor, and get its result from the Future it gives you.
+     *
+     * Usage example:
+     *  Future<List<Message>> future = AppExecutors.getInstance().databaseIO().submit(new FindSpecifiedRecords_uuids(appContext, uuids));
+     *  return waitForResult(future, TAGG);
+     */
+    private class FindSpecifiedRecords_uuids implements Callable<List<Message>> {
+        private final String TAGG = this.getClass().getSimpleName();
+        private Context appContext = null;
+        private List<String> uuids = null;
+        FindSpecifiedRecords_uuids(final Context appContext, final List<String> uuids) {
+            this.appContext = appContext;
+            this.uuids = uuids;
+        }
+        @Override
+        public List<Message> call() {
+            final String TAGGG = "call: ";
+            List<Message> result = null;
+            try {
+                result = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().getSpecificRecords_uuids(uuids);
+            } catch (Exception e) {
+                logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
+            }
+            return result;
+        }
+    }
+
+    /** A task to access the database and find changes made after a cursor.
+     * Submit it to the database executor, and get its result from the Future it gives you.
+     *
+     * Usage example:
+     *  Future<List<MessageChange>> future = AppExecutors.getInstance().databaseIO().submit(new FindChangesAfter(appContext, afterSeq, limit));
+     *  return waitForResult(future, TAGG);
+     */
+    private class FindChangesAfter implements Callable<List<MessageChange>> {
+        private final String TAGG = this.getClass().getSimpleName();
+        private Context appContext = null;
+        private long afterSeq = 0;
+        private int limit = 0;
+        FindChangesAfter(final Context appContext, final long afterSeq, final int limit) {
+            this.appContext = appContext;
+            this.afterSeq = afterSeq;
+            this.limit = limit;
+        }
+        @Override
+        public List<MessageChange> call() {
+            final String TAGGG = "call: ";
+            List<MessageChange> result = null;
+            try {
+                result = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().getChangesAfter(afterSeq, limit);
+            } catch (Exception e) {
+                logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
+            }
+            return result;
+        }
+    }
+
+    /** A task to access the database and find the most recent change's seq.
+     * Submit it to the database executor, and get its result from the Future it gives you.
+     *
+     * Usage example:
+     *  Future<Long> future = AppExecutors.getInstance().databaseIO().submit(new FindLatestChangeSeq(appContext));
+     *  return waitForResult(future, TAGG);
+     */
+    private class FindLatestChangeSeq implements Callable<Long> {
+        private final String TAGG = this.getClass().getSimpleName();
+        private Context appContext = null;
+        FindLatestChangeSeq(final Context appContext) {
+            this.appContext = appContext;
+        }
+        @Override
+        public Long call() {
+            final String TAGGG = "call: ";
+            Long result = null;
+            try {
+                result = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().getLatestChangeSeq();
+            } catch (Exception e) {
+                logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
+            }
+            return result;
         }
     }
 
 
+    /** A task to access the database and find the soonest expiration (Long.MAX_VALUE if none, or null if the query failed).
+     * Submit it to the database executor, and get its result from the Future it gives you.
+     *
+     * Usage example:
+     *  Future<Long> future = AppExecutors.getInstance().databaseIO().submit(new FindNextExpiresAtMs(appContext));
+     *  return waitForResult(future, TAGG);
+     */
+    private class FindNextExpiresAtMs implements Callable<Long> {
+        private final String TAGG = this.getClass().getSimpleName();
+        private Context appContext = null;
+        FindNextExpiresAtMs(final Context appContext) {
+            this.appContext = appContext;
+        }
+        @Override
+        public Long call() {
+            final String TAGGG = "call: ";
+            Long result = null;
+            try {
+                result = MessageDatabaseClient.getInstance(appContext).getMessageDatabase().messageDao().getNextExpiresAtMs();
+                if (result == null) {
+                    result = Long.MAX_VALUE;
+                }
+            } catch (Exception e) {
+                logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
+            }
+            return result;
+        }
+    }
+
     /*============================================================================================*/
     /* Logging Methods */
 
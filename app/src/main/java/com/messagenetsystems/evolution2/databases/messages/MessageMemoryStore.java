@@ -0,0 +1,385 @@
+package com.messagenetsystems.evolution2.databases.messages;
+
+/* MessageMemoryStore class
+ *
+ * An in-memory implementation of MessageStore, for exercising and benchmarking the message pipeline off-device (plain JVM).
+ * Nothing here touches Android (no Room, Context, or logging), and nothing persists.
+ *
+ * It's lock-free: records live in concurrent maps, IDs come from an atomic counter, and updates are compare-and-set replacements.
+ * Records are copied going in and coming out (just like rows are, with Room), so what callers do to theirs doesn't show until they update.
+ * Writes are applied right away, on the caller's thread. A promotion adds the record, and then flags its received message (not atomically, as Room's transaction does).
+ *
+ * The change-feed (what the table's triggers do, with Room) is a linked list that changes are appended to by compare-and-set on its tail,
+ * each taking the next seq as it's linked. So seqs are in the order changes become visible, with no gaps, which is what lets a
+ * consumer move its cursor past whatever it has read without ever skipping something that shows up later.
+ *
+ * Usage example...
+ *  MessageMemoryStore messageStore = new MessageMemoryStore(receivedMessageStore);
+ *  (or, for the whole pipeline, PipelineStores.setInstance(PipelineStores.createInMemory()))
+ */
+
+import android.support.annotation.NonNull;
+
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageMemoryStore;
+import com.messagenetsystems.evolution2.models.ActiveMessageDigest;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+public class MessageMemoryStore implements MessageStore {
+
+    // Constants...
+    private static final Comparator<Message> RECEIVED_ASCENDING = new Comparator<Message>() {
+        @Override
+        public int compare(Message m1, Message m2) {
+            return m1.getReceivedAtMs() < m2.getReceivedAtMs() ? -1 : (m1.getReceivedAtMs() == m2.getReceivedAtMs() ? 0 : 1);
+        }
+    };
+
+    // Local stuff...
+    private final ReceivedMessageMemoryStore receivedMessageStore;                                  //where promoted received messages get flagged
+    private final AtomicInteger lastId;                                                             //like the table's autogenerated primary key
+    private final ConcurrentSkipListMap<Integer, Message> recordsById;                              //records, by ID (so, in the order added)
+    private final ConcurrentHashMap<String, Integer> idsByUUID;                                     //like the unique index on msg_uuid
+    private final AtomicReference<ChangeNode> changeHead;                                           //last change consumed (pruned), whose successors are the change-feed
+    private final AtomicReference<ChangeNode> changeTail;                                           //last change appended (or close to it, it may lag behind by a node)
+    private final AtomicLong expiryScheduleVersion;                                                 //incremented whenever an expiration gets set
+
+    /** Constructor */
+    public MessageMemoryStore(ReceivedMessageMemoryStore receivedMessageStore) {
+        this.receivedMessageStore = receivedMessageStore;
+        this.lastId = new AtomicInteger(0);
+        this.recordsById = new ConcurrentSkipListMap<Integer, Message>();
+        this.idsByUUID = new ConcurrentHashMap<String, Integer>();
+
+        ChangeNode sentinel = new ChangeNode(new MessageChange());                                  //seq 0, like an empty message_changes table
+        this.changeHead = new AtomicReference<ChangeNode>(sentinel);
+        this.changeTail = new AtomicReference<ChangeNode>(sentinel);
+
+        this.expiryScheduleVersion = new AtomicLong(0);
+    }
+
+
+    /*============================================================================================*/
+    /* Add/Insert Routines... */
+
+    @Override
+    public void addRecord(String msgUUID, String msgJSON, int status, Date receivedAt) {
+        insertRecord(msgUUID, msgJSON, status, receivedAt, null);
+    }
+
+    @Override
+    public void addRecordPromotedFrom(ReceivedMessage receivedMessage, byte receivedMessageStatus) {
+        final int receivedMessageId = receivedMessage.getId();
+
+        insertRecord(receivedMessage.getMessageUUID(), receivedMessage.getMessageJson(), Message.STATUS_NEW, receivedMessage.getReceivedAt(), (receivedMessageId == 0 ? null : receivedMessageId));
+
+        if (receivedMessageId != 0) {
+            receivedMessageStore.updateProcessedFor(receivedMessageId, receivedMessageStatus, System.currentTimeMillis());
+        }
+    }
+
+    private void insertRecord(String msgUUID, String msgJSON, int status, Date receivedAt, Integer receivedMessageId) {
+        Message message = new Message();
+        message.setId(lastId.incrementAndGet());
+        message.setStatus(status);
+        message.setMsgUUID(msgUUID);
+        message.setMsgJSON(msgJSON);
+        message.setReceivedAt(receivedAt);
+        message.setReceivedMessageId(receivedMessageId);
+
+        Date currDateTime = new Date();
+        message.setCreatedAt(currDateTime);
+        message.setModifiedAt(currDateTime);
+        message.setMetaJSON("");
+
+        //only add it if its UUID is unique (like the insert failing on the unique index)
+        if (idsByUUID.putIfAbsent(msgUUID, message.getId()) == null) {
+            recordsById.put(message.getId(), message);
+            appendChange(msgUUID, MessageChange.CHANGE_INSERTED);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Find Routines... */
+
+    @Override
+    public boolean doesMessageExist(String uuid) {
+        return uuid != null && idsByUUID.containsKey(uuid);
+    }
+
+    @Override
+    public List<Message> findAllRecords() {
+        List<Message> ret = new ArrayList<Message>(recordsById.size());
+        for (Message message : recordsById.values()) {
+            ret.add(copyOf(message));
+        }
+        return ret;
+    }
+
+    @Override
+    public List<Message> findAllRecords_sortedOrderReceivedAscending() {
+        List<Message> ret = findAllRecords();
+        Collections.sort(ret, RECEIVED_ASCENDING);
+        return ret;
+    }
+
+    @Override
+    public List<Message> findSpecifiedRecords_uuids(List<String> uuids) {
+        List<Message> ret = new ArrayList<Message>(uuids.size());
+        for (String uuid : new HashSet<String>(uuids)) {
+            Integer id = idsByUUID.get(uuid);
+            Message message = (id == null) ? null : recordsById.get(id);
+            if (message != null) {
+                ret.add(copyOf(message));
+            }
+        }
+        Collections.sort(ret, RECEIVED_ASCENDING);
+        return ret;
+    }
+
+    @Override
+    public long findNextExpiresAtMs() {
+        long ret = Long.MAX_VALUE;
+        for (Message message : recordsById.values()) {
+            if (message.getExpiresAtMs() != null && message.getExpiresAtMs() < ret) {
+                ret = message.getExpiresAtMs();
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public long getExpiryScheduleVersion() {
+        return expiryScheduleVersion.get();
+    }
+
+
+    /*============================================================================================*/
+    /* Change-Feed Routines... */
+
+    @Override
+    public List<MessageChange> findChangesAfter(long afterSeq, int limit) {
+        List<MessageChange> ret = new ArrayList<MessageChange>();
+        ChangeNode node = changeHead.get().next.get();
+        while (node != null && ret.size() < limit) {
+            if (node.change.getSeq() > afterSeq) {
+                ret.add(node.change);
+            }
+            node = node.next.get();
+        }
+        return ret;
+    }
+
+    @Override
+    public long findLatestChangeSeq() {
+        ChangeNode node = changeTail.get();
+        ChangeNode next;
+        while ((next = node.next.get()) != null) {
+            node = next;
+        }
+        return node.change.getSeq();
+    }
+
+    @Override
+    public void pruneChangesThrough(long seq) {
+        while (true) {
+            ChangeNode head = changeHead.get();
+            ChangeNode next = head.next.get();
+            if (next == null || next.change.getSeq() > seq) {
+                return;
+            }
+            changeHead.compareAndSet(head, next);
+        }
+    }
+
+    /** Append a change to the feed (taking the next seq, as it's linked). */
+    private void appendChange(String msgUUID, int changeType) {
+        MessageChange change = new MessageChange();
+        change.setMsgUUID(msgUUID);
+        change.setChangeType(changeType);
+        ChangeNode node = new ChangeNode(change);
+
+        while (true) {
+            ChangeNode tail = changeTail.get();
+            ChangeNode next = tail.next.get();
+            if (next != null) {
+                changeTail.compareAndSet(tail, next);                                               //tail is lagging (someone else is mid-append), so help it along
+                continue;
+            }
+
+            change.setSeq(tail.change.getSeq() + 1);                                                //not visible to anyone until it's linked, so this is safe to redo
+            if (tail.next.compareAndSet(null, node)) {
+                changeTail.compareAndSet(tail, node);
+                return;
+            }
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Update Routines... */
+
+    @Override
+    public void updateStatusFor(String uuid, int status) {
+        updateColumnsFor(uuid, null, null, status, null);
+    }
+
+    @Override
+    public void updateJsonMetaStatusFor(UUID uuid, JSONObject json, JSONObject meta, int status) {
+        updateColumnsFor(uuid.toString(), json.toString(), meta.toString(), status, null);
+    }
+
+    @Override
+    public void updateExpiresAtFor(@NonNull UUID uuid, long expiresAtMs) {
+        if (updateColumnsFor(uuid.toString(), null, null, null, expiresAtMs)) {
+            expiryScheduleVersion.incrementAndGet();
+        }
+    }
+
+    /** Update any of a record's json, metadata json, status, and expiration (null leaves it as is; expiration is only set if it isn't already).
+     * @return Whether the record was found (and so, updated).
+     */
+    private boolean updateColumnsFor(String uuid, String json, String meta, Integer status, Long expiresAtMs) {
+        while (true) {
+            Integer id = idsByUUID.get(uuid);
+            Message current = (id == null) ? null : recordsById.get(id);
+            if (current == null) {
+                return false;
+            }
+            if (json == null && meta == null && status == null && current.getExpiresAtMs() != null) {
+                return false;                                                                       //only an expiration to set, and it already has one
+            }
+
+            Message updated = copyOf(current);
+            if (json != null) {
+                updated.setMsgJSON(json);
+                updated.setMsgBin(null);
+            }
+            if (meta != null) {
+                updated.setMetaJSON(meta);
+                updated.setMetaBin(null);
+            }
+            if (status != null) {
+                updated.setStatus(status);
+            }
+            if (expiresAtMs != null && updated.getExpiresAtMs() == null) {
+                updated.setExpiresAtMs(expiresAtMs);
+            }
+            updated.setModifiedAt(new Date());
+            if (recordsById.replace(id, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Delete Routines... */
+
+    @Override
+    public void deleteRecord(@NonNull UUID uuid) {
+        Integer id = idsByUUID.get(uuid.toString());
+        if (id != null) {
+            removeRecord(id);
+        }
+    }
+
+    @Override
+    public void deleteAll_expiredAsOf(long nowMs) {
+        for (Map.Entry<Integer, Message> entry : recordsById.entrySet()) {
+            Long expiresAtMs = entry.getValue().getExpiresAtMs();
+            if (expiresAtMs != null && expiresAtMs <= nowMs) {
+                removeRecord(entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll_withStatus(int status) {
+        for (Map.Entry<Integer, Message> entry : recordsById.entrySet()) {
+            if (entry.getValue().getStatus() == status) {
+                removeRecord(entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        for (Integer id : recordsById.keySet()) {
+            removeRecord(id);
+        }
+
+        //nothing is part of our active-message state anymore
+        ActiveMessageDigest.clear();
+    }
+
+    /** Remove a record, recording its deletion in the change-feed and taking it out of our active-message state (only if we're the one that removed it). */
+    private void removeRecord(int id) {
+        Message removed = recordsById.remove(id);
+        if (removed != null) {
+            idsByUUID.remove(removed.getMsgUUID(), id);
+            appendChange(removed.getMsgUUID(), MessageChange.CHANGE_DELETED);
+            ActiveMessageDigest.remove(removed.getMsgUUID());
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Memory-Store Methods */
+
+    /** @return How many records there are. */
+    public int size() {
+        return recordsById.size();
+    }
+
+    private static Message copyOf(Message message) {
+        Message ret = new Message();
+        ret.setId(message.getId());
+        ret.setCreatedAt(message.getCreatedAt());
+        ret.setModifiedAt(message.getModifiedAt());
+        ret.setReceivedAt(message.getReceivedAt());
+        ret.setModifiedAtMs(message.getModifiedAtMs());
+        ret.setReceivedAtMs(message.getReceivedAtMs());
+        ret.setStatus(message.getStatus());
+        ret.setMsgUUID(message.getMsgUUID());
+        ret.setMsgJSON(message.getMsgJSON());
+        ret.setMetaJSON(message.getMetaJSON());
+        ret.setReceivedMessageId(message.getReceivedMessageId());
+        ret.setExpiresAtMs(message.getExpiresAtMs());
+        ret.setMsgBin(message.getMsgBin());
+        ret.setMetaBin(message.getMetaBin());
+        return ret;
+    }
+
+
+    /*============================================================================================*/
+    /* Subclasses... */
+
+    /** A link in the change-feed. */
+    private static class ChangeNode {
+        final MessageChange change;
+        final AtomicReference<ChangeNode> next;
+
+        ChangeNode(MessageChange change) {
+            this.change = change;
+            this.next = new AtomicReference<ChangeNode>(null);
+        }
+    }
+}
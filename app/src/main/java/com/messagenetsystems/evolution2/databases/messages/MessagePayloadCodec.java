@@ -0,0 +1,457 @@
+package com.messagenetsystems.evolution2.databases.messages;
+
+/* MessagePayloadCodec class
+ *
+ * A compact binary encoding of a message's JSON (and metadata JSON), for the messages table's msg_bin and meta_bin columns.
+ * Decoding it builds the JSONObject directly, so syncing a record to RAM doesn't have to tokenize JSON text again,
+ * and it takes less room on flash than the text does (keys we know are one byte, and integer-like values are varints).
+ *
+ * It's lossless: what you decode is what you encoded (same keys in the same order, same value types), so its toString() matches too.
+ * Anything it doesn't know about (keys that aren't in the dictionary, new value types that JSON text could hold) still round-trips,
+ * just without the savings (unknown keys are written inline).
+ *
+ * Layout (all lengths and counts are unsigned varints, all integers are zig-zag varints)...
+ *  byte    schema version (SCHEMA_VERSION)
+ *  value   the top-level object (always TAG_OBJECT)
+ * Where a value is one tag byte, followed by...
+ *  TAG_NULL, TAG_FALSE, TAG_TRUE           nothing
+ *  TAG_INT, TAG_LONG                       the number
+ *  TAG_DOUBLE                              8 bytes (IEEE 754, big-endian)
+ *  TAG_STRING                              length + UTF-8 bytes
+ *  TAG_STRING_INT                          the number (a string of a plain decimal integer, like the "recno_zx" the legacy server quotes)
+ *  TAG_OBJECT                              count + that many (key, value) pairs
+ *  TAG_ARRAY                               count + that many values
+ * And a key is a varint: 0 for a key written inline (length + UTF-8 bytes follow), or 1 + its index in the dictionary.
+ *
+ * DEV-NOTE...
+ * The dictionary is part of the schema! Records on flash refer to keys by index, so never reorder or remove its entries.
+ * To add keys, append them, bump SCHEMA_VERSION, and add its dictionary size to decode (older versions' records still decode, with the entries they knew about).
+ *
+ * Usage example (encoding)...
+ *  byte[] msgBin = MessagePayloadCodec.encode(omniRawMessage.getMessageJSONObject());
+ *
+ * Usage example (decoding)...
+ *  JSONObject msgJSONObject = MessagePayloadCodec.decode(message.getMsgBin());
+ */
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+public class MessagePayloadCodec {
+
+    // Constants...
+    public static final byte SCHEMA_VERSION = 1;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALSE = 1;
+    private static final byte TAG_TRUE = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_STRING = 6;
+    private static final byte TAG_STRING_INT = 7;
+    private static final byte TAG_OBJECT = 8;
+    private static final byte TAG_ARRAY = 9;
+
+    private static final int KEY_INLINE = 0;
+    private static final int MAX_STRING_INT_CHARS = 18;                                             //longest decimal string that always fits a long (so TAG_STRING_INT can't overflow)
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+
+    // Dictionary of keys (schema version 1)...
+    // The legacy banner message JSON (as generated by support_evolution.c, see BannerMessage and R.string.BANNMSGFIELDNAME_JSON_*),
+    // the fields we add in-app (R.string.JSONFIELDNAME_*), and metadata (OmniMessage.exportMetaToJSONObject).
+    private static final String[] DICTIONARY = {
+            //request envelope...
+            "password",
+            "bannerpurpose",
+            "hardware_deviceid",
+            "hardware_recno",
+            "bannermessages",
+            "seqstring",
+            "autosplit",
+            "bannseqnum",
+            "boardmsgs",
+            "loops",
+            "splitting",
+            "streamrecno",
+            "wtcrecno",
+            "evolution_active_msg_recnos",
+            //banner message fields...
+            "recno_zx",
+            "recno_template",
+            "dbb_rec_dtsec",
+            "dbb_duration",
+            "msgtype",
+            "msgtext",
+            "msgdetails",
+            "dbb_playtime_duration",
+            "dbb_flasher_duration",
+            "dbb_light_signal",
+            "dbb_light_duration",
+            "dbb_audio_tts_gain",
+            "dbb_flash_new_message",
+            "dbb_visible_time",
+            "dbb_visible_frequency",
+            "dbb_visible_duration",
+            "dbb_record_voice_at_launch_selection",
+            "dbb_record_voice_at_launch",
+            "dbb_audio_recorded_gain",
+            "dbb_pa_delivery_mode",
+            "dbb_audio_repeat",
+            "dbb_speed",
+            "dbb_priority",
+            "dbb_expire_priority",
+            "dbb_priority_duration",
+            "dbb_page_priority_at_launch",
+            "dbb_priority_tolerance",
+            "multimediatype",
+            "webpageurl",
+            "dsi_audio_group_name",
+            "dbb_audio_groups",
+            "dbb_multimedia_audio_gain",
+            "dbb_replay_media",
+            "signseqnum",
+            "dbb_launch_pin",
+            "dss_gender",
+            "mo_multi_audio_records",
+            //in-app fields...
+            "date_launch",
+            "date_launch_device",
+            "date_expire",
+            "date_expire_device",
+            "audio_repeats_remaining",
+            "uuid_local",
+            "delivery_count",
+            "date_last_delivered",
+            "is_being_delivered",
+            "scroll_count",
+            "video_seek_position",
+            //metadata...
+            "msgTextScrollsDone",
+            "flasherDurationSecondsDone"
+    };
+    private static final int DICTIONARY_SIZE_V1 = 64;                                               //how many dictionary entries schema version 1 knows about
+
+    private static final Map<String, Integer> DICTIONARY_INDEXES = new HashMap<String, Integer>(DICTIONARY.length * 2);
+    static {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            DICTIONARY_INDEXES.put(DICTIONARY[i], i);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Encoding Methods */
+
+    /** Encode the provided JSON object.
+     * @param jsonObject JSON object to encode.
+     * @return The encoding (starting with its schema version byte).
+     * @throws JSONException if the object holds something that can't be encoded.
+     */
+    public static byte[] encode(JSONObject jsonObject) throws JSONException {
+        Writer writer = new Writer(256);
+        writer.writeByte(SCHEMA_VERSION);
+        writeObject(writer, jsonObject);
+        return writer.toByteArray();
+    }
+
+    private static void writeObject(Writer writer, JSONObject jsonObject) throws JSONException {
+        writer.writeByte(TAG_OBJECT);
+        writer.writeVarint(jsonObject.length());
+
+        Iterator<String> keys = jsonObject.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Integer index = DICTIONARY_INDEXES.get(key);
+            if (index == null) {
+                writer.writeVarint(KEY_INLINE);
+                writer.writeString(key);
+            } else {
+                writer.writeVarint(index + 1);
+            }
+            writeValue(writer, jsonObject.get(key));
+        }
+    }
+
+    private static void writeArray(Writer writer, JSONArray jsonArray) throws JSONException {
+        writer.writeByte(TAG_ARRAY);
+        writer.writeVarint(jsonArray.length());
+
+        for (int i = 0; i < jsonArray.length(); i++) {
+            writeValue(writer, jsonArray.get(i));
+        }
+    }
+
+    private static void writeValue(Writer writer, Object value) throws JSONException {
+        if (value == null || value == JSONObject.NULL) {
+            writer.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            String string = (String) value;
+            if (isPlainDecimalInteger(string)) {
+                writer.writeByte(TAG_STRING_INT);
+                writer.writeZigZag(Long.parseLong(string));
+            } else {
+                writer.writeByte(TAG_STRING);
+                writer.writeString(string);
+            }
+        } else if (value instanceof JSONObject) {
+            writeObject(writer, (JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            writeArray(writer, (JSONArray) value);
+        } else if (value instanceof Boolean) {
+            writer.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writer.writeByte(TAG_INT);
+            writer.writeZigZag(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            writer.writeByte(TAG_LONG);
+            writer.writeZigZag((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            writer.writeByte(TAG_DOUBLE);
+            writer.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else {
+            throw new JSONException("Unsupported value type ("+value.getClass().getName()+")");
+        }
+    }
+
+    /** Whether the string is a decimal integer that reads back exactly as written (no sign but minus, no leading zeros, fits a long). */
+    private static boolean isPlainDecimalInteger(String string) {
+        final int length = string.length();
+        final int start = (length > 0 && string.charAt(0) == '-') ? 1 : 0;
+
+        if (length == start || length - start > MAX_STRING_INT_CHARS) {
+            return false;
+        }
+        if (string.charAt(start) == '0' && (length - start > 1 || start == 1)) {
+            return false;   //leading zero (or "-0"), which wouldn't survive the round trip
+        }
+        for (int i = start; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /*============================================================================================*/
+    /* Decoding Methods */
+
+    /** Decode the provided encoding to a new JSON object.
+     * @param bytes Encoding, as made by encode.
+     * @return The JSON object.
+     * @throws JSONException if the encoding is malformed, or of a schema version we don't know.
+     */
+    public static JSONObject decode(byte[] bytes) throws JSONException {
+        if (bytes == null || bytes.length == 0) {
+            throw new JSONException("Nothing to decode");
+        }
+
+        Reader reader = new Reader(bytes);
+        final int version = reader.readByte();
+        final int dictionarySize;
+        switch (version) {
+            case 1:
+                dictionarySize = DICTIONARY_SIZE_V1;
+                break;
+            default:
+                throw new JSONException("Unknown schema version ("+version+")");
+        }
+
+        try {
+            if (reader.readByte() != TAG_OBJECT) {
+                throw new JSONException("Top-level value is not an object");
+            }
+            return readObject(reader, dictionarySize);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new JSONException("Truncated encoding");
+        }
+    }
+
+    private static JSONObject readObject(Reader reader, int dictionarySize) throws JSONException {
+        JSONObject jsonObject = new JSONObject();
+        final int count = reader.readVarint();
+
+        for (int i = 0; i < count; i++) {
+            final String key;
+            final int keyCode = reader.readVarint();
+            if (keyCode == KEY_INLINE) {
+                key = reader.readString();
+            } else if (keyCode <= dictionarySize) {
+                key = DICTIONARY[keyCode - 1];
+            } else {
+                throw new JSONException("Unknown key index ("+keyCode+")");
+            }
+            jsonObject.put(key, readValue(reader, dictionarySize));
+        }
+
+        return jsonObject;
+    }
+
+    private static JSONArray readArray(Reader reader, int dictionarySize) throws JSONException {
+        JSONArray jsonArray = new JSONArray();
+        final int count = reader.readVarint();
+
+        for (int i = 0; i < count; i++) {
+            jsonArray.put(readValue(reader, dictionarySize));
+        }
+
+        return jsonArray;
+    }
+
+    private static Object readValue(Reader reader, int dictionarySize) throws JSONException {
+        final byte tag = reader.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return JSONObject.NULL;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_INT:
+                return (int) reader.readZigZag();
+            case TAG_LONG:
+                return reader.readZigZag();
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(reader.readLong());
+            case TAG_STRING:
+                return reader.readString();
+            case TAG_STRING_INT:
+                return Long.toString(reader.readZigZag());
+            case TAG_OBJECT:
+                return readObject(reader, dictionarySize);
+            case TAG_ARRAY:
+                return readArray(reader, dictionarySize);
+            default:
+                throw new JSONException("Unknown value tag ("+tag+")");
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Subclasses... */
+
+    /** A growable byte buffer with the primitive writes we need (cheaper than a DataOutputStream over a ByteArrayOutputStream). */
+    private static class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+            this.position = 0;
+        }
+
+        private void ensureCapacity(int additional) {
+            if (position + additional > buffer.length) {
+                byte[] grown = new byte[Math.max(buffer.length * 2, position + additional)];
+                System.arraycopy(buffer, 0, grown, 0, position);
+                buffer = grown;
+            }
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) b;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String string) {
+            byte[] bytes = string.getBytes(CHARSET_UTF8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            byte[] ret = new byte[position];
+            System.arraycopy(buffer, 0, ret, 0, position);
+            return ret;
+        }
+    }
+
+    /** A cursor over an encoding (running past its end throws ArrayIndexOutOfBoundsException, which decode reports as truncation). */
+    private static class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+            this.position = 0;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        int readVarint() throws JSONException {
+            long value = readVarintLong();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new JSONException("Length or count out of range ("+value+")");
+            }
+            return (int) value;
+        }
+
+        long readVarintLong() throws JSONException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new JSONException("Malformed varint");
+        }
+
+        long readZigZag() throws JSONException {
+            long value = readVarintLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        String readString() throws JSONException {
+            final int length = readVarint();
+            if (length > buffer.length - position) {
+                throw new ArrayIndexOutOfBoundsException(length);
+            }
+            String ret = new String(buffer, position, length, CHARSET_UTF8);
+            position += length;
+            return ret;
+        }
+    }
+}
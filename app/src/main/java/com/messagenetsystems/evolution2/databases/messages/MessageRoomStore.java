@@ -0,0 +1,145 @@
+package com.messagenetsystems.evolution2.databases.messages;
+
+/* MessageRoomStore class
+ *
+ * The Room implementation of MessageStore, which just hands everything to MessageDatabaseClient (with the app context it needs).
+ * This is what PipelineStores provides, unless told otherwise.
+ *
+ * Usage example...
+ *  MessageStore messageStore = new MessageRoomStore(getApplicationContext());
+ */
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
+
+import org.json.JSONObject;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+
+public class MessageRoomStore implements MessageStore {
+
+    // Local stuff...
+    private final Context appContext;
+    private final MessageDatabaseClient messageDatabaseClient;
+
+    /** Constructor */
+    public MessageRoomStore(Context appContext) {
+        this.appContext = appContext;
+        this.messageDatabaseClient = MessageDatabaseClient.getInstance(appContext);
+    }
+
+
+    /*============================================================================================*/
+    /* Add/Insert Routines... */
+
+    @Override
+    public void addRecord(String msgUUID, String msgJSON, int status, Date receivedAt) {
+        messageDatabaseClient.addRecord(appContext, msgUUID, msgJSON, status, receivedAt);
+    }
+
+    @Override
+    public void addRecordPromotedFrom(ReceivedMessage receivedMessage, byte receivedMessageStatus) {
+        messageDatabaseClient.addRecordPromotedFrom(appContext, receivedMessage, receivedMessageStatus);
+    }
+
+
+    /*============================================================================================*/
+    /* Find Routines... */
+
+    @Override
+    public boolean doesMessageExist(String uuid) {
+        return messageDatabaseClient.doesMessageExist(appContext, uuid);
+    }
+
+    @Override
+    public List<Message> findAllRecords() {
+        return messageDatabaseClient.findAllRecords(appContext);
+    }
+
+    @Override
+    public List<Message> findAllRecords_sortedOrderReceivedAscending() {
+        return messageDatabaseClient.findAllRecords_sortedOrderReceivedAscending(appContext);
+    }
+
+    @Override
+    public List<Message> findSpecifiedRecords_uuids(List<String> uuids) {
+        return messageDatabaseClient.findSpecifiedRecords_uuids(appContext, uuids);
+    }
+
+    @Override
+    public long findNextExpiresAtMs() {
+        return messageDatabaseClient.findNextExpiresAtMs(appContext);
+    }
+
+    @Override
+    public long getExpiryScheduleVersion() {
+        return messageDatabaseClient.getExpiryScheduleVersion();
+    }
+
+
+    /*============================================================================================*/
+    /* Change-Feed Routines... */
+
+    @Override
+    public List<MessageChange> findChangesAfter(long afterSeq, int limit) {
+        return messageDatabaseClient.findChangesAfter(appContext, afterSeq, limit);
+    }
+
+    @Override
+    public long findLatestChangeSeq() {
+        return messageDatabaseClient.findLatestChangeSeq(appContext);
+    }
+
+    @Override
+    public void pruneChangesThrough(long seq) {
+        messageDatabaseClient.pruneChangesThrough(appContext, seq);
+    }
+
+
+    /*============================================================================================*/
+    /* Update Routines... */
+
+    @Override
+    public void updateStatusFor(String uuid, int status) {
+        messageDatabaseClient.updateStatusFor(appContext, uuid, status);
+    }
+
+    @Override
+    public void updateJsonMetaStatusFor(UUID uuid, JSONObject json, JSONObject meta, int status) {
+        messageDatabaseClient.updateJsonMetaStatusFor(appContext, uuid, json, meta, status);
+    }
+
+    @Override
+    public void updateExpiresAtFor(@NonNull UUID uuid, long expiresAtMs) {
+        messageDatabaseClient.updateExpiresAtFor(appContext, uuid, expiresAtMs);
+    }
+
+
+    /*============================================================================================*/
+    /* Delete Routines... */
+
+    @Override
+    public void deleteRecord(@NonNull UUID uuid) {
+        messageDatabaseClient.deleteRecord(appContext, uuid);
+    }
+
+    @Override
+    public void deleteAll_expiredAsOf(long nowMs) {
+        messageDatabaseClient.deleteAll_expiredAsOf(appContext, nowMs);
+    }
+
+    @Override
+    public void deleteAll_withStatus(int status) {
+        messageDatabaseClient.deleteAll_withStatus(appContext, status);
+    }
+
+    @Override
+    public void deleteAll() {
+        messageDatabaseClient.deleteAll(appContext);
+    }
+}
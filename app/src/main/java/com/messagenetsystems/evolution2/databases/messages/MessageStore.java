@@ -0,0 +1,99 @@
+package com.messagenetsystems.evolution2.databases.messages;
+
+/* MessageStore interface
+ *
+ * What the message pipeline needs from the messages store (promotion from received messages, the change-feed for RAM sync,
+ * flushing RAM state back, and expiration).
+ * Pipeline threads and models work with this (via PipelineStores), rather than reaching for MessageDatabaseClient themselves,
+ * so the same pipeline may run on Room (MessageRoomStore) or in memory (MessageMemoryStore).
+ *
+ * Writes may be applied asynchronously (as the Room implementation does), so don't count on seeing them in a find right away.
+ * Inserts and deletes must be recorded in the change-feed (see MessageChange), in the order they happen.
+ *
+ * Usage example...
+ *  MessageStore messageStore = PipelineStores.getInstance(appContext).getMessageStore();
+ *  List<MessageChange> changes = messageStore.findChangesAfter(changeCursor, 100);
+ */
+
+import android.support.annotation.NonNull;
+
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
+
+import org.json.JSONObject;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+
+public interface MessageStore {
+
+    /*============================================================================================*/
+    /* Add/Insert Routines... */
+
+    /** Add a new record (unless one with the same UUID already exists). */
+    void addRecord(String msgUUID, String msgJSON, int status, Date receivedAt);
+
+    /** Promote a received message to a new record (with Message.STATUS_NEW), flagging the received message processed (with the specified status) along with it. */
+    void addRecordPromotedFrom(ReceivedMessage receivedMessage, byte receivedMessageStatus);
+
+
+    /*============================================================================================*/
+    /* Find Routines... */
+
+    boolean doesMessageExist(String uuid);
+
+    /** @return List of all records (or null if the find failed). */
+    List<Message> findAllRecords();
+
+    /** @return List of all records, oldest received first (or null if the find failed). */
+    List<Message> findAllRecords_sortedOrderReceivedAscending();
+
+    /** @return List of the records with any of the specified UUIDs, oldest received first (or null if the find failed). */
+    List<Message> findSpecifiedRecords_uuids(List<String> uuids);
+
+    /** @return The soonest expiration (epoch milliseconds), Long.MAX_VALUE if no record has one, or -1 if the find failed. */
+    long findNextExpiresAtMs();
+
+    /** @return The expiry-schedule version (it changes whenever an expiration gets set, so compare it with what you last saw to know whether to look again). */
+    long getExpiryScheduleVersion();
+
+
+    /*============================================================================================*/
+    /* Change-Feed Routines... */
+
+    /** @return Changes made after the specified cursor (seq), oldest first, up to the limit (or null if the find failed). */
+    List<MessageChange> findChangesAfter(long afterSeq, int limit);
+
+    /** @return The most recent change's seq (0 if there aren't any), or -1 if the find failed. */
+    long findLatestChangeSeq();
+
+    /** Prune changes that have been consumed (up to and including the specified seq). */
+    void pruneChangesThrough(long seq);
+
+
+    /*============================================================================================*/
+    /* Update Routines... */
+
+    void updateStatusFor(String uuid, int status);
+
+    /** Update a record's json, metadata json, and status, all at once. */
+    void updateJsonMetaStatusFor(UUID uuid, JSONObject json, JSONObject meta, int status);
+
+    /** Set a record's expiration (epoch milliseconds), only if it doesn't already have one. */
+    void updateExpiresAtFor(@NonNull UUID uuid, long expiresAtMs);
+
+
+    /*============================================================================================*/
+    /* Delete Routines... */
+
+    void deleteRecord(@NonNull UUID uuid);
+
+    /** Delete all records that have expired as of the specified time (epoch milliseconds). */
+    void deleteAll_expiredAsOf(long nowMs);
+
+    /** Delete all records with the specified status (refer to Message constants). */
+    void deleteAll_withStatus(int status);
+
+    void deleteAll();
+}
@@ -0,0 +1,503 @@
+package com.messagenetsystems.evolution2.databases.messages;
+
+/* RotationSnapshot class
+ *
+ * A small file holding the active delivery rotation, so it can be put back right away when the app starts
+ * (rather than waiting for the messages DB to be read into RAM, converted to deliverables, and then synced into rotation, a poll cycle at a time).
+ *
+ * It holds each rotating message's UUID (in rotation order, and whether it was still new), its delivery counters
+ * (text scrolls done, first-delivery-began time), and its message JSON (binary-encoded by MessagePayloadCodec),
+ * along with the UUID of the message that last completed delivery.
+ *
+ * DeliveryQueueProcessor saves it whenever the rotation changes. Each save writes a whole new file and syncs it,
+ * then renames it over the old one, so there's always a complete snapshot (either the old one or the new one) after a crash.
+ * MainService loads it (memory-mapped) on startup, and seeds RAM with its messages; DeliveryService then loads rotation from it.
+ *
+ * The messages DB is still authoritative. The snapshot is only a head start: once MessageRawDataProcessor has read the DB,
+ * anything restored from here that's no longer in the DB gets removed from RAM as usual.
+ *
+ * This provides a singleton pattern, just like our database clients, so there's only ever one writer to the file.
+ *
+ * File layout...
+ *  int     magic
+ *  int     version
+ *  int     payload length
+ *  int     CRC32 of the payload
+ *  Payload:
+ *   long    saved-at (ms since epoch)
+ *   long+long   last-completed UUID (most, least significant bits; both 0 if none)
+ *   int     entry count
+ *   Entries (in rotation order, then new-rotation order):
+ *    long+long   message UUID
+ *    byte    flags (see ENTRY_FLAG_*)
+ *    long    received-at (ms since epoch, -1 if unknown)
+ *    long    text scrolls done
+ *    long    first delivery began (ms since epoch, -1 if not delivered yet)
+ *    int+[]  message JSON (MessagePayloadCodec encoding, length-prefixed)
+ *
+ * Usage example (saving, from DeliveryQueueProcessor)...
+ *  RotationSnapshot.getInstance(appContext).saveIfChanged(DeliveryService.omniMessageUUIDsToRotate, DeliveryService.omniMessageUUIDsToRotate_new,
+ *          DeliveryService.omniMessageUuidDelivery_lastCompleted, MainService.omniMessages_deliverable);
+ *
+ * Usage example (restoring, on startup)...
+ *  RotationSnapshot rotationSnapshot = RotationSnapshot.getInstance(appContext);
+ *  if (rotationSnapshot.load()) {
+ *      for (RotationSnapshot.Entry entry : rotationSnapshot.getLoadedEntries()) {
+ *          //seed RAM with entry's message
+ *      }
+ *  }
+ */
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.models.OmniMessage;
+import com.messagenetsystems.evolution2.models.OmniMessages;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+
+public class RotationSnapshot {
+    private final String TAG = RotationSnapshot.class.getSimpleName();
+
+    // Constants...
+    private static final String FILE_NAME = "snapshot_rotation";                                    //this will be the filename in /data/user/0/[app]/files/
+    private static final String FILE_NAME_TEMP = FILE_NAME + ".tmp";                                //new snapshots are written here first, then renamed over the real one
+    private static final int FILE_MAGIC = 0x4F4D5253;                                               //"OMRS"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 16;                                                      //magic, version, payload length, CRC
+    private static final int PAYLOAD_FIXED_SIZE = 8 + 16 + 4;                                       //saved-at, last-completed UUID, entry count
+    private static final int ENTRY_FIXED_SIZE = 16 + 1 + 8 + 8 + 8 + 4;                             //UUID, flags, received-at, scrolls done, first delivered, JSON length
+
+    public static final byte ENTRY_FLAG_NEW = 0x01;                                                 //message was in the new-rotation list (not delivered in rotation yet)
+
+    // Logging stuff...
+    private final byte LOG_SEVERITY_V = 1;
+    private final byte LOG_SEVERITY_D = 2;
+    private final byte LOG_SEVERITY_I = 3;
+    private final byte LOG_SEVERITY_W = 4;
+    private final byte LOG_SEVERITY_E = 5;
+    private byte logMethod = Constants.LOG_METHOD_FILELOGGER;
+
+    // Local stuff...
+    private static RotationSnapshot mInstance;                                                      //to support singleton pattern (maintains a static reference to the lone singleton instance - gets returned via getInstance)
+
+    private final File file;
+    private final File fileTemp;
+
+    private List<Entry> loadedEntries;                  //what load() found (until clearLoaded is called)
+    private UUID loadedLastCompletedUUID;
+
+    private long savedFingerprint;                      //fingerprint of the rotation state we last saved (so we only save when it changes)
+    private boolean hasSaved;
+
+    /* A private Constructor prevents any other class from instantiating (singleton pattern)
+     * This should only execute when getInstance() is called. */
+    private RotationSnapshot(Context appContext) {
+        this.file = new File(appContext.getFilesDir(), FILE_NAME);
+        this.fileTemp = new File(appContext.getFilesDir(), FILE_NAME_TEMP);
+        this.loadedEntries = Collections.emptyList();
+        this.loadedLastCompletedUUID = null;
+        this.hasSaved = false;
+    }
+
+    /* Static 'instance' method (singleton pattern)
+     * Its purpose is to instantiate the class locally and return reference to that instance. */
+    public static synchronized RotationSnapshot getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new RotationSnapshot(context.getApplicationContext());
+        }
+        return mInstance;
+    }
+
+
+    /** One rotating message, as saved in (or loaded from) the snapshot. */
+    public static class Entry {
+        public final UUID messageUUID;
+        public final byte flags;
+        public final long receivedAtMs;
+        public final long textScrollsDone;
+        public final long firstDeliveryBeganMs;
+        public final byte[] messageBin;
+
+        public Entry(UUID messageUUID, byte flags, long receivedAtMs, long textScrollsDone, long firstDeliveryBeganMs, byte[] messageBin) {
+            this.messageUUID = messageUUID;
+            this.flags = flags;
+            this.receivedAtMs = receivedAtMs;
+            this.textScrollsDone = textScrollsDone;
+            this.firstDeliveryBeganMs = firstDeliveryBeganMs;
+            this.messageBin = messageBin;
+        }
+
+        public boolean isNew() {
+            return (flags & ENTRY_FLAG_NEW) != 0;
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Load Routines... */
+
+    /** Load the snapshot file (if there's a valid one), for getLoadedEntries and getLoadedLastCompletedUUID.
+     * @return Whether a valid snapshot with at least one entry was loaded.
+     */
+    public synchronized boolean load() {
+        final String TAGG = "load: ";
+
+        loadedEntries = Collections.emptyList();
+        loadedLastCompletedUUID = null;
+
+        if (!file.exists()) {
+            logD(TAGG+"No snapshot file, nothing to load.");
+            return false;
+        }
+        if (file.length() < HEADER_SIZE + PAYLOAD_FIXED_SIZE || file.length() > Constants.Database.ROTATION_SNAPSHOT_MAX_BYTES) {
+            logW(TAGG+"Snapshot file size ("+file.length()+" bytes) is invalid, ignoring it.");
+            return false;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            MappedByteBuffer mappedByteBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+
+            if (mappedByteBuffer.getInt(0) != FILE_MAGIC || mappedByteBuffer.getInt(4) != FILE_VERSION) {
+                logW(TAGG+"Snapshot file is not one we know how to read, ignoring it.");
+                return false;
+            }
+
+            int payloadLength = mappedByteBuffer.getInt(8);
+            if (payloadLength < PAYLOAD_FIXED_SIZE || HEADER_SIZE + payloadLength != mappedByteBuffer.capacity()) {
+                logW(TAGG+"Snapshot payload length ("+payloadLength+") is invalid, ignoring it.");
+                return false;
+            }
+
+            byte[] payload = new byte[payloadLength];
+            mappedByteBuffer.position(HEADER_SIZE);
+            mappedByteBuffer.get(payload);
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(payload, 0, payloadLength);
+            if ((int) crc32.getValue() != mappedByteBuffer.getInt(12)) {
+                logW(TAGG+"Snapshot CRC does not match, ignoring it.");
+                return false;
+            }
+
+            ByteBuffer view = ByteBuffer.wrap(payload);
+            long savedAtMs = view.getLong();
+            loadedLastCompletedUUID = getUUID(view);
+
+            int entryCount = view.getInt();
+            List<Entry> entries = new ArrayList<Entry>(Math.max(0, entryCount));
+            for (int i = 0; i < entryCount; i++) {
+                if (view.remaining() < ENTRY_FIXED_SIZE) {
+                    logW(TAGG+"Snapshot entry #"+i+" is truncated, ignoring the snapshot.");
+                    loadedLastCompletedUUID = null;
+                    return false;
+                }
+                UUID messageUUID = getUUID(view);
+                byte flags = view.get();
+                long receivedAtMs = view.getLong();
+                long textScrollsDone = view.getLong();
+                long firstDeliveryBeganMs = view.getLong();
+                int binLength = view.getInt();
+                if (messageUUID == null || binLength < 0 || binLength > view.remaining()) {
+                    logW(TAGG+"Snapshot entry #"+i+" is invalid, ignoring the snapshot.");
+                    loadedLastCompletedUUID = null;
+                    return false;
+                }
+                byte[] messageBin = new byte[binLength];
+                view.get(messageBin);
+                entries.add(new Entry(messageUUID, flags, receivedAtMs, textScrollsDone, firstDeliveryBeganMs, messageBin));
+            }
+
+            loadedEntries = entries;
+            logI(TAGG+"Loaded "+entries.size()+" rotation entries (saved "+new Date(savedAtMs).toString()+", last completed "+String.valueOf(loadedLastCompletedUUID)+").");
+            return entries.size() > 0;
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught loading snapshot: "+e.getMessage());
+            loadedEntries = Collections.emptyList();
+            loadedLastCompletedUUID = null;
+            return false;
+        } finally {
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    logW(TAGG+"Exception caught closing snapshot file: "+e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** @return The entries that load() found (rotation order, then new-rotation order), or an empty list. */
+    public synchronized List<Entry> getLoadedEntries() {
+        return loadedEntries;
+    }
+
+    /** @return The last-completed UUID that load() found, or null. */
+    public synchronized UUID getLoadedLastCompletedUUID() {
+        return loadedLastCompletedUUID;
+    }
+
+    /** Forget what load() found (once it's been restored, so a later list-load goes by the deliverables instead). */
+    public synchronized void clearLoaded() {
+        loadedEntries = Collections.emptyList();
+        loadedLastCompletedUUID = null;
+    }
+
+
+    /*============================================================================================*/
+    /* Save Routines... */
+
+    /** Save the current rotation, if it has changed since we last saved it.
+     * Messages in rotation that aren't (or are no longer) in the deliverables are left out.
+     * @return Whether a new snapshot was saved.
+     */
+    public synchronized boolean saveIfChanged(List<UUID> rotation, List<UUID> rotationNew, UUID lastCompletedUUID, OmniMessages deliverables) {
+        final String TAGG = "saveIfChanged: ";
+
+        // Take our own copies of the lists (they're changed by other threads), and look up their messages
+        List<OmniMessage> rotationMessages = new ArrayList<OmniMessage>();
+        List<Byte> rotationFlags = new ArrayList<Byte>();
+        try {
+            addDeliverables(new ArrayList<UUID>(rotation), (byte) 0, deliverables, rotationMessages, rotationFlags);
+            addDeliverables(new ArrayList<UUID>(rotationNew), ENTRY_FLAG_NEW, deliverables, rotationMessages, rotationFlags);
+        } catch (Exception e) {
+            //most likely, a list changed while we were copying it (we'll just get it next time)
+            logD(TAGG+"Exception caught reading rotation, skipping this time: "+e.getMessage());
+            return false;
+        }
+
+        long fingerprint = fingerprintOf(rotationMessages, rotationFlags, lastCompletedUUID);
+        if (hasSaved && fingerprint == savedFingerprint) {
+            return false;
+        }
+
+        List<Entry> entries = new ArrayList<Entry>(rotationMessages.size());
+        try {
+            for (int i = 0; i < rotationMessages.size(); i++) {
+                entries.add(toEntry(rotationMessages.get(i), rotationFlags.get(i)));
+            }
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught encoding rotation entries: "+e.getMessage());
+            return false;
+        }
+
+        if (write(entries, lastCompletedUUID)) {
+            savedFingerprint = fingerprint;
+            hasSaved = true;
+            logV(TAGG+"Saved "+entries.size()+" rotation entries.");
+            return true;
+        }
+        return false;
+    }
+
+    private static void addDeliverables(List<UUID> uuids, byte flags, OmniMessages deliverables, List<OmniMessage> messagesOut, List<Byte> flagsOut) {
+        for (UUID uuid : uuids) {
+            OmniMessage omniMessage = deliverables.getOmniMessage(uuid, OmniMessages.GET_OMNIMESSAGE_AS_REFERENCE);
+            if (omniMessage != null && omniMessage.getOmniRawMessage() != null) {
+                messagesOut.add(omniMessage);
+                flagsOut.add(flags);
+            }
+        }
+    }
+
+    /** Cheaply summarize everything we'd save, so we can tell whether it changed without encoding it.
+     * (a message's JSON is only compared by identity, since it's replaced, rather than modified, when a message is updated) */
+    private static long fingerprintOf(List<OmniMessage> rotationMessages, List<Byte> rotationFlags, UUID lastCompletedUUID) {
+        long ret = 17;
+        ret = 31 * ret + (lastCompletedUUID == null ? 0 : lastCompletedUUID.hashCode());
+        for (int i = 0; i < rotationMessages.size(); i++) {
+            OmniMessage omniMessage = rotationMessages.get(i);
+            Date firstDeliveryBegan = omniMessage.getMsgFirstDeliveryBeganDate();
+            ret = 31 * ret + omniMessage.getMessageUUID().getMostSignificantBits();
+            ret = 31 * ret + omniMessage.getMessageUUID().getLeastSignificantBits();
+            ret = 31 * ret + rotationFlags.get(i);
+            ret = 31 * ret + omniMessage.getMsgTextScrollsDone();
+            ret = 31 * ret + (firstDeliveryBegan == null ? -1 : firstDeliveryBegan.getTime());
+            ret = 31 * ret + System.identityHashCode(omniMessage.getOmniRawMessage().getMessageJSONObject());
+        }
+        return ret;
+    }
+
+    private static Entry toEntry(OmniMessage omniMessage, byte flags) throws Exception {
+        JSONObject messageJSONObject = omniMessage.getOmniRawMessage().getMessageJSONObject();
+        Date receivedAt = omniMessage.getOmniRawMessage().getReceivedAt();
+        Date firstDeliveryBegan = omniMessage.getMsgFirstDeliveryBeganDate();
+
+        return new Entry(omniMessage.getMessageUUID(),
+                flags,
+                receivedAt == null ? -1 : receivedAt.getTime(),
+                omniMessage.getMsgTextScrollsDone(),
+                firstDeliveryBegan == null ? -1 : firstDeliveryBegan.getTime(),
+                MessagePayloadCodec.encode(messageJSONObject));
+    }
+
+    /** Write a whole new snapshot to the temp file, sync it, and rename it over the real one. */
+    private boolean write(List<Entry> entries, UUID lastCompletedUUID) {
+        final String TAGG = "write: ";
+
+        int payloadLength = PAYLOAD_FIXED_SIZE;
+        for (Entry entry : entries) {
+            payloadLength += ENTRY_FIXED_SIZE + entry.messageBin.length;
+        }
+        if (HEADER_SIZE + payloadLength > Constants.Database.ROTATION_SNAPSHOT_MAX_BYTES) {
+            logW(TAGG+"Snapshot would be too big ("+(HEADER_SIZE + payloadLength)+" bytes), removing the old one instead.");
+            if (file.exists() && !file.delete()) {
+                logW(TAGG+"Could not remove the old snapshot.");
+            }
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+        buffer.putInt(FILE_MAGIC);
+        buffer.putInt(FILE_VERSION);
+        buffer.putInt(payloadLength);
+        buffer.putInt(0);                                                                           //CRC placeholder (filled in below)
+        buffer.putLong(System.currentTimeMillis());
+        putUUID(buffer, lastCompletedUUID);
+        buffer.putInt(entries.size());
+        for (Entry entry : entries) {
+            putUUID(buffer, entry.messageUUID);
+            buffer.put(entry.flags);
+            buffer.putLong(entry.receivedAtMs);
+            buffer.putLong(entry.textScrollsDone);
+            buffer.putLong(entry.firstDeliveryBeganMs);
+            buffer.putInt(entry.messageBin.length);
+            buffer.put(entry.messageBin);
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), HEADER_SIZE, payloadLength);
+        buffer.putInt(12, (int) crc32.getValue());
+
+        FileOutputStream fileOutputStream = null;
+        try {
+            fileOutputStream = new FileOutputStream(fileTemp);
+            fileOutputStream.write(buffer.array());
+            fileOutputStream.flush();
+            fileOutputStream.getFD().sync();
+            fileOutputStream.close();
+            fileOutputStream = null;
+
+            if (!fileTemp.renameTo(file)) {
+                logE(TAGG+"Could not rename new snapshot into place.");
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught writing snapshot: "+e.getMessage());
+            return false;
+        } finally {
+            if (fileOutputStream != null) {
+                try {
+                    fileOutputStream.close();
+                } catch (IOException e) {
+                    logW(TAGG+"Exception caught closing temp file: "+e.getMessage());
+                }
+            }
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Utility Methods */
+
+    private static void putUUID(ByteBuffer buffer, UUID uuid) {
+        if (uuid == null) {
+            buffer.putLong(0);
+            buffer.putLong(0);
+        } else {
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID getUUID(ByteBuffer buffer) {
+        long mostSigBits = buffer.getLong();
+        long leastSigBits = buffer.getLong();
+        if (mostSigBits == 0 && leastSigBits == 0) {
+            return null;
+        }
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+
+    /*============================================================================================*/
+    /* Logging Methods */
+
+    private void logV(String tagg) {
+        log(LOG_SEVERITY_V, tagg);
+    }
+    private void logD(String tagg) {
+        log(LOG_SEVERITY_D, tagg);
+    }
+    private void logI(String tagg) {
+        log(LOG_SEVERITY_I, tagg);
+    }
+    private void logW(String tagg) {
+        log(LOG_SEVERITY_W, tagg);
+    }
+    private void logE(String tagg) {
+        log(LOG_SEVERITY_E, tagg);
+    }
+    private void log(byte logSeverity, String tagg) {
+        switch (logMethod) {
+            case Constants.LOG_METHOD_LOGCAT:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        Log.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        Log.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        Log.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        Log.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        Log.e(TAG, tagg);
+                        break;
+                }
+                break;
+            case Constants.LOG_METHOD_FILELOGGER:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        FL.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        FL.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        FL.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        FL.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        FL.e(TAG, tagg);
+                        break;
+                }
+                break;
+        }
+    }
+}
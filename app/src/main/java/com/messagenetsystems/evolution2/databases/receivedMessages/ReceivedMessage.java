@@ -9,7 +9,7 @@ package com.messagenetsystems.evolution2.databases.receivedMessages;
  *
  * DEV-NOTE...
  * If you change the schema (e.g. add fields, etc.), you MUST also update version number in the
- *  corresponding Database file's @Database annotation (e.g. ReceivedRequestDatabase.java)! If you
+ *  corresponding Database file's @Database annotation (e.g. OmniDatabase.java)! If you
  *  don't, the result will be a runtime exception.
  * Alongside this requirement, you must also be sure to provide a migration option
  *  (RoomDatabase.Builder.addMigration(Migration ...) or allow for destructive migrations via one
@@ -21,12 +21,15 @@ package com.messagenetsystems.evolution2.databases.receivedMessages;
  * |*int            id                      |
  * | String         message_uuid            |
  * | String         message_json            |
- * | byte           status                  |
+ * | long           message_json_hash       |  (unique index)
+ * | byte           status                  |  (indexed, with modified_at_ms)
  * | Date           processed_at            |
- * | String         processed_at_ms         |
+ * | Long           processed_at_ms         |  (indexed, with modified_at_ms)
  * | Date           created_at              |
  * | Date           modified_at             |
+ * | long           modified_at_ms          |  (indexed)
  * | Date           received_at             |
+ * | Integer        received_request_id     |  (indexed, foreign key to received_requests.id)
  * +----------------------------------------+
  *
  * Revisions:
@@ -38,16 +41,30 @@ package com.messagenetsystems.evolution2.databases.receivedMessages;
 
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.ForeignKey;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.arch.persistence.room.TypeConverters;
 
 import com.messagenetsystems.evolution2.databases.TimestampConverter;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
 
 import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.util.Date;
 
 
-@Entity(tableName = "received_messages")
+@Entity(tableName = "received_messages",
+        indices = {@Index(value = {"message_json_hash"}, unique = true),
+                @Index(value = {"status", "modified_at_ms"}),
+                @Index(value = {"processed_at_ms", "modified_at_ms"}),
+                @Index(value = {"modified_at_ms"}),
+                @Index(value = {"received_request_id"})},
+        foreignKeys = {@ForeignKey(entity = ReceivedRequest.class,
+                parentColumns = {"id"},
+                childColumns = {"received_request_id"},
+                onDelete = ForeignKey.SET_NULL)})
 public class ReceivedMessage implements Serializable {
 
     // Constants
@@ -70,6 +87,9 @@ public class ReceivedMessage implements Serializable {
     @ColumnInfo(name = "message_json")
     private String messageJson;
 
+    @ColumnInfo(name = "message_json_hash")
+    private long messageJsonHash;
+
     @ColumnInfo(name = "status")
     private byte status;
 
@@ -78,7 +98,7 @@ public class ReceivedMessage implements Serializable {
     private Date requestProcessedAt;
 
     @ColumnInfo(name = "processed_at_ms")
-    private String requestProcessedAtMs;
+    private Long requestProcessedAtMs;                                                              //epoch milliseconds (null if not processed yet)
 
     @ColumnInfo(name = "created_at")
     @TypeConverters({TimestampConverter.class})
@@ -88,10 +108,16 @@ public class ReceivedMessage implements Serializable {
     @TypeConverters({TimestampConverter.class})
     private Date modifiedAt;
 
+    @ColumnInfo(name = "modified_at_ms")
+    private long modifiedAtMs;                                                                      //same as modified_at, but as epoch milliseconds (so older-than queries can use its index)
+
     @ColumnInfo(name = "received_at")
     @TypeConverters({TimestampConverter.class})
     private Date receivedAt;
 
+    @ColumnInfo(name = "received_request_id")
+    private Integer receivedRequestId;                                                              //the ReceivedRequest this came from (null if unknown or since deleted)
+
 
     /*============================================================================================*/
     /* Getters & Setters */
@@ -122,6 +148,15 @@ public class ReceivedMessage implements Serializable {
         this.messageJson = messageJson;
     }
 
+    public long getMessageJsonHash() {
+        return messageJsonHash;
+    }
+
+    /** Package-private, since only the DB client needs to access this */
+    void setMessageJsonHash(long messageJsonHash) {
+        this.messageJsonHash = messageJsonHash;
+    }
+
     public byte getStatus() {
         return status;
     }
@@ -139,10 +174,10 @@ public class ReceivedMessage implements Serializable {
         setRequestProcessedAt(new Date());
     }
 
-    public String getRequestProcessedAtMs() {
+    public Long getRequestProcessedAtMs() {
         return requestProcessedAtMs;
     }
-    public void setRequestProcessedAtMs(String processedAtMs) {
+    public void setRequestProcessedAtMs(Long processedAtMs) {
         this.requestProcessedAtMs = processedAtMs;
     }
 
@@ -165,11 +200,21 @@ public class ReceivedMessage implements Serializable {
     /** Package-private, since only the DB client needs to access this */
     void setModifiedAt(Date modifiedAt) {
         this.modifiedAt = modifiedAt;
+        this.modifiedAtMs = (modifiedAt == null) ? 0 : modifiedAt.getTime();
     }
     void setModifiedAt() {
         setModifiedAt(new Date());
     }
 
+    public long getModifiedAtMs() {
+        return modifiedAtMs;
+    }
+
+    /** Package-private, since only the DB client needs to access this (normally, setModifiedAt keeps it in step) */
+    void setModifiedAtMs(long modifiedAtMs) {
+        this.modifiedAtMs = modifiedAtMs;
+    }
+
     public Date getReceivedAt() {
         return receivedAt;
     }
@@ -181,4 +226,48 @@ public class ReceivedMessage implements Serializable {
     void setReceivedAt() {
         setReceivedAt(new Date());
     }
+
+    public Integer getReceivedRequestId() {
+        return receivedRequestId;
+    }
+
+    /** Package-private, since only the DB client needs to access this */
+    void setReceivedRequestId(Integer receivedRequestId) {
+        this.receivedRequestId = receivedRequestId;
+    }
+
+
+    /*============================================================================================*/
+    /* Static Methods */
+
+    /** Compute the 64-bit content hash we use for message_json (first 8 bytes of its SHA-256).
+     * Identical JSON always gives the same hash, and different JSON practically never does. */
+    public static long computeMessageJsonHash(String messageJson) {
+        if (messageJson == null) {
+            return 0;
+        }
+        return computeMessageJsonHash(messageJson.getBytes(Charset.forName("UTF-8")));
+    }
+
+    /** Same as above, but for the JSON's UTF-8 bytes (e.g. a request body, before it's ever decoded). */
+    public static long computeMessageJsonHash(byte[] messageJsonUtf8) {
+        if (messageJsonUtf8 == null) {
+            return 0;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(messageJsonUtf8);
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (Exception e) {
+            // SHA-256 is always available on Android, so this shouldn't happen; fall back to a weaker (but still 64-bit) hash
+            long hash = 1125899906842597L;
+            for (int i = 0; i < messageJsonUtf8.length; i++) {
+                hash = 31 * hash + messageJsonUtf8[i];
+            }
+            return hash;
+        }
+    }
 }
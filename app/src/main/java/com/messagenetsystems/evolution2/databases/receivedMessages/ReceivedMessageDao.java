@@ -18,9 +18,12 @@ package com.messagenetsystems.evolution2.databases.receivedMessages;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Delete;
 import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
 import android.arch.persistence.room.Update;
 
+import com.messagenetsystems.evolution2.Constants;
+
 import java.util.List;
 
 @Dao
@@ -39,11 +42,11 @@ public interface ReceivedMessageDao {
     List<ReceivedMessage> getAllReceivedMessagesWithStatus(int status);
 
     @Query("SELECT * FROM received_messages " +
-            "WHERE processed_at IS NULL")
+            "WHERE processed_at_ms IS NULL")
     List<ReceivedMessage> getAllUnprocessedReceivedMessages();
 
     @Query("SELECT * FROM received_messages " +
-            "WHERE processed_at IS NOT NULL")
+            "WHERE processed_at_ms IS NOT NULL")
     List<ReceivedMessage> getAllProcessedReceivedMessages();
 
     @Query("SELECT * FROM received_messages " +
@@ -58,6 +61,14 @@ public interface ReceivedMessageDao {
             "WHERE message_json = :jsonFieldValueToMatch")
     int countReceivedMessagesWithMatchingWholeJSON(String jsonFieldValueToMatch);
 
+    @Query("SELECT Count(*) FROM received_messages " +
+            "WHERE message_json_hash = :messageJsonHash")
+    int countReceivedMessagesWithMatchingJsonHash(long messageJsonHash);                             // Indexed (unique), so this is cheap, unlike whole-JSON comparison
+
+    @Query("SELECT Count(*) FROM received_messages " +
+            "WHERE id = :id")
+    int countWithId(int id);                                                                        // Primary key, so this is cheap (e.g. to check that a record still exists before linking to it)
+
 
     /*============================================================================================*/
     /* Update and edit operations... */
@@ -66,6 +77,16 @@ public interface ReceivedMessageDao {
     @Update
     void updateRecord(ReceivedMessage receivedMessage);
 
+    // Flag a record processed (e.g. as part of promoting it to messages), without having to load it first
+    @Query("UPDATE received_messages " +
+            "SET status = :status, " +
+                "processed_at = datetime(:processedAtMs / 1000, 'unixepoch'), " +
+                "processed_at_ms = :processedAtMs, " +
+                "modified_at = datetime('now'), " +
+                "modified_at_ms = " + Constants.Database.SQLITE_MS_NOW + " " +
+            "WHERE id = :id")
+    void updateProcessedFor(int id, int status, long processedAtMs);
+
 
     /*============================================================================================*/
     /* Insert and add operations... */
@@ -73,6 +94,10 @@ public interface ReceivedMessageDao {
     @Insert
     void addRecord(ReceivedMessage receivedMessage);
 
+    // Returns the new row ID, or -1 if a record with the same message_json_hash already exists (nothing is inserted)
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long addRecordIfUnique(ReceivedMessage receivedMessage);
+
 
     /*============================================================================================*/
     /* Delete operations... */
@@ -88,7 +113,7 @@ public interface ReceivedMessageDao {
             "WHERE " +
                 "status = :status " +
                 "AND " +
-                "strftime('%s',datetime('now',:modifier)) > strftime('%s',modified_at)")
+                "modified_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
     void deleteAllWithStatus_olderThan(int status, String modifier);
 
     // Delete all processed records that are older than what is specified by argument
@@ -97,9 +122,9 @@ public interface ReceivedMessageDao {
     // Modifier-example:    For older than 2 hours:     '-2 hours'
     @Query("DELETE FROM received_messages " +
             "WHERE " +
-            "processed_at IS NOT NULL " +
+            "processed_at_ms IS NOT NULL " +
             "AND " +
-            "strftime('%s', datetime('now', :modifier)) > strftime('%s', modified_at)")
+            "modified_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
     void deleteAllProcessed_olderThan(String modifier);
 
     // Delete all unprocessed records that are older than what is specified by argument
@@ -108,9 +133,9 @@ public interface ReceivedMessageDao {
     // Modifier-example:    For older than 2 hours:     '-2 hours'
     @Query("DELETE FROM received_messages " +
             "WHERE " +
-                "processed_at IS NULL " +
+                "processed_at_ms IS NULL " +
                 "AND " +
-                "strftime('%s', datetime('now', :modifier)) > strftime('%s', modified_at)")
+                "modified_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
     void deleteAllUnprocessed_olderThan(String modifier);
 
     // Delete all records that are older than what is specified by argument
@@ -118,6 +143,17 @@ public interface ReceivedMessageDao {
     // Modifier-format:     [+-]NNN years|months|days|hours|minutes|seconds
     // Modifier-example:    For older than 2 hours:     '-2 hours'
     @Query("DELETE FROM received_messages " +
-            "WHERE strftime('%s', datetime('now', :modifier)) > strftime('%s', modified_at)")
+            "WHERE modified_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
     void deleteAll_olderThan(String modifier);
+
+    // Delete up to a chunk of records that are older than what is specified by argument
+    // For scheduled maintenance (HealthThreadDatabase), which repeats it until fewer than limit get deleted (so no single delete holds the writer for long).
+    // Modifier-format:     [+-]NNN years|months|days|hours|minutes|seconds
+    // Returns: How many records were deleted.
+    @Query("DELETE FROM received_messages " +
+            "WHERE id IN (" +
+                "SELECT id FROM received_messages " +
+                "WHERE modified_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER + " " +
+                "LIMIT :limit)")
+    int deleteChunk_olderThan(String modifier, int limit);
 }
@@ -23,21 +23,34 @@ package com.messagenetsystems.evolution2.databases.receivedMessages;
  *  2020.08.11      Chris Rider     Implemented lower priority for all worker threads. Changed logging INT to BYTE.
  */
 
-import android.arch.persistence.room.Room;
 import android.content.Context;
 import android.util.Log;
 
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.databases.DatabaseWriter;
+import com.messagenetsystems.evolution2.databases.OmniDatabase;
+import com.messagenetsystems.evolution2.databases.OmniDatabaseClient;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestDatabaseClient;
+import com.messagenetsystems.evolution2.threads.AppExecutors;
 
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 
 public class ReceivedMessageDatabaseClient {
     private final String TAG = ReceivedMessageDatabaseClient.class.getSimpleName();
 
+    // Constants...
+    public static final String WRITE_KEY_PREFIX = "received_messages:";                             //our DatabaseWriter entity keys (the writer is shared with other tables' clients)
+
     // Logging stuff...
     private final byte LOG_SEVERITY_V = 1;
     private final byte LOG_SEVERITY_D = 2;
@@ -48,17 +61,25 @@ public class ReceivedMessageDatabaseClient {
 
     // Local stuff...
     private static ReceivedMessageDatabaseClient mInstance;                                         //to support singleton pattern (maintains a static reference to the lone singleton instance - gets returned via getInstance)
-    private ReceivedMessageDatabase receivedMessageDatabase;                                        //to support singleton pattern
+    private OmniDatabase receivedMessageDatabase;                                                   //to support singleton pattern (the unified database our table lives in)
+    private DatabaseWriter databaseWriter;                                                          //the one thread that applies writes to it
+    private final LinkedHashMap<Long, Boolean> recentMessageJsonHashes;                             //LRU of recently added content hashes, so most duplicates get rejected without touching the DB (guard with its own lock)
+    private volatile long failedPromotionCount;                                                     //how many of our promotions have failed so far (only changed by the writer thread)
 
     /* A private Constructor prevents any other class from instantiating (singleton pattern)
      * This should only execute when getInstance() is called. */
     private ReceivedMessageDatabaseClient(Context appContext) {
-        //creating the database with Room database builder
-        String dbName = "db_receivedMessages";                                                      //this will be the filename in /data/user/0/[app]/databases/
+        //our table lives in the unified database (which shares its write pipeline among all its tables' clients)
+        OmniDatabaseClient omniDatabaseClient = OmniDatabaseClient.getInstance(appContext);
+        receivedMessageDatabase = omniDatabaseClient.getOmniDatabase();
+        databaseWriter = omniDatabaseClient.getDatabaseWriter();
 
-        receivedMessageDatabase = Room.databaseBuilder(appContext, ReceivedMessageDatabase.class, dbName)
-                .fallbackToDestructiveMigration()                                                   //if schema updates, this database is OK to rebuild and lose its data
-                .build();
+        recentMessageJsonHashes = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > Constants.Database.RECEIVED_MESSAGE_DEDUPE_CACHE_SIZE;
+            }
+        };
     }
 
     /* Static 'instance' method (singleton pattern)
@@ -71,7 +92,7 @@ public class ReceivedMessageDatabaseClient {
     }
 
     /* Returns a reference to the local instance (singleton pattern) */
-    public ReceivedMessageDatabase getReceivedMessageDatabase() {
+    public OmniDatabase getReceivedMessageDatabase() {
         return receivedMessageDatabase;
     }
 
@@ -81,118 +102,224 @@ public class ReceivedMessageDatabaseClient {
 
     /** Add a new received message record to the database
      * This automatically generates and assigns a UUID, as well as timestamps.
+     * If a record with identical message JSON already exists, nothing is added.
      * @param appContext    Application context.
      * @param messageJson   Message JSON string to save.
      */
     public void addRecord(final Context appContext, final String messageJson, final Date requestReceivedAt) {
         final String TAGG = "addRecord: ";
 
-        new Thread(){
-            @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                // First, we need to determine whether the received request would be a duplicate...
-                // Sometimes Jerry's shitty code will send an identical message multiple times. The
-                // only way to know for certain is to cross check recno and dtsec, since those will
-                // be unique no matter what.
-                if (doesReceivedMessageExistMatchingWholeTextInJsonField(appContext, messageJson)) {
-                    logW(TAGG+"Record already exists in database, aborting record-add to avoid duplicate messages.");
-                    return;
-                }
+        // First, we need to determine whether the received request would be a duplicate...
+        // Sometimes Jerry's shitty code will send an identical message multiple times.
+        // We key on a content hash of the whole JSON, so the usual case (a resend of something we
+        // just saw) is rejected right here, without a thread or any DB work at all.
+        final long messageJsonHash = ReceivedMessage.computeMessageJsonHash(messageJson);
+        synchronized (recentMessageJsonHashes) {
+            if (recentMessageJsonHashes.get(messageJsonHash) != null) {
+                logW(TAGG+"Record recently added with same content, aborting record-add to avoid duplicate messages.");
+                return;
+            }
+        }
 
-                // Only add the new record if it's unique, determined by recno/dtsec combo above.
-                try {
-                    //create a record...
-                    ReceivedMessage receivedMessage = new ReceivedMessage();                        //this is the object that we'll insert below
+        // (an exception is left for the writer, so the promotion is counted as failed, and the hash isn't remembered as added)
+        databaseWriter.enqueue(new DatabaseWriter.Write(DatabaseWriter.ENTITY_NEW_RECORD, null) {
+            @Override
+            public void apply() {
+                insertRecordIfUnique(appContext, messageJson, messageJsonHash, requestReceivedAt, null, TAGG);
+            }
 
-                    //add the provided data...
-                    receivedMessage.setMessageJson(messageJson);
+            @Override
+            protected void onCommitted() {
+                rememberMessageJsonHash(messageJsonHash);
+            }
 
-                    //initially set status...
-                    receivedMessage.setStatus(ReceivedMessage.STATUS_NEW);
+            @Override
+            protected void onFailed() {
+                failedPromotionCount++;
+            }
+        });
+    }
 
-                    //generate and set a random UUID...
-                    receivedMessage.setMessageUUID(UUID.randomUUID().toString());
+    /** Promote a received request to a new received message record, in one transaction with flagging the request as forwarded.
+     * This is like addRecord (including de-duplication), but the new record is linked to the request it came from (received_request_id),
+     * and the request's status and processed-at fields are updated in the same transaction (so one never happens without the other).
+     * @param appContext        Application context.
+     * @param messageJson       Message JSON string to save.
+     * @param receivedRequest   The request it came from (if it's not in the database, e.g. from the journal, this is just like addRecord).
+     * @param requestStatus     Status to set for the request (ReceivedRequest.STATUS_*).
+     */
+    public void addRecordPromotedFrom(final Context appContext, final String messageJson, final ReceivedRequest receivedRequest, final byte requestStatus) {
+        final String TAGG = "addRecordPromotedFrom: ";
+
+        final int receivedRequestId = receivedRequest.getId();
+        final Date requestReceivedAt = receivedRequest.getCreatedAt();
+        final long requestProcessedAtMs = System.currentTimeMillis();
+        if (receivedRequestId == 0) {
+            addRecord(appContext, messageJson, requestReceivedAt);
+            return;
+        }
 
-                    //populate timestamp fields...
-                    Date currDateTime = new Date();
-                    receivedMessage.setCreatedAt(currDateTime);
-                    receivedMessage.setModifiedAt(currDateTime);
-                    receivedMessage.setReceivedAt(requestReceivedAt);                               //datetime the ReceivedRequest was originally created
+        // A duplicate (of something we just saw) still needs its request flagged, so we just skip the insert for those
+        final long messageJsonHash = ReceivedMessage.computeMessageJsonHash(messageJson);
+        final boolean isRecentDuplicate;
+        synchronized (recentMessageJsonHashes) {
+            isRecentDuplicate = (recentMessageJsonHashes.get(messageJsonHash) != null);
+        }
+        if (isRecentDuplicate) {
+            logW(TAGG+"Record recently added with same content, skipping record-add to avoid duplicate messages.");
+        }
 
-                    //add the record to database...
-                    ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().addRecord(receivedMessage);
-                } catch (Exception e) {
-                    logE(TAGG + "Exception caught: " + e.getMessage());
+        // (an exception is left for the writer, so the promotion is counted as failed, and the hash isn't remembered as added)
+        databaseWriter.enqueue(new DatabaseWriter.Write(ReceivedRequestDatabaseClient.WRITE_KEY_PREFIX + receivedRequestId, null) {
+            @Override
+            public void apply() {
+                OmniDatabase omniDatabase = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase();
+                if (!isRecentDuplicate) {
+                    insertRecordIfUnique(appContext, messageJson, messageJsonHash, requestReceivedAt, receivedRequestId, TAGG);
                 }
+                omniDatabase.receivedRequestDao().updateProcessedFor(receivedRequestId, requestStatus, requestProcessedAtMs);
+            }
+
+            @Override
+            protected void onCommitted() {
+                rememberMessageJsonHash(messageJsonHash);
+            }
+
+            @Override
+            protected void onFailed() {
+                failedPromotionCount++;
+            }
+        });
+    }
+
+    /** Wait until every write enqueued so far (by anyone, since the writer is shared) has been committed (or has failed).
+     * The writer applies writes in order, so once a no-op write enqueued now is committed, everything before it is done, too.
+     * That doesn't mean they all succeeded, so compare getFailedPromotionCount from before they were enqueued, too.
+     * Never call this from the database writer itself.
+     * @param timeoutMS Longest to wait.
+     * @return Whether they were all done (and our no-op committed) within the timeout.
+     */
+    public boolean awaitWritesCommitted(long timeoutMS) throws InterruptedException {
+        return databaseWriter.enqueueAndAwait(new DatabaseWriter.Write(DatabaseWriter.ENTITY_NEW_RECORD, null) {
+            @Override
+            public void apply() {
+                //nothing to do (we only want to know when our place in line has been committed)
             }
-        }.start();
+        }, timeoutMS);
+    }
+
+    /** How many of our promotions (addRecord and addRecordPromotedFrom writes) have failed so far.
+     * Unlike DatabaseWriter.getFailedWriteCount, this doesn't count anybody else's writes (e.g. message metadata, or retention deletes). */
+    public long getFailedPromotionCount() {
+        return failedPromotionCount;
+    }
+
+    /** Remember a content hash as being in the database (once its insert has been committed). */
+    private void rememberMessageJsonHash(long messageJsonHash) {
+        synchronized (recentMessageJsonHashes) {
+            recentMessageJsonHashes.put(messageJsonHash, Boolean.TRUE);
+        }
+    }
+
+    /** Insert a new record (must run on the database writer). Only adds it if it's unique (the unique index on message_json_hash makes the insert a no-op otherwise).
+     * @param receivedRequestId ID of the ReceivedRequest it came from (or null if not known).
+     */
+    private void insertRecordIfUnique(Context appContext, String messageJson, long messageJsonHash, Date requestReceivedAt, Integer receivedRequestId, String tagg) {
+        //create a record...
+        ReceivedMessage receivedMessage = new ReceivedMessage();                                    //this is the object that we'll insert below
+
+        //add the provided data...
+        receivedMessage.setMessageJson(messageJson);
+        receivedMessage.setMessageJsonHash(messageJsonHash);
+        receivedMessage.setReceivedRequestId(receivedRequestId);
+
+        //initially set status...
+        receivedMessage.setStatus(ReceivedMessage.STATUS_NEW);
+
+        //generate and set a random UUID...
+        receivedMessage.setMessageUUID(UUID.randomUUID().toString());
+
+        //populate timestamp fields...
+        Date currDateTime = new Date();
+        receivedMessage.setCreatedAt(currDateTime);
+        receivedMessage.setModifiedAt(currDateTime);
+        receivedMessage.setReceivedAt(requestReceivedAt);                                           //datetime the ReceivedRequest was originally created
+
+        //add the record to database (without its link, if its request got deleted in the meantime, since foreign keys are enforced)...
+        //(we're on the writer, inside its transaction, so nothing can delete the request between this check and the insert)
+        OmniDatabase omniDatabase = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase();
+        if (receivedRequestId != null && omniDatabase.receivedRequestDao().countWithId(receivedRequestId) == 0) {
+            logW(tagg+"Received request (id "+receivedRequestId+") is gone, adding record without its link.");
+            receivedMessage.setReceivedRequestId(null);
+        }
+        long rowId = omniDatabase.receivedMessageDao().addRecordIfUnique(receivedMessage);
+        if (rowId == -1) {
+            logW(tagg+"Record already exists in database with same content, aborted record-add to avoid duplicate messages.");
+        }
+
+        //(either way, it's in the DB once this commits, and the write remembers its hash then)
     }
 
     /** Method to find and return all records.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findAllReceivedMessagesAsync instead.
      * @param appContext Application context.
      * @return List object containing any ReceivedMessage objects that might have been found.
      */
     public List<ReceivedMessage> findAllReceivedMessages(final Context appContext) {
         final String TAGG = "findAllReceivedMessages: ";
 
-        FindAllReceivedMessages findAllReceivedMessages;
-        findAllReceivedMessages = new FindAllReceivedMessages(appContext);
-
-        findAllReceivedMessages.start();
-
-        while (!findAllReceivedMessages.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findAllReceivedMessagesAsync(appContext), TAGG);
+    }
 
-        return findAllReceivedMessages.result;
+    /** Same as findAllReceivedMessages, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<ReceivedMessage>> findAllReceivedMessagesAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindAllReceivedMessages(appContext));
     }
 
     /** Method to find and return all unprocessed records.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findUnprocessedReceivedMessagesAsync instead.
      * @param appContext Application context.
      * @return List object containing any ReceivedMessage objects that might have been found.
      */
     public List<ReceivedMessage> findUnprocessedReceivedMessages(final Context appContext) {
         final String TAGG = "findUnprocessedReceivedMessages: ";
 
-        FindUnprocessedReceivedMessages findUnprocessedReceivedMessages;
-        findUnprocessedReceivedMessages = new FindUnprocessedReceivedMessages(appContext);
-
-        findUnprocessedReceivedMessages.start();
-
-        while (!findUnprocessedReceivedMessages.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findUnprocessedReceivedMessagesAsync(appContext), TAGG);
+    }
 
-        return findUnprocessedReceivedMessages.result;
+    /** Same as findUnprocessedReceivedMessages, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<ReceivedMessage>> findUnprocessedReceivedMessagesAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindUnprocessedReceivedMessages(appContext));
     }
 
     /** Method to find and return all processed records.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findProcessedReceivedMessagesAsync instead.
      * @param appContext Application context.
      * @return List object containing any ReceivedMessage objects that might have been found.
      */
     public List<ReceivedMessage> findProcessedReceivedMessages(final Context appContext) {
         final String TAGG = "findProcessedReceivedMessages: ";
 
-        FindProcessedReceivedMessages findProcessedReceivedMessages;
-        findProcessedReceivedMessages = new FindProcessedReceivedMessages(appContext);
-
-        findProcessedReceivedMessages.start();
-
-        while (!findProcessedReceivedMessages.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findProcessedReceivedMessagesAsync(appContext), TAGG);
+    }
 
-        return findProcessedReceivedMessages.result;
+    /** Same as findProcessedReceivedMessages, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<ReceivedMessage>> findProcessedReceivedMessagesAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindProcessedReceivedMessages(appContext));
     }
 
     /** Method to find and return all records with specified substring text to find in JSON field.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findAllReceivedMessagesContainingTextInJsonFieldAsync instead.
      * @param appContext Application context.
      * @param textToFind Substring text to find in the JSON field.
      * @return List object containing any ReceivedMessage objects that might have been found.
@@ -200,20 +327,19 @@ public class ReceivedMessageDatabaseClient {
     public List<ReceivedMessage> findAllReceivedMessagesContainingTextInJsonField(final Context appContext, final String textToFind) {
         final String TAGG = "findAllReceivedMessagesContainingTextInJsonField: ";
 
-        FindReceivedMessagesContainingJson findReceivedMessagesContainingJson;
-        findReceivedMessagesContainingJson = new FindReceivedMessagesContainingJson(appContext, textToFind);
-
-        findReceivedMessagesContainingJson.start();
-
-        while (!findReceivedMessagesContainingJson.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findAllReceivedMessagesContainingTextInJsonFieldAsync(appContext, textToFind), TAGG);
+    }
 
-        return findReceivedMessagesContainingJson.result;
+    /** Same as findAllReceivedMessagesContainingTextInJsonField, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<ReceivedMessage>> findAllReceivedMessagesContainingTextInJsonFieldAsync(final Context appContext, final String textToFind) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindReceivedMessagesContainingJson(appContext, textToFind));
     }
 
     /** Method to find and return all records with specified whole text to find in JSON field.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findAllReceivedMessagesMatchingWholeTextInJsonFieldAsync instead.
      * @param appContext Application context.
      * @param textToFind Whole text to match for the JSON field.
      * @return List object containing any ReceivedMessage objects that might have been found.
@@ -221,20 +347,19 @@ public class ReceivedMessageDatabaseClient {
     public List<ReceivedMessage> findAllReceivedMessagesMatchingWholeTextInJsonField(final Context appContext, final String textToFind) {
         final String TAGG = "findAllReceivedMessagesMatchingWholeTextInJsonField: ";
 
-        FindReceivedMessagesWithJsonWholeValue findReceivedMessagesWithJsonWholeValue;
-        findReceivedMessagesWithJsonWholeValue = new FindReceivedMessagesWithJsonWholeValue(appContext, textToFind);
-
-        findReceivedMessagesWithJsonWholeValue.start();
-
-        while (!findReceivedMessagesWithJsonWholeValue.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findAllReceivedMessagesMatchingWholeTextInJsonFieldAsync(appContext, textToFind), TAGG);
+    }
 
-        return findReceivedMessagesWithJsonWholeValue.result;
+    /** Same as findAllReceivedMessagesMatchingWholeTextInJsonField, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<ReceivedMessage>> findAllReceivedMessagesMatchingWholeTextInJsonFieldAsync(final Context appContext, final String textToFind) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindReceivedMessagesWithJsonWholeValue(appContext, textToFind));
     }
 
     /** Method to find and count all records with specified whole text to find in JSON field.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use countReceivedMessagesMatchingWholeTextInJsonFieldAsync instead.
      * @param appContext Application context.
      * @param textToFind Whole text to match for the JSON field.
      * @return Integer count of how many ReceivedMessage objects that were found.
@@ -242,16 +367,16 @@ public class ReceivedMessageDatabaseClient {
     public int countReceivedMessagesMatchingWholeTextInJsonField(final Context appContext, final String textToFind) {
         final String TAGG = "countReceivedMessagesMatchingWholeTextInJsonField: ";
 
-        CountReceivedMessagesWithJsonWholeValue countReceivedMessagesWithJsonWholeValue;
-        countReceivedMessagesWithJsonWholeValue = new CountReceivedMessagesWithJsonWholeValue(appContext, textToFind);
-
-        countReceivedMessagesWithJsonWholeValue.start();
+        Integer result = waitForResult(countReceivedMessagesMatchingWholeTextInJsonFieldAsync(appContext, textToFind), TAGG);
 
-        while (!countReceivedMessagesWithJsonWholeValue.isDone) {
-            //wait here until it's done
-        }
+        return (result == null) ? -1 : result;
+    }
 
-        return countReceivedMessagesWithJsonWholeValue.result;
+    /** Same as countReceivedMessagesMatchingWholeTextInJsonField, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<Integer> countReceivedMessagesMatchingWholeTextInJsonFieldAsync(final Context appContext, final String textToFind) {
+        return AppExecutors.getInstance().databaseIO().submit(new CountReceivedMessagesWithJsonWholeValue(appContext, textToFind));
     }
     public boolean doesReceivedMessageExistMatchingWholeTextInJsonField(final Context appContext, final String textToFind) {
         final String TAGG = "doesReceivedMessageExistMatchingWholeTextInJsonField: ";
@@ -273,20 +398,16 @@ public class ReceivedMessageDatabaseClient {
     public void deleteAllProcessed_olderThan(final Context appContext, final String sqliteDatetimeModifier) {
         final String TAGG = "deleteAllProcessed_olderThan: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
+            public void apply() {
+                //run the query on the database
+                ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().deleteAllProcessed_olderThan(sqliteDatetimeModifier);
 
-                try {
-                    //run the query on the database
-                    ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().deleteAllProcessed_olderThan(sqliteDatetimeModifier);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+                //forget recent hashes, since some of those records may be gone now (the unique index still catches any that aren't)
+                clearRecentMessageJsonHashes();
             }
-        }.start();
+        });
     }
 
     /** Method to invoke the database backend to find and delete any old unprocessed records.
@@ -297,20 +418,16 @@ public class ReceivedMessageDatabaseClient {
     public void deleteAllUnprocessed_olderThan(final Context appContext, final String sqliteDatetimeModifier) {
         final String TAGG = "deleteAllUnprocessed_olderThan: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
+            public void apply() {
+                //run the query on the database
+                ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().deleteAllUnprocessed_olderThan(sqliteDatetimeModifier);
 
-                try {
-                    //run the query on the database
-                    ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().deleteAllUnprocessed_olderThan(sqliteDatetimeModifier);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+                //forget recent hashes, since some of those records may be gone now (the unique index still catches any that aren't)
+                clearRecentMessageJsonHashes();
             }
-        }.start();
+        });
     }
 
     /** Method to invoke the database backend to find and delete ANY old records.
@@ -321,20 +438,57 @@ public class ReceivedMessageDatabaseClient {
     public void deleteAll_olderThan(final Context appContext, final String sqliteDatetimeModifier) {
         final String TAGG = "deleteAll_olderThan: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
+            public void apply() {
+                //run the query on the database
+                ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().deleteAll_olderThan(sqliteDatetimeModifier);
+
+                //forget recent hashes, since some of those records may be gone now (the unique index still catches any that aren't)
+                clearRecentMessageJsonHashes();
+            }
+        });
+    }
 
-                try {
+    /** Method to invoke the database backend to delete up to a chunk of old records, and wait for it to be committed.
+     * This is for scheduled maintenance (HealthThreadDatabase), which calls it repeatedly until fewer than chunkSize get deleted,
+     * so the writer (and everybody else's writes) is never held up by one huge delete.
+     * @param appContext Application context.
+     * @param sqliteDatetimeModifier How old a record must be to get deleted (e.g. Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY).
+     * @param chunkSize Most records to delete.
+     * @return How many records were deleted, or -1 if it failed (or wasn't committed in time).
+     */
+    public int deleteChunk_olderThan(final Context appContext, final String sqliteDatetimeModifier, final int chunkSize) {
+        final String TAGG = "deleteChunk_olderThan: ";
+        final int[] deletedCount = {-1};
+
+        try {
+            boolean isCommitted = databaseWriter.enqueueAndAwait(new DatabaseWriter.Write(null, null) {
+                @Override
+                public void apply() {
                     //run the query on the database
-                    ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().deleteAll_olderThan(sqliteDatetimeModifier);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
+                    deletedCount[0] = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().deleteChunk_olderThan(sqliteDatetimeModifier, chunkSize);
                 }
+            }, Constants.Database.DB_MAINTENANCE_WRITE_TIMEOUT_MS);
+
+            if (!isCommitted) {
+                logW(TAGG+"Delete was not committed in time.");
+                return -1;
             }
-        }.start();
+        } catch (InterruptedException e) {
+            logW(TAGG+"Interrupted waiting for delete to be committed.");
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+
+        return deletedCount[0];
+    }
+
+    /** Forget the in-memory cache of recently added content hashes. */
+    private void clearRecentMessageJsonHashes() {
+        synchronized (recentMessageJsonHashes) {
+            recentMessageJsonHashes.clear();
+        }
     }
 
     /** Method to update an existing record.
@@ -345,234 +499,201 @@ public class ReceivedMessageDatabaseClient {
     public void updateRecord(final Context appContext, final ReceivedMessage updatedReceivedMessage) {
         final String TAGG = "updateRecord: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(WRITE_KEY_PREFIX + updatedReceivedMessage.getId(), "record") {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //update modified timestamp field...
-                    updatedReceivedMessage.setModifiedAt(new Date());
-
-                    //run the update on the database
-                    ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().updateRecord(updatedReceivedMessage);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            public void apply() {
+                //update modified timestamp field...
+                updatedReceivedMessage.setModifiedAt(new Date());
+
+                //run the update on the database
+                ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().updateRecord(updatedReceivedMessage);
             }
-        }.start();
+        });
+    }
+
+
+    /** Wait for a query's result (the calling thread is parked while it waits, rather than spinning).
+     * @return The result, or null if the query failed or we were interrupted while waiting.
+     */
+    private <T> T waitForResult(Future<T> future, String tagg) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            logW(tagg+"Interrupted while waiting for query result.");
+            Thread.currentThread().interrupt();                                                     //preserve it for our caller (e.g. a thread-loop checking isInterrupted)
+        } catch (ExecutionException e) {
+            logE(tagg+"Exception caught running query: "+e.getMessage());
+        }
+        return null;
     }
 
 
     /*============================================================================================*/
     /* Subclasses... */
 
-    /** A thread to access the database and find all records.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all records.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * It will find all records that have a "new" status.
      *
      * Usage example:
-     *  FindAllReceivedMessages findAllReceivedMessages;
-     *  findAllReceivedMessages = new FindAllReceivedMessages(appContext);
-     *  findAllReceivedMessages.start();
-     *  while (!findAllReceivedMessages.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findAllReceivedMessages.result;
+     *  Future<List<ReceivedMessage>> future = AppExecutors.getInstance().databaseIO().submit(new FindAllReceivedMessages(appContext));
+     *  return waitForResult(future, TAGG);
      */
-    private class FindAllReceivedMessages extends Thread {
+    private class FindAllReceivedMessages implements Callable<List<ReceivedMessage>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<ReceivedMessage> result = null;
-        volatile boolean isDone = false;
         FindAllReceivedMessages(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<ReceivedMessage> call() {
+            final String TAGGG = "call: ";
+            List<ReceivedMessage> result = null;
             try {
                 result = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().getAllReceivedMessages();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and find all unprocessed records.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all unprocessed records.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * It will find all records that have a "new" status.
      *
      * Usage example:
-     *  FindUnprocessedReceivedMessages findUnprocessedReceivedMessages;
-     *  findUnprocessedReceivedMessages = new FindUnprocessedReceivedMessages(appContext);
-     *  findUnprocessedReceivedMessages.start();
-     *  while (!findUnprocessedReceivedMessages.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findUnprocessedReceivedMessages.result;
+     *  Future<List<ReceivedMessage>> future = AppExecutors.getInstance().databaseIO().submit(new FindUnprocessedReceivedMessages(appContext));
+     *  return waitForResult(future, TAGG);
      */
-    private class FindUnprocessedReceivedMessages extends Thread {
+    private class FindUnprocessedReceivedMessages implements Callable<List<ReceivedMessage>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<ReceivedMessage> result = null;
-        volatile boolean isDone = false;
         FindUnprocessedReceivedMessages(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<ReceivedMessage> call() {
+            final String TAGGG = "call: ";
+            List<ReceivedMessage> result = null;
             try {
                 result = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().getAllUnprocessedReceivedMessages();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and find all already-processed records.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all already-processed records.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindProcessedReceivedMessages findProcessedReceivedMessages;
-     *  findProcessedReceivedMessages = new FindProcessedReceivedMessages(appContext);
-     *  findProcessedReceivedMessages.start();
-     *  while (!findProcessedReceivedMessages.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findProcessedReceivedMessages.result;
+     *  Future<List<ReceivedMessage>> future = AppExecutors.getInstance().databaseIO().submit(new FindProcessedReceivedMessages(appContext));
+     *  return waitForResult(future, TAGG);
      */
-    private class FindProcessedReceivedMessages extends Thread {
+    private class FindProcessedReceivedMessages implements Callable<List<ReceivedMessage>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<ReceivedMessage> result = null;
-        volatile boolean isDone = false;
         FindProcessedReceivedMessages(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<ReceivedMessage> call() {
+            final String TAGGG = "call: ";
+            List<ReceivedMessage> result = null;
             try {
                 result = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().getAllProcessedReceivedMessages();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and find all records with specified substring text in the field.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all records with specified substring text in the field.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindReceivedMessagesContainingJson findReceivedMessagesContainingJson;
-     *  findReceivedMessagesContainingJson = new FindReceivedMessagesContainingJson(appContext);
-     *  findReceivedMessagesContainingJson.start();
-     *  while (!findReceivedMessagesContainingJson.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findReceivedMessagesContainingJson.result;
+     *  Future<List<ReceivedMessage>> future = AppExecutors.getInstance().databaseIO().submit(new FindReceivedMessagesContainingJson(appContext, textToFind));
+     *  return waitForResult(future, TAGG);
      */
-    private class FindReceivedMessagesContainingJson extends Thread {
+    private class FindReceivedMessagesContainingJson implements Callable<List<ReceivedMessage>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
         private String substringToFind = "";
-        List<ReceivedMessage> result = null;
-        volatile boolean isDone = false;
         FindReceivedMessagesContainingJson(final Context appContext, final String substringToFind) {
             this.appContext = appContext;
             this.substringToFind = substringToFind;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<ReceivedMessage> call() {
+            final String TAGGG = "call: ";
+            List<ReceivedMessage> result = null;
             try {
                 result = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().getAllReceivedMessagesContainingJSON(substringToFind);
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and find all records with specified exact whole text in the field.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all records with specified exact whole text in the field.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindReceivedMessagesWithJsonWholeValue findReceivedMessagesWithJsonWholeValue;
-     *  findReceivedMessagesWithJsonWholeValue = new FindReceivedMessagesWithJsonWholeValue(appContext);
-     *  findReceivedMessagesWithJsonWholeValue.start();
-     *  while (!findReceivedMessagesWithJsonWholeValue.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findReceivedMessagesWithJsonWholeValue.result;
+     *  Future<List<ReceivedMessage>> future = AppExecutors.getInstance().databaseIO().submit(new FindReceivedMessagesWithJsonWholeValue(appContext, textToFind));
+     *  return waitForResult(future, TAGG);
      */
-    private class FindReceivedMessagesWithJsonWholeValue extends Thread {
+    private class FindReceivedMessagesWithJsonWholeValue implements Callable<List<ReceivedMessage>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
         private String wholeStringToFind = "";
-        List<ReceivedMessage> result = null;
-        volatile boolean isDone = false;
         FindReceivedMessagesWithJsonWholeValue(final Context appContext, final String wholeStringToFind) {
             this.appContext = appContext;
             this.wholeStringToFind = wholeStringToFind;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<ReceivedMessage> call() {
+            final String TAGGG = "call: ";
+            List<ReceivedMessage> result = null;
             try {
                 result = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().getAllReceivedMessagesWithMatchingWholeJSON(wholeStringToFind);
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and count all records with specified exact whole text in the field.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and count all records with specified exact whole text in the field.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  CountReceivedMessagesWithJsonWholeValue countReceivedMessagesWithJsonWholeValue;
-     *  countReceivedMessagesWithJsonWholeValue = new CountReceivedMessagesWithJsonWholeValue(appContext);
-     *  countReceivedMessagesWithJsonWholeValue.start();
-     *  while (!countReceivedMessagesWithJsonWholeValue.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return countReceivedMessagesWithJsonWholeValue.result;
+     *  Future<Integer> future = AppExecutors.getInstance().databaseIO().submit(new CountReceivedMessagesWithJsonWholeValue(appContext, textToFind));
+     *  return waitForResult(future, TAGG);
      */
-    private class CountReceivedMessagesWithJsonWholeValue extends Thread {
+    private class CountReceivedMessagesWithJsonWholeValue implements Callable<Integer> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
         private String wholeStringToFind = "";
-        int result = -1;
-        volatile boolean isDone = false;
         CountReceivedMessagesWithJsonWholeValue(final Context appContext, final String wholeStringToFind) {
             this.appContext = appContext;
             this.wholeStringToFind = wholeStringToFind;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public Integer call() {
+            final String TAGGG = "call: ";
+            int result = -1;
             try {
                 result = ReceivedMessageDatabaseClient.getInstance(appContext).getReceivedMessageDatabase().receivedMessageDao().countReceivedMessagesWithMatchingWholeJSON(wholeStringToFind);
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
@@ -0,0 +1,159 @@
+package com.messagenetsystems.evolution2.databases.receivedMessages;
+
+/* ReceivedMessageMemoryStore class
+ *
+ * An in-memory implementation of ReceivedMessageStore, for exercising and benchmarking the message pipeline off-device (plain JVM).
+ * Nothing here touches Android (no Room, Context, or logging), and nothing persists.
+ *
+ * It's lock-free: records live in concurrent maps, IDs come from an atomic counter, and updates are compare-and-set replacements.
+ * De-duplication is by content hash, like the table's unique index on message_json_hash (the first to claim a hash wins).
+ * Records are copied going in and coming out (just like rows are, with Room), so what callers do to theirs doesn't show until they update.
+ * Writes are applied right away, on the caller's thread. A promotion adds the record, and then flags its request (not atomically, as Room's transaction does).
+ *
+ * Usage example...
+ *  ReceivedRequestMemoryStore receivedRequestStore = new ReceivedRequestMemoryStore();
+ *  ReceivedMessageMemoryStore receivedMessageStore = new ReceivedMessageMemoryStore(receivedRequestStore);
+ *  (or, for the whole pipeline, PipelineStores.setInstance(PipelineStores.createInMemory()))
+ */
+
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestMemoryStore;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class ReceivedMessageMemoryStore implements ReceivedMessageStore {
+
+    // Local stuff...
+    private final ReceivedRequestMemoryStore receivedRequestStore;                                  //where promoted requests get flagged
+    private final AtomicInteger lastId;                                                             //like the table's autogenerated primary key
+    private final ConcurrentSkipListMap<Integer, ReceivedMessage> recordsById;                      //records, by ID (so, in the order added)
+    private final ConcurrentSkipListSet<Integer> unprocessedIds;                                    //IDs of records not processed yet (like an index on processed_at_ms)
+    private final ConcurrentHashMap<Long, Integer> idsByMessageJsonHash;                            //like the unique index on message_json_hash
+
+    /** Constructor */
+    public ReceivedMessageMemoryStore(ReceivedRequestMemoryStore receivedRequestStore) {
+        this.receivedRequestStore = receivedRequestStore;
+        this.lastId = new AtomicInteger(0);
+        this.recordsById = new ConcurrentSkipListMap<Integer, ReceivedMessage>();
+        this.unprocessedIds = new ConcurrentSkipListSet<Integer>();
+        this.idsByMessageJsonHash = new ConcurrentHashMap<Long, Integer>();
+    }
+
+
+    /*============================================================================================*/
+    /* ReceivedMessageStore Methods */
+
+    @Override
+    public void addRecordPromotedFrom(String messageJson, ReceivedRequest receivedRequest, byte requestStatus) {
+        final int receivedRequestId = receivedRequest.getId();
+
+        ReceivedMessage receivedMessage = new ReceivedMessage();
+        receivedMessage.setId(lastId.incrementAndGet());
+        receivedMessage.setMessageJson(messageJson);
+        receivedMessage.setMessageJsonHash(ReceivedMessage.computeMessageJsonHash(messageJson));
+        receivedMessage.setReceivedRequestId(receivedRequestId == 0 ? null : receivedRequestId);
+        receivedMessage.setStatus(ReceivedMessage.STATUS_NEW);
+        receivedMessage.setMessageUUID(UUID.randomUUID().toString());
+
+        Date currDateTime = new Date();
+        receivedMessage.setCreatedAt(currDateTime);
+        receivedMessage.setModifiedAt(currDateTime);
+        receivedMessage.setReceivedAt(receivedRequest.getCreatedAt());
+
+        //only add it if it's unique (a duplicate's request still gets flagged, though)
+        //(the record goes in before its ID is listed as unprocessed, so a find never lists what it can't get)
+        if (idsByMessageJsonHash.putIfAbsent(receivedMessage.getMessageJsonHash(), receivedMessage.getId()) == null) {
+            recordsById.put(receivedMessage.getId(), receivedMessage);
+            unprocessedIds.add(receivedMessage.getId());
+        }
+
+        if (receivedRequestId != 0) {
+            receivedRequestStore.updateProcessedFor(receivedRequestId, requestStatus, currDateTime.getTime());
+        }
+    }
+
+    @Override
+    public boolean awaitWritesCommitted(long timeoutMS) {
+        return true;                                                                                //nothing is ever pending
+    }
+
+    @Override
+    public long getFailedPromotionCount() {
+        return 0;                                                                                   //writes to a map don't fail
+    }
+
+    @Override
+    public List<ReceivedMessage> findUnprocessedReceivedMessages() {
+        List<ReceivedMessage> ret = new ArrayList<ReceivedMessage>();
+        for (Integer id : unprocessedIds) {
+            ReceivedMessage receivedMessage = recordsById.get(id);
+            if (receivedMessage != null && receivedMessage.getRequestProcessedAtMs() == null) {
+                ret.add(copyOf(receivedMessage));
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public List<ReceivedMessage> findAllReceivedMessages() {
+        List<ReceivedMessage> ret = new ArrayList<ReceivedMessage>(recordsById.size());
+        for (ReceivedMessage receivedMessage : recordsById.values()) {
+            ret.add(copyOf(receivedMessage));
+        }
+        return ret;
+    }
+
+
+    /*============================================================================================*/
+    /* Memory-Store Methods */
+
+    /** Flag a record processed (for MessageMemoryStore's promotions, like ReceivedMessageDao.updateProcessedFor). */
+    public void updateProcessedFor(int id, byte status, long processedAtMs) {
+        while (true) {
+            ReceivedMessage current = recordsById.get(id);
+            if (current == null) {
+                return;
+            }
+
+            ReceivedMessage updated = copyOf(current);
+            updated.setStatus(status);
+            updated.setRequestProcessedAt(new Date(processedAtMs));
+            updated.setRequestProcessedAtMs(processedAtMs);
+            updated.setModifiedAt(new Date());
+            if (recordsById.replace(id, current, updated)) {
+                unprocessedIds.remove(id);
+                return;
+            }
+        }
+    }
+
+    /** @return How many records there are. */
+    public int size() {
+        return recordsById.size();
+    }
+
+    private static ReceivedMessage copyOf(ReceivedMessage receivedMessage) {
+        ReceivedMessage ret = new ReceivedMessage();
+        ret.setId(receivedMessage.getId());
+        ret.setMessageUUID(receivedMessage.getMessageUUID());
+        ret.setMessageJson(receivedMessage.getMessageJson());
+        ret.setMessageJsonHash(receivedMessage.getMessageJsonHash());
+        ret.setStatus(receivedMessage.getStatus());
+        ret.setRequestProcessedAt(receivedMessage.getRequestProcessedAt());
+        ret.setRequestProcessedAtMs(receivedMessage.getRequestProcessedAtMs());
+        ret.setCreatedAt(receivedMessage.getCreatedAt());
+        ret.setModifiedAt(receivedMessage.getModifiedAt());
+        ret.setModifiedAtMs(receivedMessage.getModifiedAtMs());
+        ret.setReceivedAt(receivedMessage.getReceivedAt());
+        ret.setReceivedRequestId(receivedMessage.getReceivedRequestId());
+        return ret;
+    }
+}
@@ -0,0 +1,55 @@
+package com.messagenetsystems.evolution2.databases.receivedMessages;
+
+/* ReceivedMessageRoomStore class
+ *
+ * The Room implementation of ReceivedMessageStore, which just hands everything to ReceivedMessageDatabaseClient (with the app context it needs).
+ * This is what PipelineStores provides, unless told otherwise.
+ *
+ * Usage example...
+ *  ReceivedMessageStore receivedMessageStore = new ReceivedMessageRoomStore(getApplicationContext());
+ */
+
+import android.content.Context;
+
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
+
+import java.util.List;
+
+
+public class ReceivedMessageRoomStore implements ReceivedMessageStore {
+
+    // Local stuff...
+    private final Context appContext;
+    private final ReceivedMessageDatabaseClient receivedMessageDatabaseClient;
+
+    /** Constructor */
+    public ReceivedMessageRoomStore(Context appContext) {
+        this.appContext = appContext;
+        this.receivedMessageDatabaseClient = ReceivedMessageDatabaseClient.getInstance(appContext);
+    }
+
+    @Override
+    public void addRecordPromotedFrom(String messageJson, ReceivedRequest receivedRequest, byte requestStatus) {
+        receivedMessageDatabaseClient.addRecordPromotedFrom(appContext, messageJson, receivedRequest, requestStatus);
+    }
+
+    @Override
+    public boolean awaitWritesCommitted(long timeoutMS) throws InterruptedException {
+        return receivedMessageDatabaseClient.awaitWritesCommitted(timeoutMS);
+    }
+
+    @Override
+    public long getFailedPromotionCount() {
+        return receivedMessageDatabaseClient.getFailedPromotionCount();
+    }
+
+    @Override
+    public List<ReceivedMessage> findUnprocessedReceivedMessages() {
+        return receivedMessageDatabaseClient.findUnprocessedReceivedMessages(appContext);
+    }
+
+    @Override
+    public List<ReceivedMessage> findAllReceivedMessages() {
+        return receivedMessageDatabaseClient.findAllReceivedMessages(appContext);
+    }
+}
@@ -0,0 +1,50 @@
+package com.messagenetsystems.evolution2.databases.receivedMessages;
+
+/* ReceivedMessageStore interface
+ *
+ * What the message pipeline needs from the received_messages store (promoting requests to received messages, and finding them).
+ * Pipeline threads work with this (via PipelineStores), rather than reaching for ReceivedMessageDatabaseClient themselves,
+ * so the same pipeline may run on Room (ReceivedMessageRoomStore) or in memory (ReceivedMessageMemoryStore).
+ *
+ * Writes may be applied asynchronously (as the Room implementation does), so don't count on seeing them in a find right away.
+ *
+ * Usage example...
+ *  ReceivedMessageStore receivedMessageStore = PipelineStores.getInstance(appContext).getReceivedMessageStore();
+ *  receivedMessageStore.addRecordPromotedFrom(messageJson, receivedRequest, ReceivedRequest.STATUS_FORWARDED);
+ */
+
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
+
+import java.util.List;
+
+
+public interface ReceivedMessageStore {
+
+    /** Promote a received request to a new received message (unless one with identical JSON already exists),
+     * flagging the request processed (with the specified status) along with it.
+     * @param receivedRequest The request it came from (if it has no ID, e.g. from the journal, there's nothing to flag).
+     * @param requestStatus Status to set for the request (ReceivedRequest.STATUS_*).
+     */
+    void addRecordPromotedFrom(String messageJson, ReceivedRequest receivedRequest, byte requestStatus);
+
+    /** Wait until every write made so far (e.g. promotions) has been committed (or has failed; see getFailedPromotionCount).
+     * @param timeoutMS Longest to wait.
+     * @return Whether they were all done within the timeout.
+     */
+    boolean awaitWritesCommitted(long timeoutMS) throws InterruptedException;
+
+    /** How many promotions (addRecordPromotedFrom) have failed so far. Other writes' failures aren't counted.
+     * Read it before promoting some requests, and again after awaitWritesCommitted: if it changed, some of them didn't make it.
+     */
+    long getFailedPromotionCount();
+
+    /** Find all received messages that haven't been processed yet.
+     * @return List of received messages (or null if the find failed).
+     */
+    List<ReceivedMessage> findUnprocessedReceivedMessages();
+
+    /** Find all received messages.
+     * @return List of received messages (or null if the find failed).
+     */
+    List<ReceivedMessage> findAllReceivedMessages();
+}
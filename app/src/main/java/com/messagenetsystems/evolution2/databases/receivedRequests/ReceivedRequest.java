@@ -7,7 +7,7 @@ package com.messagenetsystems.evolution2.databases.receivedRequests;
  *
  * DEV-NOTE...
  * If you change the scheme (e.g. add fields, etc.), you MUST also update version number in the
- *  corresponding Database file's @Database annotation (e.g. ReceivedRequestDatabase.java)! If you
+ *  corresponding Database file's @Database annotation (e.g. OmniDatabase.java)! If you
  *  don't, the result will be a runtime exception.
  * Alongside this requirement, you must also be sure to provide a migration option
  *  (RoomDatabase.Builder.addMigration(Migration ...) or allow for destructive migrations via one
@@ -22,10 +22,11 @@ package com.messagenetsystems.evolution2.databases.receivedRequests;
  * | String         request_host            |
  * | String         request_type            |
  * | String         request_body            |
- * | byte           status                  |
+ * | byte           status                  |  (indexed, with request_processed_at_ms)
  * | Date           request_processed_at    |
- * | String         request_processed_at_ms |
+ * | Long           request_processed_at_ms |  (indexed, with created_at_ms)
  * | Date           created_at              |
+ * | long           created_at_ms           |  (indexed)
  * | Date           modified_at             |
  * +----------------------------------------+
  *
@@ -42,6 +43,7 @@ package com.messagenetsystems.evolution2.databases.receivedRequests;
 
 import android.arch.persistence.room.ColumnInfo;
 import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
 import android.arch.persistence.room.PrimaryKey;
 import android.arch.persistence.room.TypeConverters;
 
@@ -51,7 +53,10 @@ import java.io.Serializable;
 import java.util.Date;
 
 
-@Entity(tableName = "received_requests")
+@Entity(tableName = "received_requests",
+        indices = {@Index(value = {"status", "request_processed_at_ms"}),
+                @Index(value = {"request_processed_at_ms", "created_at_ms"}),
+                @Index(value = {"created_at_ms"})})
 public class ReceivedRequest implements Serializable {
 
     // Constants
@@ -98,12 +103,15 @@ public class ReceivedRequest implements Serializable {
     private Date requestProcessedAt;
 
     @ColumnInfo(name = "request_processed_at_ms")
-    private String requestProcessedAtMs;
+    private Long requestProcessedAtMs;                                                              //epoch milliseconds (null if not processed yet)
 
     @ColumnInfo(name = "created_at")
     @TypeConverters({TimestampConverter.class})
     private Date createdAt;
 
+    @ColumnInfo(name = "created_at_ms")
+    private long createdAtMs;                                                                       //same as created_at, but as epoch milliseconds (so older-than queries can use its index)
+
     @ColumnInfo(name = "modified_at")
     @TypeConverters({TimestampConverter.class})
     private Date modifiedAt;
@@ -178,10 +186,10 @@ public class ReceivedRequest implements Serializable {
         setRequestProcessedAt(new Date());
     }
 
-    public String getRequestProcessedAtMs() {
+    public Long getRequestProcessedAtMs() {
         return requestProcessedAtMs;
     }
-    public void setRequestProcessedAtMs(String processedAtMs) {
+    public void setRequestProcessedAtMs(Long processedAtMs) {
         this.requestProcessedAtMs = processedAtMs;
     }
 
@@ -190,11 +198,19 @@ public class ReceivedRequest implements Serializable {
     }
     public void setCreatedAt(Date createdAt) {
         this.createdAt = createdAt;
+        this.createdAtMs = (createdAt == null) ? 0 : createdAt.getTime();
     }
     public void setCreatedAt() {
         setCreatedAt(new Date());
     }
 
+    public long getCreatedAtMs() {
+        return createdAtMs;
+    }
+    public void setCreatedAtMs(long createdAtMs) {
+        this.createdAtMs = createdAtMs;
+    }
+
     public Date getModifiedAt() {
         return modifiedAt;
     }
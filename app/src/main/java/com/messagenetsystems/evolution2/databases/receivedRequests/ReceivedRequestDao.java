@@ -25,6 +25,8 @@ import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.Query;
 import android.arch.persistence.room.Update;
 
+import com.messagenetsystems.evolution2.Constants;
+
 import java.util.List;
 
 @Dao
@@ -41,13 +43,17 @@ public interface ReceivedRequestDao {
     List<ReceivedRequest> getAllReceivedRequestsWithStatus(int status);
 
     @Query("SELECT * FROM received_requests " +
-            "WHERE request_processed_at IS NULL")
+            "WHERE request_processed_at_ms IS NULL")
     List<ReceivedRequest> getAllUnprocessedReceivedRequests();
 
     @Query("SELECT * FROM received_requests " +
-            "WHERE request_processed_at IS NOT NULL")
+            "WHERE request_processed_at_ms IS NOT NULL")
     List<ReceivedRequest> getAllProcessedReceivedRequests();
 
+    @Query("SELECT Count(*) FROM received_requests " +
+            "WHERE id = :id")
+    int countWithId(int id);                                                                        // Primary key, so this is cheap (e.g. to check that a record still exists before linking to it)
+
 
     /*============================================================================================*/
     /* Update and edit operations... */
@@ -56,6 +62,15 @@ public interface ReceivedRequestDao {
     @Update
     void updateRecord(ReceivedRequest receivedRequest);
 
+    // Flag a record processed (e.g. as part of promoting it to received_messages), without having to load it first
+    @Query("UPDATE received_requests " +
+            "SET status = :status, " +
+                "request_processed_at = datetime(:processedAtMs / 1000, 'unixepoch'), " +
+                "request_processed_at_ms = :processedAtMs, " +
+                "modified_at = datetime('now') " +
+            "WHERE id = :id")
+    void updateProcessedFor(int id, int status, long processedAtMs);
+
 
     /*============================================================================================*/
     /* Insert and add operations... */
@@ -78,7 +93,7 @@ public interface ReceivedRequestDao {
             "WHERE " +
             "status = :status " +
             "AND " +
-            "datetime(request_processed_at_ms/1000, 'unixepoch') < datetime('now', :modifier)")
+            "request_processed_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
     void deleteAllWithStatus_olderThan(int status, String modifier);
 
     // Delete all already-processed records that are older than what is specified by argument
@@ -87,9 +102,9 @@ public interface ReceivedRequestDao {
     // Modifier-example:    For older than 2 hours:     '-2 hours'
     @Query("DELETE FROM received_requests " +
             "WHERE " +
-                "request_processed_at IS NOT NULL " +
+                "request_processed_at_ms IS NOT NULL " +
                 "AND " +
-                "datetime(request_processed_at_ms/1000, 'unixepoch') < datetime('now', :modifier)")
+                "request_processed_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
     void deleteAllProcessed_olderThan(String modifier);
 
     // Delete all unprocessed records that are older than what is specified by argument
@@ -98,9 +113,9 @@ public interface ReceivedRequestDao {
     // Modifier-example:    For older than 2 hours:     '-2 hours'
     @Query("DELETE FROM received_requests " +
             "WHERE " +
-            "request_processed_at IS NULL " +
+            "request_processed_at_ms IS NULL " +
             "AND " +
-            "datetime(request_processed_at_ms/1000, 'unixepoch') < datetime('now', :modifier)")
+            "created_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER)
     void deleteAllUnprocessed_olderThan(String modifier);
 
     // Delete all records that are older than what is specified by argument
@@ -108,6 +123,31 @@ public interface ReceivedRequestDao {
     // Date-string example: "2020-09-07"
     // EXAMPLE: sqlite3 db_receivedRequests "select * from received_requests where created_at<Date(\"2020-09-07\");"
     @Query("DELETE FROM received_requests " +
-            "WHERE created_at<Date(:date)")
+            "WHERE created_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_DATE)
     void deleteAll_olderThan(String date);
+
+    // Delete up to a chunk of already-processed records that are older than what is specified by argument
+    // For scheduled maintenance (HealthThreadDatabase), which repeats it until fewer than limit get deleted (so no single delete holds the writer for long).
+    // Modifier-format:     [+-]NNN years|months|days|hours|minutes|seconds
+    // Returns: How many records were deleted.
+    @Query("DELETE FROM received_requests " +
+            "WHERE id IN (" +
+                "SELECT id FROM received_requests " +
+                "WHERE " +
+                    "request_processed_at_ms IS NOT NULL " +
+                    "AND " +
+                    "request_processed_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER + " " +
+                "LIMIT :limit)")
+    int deleteChunkProcessed_olderThan(String modifier, int limit);
+
+    // Delete up to a chunk of records (processed or not) that were created longer ago than what is specified by argument
+    // For scheduled maintenance (HealthThreadDatabase), which repeats it until fewer than limit get deleted (so no single delete holds the writer for long).
+    // Modifier-format:     [+-]NNN years|months|days|hours|minutes|seconds
+    // Returns: How many records were deleted.
+    @Query("DELETE FROM received_requests " +
+            "WHERE id IN (" +
+                "SELECT id FROM received_requests " +
+                "WHERE created_at_ms < " + Constants.Database.SQLITE_MS_CUTOFF_MODIFIER + " " +
+                "LIMIT :limit)")
+    int deleteChunk_olderThan(String modifier, int limit);
 }
@@ -26,20 +26,30 @@ package com.messagenetsystems.evolution2.databases.receivedRequests;
  *  2020.09.24      Chris Rider     Updated deleteAll_olderThan method to use 'created_at' field.
  */
 
-import android.arch.persistence.room.Room;
 import android.content.Context;
 import android.util.Log;
 
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.databases.DatabaseWriter;
+import com.messagenetsystems.evolution2.databases.OmniDatabase;
+import com.messagenetsystems.evolution2.databases.OmniDatabaseClient;
+import com.messagenetsystems.evolution2.threads.AppExecutors;
 
+import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 
 public class ReceivedRequestDatabaseClient {
     private final String TAG = ReceivedRequestDatabaseClient.class.getSimpleName();
 
+    // Constants...
+    public static final String WRITE_KEY_PREFIX = "received_requests:";                             //our DatabaseWriter entity keys (the writer is shared with other tables' clients)
+
     // Logging stuff...
     private final byte LOG_SEVERITY_V = 1;
     private final byte LOG_SEVERITY_D = 2;
@@ -50,18 +60,16 @@ public class ReceivedRequestDatabaseClient {
 
     // Local stuff...
     private static ReceivedRequestDatabaseClient mInstance;                                         //to support singleton pattern (maintains a static reference to the lone singleton instance - gets returned via getInstance)
-    private ReceivedRequestDatabase receivedRequestDatabase;                                        //to support singleton pattern
+    private OmniDatabase receivedRequestDatabase;                                                   //to support singleton pattern (the unified database our table lives in)
+    private DatabaseWriter databaseWriter;                                                          //the one thread that applies writes to it
 
     /* A private Constructor prevents any other class from instantiating (singleton pattern)
      * This should only execute when getInstance() is called. */
     private ReceivedRequestDatabaseClient(Context appContext) {
-        //creating the database with Room database builder
-        String dbName = "db_receivedRequests";                                                      //this will be the filename in /data/user/0/[app]/databases/
-
-        //receivedRequestDatabase = Room.databaseBuilder(appContext, ReceivedRequestDatabase.class, dbName).allowMainThreadQueries().build();       //use this if you want to allow main/UI thread processing (not recommended)
-        receivedRequestDatabase = Room.databaseBuilder(appContext, ReceivedRequestDatabase.class, dbName)
-                .fallbackToDestructiveMigration()                                                   //if schema updates, this database is OK to rebuild and lose its data
-                .build();
+        //our table lives in the unified database (which shares its write pipeline among all its tables' clients)
+        OmniDatabaseClient omniDatabaseClient = OmniDatabaseClient.getInstance(appContext);
+        receivedRequestDatabase = omniDatabaseClient.getOmniDatabase();
+        databaseWriter = omniDatabaseClient.getDatabaseWriter();
     }
 
     /* Static 'instance' method (singleton pattern)
@@ -74,7 +82,7 @@ public class ReceivedRequestDatabaseClient {
     }
 
     /* Returns a reference to the local instance (singleton pattern) */
-    public ReceivedRequestDatabase getReceivedRequestDatabase() {
+    public OmniDatabase getReceivedRequestDatabase() {
         return receivedRequestDatabase;
     }
 
@@ -94,83 +102,119 @@ public class ReceivedRequestDatabaseClient {
     public void addRecord(final Context appContext, final String requestMethod, final String requestPath, final String requestProtocol, final String userAgent, final String contentType, final String body) {
         final String TAGG = "addRecord: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(DatabaseWriter.ENTITY_NEW_RECORD, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //create a record...
-                    ReceivedRequest receivedRequest = new ReceivedRequest();                        //this is the object that we'll insert below
-
-                    //add the provided data...
-                    receivedRequest.setRequestMethod(requestMethod);
-                    receivedRequest.setRequestPath(requestPath);
-                    receivedRequest.setRequestProtocol(requestProtocol);
-                    receivedRequest.setRequestUserAgent(userAgent);
-                    receivedRequest.setRequestContentType(contentType);
-                    receivedRequest.setRequestBody(body);
-
-                    //initially set status...
-                    receivedRequest.setStatus(ReceivedRequest.STATUS_NEW);
-
-                    //initially set processed flag to nothing...
-                    receivedRequest.setRequestProcessedAt(null);
-                    receivedRequest.setRequestProcessedAtMs(null);
-
-                    //populate timestamp fields...
-                    Date currDateTime = new Date();
-                    receivedRequest.setCreatedAt(currDateTime);
-                    receivedRequest.setModifiedAt(currDateTime);
-
-                    //add the record to database...
-                    ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().addRecord(receivedRequest);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            public void apply() {
+                //create a record...
+                ReceivedRequest receivedRequest = new ReceivedRequest();                        //this is the object that we'll insert below
+
+                //add the provided data...
+                receivedRequest.setRequestMethod(requestMethod);
+                receivedRequest.setRequestPath(requestPath);
+                receivedRequest.setRequestProtocol(requestProtocol);
+                receivedRequest.setRequestUserAgent(userAgent);
+                receivedRequest.setRequestContentType(contentType);
+                receivedRequest.setRequestBody(body);
+
+                //initially set status...
+                receivedRequest.setStatus(ReceivedRequest.STATUS_NEW);
+
+                //initially set processed flag to nothing...
+                receivedRequest.setRequestProcessedAt(null);
+                receivedRequest.setRequestProcessedAtMs(null);
+
+                //populate timestamp fields...
+                Date currDateTime = new Date();
+                receivedRequest.setCreatedAt(currDateTime);
+                receivedRequest.setModifiedAt(currDateTime);
+
+                //add the record to database...
+                ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().addRecord(receivedRequest);
+            }
+        });
+    }
+
+    /** Add a new received request record to the database, given the raw body bytes as received.
+     * The body is decoded (as UTF-8) on the database worker thread, so the caller (a socket thread) doesn't have to.
+     * @param appContext        Application context.
+     * @param requestMethod     Request method to save.
+     * @param requestPath       Request path to save.
+     * @param requestProtocol   Request protocol to save.
+     * @param userAgent         Request user-agent to save.
+     * @param contentType       Request content mime type to save.
+     * @param body              Request data/body bytes to save.
+     */
+    public void addRecord(final Context appContext, final String requestMethod, final String requestPath, final String requestProtocol, final String userAgent, final String contentType, final byte[] body) {
+        final String TAGG = "addRecord: ";
+
+        databaseWriter.enqueue(new DatabaseWriter.Write(DatabaseWriter.ENTITY_NEW_RECORD, null) {
+            @Override
+            public void apply() {
+                //create a record...
+                ReceivedRequest receivedRequest = new ReceivedRequest();                        //this is the object that we'll insert below
+
+                //add the provided data...
+                receivedRequest.setRequestMethod(requestMethod);
+                receivedRequest.setRequestPath(requestPath);
+                receivedRequest.setRequestProtocol(requestProtocol);
+                receivedRequest.setRequestUserAgent(userAgent);
+                receivedRequest.setRequestContentType(contentType);
+                receivedRequest.setRequestBody(new String(body, Charset.forName("UTF-8")));
+
+                //initially set status...
+                receivedRequest.setStatus(ReceivedRequest.STATUS_NEW);
+
+                //initially set processed flag to nothing...
+                receivedRequest.setRequestProcessedAt(null);
+                receivedRequest.setRequestProcessedAtMs(null);
+
+                //populate timestamp fields...
+                Date currDateTime = new Date();
+                receivedRequest.setCreatedAt(currDateTime);
+                receivedRequest.setModifiedAt(currDateTime);
+
+                //add the record to database...
+                ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().addRecord(receivedRequest);
             }
-        }.start();
+        });
     }
 
     /** Method to find and return all unprocessed requests.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findUnprocessedReceivedRequestsAsync instead.
      * @param appContext Application context.
      * @return List object containing any ReceivedRequest objects that might have been found.
      */
     public List<ReceivedRequest> findUnprocessedReceivedRequests(final Context appContext) {
         final String TAGG = "findUnprocessedReceivedRequests: ";
 
-        FindUnprocessedReceivedRequests findUnprocessedReceivedRequests;
-        findUnprocessedReceivedRequests = new FindUnprocessedReceivedRequests(appContext);
-
-        findUnprocessedReceivedRequests.start();
-
-        while (!findUnprocessedReceivedRequests.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findUnprocessedReceivedRequestsAsync(appContext), TAGG);
+    }
 
-        return findUnprocessedReceivedRequests.result;
+    /** Same as findUnprocessedReceivedRequests, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<ReceivedRequest>> findUnprocessedReceivedRequestsAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindUnprocessedReceivedRequests(appContext));
     }
 
     /** Method to find and return all processed requests.
-     * NOTE: This is a blocking operation, and won't return until its sub-process is done.
+     * NOTE: This is a blocking operation, and won't return until its query is done (the calling thread waits parked, not spinning).
+     * If you'd rather carry on and get the result later, use findProcessedReceivedRequestsAsync instead.
      * @param appContext Application context.
      * @return List object containing any ReceivedRequest objects that might have been found.
      */
     public List<ReceivedRequest> findProcessedReceivedRequests(final Context appContext) {
         final String TAGG = "findProcessedReceivedRequests: ";
 
-        FindProcessedReceivedRequests findProcessedReceivedRequests;
-        findProcessedReceivedRequests = new FindProcessedReceivedRequests(appContext);
-
-        findProcessedReceivedRequests.start();
-
-        while (!findProcessedReceivedRequests.isDone) {
-            //wait here until it's done
-        }
+        return waitForResult(findProcessedReceivedRequestsAsync(appContext), TAGG);
+    }
 
-        return findProcessedReceivedRequests.result;
+    /** Same as findProcessedReceivedRequests, but returns right away with a Future for the result, so you may carry on and get it when you need it.
+     * The query runs on the shared (bounded) database executor.
+     */
+    public Future<List<ReceivedRequest>> findProcessedReceivedRequestsAsync(final Context appContext) {
+        return AppExecutors.getInstance().databaseIO().submit(new FindProcessedReceivedRequests(appContext));
     }
 
     /** Method to invoke the database backend to find and delete any old already-forwarded records.
@@ -179,20 +223,13 @@ public class ReceivedRequestDatabaseClient {
     public void deleteAllForwarded_olderThan(final Context appContext, final String sqliteDatetimeModifier) {
         final String TAGG = "deleteAllForwarded_olderThan: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the query on the database
-                    ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAllWithStatus_olderThan(ReceivedRequest.STATUS_FORWARDED, sqliteDatetimeModifier);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            public void apply() {
+                //run the query on the database
+                ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAllWithStatus_olderThan(ReceivedRequest.STATUS_FORWARDED, sqliteDatetimeModifier);
             }
-        }.start();
+        });
     }
 
     /** Method to invoke the database backend to find and delete any old unneeded records.
@@ -202,20 +239,13 @@ public class ReceivedRequestDatabaseClient {
     public void deleteAllProcessed_olderThan(final Context appContext, final String sqliteDatetimeModifier) {
         final String TAGG = "deleteAllProcessed_olderThan: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the query on the database
-                    ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAllProcessed_olderThan(sqliteDatetimeModifier);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            public void apply() {
+                //run the query on the database
+                ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAllProcessed_olderThan(sqliteDatetimeModifier);
             }
-        }.start();
+        });
     }
 
     /** Method to invoke the database backend to find and delete any old unprocessed records.
@@ -226,20 +256,13 @@ public class ReceivedRequestDatabaseClient {
     public void deleteAllUnprocessed_olderThan(final Context appContext, final String sqliteDatetimeModifier) {
         final String TAGG = "deleteAllUnprocessed_olderThan: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //run the query on the database
-                    ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAllUnprocessed_olderThan(sqliteDatetimeModifier);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            public void apply() {
+                //run the query on the database
+                ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAllUnprocessed_olderThan(sqliteDatetimeModifier);
             }
-        }.start();
+        });
     }
 
     /** Method to invoke the database backend to find and delete ANY old records.
@@ -251,21 +274,82 @@ public class ReceivedRequestDatabaseClient {
     public void deleteAll_olderThan(final Context appContext, final String date) {
         final String TAGG = "deleteAll_olderThan: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(null, null) {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
+            public void apply() {
+                //run the query on the database
+                //ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAll_olderThan(sqliteDatetimeModifier);
+                ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAll_olderThan(date);
+            }
+        });
+    }
 
-                try {
+    /** Method to invoke the database backend to delete up to a chunk of old already-processed records, and wait for it to be committed.
+     * This is for scheduled maintenance (HealthThreadDatabase), which calls it repeatedly until fewer than chunkSize get deleted,
+     * so the writer (and everybody else's writes) is never held up by one huge delete.
+     * @param appContext Application context.
+     * @param sqliteDatetimeModifier How old a record must be to get deleted (e.g. Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY).
+     * @param chunkSize Most records to delete.
+     * @return How many records were deleted, or -1 if it failed (or wasn't committed in time).
+     */
+    public int deleteChunkProcessed_olderThan(final Context appContext, final String sqliteDatetimeModifier, final int chunkSize) {
+        final String TAGG = "deleteChunkProcessed_olderThan: ";
+        final int[] deletedCount = {-1};
+
+        try {
+            boolean isCommitted = databaseWriter.enqueueAndAwait(new DatabaseWriter.Write(null, null) {
+                @Override
+                public void apply() {
                     //run the query on the database
-                    //ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAll_olderThan(sqliteDatetimeModifier);
-                    ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteAll_olderThan(date);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
+                    deletedCount[0] = ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteChunkProcessed_olderThan(sqliteDatetimeModifier, chunkSize);
                 }
+            }, Constants.Database.DB_MAINTENANCE_WRITE_TIMEOUT_MS);
+
+            if (!isCommitted) {
+                logW(TAGG+"Delete was not committed in time.");
+                return -1;
             }
-        }.start();
+        } catch (InterruptedException e) {
+            logW(TAGG+"Interrupted waiting for delete to be committed.");
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+
+        return deletedCount[0];
+    }
+
+    /** Method to invoke the database backend to delete up to a chunk of old records (processed or not, by when they were created), and wait for it to be committed.
+     * This is for scheduled maintenance (HealthThreadDatabase), which calls it repeatedly until fewer than chunkSize get deleted,
+     * so the writer (and everybody else's writes) is never held up by one huge delete.
+     * @param appContext Application context.
+     * @param sqliteDatetimeModifier How old a record must be to get deleted (e.g. Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY).
+     * @param chunkSize Most records to delete.
+     * @return How many records were deleted, or -1 if it failed (or wasn't committed in time).
+     */
+    public int deleteChunk_olderThan(final Context appContext, final String sqliteDatetimeModifier, final int chunkSize) {
+        final String TAGG = "deleteChunk_olderThan: ";
+        final int[] deletedCount = {-1};
+
+        try {
+            boolean isCommitted = databaseWriter.enqueueAndAwait(new DatabaseWriter.Write(null, null) {
+                @Override
+                public void apply() {
+                    //run the query on the database
+                    deletedCount[0] = ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().deleteChunk_olderThan(sqliteDatetimeModifier, chunkSize);
+                }
+            }, Constants.Database.DB_MAINTENANCE_WRITE_TIMEOUT_MS);
+
+            if (!isCommitted) {
+                logW(TAGG+"Delete was not committed in time.");
+                return -1;
+            }
+        } catch (InterruptedException e) {
+            logW(TAGG+"Interrupted waiting for delete to be committed.");
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+
+        return deletedCount[0];
     }
 
     /** Method to update an existing record.
@@ -276,94 +360,89 @@ public class ReceivedRequestDatabaseClient {
     public void updateRecord(final Context appContext, final ReceivedRequest updatedReceivedRequest) {
         final String TAGG = "updateReceivedRequest: ";
 
-        new Thread(){
+        databaseWriter.enqueue(new DatabaseWriter.Write(WRITE_KEY_PREFIX + updatedReceivedRequest.getId(), "record") {
             @Override
-            public void run() {
-                this.setPriority(Thread.MIN_PRIORITY);
-                logV(TAGG+"Background worker thread running for database operation.");
-
-                try {
-                    //update modified timestamp field...
-                    updatedReceivedRequest.setModifiedAt(new Date());
-
-                    //run the update on the database
-                    ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().updateRecord(updatedReceivedRequest);
-                } catch (Exception e) {
-                    logE(TAGG+"Exception caught: "+e.getMessage());
-                }
+            public void apply() {
+                //update modified timestamp field...
+                updatedReceivedRequest.setModifiedAt(new Date());
+
+                //run the update on the database
+                ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().updateRecord(updatedReceivedRequest);
             }
-        }.start();
+        });
+    }
+
+
+    /** Wait for a query's result (the calling thread is parked while it waits, rather than spinning).
+     * @return The result, or null if the query failed or we were interrupted while waiting.
+     */
+    private <T> T waitForResult(Future<T> future, String tagg) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            logW(tagg+"Interrupted while waiting for query result.");
+            Thread.currentThread().interrupt();                                                     //preserve it for our caller (e.g. a thread-loop checking isInterrupted)
+        } catch (ExecutionException e) {
+            logE(tagg+"Exception caught running query: "+e.getMessage());
+        }
+        return null;
     }
 
 
     /*============================================================================================*/
     /* Subclasses... */
 
-    /** A thread to access the database and find all unprocessed requests.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all unprocessed requests.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * It will find all requests that don't have a process-date or have a "new" status.
      *
      * Usage example:
-     *  FindUnprocessedReceivedRequests findUnprocessedReceivedRequests;
-     *  findUnprocessedReceivedRequests = new FindUnprocessedReceivedRequests(appContext);
-     *  findUnprocessedReceivedRequests.start();
-     *  while (!findUnprocessedReceivedRequests.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findUnprocessedReceivedRequests.result;
+     *  Future<List<ReceivedRequest>> future = AppExecutors.getInstance().databaseIO().submit(new FindUnprocessedReceivedRequests(appContext));
+     *  return waitForResult(future, TAGG);
      */
-    private class FindUnprocessedReceivedRequests extends Thread {
+    private class FindUnprocessedReceivedRequests implements Callable<List<ReceivedRequest>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<ReceivedRequest> result = null;
-        volatile boolean isDone = false;
         FindUnprocessedReceivedRequests(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<ReceivedRequest> call() {
+            final String TAGGG = "call: ";
+            List<ReceivedRequest> result = null;
             try {
                 result = ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().getAllUnprocessedReceivedRequests();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
-    /** A thread to access the database and find all already-processed requests.
-     * You should wrap this in a loop to monitor for when it's done and its results are ready.
+    /** A task to access the database and find all already-processed requests.
+     * Submit it to the database executor, and get its result from the Future it gives you.
      *
      * Usage example:
-     *  FindProcessedReceivedRequests findProcessedReceivedRequests;
-     *  findProcessedReceivedRequests = new FindProcessedReceivedRequests(appContext);
-     *  findProcessedReceivedRequests.start();
-     *  while (!findProcessedReceivedRequests.isDone) {
-     *      //wait here until it's done
-     *  }
-     *  return findProcessedReceivedRequests.result;
+     *  Future<List<ReceivedRequest>> future = AppExecutors.getInstance().databaseIO().submit(new FindProcessedReceivedRequests(appContext));
+     *  return waitForResult(future, TAGG);
      */
-    private class FindProcessedReceivedRequests extends Thread {
+    private class FindProcessedReceivedRequests implements Callable<List<ReceivedRequest>> {
         private final String TAGG = this.getClass().getSimpleName();
         private Context appContext = null;
-        List<ReceivedRequest> result = null;
-        volatile boolean isDone = false;
         FindProcessedReceivedRequests(final Context appContext) {
             this.appContext = appContext;
         }
         @Override
-        public void run() {
-            final String TAGGG = "run: ";
-            this.setPriority(Thread.MIN_PRIORITY);
+        public List<ReceivedRequest> call() {
+            final String TAGGG = "call: ";
+            List<ReceivedRequest> result = null;
             try {
                 result = ReceivedRequestDatabaseClient.getInstance(appContext).getReceivedRequestDatabase().receivedRequestDao().getAllProcessedReceivedRequests();
             } catch (Exception e) {
                 logE(TAGG+TAGGG+"Exception caught: "+e.getMessage());
             }
-            this.isDone = true;
+            return result;
         }
     }
 
@@ -0,0 +1,657 @@
+package com.messagenetsystems.evolution2.databases.receivedRequests;
+
+/* ReceivedRequestJournal class
+ *
+ * An append-only, memory-mapped, write-ahead journal of received requests.
+ * This is where socket threads put requests as they arrive, instead of inserting each one into the
+ * received_requests Room database (which cost a new thread and an SQLite transaction per request).
+ *
+ * Each appended request gets the next sequence number, and is synced to flash in groups (group commit):
+ * a background flusher thread gathers whatever gets appended within a short window, and syncs it all at once.
+ * Callers that need to know their request is durable (before responding to the client) wait for that.
+ *
+ * ReceivedRequestProcessor then consumes requests from the journal by offset, and commits its offset once they're processed.
+ * The file is used as a ring (records wrap around to the start, behind the consumed offset), so it never needs to grow.
+ * If a request won't fit (e.g. processing has fallen way behind), append returns a negative value and the caller should fall back to Room.
+ *
+ * This provides a singleton pattern, just like our database clients, so there's only ever one writer to the file.
+ * There should be only one consumer (ReceivedRequestProcessor).
+ *
+ * File layout...
+ *  Header (at offset 0):
+ *   int     magic
+ *   int     version
+ *   long    consumed offset (where the next unconsumed record starts)
+ *   long    consumed sequence (sequence number of the next unconsumed record)
+ *  Records (one after another, starting right after the header):
+ *   int     record length (bytes following this field, through the CRC)
+ *   long    sequence number
+ *   long    created-at (ms since epoch)
+ *   int+[]  method, path, protocol, user-agent, content-type (each as length-prefixed UTF-8, length -1 for null)
+ *   int+[]  body bytes (length-prefixed)
+ *   int     CRC32 of everything from sequence number through body
+ *  A record length of 0 (or a bad CRC, or an out-of-order sequence number) marks the end of valid records.
+ *  A record length of -1 means records continue at the start (the journal is used as a ring).
+ *
+ * Usage example (appending, from a socket thread)...
+ *  ReceivedRequestJournal receivedRequestJournal = ReceivedRequestJournal.getInstance(getApplicationContext());
+ *  long seq = receivedRequestJournal.append("POST", "/message", "HTTP/1.1", "curl/7.35.0", "application/json", bodyBytes);
+ *  if (seq < 0) {
+ *      //didn't fit, so save it with ReceivedRequestDatabaseClient.addRecord instead
+ *  } else {
+ *      receivedRequestJournal.awaitDurable(seq, 1000);
+ *  }
+ *
+ * Usage example (getting woken when there's something new to consume)...
+ *  receivedRequestJournal.setDurableListener(receivedRequestProcessor);
+ *
+ * Usage example (consuming, from ReceivedRequestProcessor)...
+ *  List<ReceivedRequest> receivedRequests = receivedRequestJournal.readUnconsumed(100);
+ *  (process them, and wait until whatever they wrote to the database has been committed)
+ *  receivedRequestJournal.commitConsumed();                                                       //or rewindToConsumed(), if any of those writes failed (to read them again)
+ */
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.CRC32;
+
+
+public class ReceivedRequestJournal {
+    private final String TAG = ReceivedRequestJournal.class.getSimpleName();
+
+    // Constants...
+    private static final String FILE_NAME = "journal_receivedRequests";                             //this will be the filename in /data/user/0/[app]/files/
+    private static final int FILE_MAGIC = 0x4F4D524A;                                               //"OMRJ"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 32;                                                      //magic, version, consumed offset, consumed sequence (plus room to spare)
+    private static final int HEADER_POS_CONSUMED_OFFSET = 8;
+    private static final int HEADER_POS_CONSUMED_SEQ = 16;
+    private static final int MARKER_END = 0;                                                        //in place of a record length, means there are no more records
+    private static final int MARKER_WRAP = -1;                                                      //in place of a record length, means the next record is at the start
+    private static final int RECORD_FIXED_SIZE = 8 + 8 + (6 * 4) + 4;                               //seq, created-at, six length fields, CRC
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+
+    // Logging stuff...
+    private final byte LOG_SEVERITY_V = 1;
+    private final byte LOG_SEVERITY_D = 2;
+    private final byte LOG_SEVERITY_I = 3;
+    private final byte LOG_SEVERITY_W = 4;
+    private final byte LOG_SEVERITY_E = 5;
+    private byte logMethod = Constants.LOG_METHOD_FILELOGGER;
+
+    // Local stuff...
+    private static ReceivedRequestJournal mInstance;                                                //to support singleton pattern (maintains a static reference to the lone singleton instance - gets returned via getInstance)
+
+    private final Object lock = new Object();                                                       //guards everything below (and the mapped buffer's position)
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer mappedByteBuffer;
+    private int capacity;
+
+    private int writeOffset;                    //where the next appended record goes
+    private long nextSeq;                       //sequence number of the next appended record
+    private long durableSeq;                    //highest sequence number that's been synced to flash
+    private int consumedOffset;                 //everything before this offset has been committed as consumed
+    private long consumedSeq;                   //sequence number of the next record to consume
+    private int readOffset;                     //where the consumer has read up to (but not yet committed)
+    private long readSeq;                       //sequence number of the next record the consumer will read
+
+    private GroupCommitFlusher groupCommitFlusher;
+    private volatile DurableListener durableListener;
+    private int groupCommitWindowMS;
+
+    /* A private Constructor prevents any other class from instantiating (singleton pattern)
+     * This should only execute when getInstance() is called. */
+    private ReceivedRequestJournal(Context appContext) throws IOException {
+        this(new File(appContext.getFilesDir(), FILE_NAME),
+                Constants.Database.RECEIVED_REQUEST_JOURNAL_CAPACITY_BYTES,
+                Constants.Database.RECEIVED_REQUEST_JOURNAL_GROUP_COMMIT_WINDOW_MS);
+    }
+
+    private ReceivedRequestJournal(File file, int capacity, int groupCommitWindowMS) throws IOException {
+        this.capacity = capacity;
+        this.groupCommitWindowMS = groupCommitWindowMS;
+
+        open(file);
+
+        this.groupCommitFlusher = new GroupCommitFlusher();
+        this.groupCommitFlusher.start();
+    }
+
+    /* Static 'instance' method (singleton pattern)
+     * Its purpose is to instantiate the class locally and return reference to that instance.
+     * Returns null if the journal file could not be opened (callers should then use Room directly). */
+    public static synchronized ReceivedRequestJournal getInstance(Context context) {
+        if (mInstance == null) {
+            try {
+                mInstance = new ReceivedRequestJournal(context);
+            } catch (Exception e) {
+                Log.e(ReceivedRequestJournal.class.getSimpleName(), "getInstance: Exception caught opening journal: "+e.getMessage());
+                return null;
+            }
+        }
+        return mInstance;
+    }
+
+
+    /** Implement this to be notified (on the flusher thread) whenever newly appended records become durable.
+     * Don't do any real work in the callback; just wake up whatever will call readUnconsumed. */
+    public interface DurableListener {
+        void onRequestsDurable(long durableSeq);
+    }
+
+
+    /*============================================================================================*/
+    /* Main Routines... */
+
+    /** Append a received request to the journal.
+     * This returns as soon as the record is written to memory; use awaitDurable to wait for it to be synced to flash.
+     * @return Sequence number of the appended record, or -1 if it would not fit (caller should save it some other way).
+     */
+    public long append(String requestMethod, String requestPath, String requestProtocol, String userAgent, String contentType, byte[] body) {
+        final String TAGG = "append: ";
+
+        // Encode the record outside the lock, so socket threads don't hold each other up doing it
+        byte[] method = encode(requestMethod);
+        byte[] path = encode(requestPath);
+        byte[] protocol = encode(requestProtocol);
+        byte[] agent = encode(userAgent);
+        byte[] type = encode(contentType);
+        if (body == null) body = new byte[0];
+
+        int recordLength = RECORD_FIXED_SIZE + len(method) + len(path) + len(protocol) + len(agent) + len(type) + body.length;
+        long createdAtMS = System.currentTimeMillis();
+
+        ByteBuffer record = ByteBuffer.allocate(4 + recordLength);
+        record.putInt(recordLength);
+        record.putLong(0);                                                                          //sequence number placeholder (assigned under lock, below)
+        record.putLong(createdAtMS);
+        putBytes(record, method);
+        putBytes(record, path);
+        putBytes(record, protocol);
+        putBytes(record, agent);
+        putBytes(record, type);
+        putBytes(record, body);
+
+        synchronized (lock) {
+            if (mappedByteBuffer == null) {
+                return -1;
+            }
+
+            // Figure out where the record goes...
+            // We always leave room for a 4-byte marker after it, and never let it run into unconsumed records.
+            // If it won't fit at the end, we wrap around to the start (leaving a wrap-marker behind) if there's room there.
+            rewindIfFullyConsumed();
+            int recordOffset = writeOffset;
+            if (writeOffset >= consumedOffset) {
+                if (writeOffset + record.capacity() + 4 > capacity) {
+                    recordOffset = HEADER_SIZE;
+                    if (recordOffset + record.capacity() + 4 > consumedOffset) {
+                        logW(TAGG+"Journal is full ("+getUnconsumedBytes()+" bytes unconsumed), cannot append "+record.capacity()+" bytes.");
+                        return -1;
+                    }
+                }
+            } else if (writeOffset + record.capacity() + 4 > consumedOffset) {
+                logW(TAGG+"Journal is full ("+getUnconsumedBytes()+" bytes unconsumed), cannot append "+record.capacity()+" bytes.");
+                return -1;
+            }
+
+            long seq = nextSeq;
+            record.putLong(4, seq);
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(record.array(), 4, recordLength - 4);
+            record.putInt(4 + recordLength - 4, (int) crc32.getValue());
+
+            // Write the end-marker past our record first, then the record itself (so there's always a valid end)
+            mappedByteBuffer.putInt(recordOffset + record.capacity(), MARKER_END);
+            mappedByteBuffer.position(recordOffset);
+            mappedByteBuffer.put(record.array());
+            if (recordOffset != writeOffset) {
+                mappedByteBuffer.putInt(writeOffset, MARKER_WRAP);                                  //point readers back to the start
+            }
+
+            writeOffset = recordOffset + record.capacity();
+            nextSeq++;
+
+            lock.notifyAll();                                                                       //wake the flusher
+            return seq;
+        }
+    }
+
+    /** Wait until the given sequence number has been synced to flash (or the timeout elapses).
+     * @return Whether the record is durable.
+     */
+    public boolean awaitDurable(long seq, long timeoutMS) {
+        final String TAGG = "awaitDurable: ";
+
+        long deadline = System.currentTimeMillis() + timeoutMS;
+
+        synchronized (lock) {
+            while (durableSeq < seq) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    logW(TAGG+"Timed out waiting for sequence #"+seq+" to be synced.");
+                    return false;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Read (up to the given number of) durable records that haven't been read yet.
+     * Records are not considered consumed until commitConsumed is called.
+     * Returned objects are not Room records (their ID is 0).
+     */
+    public List<ReceivedRequest> readUnconsumed(int maxRecords) {
+        final String TAGG = "readUnconsumed: ";
+
+        List<ReceivedRequest> ret = new ArrayList<ReceivedRequest>();
+
+        int startOffset;
+        int offset;
+        long seq;
+        long endSeq;
+        ByteBuffer view;
+
+        synchronized (lock) {
+            if (mappedByteBuffer == null) {
+                return ret;
+            }
+            startOffset = readOffset;
+            offset = readOffset;
+            seq = readSeq;
+            endSeq = durableSeq + 1;                                                                //only hand out records that are durable
+            view = mappedByteBuffer.duplicate();                                                    //our own position, so we don't need to hold the lock while reading
+        }
+
+        while (seq < endSeq && ret.size() < maxRecords) {
+            view.position(offset);
+            int recordLength = view.getInt();
+            if (recordLength == MARKER_WRAP) {
+                offset = HEADER_SIZE;
+                continue;
+            }
+            ReceivedRequest receivedRequest = decodeRecord(view, recordLength, seq);
+            if (receivedRequest == null) {
+                // This should never happen (we wrote it ourselves), but if it does, skip everything appended so far
+                synchronized (lock) {
+                    logE(TAGG+"Corrupt record at offset "+offset+" (expected sequence #"+seq+"), skipping through sequence #"+(nextSeq - 1)+".");
+                    offset = writeOffset;
+                    seq = nextSeq;
+                }
+                break;
+            }
+            ret.add(receivedRequest);
+            offset += 4 + recordLength;
+            seq++;
+        }
+
+        // Note: The journal can't rewind while there are records we haven't read, so it's safe to just advance here
+        if (offset != startOffset) {
+            synchronized (lock) {
+                readOffset = offset;
+                readSeq = seq;
+            }
+        }
+
+        return ret;
+    }
+
+    /** Commit everything read so far (by readUnconsumed) as consumed.
+     * Call this after those records have been completely processed (including any database writes they queued being committed). */
+    public void commitConsumed() {
+        final String TAGG = "commitConsumed: ";
+
+        synchronized (lock) {
+            if (mappedByteBuffer == null || (consumedOffset == readOffset && consumedSeq == readSeq)) {
+                return;
+            }
+
+            consumedOffset = readOffset;
+            consumedSeq = readSeq;
+
+            // Rewind now if we can (keeps the file from ever needing to grow), otherwise just save our place
+            if (!rewindIfFullyConsumed()) {
+                writeHeader();
+            }
+        }
+
+        mappedByteBuffer.force();
+        logV(TAGG+"Committed through sequence #"+(consumedSeq - 1)+".");
+    }
+
+    /** Forget everything read (by readUnconsumed) since the last commitConsumed, so it gets read again.
+     * Call this instead of commitConsumed if those records' processing didn't completely make it (e.g. a database write failed).
+     * Their space is still reserved (appends never overwrite anything past the consumed offset), so they're all still there. */
+    public void rewindToConsumed() {
+        final String TAGG = "rewindToConsumed: ";
+
+        synchronized (lock) {
+            if (mappedByteBuffer == null || (readOffset == consumedOffset && readSeq == consumedSeq)) {
+                return;
+            }
+
+            logW(TAGG+"Rewinding to sequence #"+consumedSeq+" (from #"+readSeq+"), to read those records again.");
+            readOffset = consumedOffset;
+            readSeq = consumedSeq;
+        }
+    }
+
+    public void setDurableListener(DurableListener durableListener) {
+        this.durableListener = durableListener;
+    }
+
+    /** Number of bytes appended but not yet committed as consumed. */
+    public int getUnconsumedBytes() {
+        synchronized (lock) {
+            if (writeOffset >= consumedOffset) {
+                return writeOffset - consumedOffset;
+            }
+            return (capacity - consumedOffset) + (writeOffset - HEADER_SIZE);                       //wrapped around
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods... */
+
+    /** Map the journal file, and recover our place in it (validating records that were written before). */
+    private void open(File file) throws IOException {
+        final String TAGG = "open: ";
+
+        boolean isNewFile = !file.exists() || file.length() != capacity;
+
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(capacity);
+        mappedByteBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (!isNewFile
+                && mappedByteBuffer.getInt(0) == FILE_MAGIC
+                && mappedByteBuffer.getInt(4) == FILE_VERSION) {
+            consumedOffset = (int) mappedByteBuffer.getLong(HEADER_POS_CONSUMED_OFFSET);
+            consumedSeq = mappedByteBuffer.getLong(HEADER_POS_CONSUMED_SEQ);
+            if (consumedOffset < HEADER_SIZE || consumedOffset > capacity - 4 || consumedSeq < 1) {
+                logW(TAGG+"Journal header is invalid, starting over.");
+                isNewFile = true;
+            }
+        } else {
+            isNewFile = true;
+        }
+
+        if (isNewFile) {
+            consumedOffset = HEADER_SIZE;
+            consumedSeq = 1;
+            mappedByteBuffer.putInt(0, FILE_MAGIC);
+            mappedByteBuffer.putInt(4, FILE_VERSION);
+            mappedByteBuffer.putInt(HEADER_SIZE, MARKER_END);
+            writeHeader();
+            mappedByteBuffer.force();
+        }
+
+        // Scan forward from the consumed offset to find any records that were appended (but not consumed) before
+        ByteBuffer view = mappedByteBuffer.duplicate();
+        int offset = consumedOffset;
+        long seq = consumedSeq;
+        boolean wrapped = false;
+        while (offset + 4 <= capacity) {
+            view.position(offset);
+            int recordLength = view.getInt();
+            if (recordLength == MARKER_WRAP && !wrapped) {
+                offset = HEADER_SIZE;
+                wrapped = true;
+                continue;
+            }
+            if (recordLength < RECORD_FIXED_SIZE || offset + 4 + recordLength > capacity) break;
+            if (decodeRecord(view, recordLength, seq) == null) break;
+            offset += 4 + recordLength;
+            seq++;
+        }
+
+        writeOffset = offset;
+        nextSeq = seq;
+        durableSeq = seq - 1;
+        readOffset = consumedOffset;
+        readSeq = consumedSeq;
+
+        // Make sure whatever follows our last valid record is an end-marker
+        if (writeOffset + 4 <= capacity) {
+            mappedByteBuffer.putInt(writeOffset, MARKER_END);
+        }
+
+        logI(TAGG+"Journal opened with "+(nextSeq - consumedSeq)+" unconsumed record(s) ("+getUnconsumedBytes()+" bytes).");
+    }
+
+    /** If everything appended has been consumed, move everything back to the start of the file.
+     * Sequence numbers keep going up, so any old records left behind can never be mistaken for new ones.
+     * Must be called while holding the lock.
+     * @return Whether we rewound.
+     */
+    private boolean rewindIfFullyConsumed() {
+        if (consumedOffset != writeOffset || writeOffset == HEADER_SIZE || readOffset != writeOffset) {
+            return false;
+        }
+
+        mappedByteBuffer.putInt(HEADER_SIZE, MARKER_END);
+        writeOffset = HEADER_SIZE;
+        consumedOffset = HEADER_SIZE;
+        readOffset = HEADER_SIZE;
+        writeHeader();
+        return true;
+    }
+
+    /** Must be called while holding the lock. */
+    private void writeHeader() {
+        mappedByteBuffer.putLong(HEADER_POS_CONSUMED_OFFSET, consumedOffset);
+        mappedByteBuffer.putLong(HEADER_POS_CONSUMED_SEQ, consumedSeq);
+    }
+
+    /** Decode and validate the record at the view's position (just after its length field).
+     * @return The request, or null if the record is invalid or out of sequence.
+     */
+    private ReceivedRequest decodeRecord(ByteBuffer view, int recordLength, long expectedSeq) {
+        try {
+            if (recordLength < RECORD_FIXED_SIZE || view.remaining() < recordLength) return null;
+
+            int start = view.position();
+
+            CRC32 crc32 = new CRC32();
+            byte[] payload = new byte[recordLength - 4];
+            view.get(payload);
+            crc32.update(payload, 0, payload.length);
+            if ((int) crc32.getValue() != view.getInt()) return null;
+
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            if (record.getLong() != expectedSeq) return null;
+
+            Date createdAt = new Date(record.getLong());
+
+            ReceivedRequest receivedRequest = new ReceivedRequest();
+            receivedRequest.setRequestMethod(getString(record));
+            receivedRequest.setRequestPath(getString(record));
+            receivedRequest.setRequestProtocol(getString(record));
+            receivedRequest.setRequestUserAgent(getString(record));
+            receivedRequest.setRequestContentType(getString(record));
+            receivedRequest.setRequestBody(getString(record));
+            receivedRequest.setStatus(ReceivedRequest.STATUS_NEW);
+            receivedRequest.setRequestProcessedAt(null);
+            receivedRequest.setRequestProcessedAtMs(null);
+            receivedRequest.setCreatedAt(createdAt);
+            receivedRequest.setModifiedAt(createdAt);
+
+            view.position(start + recordLength);
+            return receivedRequest;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(String s) {
+        return s == null ? null : s.getBytes(CHARSET_UTF8);
+    }
+
+    private static int len(byte[] b) {
+        return b == null ? 0 : b.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] b) {
+        if (b == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(b.length);
+            buffer.put(b);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        String s = new String(buffer.array(), buffer.position(), length, CHARSET_UTF8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+
+
+    /*============================================================================================*/
+    /* Subclasses... */
+
+    /** A thread to sync appended records to flash, in groups.
+     * It sleeps until something is appended, waits a short window for more to arrive, then syncs them all at once.
+     */
+    private class GroupCommitFlusher extends Thread {
+        private final String TAGG = this.getClass().getSimpleName()+": ";
+
+        GroupCommitFlusher() {
+            this.setName(TAGG.trim());
+            this.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            this.setPriority(Thread.NORM_PRIORITY);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    // Wait for something to be appended
+                    synchronized (lock) {
+                        while (durableSeq == nextSeq - 1) {
+                            lock.wait();
+                        }
+                    }
+
+                    // Give others a moment to append, so we can sync them all together
+                    if (groupCommitWindowMS > 0) {
+                        Thread.sleep(groupCommitWindowMS);
+                    }
+
+                    long targetSeq;
+                    synchronized (lock) {
+                        targetSeq = nextSeq - 1;
+                    }
+
+                    mappedByteBuffer.force();
+
+                    synchronized (lock) {
+                        if (targetSeq > durableSeq) {
+                            durableSeq = targetSeq;
+                        }
+                        lock.notifyAll();
+                    }
+
+                    logV(TAGG+"Synced through sequence #"+targetSeq+".");
+
+                    // Let the consumer know there's something new for it
+                    DurableListener listener = durableListener;
+                    if (listener != null) {
+                        listener.onRequestsDurable(targetSeq);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Exception e) {
+                    logE(TAGG+"Exception caught: "+e.getMessage());
+                }
+            }
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Logging Methods */
+
+    private void logV(String tagg) {
+        log(LOG_SEVERITY_V, tagg);
+    }
+    private void logD(String tagg) {
+        log(LOG_SEVERITY_D, tagg);
+    }
+    private void logI(String tagg) {
+        log(LOG_SEVERITY_I, tagg);
+    }
+    private void logW(String tagg) {
+        log(LOG_SEVERITY_W, tagg);
+    }
+    private void logE(String tagg) {
+        log(LOG_SEVERITY_E, tagg);
+    }
+    private void log(byte logSeverity, String tagg) {
+        switch (logMethod) {
+            case Constants.LOG_METHOD_LOGCAT:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        Log.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        Log.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        Log.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        Log.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        Log.e(TAG, tagg);
+                        break;
+                }
+                break;
+            case Constants.LOG_METHOD_FILELOGGER:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        FL.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        FL.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        FL.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        FL.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        FL.e(TAG, tagg);
+                        break;
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.messagenetsystems.evolution2.databases.receivedRequests;
+
+/* ReceivedRequestMemoryStore class
+ *
+ * An in-memory implementation of ReceivedRequestStore, for exercising and benchmarking the message pipeline off-device (plain JVM).
+ * Nothing here touches Android (no Room, Context, or logging), and nothing persists.
+ *
+ * It's lock-free: records live in concurrent maps, IDs come from an atomic counter, and updates are compare-and-set replacements.
+ * Records are copied going in and coming out (just like rows are, with Room), so what callers do to theirs doesn't show until they update.
+ * Writes are applied right away, on the caller's thread.
+ *
+ * Usage example...
+ *  ReceivedRequestMemoryStore receivedRequestStore = new ReceivedRequestMemoryStore();
+ *  (or, for the whole pipeline, PipelineStores.setInstance(PipelineStores.createInMemory()))
+ */
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class ReceivedRequestMemoryStore implements ReceivedRequestStore {
+
+    // Constants...
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+
+    // Local stuff...
+    private final AtomicInteger lastId;                                                             //like the table's autogenerated primary key
+    private final ConcurrentSkipListMap<Integer, ReceivedRequest> recordsById;                      //records, by ID (so, in the order added)
+    private final ConcurrentSkipListSet<Integer> unprocessedIds;                                    //IDs of records not processed yet (like an index on request_processed_at_ms)
+
+    /** Constructor */
+    public ReceivedRequestMemoryStore() {
+        this.lastId = new AtomicInteger(0);
+        this.recordsById = new ConcurrentSkipListMap<Integer, ReceivedRequest>();
+        this.unprocessedIds = new ConcurrentSkipListSet<Integer>();
+    }
+
+
+    /*============================================================================================*/
+    /* ReceivedRequestStore Methods */
+
+    @Override
+    public void addRecord(String requestMethod, String requestPath, String requestProtocol, String userAgent, String contentType, byte[] body) {
+        ReceivedRequest receivedRequest = new ReceivedRequest();
+        receivedRequest.setId(lastId.incrementAndGet());
+        receivedRequest.setRequestMethod(requestMethod);
+        receivedRequest.setRequestPath(requestPath);
+        receivedRequest.setRequestProtocol(requestProtocol);
+        receivedRequest.setRequestUserAgent(userAgent);
+        receivedRequest.setRequestContentType(contentType);
+        receivedRequest.setRequestBody(new String(body, CHARSET_UTF8));
+        receivedRequest.setStatus(ReceivedRequest.STATUS_NEW);
+        receivedRequest.setRequestProcessedAt(null);
+        receivedRequest.setRequestProcessedAtMs(null);
+
+        Date currDateTime = new Date();
+        receivedRequest.setCreatedAt(currDateTime);
+        receivedRequest.setModifiedAt(currDateTime);
+
+        //the record goes in before its ID is listed as unprocessed, so a find never lists what it can't get
+        recordsById.put(receivedRequest.getId(), receivedRequest);
+        unprocessedIds.add(receivedRequest.getId());
+    }
+
+    @Override
+    public List<ReceivedRequest> findUnprocessedReceivedRequests() {
+        List<ReceivedRequest> ret = new ArrayList<ReceivedRequest>();
+        for (Integer id : unprocessedIds) {
+            ReceivedRequest receivedRequest = recordsById.get(id);
+            if (receivedRequest != null && receivedRequest.getRequestProcessedAtMs() == null) {
+                ret.add(copyOf(receivedRequest));
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public void updateRecord(ReceivedRequest updatedReceivedRequest) {
+        updatedReceivedRequest.setModifiedAt(new Date());
+
+        //like an UPDATE, it only takes if the record exists
+        ReceivedRequest receivedRequest = copyOf(updatedReceivedRequest);
+        if (recordsById.replace(receivedRequest.getId(), receivedRequest) != null) {
+            updateUnprocessedId(receivedRequest);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Memory-Store Methods */
+
+    /** Flag a record processed (for ReceivedMessageMemoryStore's promotions, like ReceivedRequestDao.updateProcessedFor). */
+    public void updateProcessedFor(int id, byte status, long processedAtMs) {
+        while (true) {
+            ReceivedRequest current = recordsById.get(id);
+            if (current == null) {
+                return;
+            }
+
+            ReceivedRequest updated = copyOf(current);
+            updated.setStatus(status);
+            updated.setRequestProcessedAt(new Date(processedAtMs));
+            updated.setRequestProcessedAtMs(processedAtMs);
+            updated.setModifiedAt(new Date());
+            if (recordsById.replace(id, current, updated)) {
+                updateUnprocessedId(updated);
+                return;
+            }
+        }
+    }
+
+    /** @return How many records there are. */
+    public int size() {
+        return recordsById.size();
+    }
+
+    private void updateUnprocessedId(ReceivedRequest receivedRequest) {
+        if (receivedRequest.getRequestProcessedAtMs() == null) {
+            unprocessedIds.add(receivedRequest.getId());
+        } else {
+            unprocessedIds.remove(receivedRequest.getId());
+        }
+    }
+
+    private static ReceivedRequest copyOf(ReceivedRequest receivedRequest) {
+        ReceivedRequest ret = new ReceivedRequest();
+        ret.setId(receivedRequest.getId());
+        ret.setRequestMethod(receivedRequest.getRequestMethod());
+        ret.setRequestPath(receivedRequest.getRequestPath());
+        ret.setRequestProtocol(receivedRequest.getRequestProtocol());
+        ret.setRequestUserAgent(receivedRequest.getRequestUserAgent());
+        ret.setRequestContentType(receivedRequest.getRequestContentType());
+        ret.setRequestBody(receivedRequest.getRequestBody());
+        ret.setStatus(receivedRequest.getStatus());
+        ret.setRequestProcessedAt(receivedRequest.getRequestProcessedAt());
+        ret.setRequestProcessedAtMs(receivedRequest.getRequestProcessedAtMs());
+        ret.setCreatedAt(receivedRequest.getCreatedAt());
+        ret.setCreatedAtMs(receivedRequest.getCreatedAtMs());
+        ret.setModifiedAt(receivedRequest.getModifiedAt());
+        return ret;
+    }
+}
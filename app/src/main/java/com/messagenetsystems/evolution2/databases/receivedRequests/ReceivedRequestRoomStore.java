@@ -0,0 +1,43 @@
+package com.messagenetsystems.evolution2.databases.receivedRequests;
+
+/* ReceivedRequestRoomStore class
+ *
+ * The Room implementation of ReceivedRequestStore, which just hands everything to ReceivedRequestDatabaseClient (with the app context it needs).
+ * This is what PipelineStores provides, unless told otherwise.
+ *
+ * Usage example...
+ *  ReceivedRequestStore receivedRequestStore = new ReceivedRequestRoomStore(getApplicationContext());
+ */
+
+import android.content.Context;
+
+import java.util.List;
+
+
+public class ReceivedRequestRoomStore implements ReceivedRequestStore {
+
+    // Local stuff...
+    private final Context appContext;
+    private final ReceivedRequestDatabaseClient receivedRequestDatabaseClient;
+
+    /** Constructor */
+    public ReceivedRequestRoomStore(Context appContext) {
+        this.appContext = appContext;
+        this.receivedRequestDatabaseClient = ReceivedRequestDatabaseClient.getInstance(appContext);
+    }
+
+    @Override
+    public void addRecord(String requestMethod, String requestPath, String requestProtocol, String userAgent, String contentType, byte[] body) {
+        receivedRequestDatabaseClient.addRecord(appContext, requestMethod, requestPath, requestProtocol, userAgent, contentType, body);
+    }
+
+    @Override
+    public List<ReceivedRequest> findUnprocessedReceivedRequests() {
+        return receivedRequestDatabaseClient.findUnprocessedReceivedRequests(appContext);
+    }
+
+    @Override
+    public void updateRecord(ReceivedRequest updatedReceivedRequest) {
+        receivedRequestDatabaseClient.updateRecord(appContext, updatedReceivedRequest);
+    }
+}
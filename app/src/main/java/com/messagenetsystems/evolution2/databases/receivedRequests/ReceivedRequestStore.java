@@ -0,0 +1,33 @@
+package com.messagenetsystems.evolution2.databases.receivedRequests;
+
+/* ReceivedRequestStore interface
+ *
+ * What the message pipeline needs from the received_requests store (saving requests, finding the unprocessed ones, and flagging them processed).
+ * Pipeline threads work with this (via PipelineStores), rather than reaching for ReceivedRequestDatabaseClient themselves,
+ * so the same pipeline may run on Room (ReceivedRequestRoomStore) or in memory (ReceivedRequestMemoryStore).
+ *
+ * Writes may be applied asynchronously (as the Room implementation does), so don't count on seeing them in a find right away.
+ *
+ * Usage example...
+ *  ReceivedRequestStore receivedRequestStore = PipelineStores.getInstance(appContext).getReceivedRequestStore();
+ *  List<ReceivedRequest> receivedRequests = receivedRequestStore.findUnprocessedReceivedRequests();
+ */
+
+import java.util.List;
+
+
+public interface ReceivedRequestStore {
+
+    /** Add a new received request (with STATUS_NEW, and timestamps assigned).
+     * @param body Request data/body bytes (UTF-8).
+     */
+    void addRecord(String requestMethod, String requestPath, String requestProtocol, String userAgent, String contentType, byte[] body);
+
+    /** Find all requests that haven't been processed yet.
+     * @return List of requests (or null if the find failed).
+     */
+    List<ReceivedRequest> findUnprocessedReceivedRequests();
+
+    /** Put a modified request back (matched by its ID). */
+    void updateRecord(ReceivedRequest updatedReceivedRequest);
+}
@@ -0,0 +1,231 @@
+package com.messagenetsystems.evolution2.models;
+
+/* ActiveMessageDigest
+ * Keeps track of the content hashes of this device's current active-message set, and an order-independent digest of it.
+ *
+ * The server re-sends its whole active-message set with each ping or command, so most pushes are exactly what we already have.
+ * With this, SocketConnWorkerThread can recognize such a push and just acknowledge it, without the journal, routing,
+ * de-duplication, and database work it would otherwise cost (so steady-state ingest cost follows change, not message count).
+ *
+ * How it works...
+ *  Each active message is represented by its content hash (ReceivedMessage.computeMessageJsonHash of the JSON it arrived as).
+ *  The digest is the XOR of those hashes, so it can be updated in O(1) as messages come and go, and doesn't depend on order.
+ *  It's reported in the pong ("msgDgst", as 16 hex digits), so the server may compare it with its own computation over the set it would send.
+ *  A push is recognized as no-change if either...
+ *   a) It carries an X-State-Digest header equal to our current digest (the server is telling us the set it's pushing is what we have), or
+ *   b) Its body's content hash is already in our active set (this one message is already here).
+ *  Only message pushes are checked (see ReceivedRequestRouter.isMessagePush); commands always get saved and processed.
+ *  A digest is never matched while our set is empty, or before the first reconcile has loaded every active message's hash,
+ *  since either way a digest of 0 (or a partial one) doesn't actually describe what we have.
+ *
+ * Maintenance...
+ *  Hashes are put as ReceivedMessageProcessor forwards messages, and removed as MessageDatabaseClient deletes them
+ *  (every delete, bulk ones included, once it's committed, by the UUIDs it left in the change-feed).
+ *  ReceivedMessageProcessor also reconciles this against the databases now and then, just in case.
+ *
+ * DEV-NOTE...
+ *  This has no Android dependencies, on purpose, so it may be exercised on a plain JVM.
+ *  All methods are static and thread-safe.
+ *  The server (backend/) does not send X-State-Digest yet, so for now only (b), the body content-hash check, is actually live.
+ *  Path (a) is ready for whenever it does (it would need to compute the same hashes, see ReceivedMessage.computeMessageJsonHash).
+ *
+ * Usage Example (is this push already here?):
+ *  if (ActiveMessageDigest.containsMessageJsonHash(ReceivedMessage.computeMessageJsonHash(body))) {
+ *      //acknowledge without processing
+ *  }
+ */
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+
+public class ActiveMessageDigest {
+
+    // Constants...
+    private static final long RECONCILE_GRACE_MS = 60 * 1000;                                       //entries put more recently than this survive reconciliation (their DB writes may still be in flight)
+
+    // Local stuff...
+    private static final Object lock = new Object();
+    private static final HashMap<String, Entry> entriesByUUID = new HashMap<String, Entry>();         //keyed by message UUID
+    private static final HashMap<Long, Integer> countsByHash = new HashMap<Long, Integer>();          //how many active messages have each hash (normally just one)
+    private static volatile long digest = 0;
+    private static volatile long version = 0;                                                       //bumped on every change (so others may cheaply tell if they need to look again)
+    private static volatile boolean isLoaded = false;                                               //whether the last reconcile found a hash for every active message (until then, the digest doesn't describe our set)
+
+    private static class Entry {
+        final long messageJsonHash;
+        final long putAtMS;
+
+        Entry(long messageJsonHash, long putAtMS) {
+            this.messageJsonHash = messageJsonHash;
+            this.putAtMS = putAtMS;
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Main Methods */
+
+    /** Note that a message is active (or update its hash, if it was already).
+     * @param messageUUID Message UUID (as in the messages and received_messages DBs).
+     * @param messageJsonHash Content hash of the JSON the message arrived as (0 is taken to mean unknown, and ignored).
+     */
+    public static void put(String messageUUID, long messageJsonHash) {
+        if (messageUUID == null || messageJsonHash == 0) {
+            return;
+        }
+        synchronized (lock) {
+            Entry old = entriesByUUID.put(messageUUID, new Entry(messageJsonHash, System.currentTimeMillis()));
+            if (old != null) {
+                if (old.messageJsonHash == messageJsonHash) {
+                    return;
+                }
+                decrementHash(old.messageJsonHash);
+            }
+            incrementHash(messageJsonHash);
+            version++;
+        }
+    }
+
+    /** Note that a message is no longer active. */
+    public static void remove(String messageUUID) {
+        if (messageUUID == null) {
+            return;
+        }
+        synchronized (lock) {
+            Entry old = entriesByUUID.remove(messageUUID);
+            if (old != null) {
+                decrementHash(old.messageJsonHash);
+                version++;
+            }
+        }
+    }
+
+    /** Forget all messages (e.g. when all messages get cleared). */
+    public static void clear() {
+        synchronized (lock) {
+            entriesByUUID.clear();
+            countsByHash.clear();
+            digest = 0;
+            version++;
+        }
+    }
+
+    /** Bring us in line with what's actually in the databases.
+     * Entries whose message is no longer active are dropped (unless put very recently), and active messages we didn't know about are added.
+     * @param activeMessageUUIDs UUIDs of all currently active messages (from the messages DB).
+     * @param messageJsonHashesByUUID Content hashes we can get by UUID (from the received_messages DB), for any active messages we don't know about yet.
+     * @return Whether anything changed.
+     */
+    public static boolean reconcile(Set<String> activeMessageUUIDs, Map<String, Long> messageJsonHashesByUUID) {
+        final long now = System.currentTimeMillis();
+        final long versionBefore;
+
+        synchronized (lock) {
+            versionBefore = version;
+
+            Iterator<Map.Entry<String, Entry>> iterator = entriesByUUID.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> mapEntry = iterator.next();
+                if (!activeMessageUUIDs.contains(mapEntry.getKey())
+                        && now - mapEntry.getValue().putAtMS > RECONCILE_GRACE_MS) {
+                    decrementHash(mapEntry.getValue().messageJsonHash);
+                    iterator.remove();
+                    version++;
+                }
+            }
+
+            for (String messageUUID : activeMessageUUIDs) {
+                if (entriesByUUID.containsKey(messageUUID)) {
+                    continue;
+                }
+                Long messageJsonHash = messageJsonHashesByUUID.get(messageUUID);
+                if (messageJsonHash != null && messageJsonHash != 0) {
+                    entriesByUUID.put(messageUUID, new Entry(messageJsonHash, 0));
+                    incrementHash(messageJsonHash);
+                    version++;
+                }
+            }
+
+            // Only once we know every active message's hash does the digest actually describe our set
+            isLoaded = entriesByUUID.keySet().containsAll(activeMessageUUIDs);
+
+            return version != versionBefore;
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    /** Must hold lock. The digest only changes when a hash enters or leaves the set (not for repeats). */
+    private static void incrementHash(long messageJsonHash) {
+        Integer count = countsByHash.get(messageJsonHash);
+        if (count == null) {
+            countsByHash.put(messageJsonHash, 1);
+            digest ^= messageJsonHash;
+        } else {
+            countsByHash.put(messageJsonHash, count + 1);
+        }
+    }
+
+    /** Must hold lock. */
+    private static void decrementHash(long messageJsonHash) {
+        Integer count = countsByHash.get(messageJsonHash);
+        if (count == null) {
+            return;
+        }
+        if (count <= 1) {
+            countsByHash.remove(messageJsonHash);
+            digest ^= messageJsonHash;
+        } else {
+            countsByHash.put(messageJsonHash, count - 1);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Getter Methods */
+
+    /** Whether a message with the given content hash is already active. */
+    public static boolean containsMessageJsonHash(long messageJsonHash) {
+        synchronized (lock) {
+            return countsByHash.containsKey(messageJsonHash);
+        }
+    }
+
+    /** Whether the given digest (as 16 hex digits, like in our pong) matches our current active-message set.
+     * Never true while the set is empty or not yet loaded (a push then can't be known to change nothing). */
+    public static boolean matchesDigest(String digestHex) {
+        if (digestHex == null || digestHex.length() == 0) {
+            return false;
+        }
+        synchronized (lock) {
+            if (!isLoaded || entriesByUUID.isEmpty()) {
+                return false;
+            }
+            return getDigestHex().equalsIgnoreCase(digestHex.trim());
+        }
+    }
+
+    public static long getDigest() {
+        return digest;
+    }
+
+    public static String getDigestHex() {
+        return String.format(Locale.US, "%016x", digest);
+    }
+
+    public static long getVersion() {
+        return version;
+    }
+
+    public static int size() {
+        synchronized (lock) {
+            return entriesByUUID.size();
+        }
+    }
+}
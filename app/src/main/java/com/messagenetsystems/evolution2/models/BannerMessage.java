@@ -24,11 +24,9 @@ package com.messagenetsystems.evolution2.models;
  */
 
 import android.content.Context;
-import android.content.res.Resources;
 import android.util.Log;
 
 import com.bosphere.filelogger.FL;
-import com.messagenetsystems.evolution2.R;
 import com.messagenetsystems.evolution2.utilities.DatetimeUtils;
 import com.messagenetsystems.evolution2.utilities.PlatformUtilsMessageNet;
 
@@ -38,6 +36,7 @@ import org.json.JSONObject;
 
 import java.lang.reflect.Field;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.UUID;
 
 public class BannerMessage {
@@ -56,52 +55,9 @@ public class BannerMessage {
     private int logMethod = LOG_METHOD_LOGCAT;
 
     // Local stuff...
-    private String BANNMSGFIELDNAME_JSON_ZXRECNO;
-    private String BANNMSGFIELDNAME_JSON_RECDTSEC;
-    private String BANNMSGFIELDNAME_JSON_DURATION;
-    private String BANNMSGFIELDNAME_JSON_MSGTYPE;
-    private String BANNMSGFIELDNAME_JSON_MSGTEXT;
-    private String BANNMSGFIELDNAME_JSON_MSGDETAILS;
-    private String BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION;
-    private String BANNMSGFIELDNAME_JSON_FLASHERDURATION;
-    private String BANNMSGFIELDNAME_JSON_LIGHTSIGNAL;
-    private String BANNMSGFIELDNAME_JSON_LIGHTDURATION;
-    private String BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN;
-    private String BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE;
-    private String BANNMSGFIELDNAME_JSON_VISIBLETIME;
-    private String BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY;
-    private String BANNMSGFIELDNAME_JSON_VISIBLEDURATION;
-    private String BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION;
-    private String BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH;
-    private String BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN;
-    private String BANNMSGFIELDNAME_JSON_PADELIVERYMODE;
-    private String BANNMSGFIELDNAME_JSON_AUDIOREPEAT;
-    private String BANNMSGFIELDNAME_JSON_SPEED;
-    private String BANNMSGFIELDNAME_JSON_PRIORITY;
-    private String BANNMSGFIELDNAME_JSON_EXPIREPRIORITY;
-    private String BANNMSGFIELDNAME_JSON_PRIORITYDURATION;
-    private String BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH;
-    private String BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE;
-    private String BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE;
-    private String BANNMSGFIELDNAME_JSON_WEBPAGEURL;
-    private String BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW;
-    private String BANNMSGFIELDNAME_JSON_AUDIOGROUPS;
-    private String BANNMSGFIELDNAME_JSON_MMAUDIOGAIN;
-    //private String BANNMSGFIELDNAME_JSON_MMREPLAYS;
-    private String BANNMSGFIELDNAME_JSON_SEQNUM;
-    private String BANNMSGFIELDNAME_JSON_LAUNCHPIN;
-    private String BANNMSGFIELDNAME_JSON_LAUNCHGENDER;
-    private String JSONFIELDNAME_LAUNCHDATETIME;
-    private String JSONFIELDNAME_LAUNCHDATETIME_DEVICE;
-    private String JSONFIELDNAME_EXPIREDATETIME;
-    private String JSONFIELDNAME_EXPIREDATETIME_DEVICE;
-    private String JSONFIELDNAME_AUDIOREPEATSREMAINING;
-    private String JSONFIELDNAME_UUIDLOCAL;
-    private String JSONFIELDNAME_DELIVERYCOUNT;
-    private String JSONFIELDNAME_LASTDELIVEREDDATETIME;
-    private String JSONFIELDNAME_ISBEINGDELIVERED;
-    private String JSONFIELDNAME_SCROLLCOUNT;
-    private String JSONFIELDNAME_VIDEOSEEKPOSITION;
+    private static DatetimeUtils datetimeUtils;                     //shared by all instances (it keeps no state of its own)
+    private static PlatformUtilsMessageNet platformUtilsMessageNet; //shared by all instances (it keeps no state of its own)
+    private final BannerMessageFields fields;                       //field names and constants (shared by all instances)
 
     public String MM_TYPE_NONE;
     public String MM_TYPE_MESSAGE;
@@ -117,60 +73,6 @@ public class BannerMessage {
 
     public String PA_AUDIO_REPEAT_NONSTOP;
 
-    private String SIGNALLIGHT_CMD_NONE;
-    private String SIGNALLIGHT_CMD_OFF;
-    private String SIGNALLIGHT_CMD_STANDBY;
-    private String SIGNALLIGHT_CMD_BLUE_DIM;
-    private String SIGNALLIGHT_CMD_BLUE_MED;
-    private String SIGNALLIGHT_CMD_BLUE_BRI;
-    private String SIGNALLIGHT_CMD_GREEN_DIM;
-    private String SIGNALLIGHT_CMD_GREEN_MED;
-    private String SIGNALLIGHT_CMD_GREEN_BRI;
-    private String SIGNALLIGHT_CMD_ORANGE_DIM;
-    private String SIGNALLIGHT_CMD_ORANGE_MED;
-    private String SIGNALLIGHT_CMD_ORANGE_BRI;
-    private String SIGNALLIGHT_CMD_PINK_DIM;
-    private String SIGNALLIGHT_CMD_PINK_MED;
-    private String SIGNALLIGHT_CMD_PINK_BRI;
-    private String SIGNALLIGHT_CMD_PURPLE_DIM;
-    private String SIGNALLIGHT_CMD_PURPLE_MED;
-    private String SIGNALLIGHT_CMD_PURPLE_BRI;
-    private String SIGNALLIGHT_CMD_RED_DIM;
-    private String SIGNALLIGHT_CMD_RED_MED;
-    private String SIGNALLIGHT_CMD_RED_BRI;
-    private String SIGNALLIGHT_CMD_WHITECOOL_DIM;
-    private String SIGNALLIGHT_CMD_WHITECOOL_MED;
-    private String SIGNALLIGHT_CMD_WHITECOOL_BRI;
-    private String SIGNALLIGHT_CMD_WHITEPURE_DIM;
-    private String SIGNALLIGHT_CMD_WHITEPURE_MED;
-    private String SIGNALLIGHT_CMD_WHITEPURE_BRI;
-    private String SIGNALLIGHT_CMD_WHITEWARM_DIM;
-    private String SIGNALLIGHT_CMD_WHITEWARM_MED;
-    private String SIGNALLIGHT_CMD_WHITEWARM_BRI;
-    private String SIGNALLIGHT_CMD_YELLOW_DIM;
-    private String SIGNALLIGHT_CMD_YELLOW_MED;
-    private String SIGNALLIGHT_CMD_YELLOW_BRI;
-    private String SIGNALLIGHT_CMD_FADING_BLUE;
-    private String SIGNALLIGHT_CMD_FADING_GREEN;
-    private String SIGNALLIGHT_CMD_FADING_ORANGE;
-    private String SIGNALLIGHT_CMD_FADING_PINK;
-    private String SIGNALLIGHT_CMD_FADING_PURPLE;
-    private String SIGNALLIGHT_CMD_FADING_RED;
-    private String SIGNALLIGHT_CMD_FADING_WHITECOOL;
-    private String SIGNALLIGHT_CMD_FADING_WHITEPURE;
-    private String SIGNALLIGHT_CMD_FADING_WHITEWARM;
-    private String SIGNALLIGHT_CMD_FADING_YELLOW;
-    private String SIGNALLIGHT_CMD_FLASHING_BLUE;
-    private String SIGNALLIGHT_CMD_FLASHING_GREEN;
-    private String SIGNALLIGHT_CMD_FLASHING_ORANGE;
-    private String SIGNALLIGHT_CMD_FLASHING_PINK;
-    private String SIGNALLIGHT_CMD_FLASHING_PURPLE;
-    private String SIGNALLIGHT_CMD_FLASHING_RED;
-    private String SIGNALLIGHT_CMD_FLASHING_WHITECOOL;
-    private String SIGNALLIGHT_CMD_FLASHING_WHITEPURE;
-    private String SIGNALLIGHT_CMD_FLASHING_WHITEWARM;
-    private String SIGNALLIGHT_CMD_FLASHING_YELLOW;
-
     // Initialize fields...
     // Note: these are public so they can be easily logged if necessary.
     public int recno = 0;
@@ -231,197 +133,27 @@ public class BannerMessage {
 
         this.logMethod = logMethod;
 
-        Resources resources = context.getResources();
-        DatetimeUtils datetimeUtils = new DatetimeUtils(context, DatetimeUtils.LOG_METHOD_FILELOGGER);
-        PlatformUtilsMessageNet platformUtilsMessageNet = new PlatformUtilsMessageNet(context, PlatformUtilsMessageNet.LOG_METHOD_FILELOGGER);
+        this.fields = BannerMessageFields.getInstance(context);
+        initSharedUtils(context);
 
         try {
-            // initialize some resources constants (just so they're easy to access from an instance without having to go get them from resources)
-            this.BANNMSGFIELDNAME_JSON_ZXRECNO = resources.getString(R.string.BANNMSGFIELDNAME_JSON_ZXRECNO);
-            this.BANNMSGFIELDNAME_JSON_RECDTSEC = resources.getString(R.string.BANNMSGFIELDNAME_JSON_RECDTSEC);
-            this.BANNMSGFIELDNAME_JSON_DURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_DURATION);
-            this.BANNMSGFIELDNAME_JSON_MSGTYPE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MSGTYPE);
-            this.BANNMSGFIELDNAME_JSON_MSGTEXT = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MSGTEXT);
-            this.BANNMSGFIELDNAME_JSON_MSGDETAILS = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MSGDETAILS);
-            this.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION);
-            this.BANNMSGFIELDNAME_JSON_FLASHERDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_FLASHERDURATION);
-            this.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL = resources.getString(R.string.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL);
-            this.BANNMSGFIELDNAME_JSON_LIGHTDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_LIGHTDURATION);
-            this.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN);
-            this.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE);
-            this.BANNMSGFIELDNAME_JSON_VISIBLETIME = resources.getString(R.string.BANNMSGFIELDNAME_JSON_VISIBLETIME);
-            this.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY = resources.getString(R.string.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY);
-            this.BANNMSGFIELDNAME_JSON_VISIBLEDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_VISIBLEDURATION);
-            this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION);
-            this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH = resources.getString(R.string.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH);
-            this.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN);
-            this.BANNMSGFIELDNAME_JSON_PADELIVERYMODE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PADELIVERYMODE);
-            this.BANNMSGFIELDNAME_JSON_AUDIOREPEAT = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIOREPEAT);
-            this.BANNMSGFIELDNAME_JSON_SPEED = resources.getString(R.string.BANNMSGFIELDNAME_JSON_SPEED);
-            this.BANNMSGFIELDNAME_JSON_PRIORITY = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PRIORITY);
-            this.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY = resources.getString(R.string.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY);
-            this.BANNMSGFIELDNAME_JSON_PRIORITYDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PRIORITYDURATION);
-            this.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH);
-            this.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE);
-            this.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE);
-            this.BANNMSGFIELDNAME_JSON_WEBPAGEURL = resources.getString(R.string.BANNMSGFIELDNAME_JSON_WEBPAGEURL);
-            this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW);
-            this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIOGROUPS);
-            this.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN);
-            //this.BANNMSGFIELDNAME_JSON_MMREPLAYS = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MMREPLAYS);
-            this.BANNMSGFIELDNAME_JSON_SEQNUM = resources.getString(R.string.BANNMSGFIELDNAME_JSON_SEQNUM);
-            this.BANNMSGFIELDNAME_JSON_LAUNCHPIN = resources.getString(R.string.BANNMSGFIELDNAME_JSON_LAUNCHPIN);
-            this.BANNMSGFIELDNAME_JSON_LAUNCHGENDER = resources.getString(R.string.BANNMSGFIELDNAME_JSON_LAUNCHGENDER);
-            this.JSONFIELDNAME_LAUNCHDATETIME = resources.getString(R.string.JSONFIELDNAME_LAUNCHDATETIME);
-            this.JSONFIELDNAME_LAUNCHDATETIME_DEVICE = resources.getString(R.string.JSONFIELDNAME_LAUNCHDATETIME_DEVICE);
-            this.JSONFIELDNAME_EXPIREDATETIME = resources.getString(R.string.JSONFIELDNAME_EXPIREDATETIME);
-            this.JSONFIELDNAME_EXPIREDATETIME_DEVICE = resources.getString(R.string.JSONFIELDNAME_EXPIREDATETIME_DEVICE);
-            this.JSONFIELDNAME_AUDIOREPEATSREMAINING = resources.getString(R.string.JSONFIELDNAME_AUDIOREPEATSREMAINING);
-            this.JSONFIELDNAME_UUIDLOCAL = resources.getString(R.string.JSONFIELDNAME_UUIDLOCAL);
-            this.JSONFIELDNAME_DELIVERYCOUNT = resources.getString(R.string.JSONFIELDNAME_DELIVERYCOUNT);
-            this.JSONFIELDNAME_LASTDELIVEREDDATETIME = resources.getString(R.string.JSONFIELDNAME_LASTDELIVEREDDATETIME);
-            this.JSONFIELDNAME_ISBEINGDELIVERED = resources.getString(R.string.JSONFIELDNAME_ISBEINGDELIVERED);
-            this.JSONFIELDNAME_SCROLLCOUNT = resources.getString(R.string.JSONFIELDNAME_SCROLLCOUNT);
-            this.JSONFIELDNAME_VIDEOSEEKPOSITION = resources.getString(R.string.JSONFIELDNAME_VIDEOSEEKPOSITION);
-
-            this.MM_TYPE_NONE = resources.getString(R.string.MM_TYPE_NONE);
-            this.MM_TYPE_MESSAGE = resources.getString(R.string.MM_TYPE_MESSAGE);
-            this.MM_TYPE_MESSAGEFS = resources.getString(R.string.MM_TYPE_MESSAGEFS);
-            this.MM_TYPE_WEBPAGE = resources.getString(R.string.MM_TYPE_WEBPAGE);
-            this.MM_TYPE_VIDEO = resources.getString(R.string.MM_TYPE_VIDEO);
-            this.MM_TYPE_PICTURE = resources.getString(R.string.MM_TYPE_PICTURE);
-            this.MM_TYPE_PICTURETEXT = resources.getString(R.string.MM_TYPE_PICTURETEXT);
-            this.MM_TYPE_WEBMEDIA = resources.getString(R.string.MM_TYPE_WEBMEDIA);
-            this.MM_TYPE_LCDLOCATIONMAP = resources.getString(R.string.MM_TYPE_LCDLOCATIONMAP);
-            this.MM_TYPE_GEOLOCATIONMAP = resources.getString(R.string.MM_TYPE_GEOLOCATIONMAP);
-            this.MM_TYPE_RTSPSTREAM = resources.getString(R.string.MM_TYPE_RTSPSTREAM);
-
-            this.PA_AUDIO_REPEAT_NONSTOP = resources.getString(R.string.PA_AUDIO_REPEAT_NONSTOP);
-
-            this.SIGNALLIGHT_CMD_NONE = resources.getString(R.string.SIGNALLIGHT_CMD_NONE);
-            this.SIGNALLIGHT_CMD_OFF = resources.getString(R.string.SIGNALLIGHT_CMD_OFF);
-            this.SIGNALLIGHT_CMD_STANDBY = resources.getString(R.string.SIGNALLIGHT_CMD_STANDBY);
-            this.SIGNALLIGHT_CMD_BLUE_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_BLUE_DIM);
-            this.SIGNALLIGHT_CMD_BLUE_MED = resources.getString(R.string.SIGNALLIGHT_CMD_BLUE_MED);
-            this.SIGNALLIGHT_CMD_BLUE_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_BLUE_BRI);
-            this.SIGNALLIGHT_CMD_GREEN_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_GREEN_DIM);
-            this.SIGNALLIGHT_CMD_GREEN_MED = resources.getString(R.string.SIGNALLIGHT_CMD_GREEN_MED);
-            this.SIGNALLIGHT_CMD_GREEN_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_GREEN_BRI);
-            this.SIGNALLIGHT_CMD_ORANGE_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_ORANGE_DIM);
-            this.SIGNALLIGHT_CMD_ORANGE_MED = resources.getString(R.string.SIGNALLIGHT_CMD_ORANGE_MED);
-            this.SIGNALLIGHT_CMD_ORANGE_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_ORANGE_BRI);
-            this.SIGNALLIGHT_CMD_PINK_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_PINK_DIM);
-            this.SIGNALLIGHT_CMD_PINK_MED = resources.getString(R.string.SIGNALLIGHT_CMD_PINK_MED);
-            this.SIGNALLIGHT_CMD_PINK_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_PINK_BRI);
-            this.SIGNALLIGHT_CMD_PURPLE_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_PURPLE_DIM);
-            this.SIGNALLIGHT_CMD_PURPLE_MED = resources.getString(R.string.SIGNALLIGHT_CMD_PURPLE_MED);
-            this.SIGNALLIGHT_CMD_PURPLE_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_PURPLE_BRI);
-            this.SIGNALLIGHT_CMD_RED_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_RED_DIM);
-            this.SIGNALLIGHT_CMD_RED_MED = resources.getString(R.string.SIGNALLIGHT_CMD_RED_MED);
-            this.SIGNALLIGHT_CMD_RED_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_RED_BRI);
-            this.SIGNALLIGHT_CMD_WHITECOOL_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_WHITECOOL_DIM);
-            this.SIGNALLIGHT_CMD_WHITECOOL_MED = resources.getString(R.string.SIGNALLIGHT_CMD_WHITECOOL_MED);
-            this.SIGNALLIGHT_CMD_WHITECOOL_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_WHITECOOL_BRI);
-            this.SIGNALLIGHT_CMD_WHITEPURE_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEPURE_DIM);
-            this.SIGNALLIGHT_CMD_WHITEPURE_MED = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEPURE_MED);
-            this.SIGNALLIGHT_CMD_WHITEPURE_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEPURE_BRI);
-            this.SIGNALLIGHT_CMD_WHITEWARM_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEWARM_DIM);
-            this.SIGNALLIGHT_CMD_WHITEWARM_MED = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEWARM_MED);
-            this.SIGNALLIGHT_CMD_WHITEWARM_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEWARM_BRI);
-            this.SIGNALLIGHT_CMD_YELLOW_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_YELLOW_DIM);
-            this.SIGNALLIGHT_CMD_YELLOW_MED = resources.getString(R.string.SIGNALLIGHT_CMD_YELLOW_MED);
-            this.SIGNALLIGHT_CMD_YELLOW_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_YELLOW_BRI);
-            this.SIGNALLIGHT_CMD_FADING_BLUE = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_BLUE);
-            this.SIGNALLIGHT_CMD_FADING_GREEN = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_GREEN);
-            this.SIGNALLIGHT_CMD_FADING_ORANGE = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_ORANGE);
-            this.SIGNALLIGHT_CMD_FADING_PINK = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_PINK);
-            this.SIGNALLIGHT_CMD_FADING_PURPLE = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_PURPLE);
-            this.SIGNALLIGHT_CMD_FADING_RED = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_RED);
-            this.SIGNALLIGHT_CMD_FADING_WHITECOOL = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_WHITECOOL);
-            this.SIGNALLIGHT_CMD_FADING_WHITEPURE = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_WHITEPURE);
-            this.SIGNALLIGHT_CMD_FADING_WHITEWARM = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_WHITEWARM);
-            this.SIGNALLIGHT_CMD_FADING_YELLOW = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_YELLOW);
-            this.SIGNALLIGHT_CMD_FLASHING_BLUE = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_BLUE);
-            this.SIGNALLIGHT_CMD_FLASHING_GREEN = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_GREEN);
-            this.SIGNALLIGHT_CMD_FLASHING_ORANGE = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_ORANGE);
-            this.SIGNALLIGHT_CMD_FLASHING_PINK = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_PINK);
-            this.SIGNALLIGHT_CMD_FLASHING_PURPLE = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_PURPLE);
-            this.SIGNALLIGHT_CMD_FLASHING_RED = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_RED);
-            this.SIGNALLIGHT_CMD_FLASHING_WHITECOOL = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_WHITECOOL);
-            this.SIGNALLIGHT_CMD_FLASHING_WHITEPURE = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_WHITEPURE);
-            this.SIGNALLIGHT_CMD_FLASHING_WHITEWARM = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_WHITEWARM);
-            this.SIGNALLIGHT_CMD_FLASHING_YELLOW = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_YELLOW);
-
-            // grab all the raw data from the provided JSON object
-            try {this.recno = msg.getInt(this.BANNMSGFIELDNAME_JSON_ZXRECNO);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_rec_dtsec = msg.getString(this.BANNMSGFIELDNAME_JSON_RECDTSEC);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_duration = msg.getInt(this.BANNMSGFIELDNAME_JSON_DURATION);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.msgType = msg.getString(this.BANNMSGFIELDNAME_JSON_MSGTYPE);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.msgText = msg.getString(this.BANNMSGFIELDNAME_JSON_MSGTEXT);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.msgDetails = msg.getString(this.BANNMSGFIELDNAME_JSON_MSGDETAILS);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_playtime_duration = msg.getLong(this.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_flasher_duration = msg.getInt(this.BANNMSGFIELDNAME_JSON_FLASHERDURATION);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_light_signal = msg.getString(this.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_light_duration = msg.getInt(this.BANNMSGFIELDNAME_JSON_LIGHTDURATION);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_audio_tts_gain = msg.getInt(this.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_flash_new_message = msg.getString(this.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_visible_time = msg.getString(this.BANNMSGFIELDNAME_JSON_VISIBLETIME);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_visible_frequency = msg.getString(this.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_visible_duration = msg.getString(this.BANNMSGFIELDNAME_JSON_VISIBLEDURATION);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_record_voice_at_launch_selection = msg.getInt(this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_record_voice_at_launch = msg.getString(this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_audio_recorded_gain = msg.getInt(this.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_pa_delivery_mode = msg.getString(this.BANNMSGFIELDNAME_JSON_PADELIVERYMODE);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_audio_repeat = msg.getString(this.BANNMSGFIELDNAME_JSON_AUDIOREPEAT);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_speed = msg.getInt(this.BANNMSGFIELDNAME_JSON_SPEED);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_priority = msg.getInt(this.BANNMSGFIELDNAME_JSON_PRIORITY);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_expire_priority = msg.getInt(this.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_priority_duration = msg.getLong(this.BANNMSGFIELDNAME_JSON_PRIORITYDURATION);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_page_priority_at_launch = msg.getInt(this.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_priority_tolerance = msg.getInt(this.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.multimediatype = msg.getString(this.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.webpageurl = msg.getString(this.BANNMSGFIELDNAME_JSON_WEBPAGEURL);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dsi_audio_group_name = msg.getJSONArray(this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_audio_groups = msg.getJSONArray(this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_multimedia_audio_gain = msg.getInt(this.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            //this.dbb_replay_media = msg.getString(this.BANNMSGFIELDNAME_JSON_MMREPLAYS);
-            try {this.sequence_number = msg.getInt(this.BANNMSGFIELDNAME_JSON_SEQNUM);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dbb_launch_pin = msg.getString(this.BANNMSGFIELDNAME_JSON_LAUNCHPIN);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
-            try {this.dss_gender = msg.getString(this.BANNMSGFIELDNAME_JSON_LAUNCHGENDER);} catch (JSONException e) {
-                logW("Exception caught trying to parse JSON value. Using initialized value instead. ("+e.getMessage()+")");}
+            // initialize some public constants (from the shared table, so they're easy to access from an instance)
+            this.MM_TYPE_NONE = fields.MM_TYPE_NONE;
+            this.MM_TYPE_MESSAGE = fields.MM_TYPE_MESSAGE;
+            this.MM_TYPE_MESSAGEFS = fields.MM_TYPE_MESSAGEFS;
+            this.MM_TYPE_WEBPAGE = fields.MM_TYPE_WEBPAGE;
+            this.MM_TYPE_VIDEO = fields.MM_TYPE_VIDEO;
+            this.MM_TYPE_PICTURE = fields.MM_TYPE_PICTURE;
+            this.MM_TYPE_PICTURETEXT = fields.MM_TYPE_PICTURETEXT;
+            this.MM_TYPE_WEBMEDIA = fields.MM_TYPE_WEBMEDIA;
+            this.MM_TYPE_LCDLOCATIONMAP = fields.MM_TYPE_LCDLOCATIONMAP;
+            this.MM_TYPE_GEOLOCATIONMAP = fields.MM_TYPE_GEOLOCATIONMAP;
+            this.MM_TYPE_RTSPSTREAM = fields.MM_TYPE_RTSPSTREAM;
+
+            this.PA_AUDIO_REPEAT_NONSTOP = fields.PA_AUDIO_REPEAT_NONSTOP;
+
+            // grab all the raw data from the provided JSON object (anything it doesn't have keeps its initialized value)
+            bindFields(msg);
 
             // validate and fix any raw data necessary
             //if (this.dbb_audio_repeat.equals(this.PA_AUDIO_REPEAT_NONSTOP)) this.dbb_audio_repeat
@@ -433,7 +165,7 @@ public class BannerMessage {
             // calculate anything else needed, from the data acquired above
             this.dtLaunch = platformUtilsMessageNet.calculateDate_fromServerDTSEC(Long.parseLong(this.dbb_rec_dtsec));
             try {
-                this.dtLaunch_device = datetimeUtils.getDateFromString(msg.get(this.JSONFIELDNAME_LAUNCHDATETIME_DEVICE).toString());
+                this.dtLaunch_device = datetimeUtils.getDateFromString(msg.get(fields.JSONFIELDNAME_LAUNCHDATETIME_DEVICE).toString());
             } catch (Exception e) {
                 logW("WARNING: JSONFIELDNAME_LAUNCHDATETIME_DEVICE not provided. Provide it as close to receipt of launch data as possible. Adding here and now, automatically.");
                 logV("Ex.)  bannMsg_json_newest.put(getApplicationContext().getResources().getString(R.string.JSONFIELDNAME_LAUNCHDATETIME_DEVICE), new Date().toString());");
@@ -484,6 +216,72 @@ public class BannerMessage {
         }
     }//end constructor
 
+    /** Create the utilities that all instances share, if they haven't been yet. */
+    private static synchronized void initSharedUtils(Context context) {
+        if (datetimeUtils == null) {
+            datetimeUtils = new DatetimeUtils(context.getApplicationContext(), DatetimeUtils.LOG_METHOD_FILELOGGER);
+        }
+        if (platformUtilsMessageNet == null) {
+            platformUtilsMessageNet = new PlatformUtilsMessageNet(context.getApplicationContext(), PlatformUtilsMessageNet.LOG_METHOD_FILELOGGER);
+        }
+    }
+
+    /** Bind the provided message JSON's values to our fields, in one pass over its keys.
+     * Each key is looked up (once) in the shared table, and its value read with the getter for its field's type (same as ever).
+     * Keys we don't read in are skipped, and fields the JSON doesn't have simply keep their initialized values.
+     * @param msg Message JSON (as from the server).
+     */
+    void bindFields(JSONObject msg) {
+        final String TAGG = "bindFields: ";
+
+        Iterator<String> keys = msg.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            try {
+                switch (fields.getFieldId(key)) {
+                    case BannerMessageFields.FIELD_ZXRECNO: this.recno = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_RECDTSEC: this.dbb_rec_dtsec = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_DURATION: this.dbb_duration = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_MSGTYPE: this.msgType = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_MSGTEXT: this.msgText = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_MSGDETAILS: this.msgDetails = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_PLAYTIMEDURATION: this.dbb_playtime_duration = msg.getLong(key); break;
+                    case BannerMessageFields.FIELD_FLASHERDURATION: this.dbb_flasher_duration = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_LIGHTSIGNAL: this.dbb_light_signal = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_LIGHTDURATION: this.dbb_light_duration = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_AUDIOTTSGAIN: this.dbb_audio_tts_gain = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_FLASHNEWMESSAGE: this.dbb_flash_new_message = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_VISIBLETIME: this.dbb_visible_time = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_VISIBLEFREQUENCY: this.dbb_visible_frequency = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_VISIBLEDURATION: this.dbb_visible_duration = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_RECORDVOICEATLAUNCHSELECTION: this.dbb_record_voice_at_launch_selection = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_RECORDVOICEATLAUNCH: this.dbb_record_voice_at_launch = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_AUDIORECORDEDGAIN: this.dbb_audio_recorded_gain = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_PADELIVERYMODE: this.dbb_pa_delivery_mode = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_AUDIOREPEAT: this.dbb_audio_repeat = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_SPEED: this.dbb_speed = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_PRIORITY: this.dbb_priority = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_EXPIREPRIORITY: this.dbb_expire_priority = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_PRIORITYDURATION: this.dbb_priority_duration = msg.getLong(key); break;
+                    case BannerMessageFields.FIELD_PRIORITYATLAUNCH: this.dbb_page_priority_at_launch = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_PRIORITYTOLERANCE: this.dbb_priority_tolerance = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_MULTIMEDIATYPE: this.multimediatype = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_WEBPAGEURL: this.webpageurl = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_AUDIOGROUPS_HW: this.dsi_audio_group_name = msg.getJSONArray(key); break;
+                    case BannerMessageFields.FIELD_AUDIOGROUPS: this.dbb_audio_groups = msg.getJSONArray(key); break;
+                    case BannerMessageFields.FIELD_MMAUDIOGAIN: this.dbb_multimedia_audio_gain = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_SEQNUM: this.sequence_number = msg.getInt(key); break;
+                    case BannerMessageFields.FIELD_LAUNCHPIN: this.dbb_launch_pin = msg.getString(key); break;
+                    case BannerMessageFields.FIELD_LAUNCHGENDER: this.dss_gender = msg.getString(key); break;
+                    //case BannerMessageFields.FIELD_MMREPLAYS: this.dbb_replay_media = msg.getString(key); break;
+                    default: break;
+                }
+            } catch (JSONException e) {
+                logW(TAGG+"Exception caught trying to parse JSON value for \""+key+"\". Using initialized value instead. ("+e.getMessage()+")");
+            }
+        }
+    }
+
     private boolean isNumeric(String strNum) {
         try {
             double d = Double.parseDouble(strNum);
@@ -516,52 +314,52 @@ public class BannerMessage {
         final String TAGG = "exportJSONObject: ";
         JSONObject oj = new JSONObject();
         try {
-            oj.put(this.BANNMSGFIELDNAME_JSON_ZXRECNO, this.recno);
-            oj.put(this.BANNMSGFIELDNAME_JSON_RECDTSEC, this.dbb_rec_dtsec);
-            oj.put(this.BANNMSGFIELDNAME_JSON_DURATION, this.dbb_duration);
-            oj.put(this.BANNMSGFIELDNAME_JSON_MSGTYPE, this.msgType);
-            oj.put(this.BANNMSGFIELDNAME_JSON_MSGTEXT, this.msgText);
-            oj.put(this.BANNMSGFIELDNAME_JSON_MSGDETAILS, this.msgDetails);
-            oj.put(this.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION, this.dbb_playtime_duration);
-            oj.put(this.BANNMSGFIELDNAME_JSON_FLASHERDURATION, this.dbb_flasher_duration);
-            oj.put(this.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL, this.dbb_light_signal);
-            oj.put(this.BANNMSGFIELDNAME_JSON_LIGHTDURATION, this.dbb_light_duration);
-            oj.put(this.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN, this.dbb_audio_tts_gain);
-            oj.put(this.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE, this.dbb_flash_new_message);
-            oj.put(this.BANNMSGFIELDNAME_JSON_VISIBLETIME, this.dbb_visible_time);
-            oj.put(this.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY, this.dbb_visible_frequency);
-            oj.put(this.BANNMSGFIELDNAME_JSON_VISIBLEDURATION, this.dbb_visible_duration);
-            oj.put(this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION, this.dbb_record_voice_at_launch_selection);
-            oj.put(this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH, this.dbb_record_voice_at_launch);
-            oj.put(this.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN, this.dbb_audio_recorded_gain);
-            oj.put(this.BANNMSGFIELDNAME_JSON_PADELIVERYMODE, this.dbb_pa_delivery_mode);
-            oj.put(this.BANNMSGFIELDNAME_JSON_AUDIOREPEAT, this.dbb_audio_repeat);
-            oj.put(this.BANNMSGFIELDNAME_JSON_SPEED, this.dbb_speed);
-            oj.put(this.BANNMSGFIELDNAME_JSON_PRIORITY, this.dbb_priority);
-            oj.put(this.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY, this.dbb_expire_priority);
-            oj.put(this.BANNMSGFIELDNAME_JSON_PRIORITYDURATION, this.dbb_priority_duration);
-            oj.put(this.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH, this.dbb_page_priority_at_launch);
-            oj.put(this.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE, this.dbb_priority_tolerance);
-            oj.put(this.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE, this.multimediatype);
-            oj.put(this.BANNMSGFIELDNAME_JSON_WEBPAGEURL, this.webpageurl);
-            oj.put(this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW, this.dsi_audio_group_name);
-            oj.put(this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS, this.dbb_audio_groups);
-            oj.put(this.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN, this.dbb_multimedia_audio_gain);
-            //oj.put(this.BANNMSGFIELDNAME_JSON_MMREPLAYS, this.dbb_replay_media);
-            oj.put(this.BANNMSGFIELDNAME_JSON_LAUNCHPIN, this.dbb_launch_pin);
-            oj.put(this.BANNMSGFIELDNAME_JSON_LAUNCHGENDER, this.dss_gender);
-
-            oj.put(this.JSONFIELDNAME_LAUNCHDATETIME, this.dtLaunch);
-            oj.put(this.JSONFIELDNAME_LAUNCHDATETIME_DEVICE, this.dtLaunch_device);
-            oj.put(this.JSONFIELDNAME_EXPIREDATETIME, this.dtExpiration);
-            oj.put(this.JSONFIELDNAME_EXPIREDATETIME_DEVICE, this.dtExpiration_device);
-            oj.put(this.JSONFIELDNAME_AUDIOREPEATSREMAINING, this.audioRepeatsRemaining);
-            oj.put(this.JSONFIELDNAME_UUIDLOCAL, this.uuid_local);
-            oj.put(this.JSONFIELDNAME_DELIVERYCOUNT, this.deliveryCount);
-            oj.put(this.JSONFIELDNAME_LASTDELIVEREDDATETIME, this.dtLastDelivered);
-            oj.put(this.JSONFIELDNAME_ISBEINGDELIVERED, this.isBeingDelivered);
-            oj.put(this.JSONFIELDNAME_SCROLLCOUNT, this.scrollCount);
-            oj.put(this.JSONFIELDNAME_VIDEOSEEKPOSITION, this.videoSeekPosition);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_ZXRECNO, this.recno);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_RECDTSEC, this.dbb_rec_dtsec);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_DURATION, this.dbb_duration);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_MSGTYPE, this.msgType);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_MSGTEXT, this.msgText);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_MSGDETAILS, this.msgDetails);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION, this.dbb_playtime_duration);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_FLASHERDURATION, this.dbb_flasher_duration);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL, this.dbb_light_signal);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_LIGHTDURATION, this.dbb_light_duration);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN, this.dbb_audio_tts_gain);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE, this.dbb_flash_new_message);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_VISIBLETIME, this.dbb_visible_time);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY, this.dbb_visible_frequency);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_VISIBLEDURATION, this.dbb_visible_duration);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION, this.dbb_record_voice_at_launch_selection);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH, this.dbb_record_voice_at_launch);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN, this.dbb_audio_recorded_gain);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_PADELIVERYMODE, this.dbb_pa_delivery_mode);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_AUDIOREPEAT, this.dbb_audio_repeat);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_SPEED, this.dbb_speed);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_PRIORITY, this.dbb_priority);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY, this.dbb_expire_priority);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_PRIORITYDURATION, this.dbb_priority_duration);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH, this.dbb_page_priority_at_launch);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE, this.dbb_priority_tolerance);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE, this.multimediatype);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_WEBPAGEURL, this.webpageurl);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW, this.dsi_audio_group_name);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_AUDIOGROUPS, this.dbb_audio_groups);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN, this.dbb_multimedia_audio_gain);
+            //oj.put(fields.BANNMSGFIELDNAME_JSON_MMREPLAYS, this.dbb_replay_media);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_LAUNCHPIN, this.dbb_launch_pin);
+            oj.put(fields.BANNMSGFIELDNAME_JSON_LAUNCHGENDER, this.dss_gender);
+
+            oj.put(fields.JSONFIELDNAME_LAUNCHDATETIME, this.dtLaunch);
+            oj.put(fields.JSONFIELDNAME_LAUNCHDATETIME_DEVICE, this.dtLaunch_device);
+            oj.put(fields.JSONFIELDNAME_EXPIREDATETIME, this.dtExpiration);
+            oj.put(fields.JSONFIELDNAME_EXPIREDATETIME_DEVICE, this.dtExpiration_device);
+            oj.put(fields.JSONFIELDNAME_AUDIOREPEATSREMAINING, this.audioRepeatsRemaining);
+            oj.put(fields.JSONFIELDNAME_UUIDLOCAL, this.uuid_local);
+            oj.put(fields.JSONFIELDNAME_DELIVERYCOUNT, this.deliveryCount);
+            oj.put(fields.JSONFIELDNAME_LASTDELIVEREDDATETIME, this.dtLastDelivered);
+            oj.put(fields.JSONFIELDNAME_ISBEINGDELIVERED, this.isBeingDelivered);
+            oj.put(fields.JSONFIELDNAME_SCROLLCOUNT, this.scrollCount);
+            oj.put(fields.JSONFIELDNAME_VIDEOSEEKPOSITION, this.videoSeekPosition);
 
         } catch (JSONException e) {
             logE(TAGG+"Exception caught trying to create JSONObject for export: "+e.getMessage());
@@ -575,14 +373,14 @@ public class BannerMessage {
         JSONObject dummyMessage = new JSONObject();
 
         try {
-            dummyMessage.put(this.BANNMSGFIELDNAME_JSON_MSGTYPE, "MESSAGE");
-            dummyMessage.put(this.BANNMSGFIELDNAME_JSON_MSGTEXT, "No Messages");
-            dummyMessage.put(this.BANNMSGFIELDNAME_JSON_MSGDETAILS, "No Messages");
-
-            dummyMessage.put(this.BANNMSGFIELDNAME_JSON_ZXRECNO, "0");
-            dummyMessage.put(this.BANNMSGFIELDNAME_JSON_RECDTSEC, String.valueOf(new Date().getTime()/1000));
-            dummyMessage.put(this.BANNMSGFIELDNAME_JSON_DURATION, "0");
-            dummyMessage.put(this.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION, "0");
+            dummyMessage.put(fields.BANNMSGFIELDNAME_JSON_MSGTYPE, "MESSAGE");
+            dummyMessage.put(fields.BANNMSGFIELDNAME_JSON_MSGTEXT, "No Messages");
+            dummyMessage.put(fields.BANNMSGFIELDNAME_JSON_MSGDETAILS, "No Messages");
+
+            dummyMessage.put(fields.BANNMSGFIELDNAME_JSON_ZXRECNO, "0");
+            dummyMessage.put(fields.BANNMSGFIELDNAME_JSON_RECDTSEC, String.valueOf(new Date().getTime()/1000));
+            dummyMessage.put(fields.BANNMSGFIELDNAME_JSON_DURATION, "0");
+            dummyMessage.put(fields.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION, "0");
         } catch (JSONException e) {
             logE(TAGG+"Caught exception during creation of dummy JSON message object: " + e.getMessage());
         }
@@ -655,62 +453,62 @@ public class BannerMessage {
         try {
             String nativeValue = this.dbb_light_signal;
 
-            if (nativeValue.equals(this.SIGNALLIGHT_CMD_NONE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_STANDBY)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_RED_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_RED_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_RED_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_BRI)) {
+            if (nativeValue.equals(fields.SIGNALLIGHT_CMD_NONE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_STANDBY)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_BRI)) {
                 ret = OmniMessage.FLASHER_MODE_STEADY;
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_OFF)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_OFF)) {
                 ret = OmniMessage.FLASHER_MODE_OFF;
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_BLUE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_GREEN)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_ORANGE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_PINK)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_PURPLE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_RED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITECOOL)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITEPURE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITEWARM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_YELLOW)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_BLUE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_GREEN)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_ORANGE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_PINK)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_PURPLE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_RED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITECOOL)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITEPURE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITEWARM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_YELLOW)) {
                 ret = OmniMessage.FLASHER_MODE_FADE;
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_BLUE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_GREEN)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_ORANGE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_PINK)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_PURPLE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_RED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITECOOL)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITEPURE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITEWARM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_YELLOW)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_BLUE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_GREEN)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_ORANGE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_PINK)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_PURPLE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_RED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITECOOL)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITEPURE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITEWARM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_YELLOW)) {
                 ret = OmniMessage.FLASHER_MODE_FLASH;
             } else {
                 logW(TAGG+"Unhandled legacy flasher value ("+nativeValue+").");
@@ -732,59 +530,59 @@ public class BannerMessage {
         try {
             String nativeValue = this.dbb_light_signal;
 
-            if (nativeValue.equals(this.SIGNALLIGHT_CMD_NONE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_OFF)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_STANDBY)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_RED_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_RED_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_RED_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_DIM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_MED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_BRI)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_BLUE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_GREEN)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_ORANGE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_PINK)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_PURPLE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_RED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITECOOL)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITEPURE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITEWARM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_YELLOW)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_BLUE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_GREEN)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_ORANGE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_PINK)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_PURPLE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_RED)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITECOOL)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITEPURE)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITEWARM)) {
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_YELLOW)) {
+            if (nativeValue.equals(fields.SIGNALLIGHT_CMD_NONE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_OFF)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_STANDBY)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_BLUE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_GREEN)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_ORANGE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_PINK)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_PURPLE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_RED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITECOOL)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITEPURE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITEWARM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_YELLOW)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_BLUE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_GREEN)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_ORANGE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_PINK)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_PURPLE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_RED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITECOOL)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITEPURE)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITEWARM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_YELLOW)) {
             } else {
                 logW(TAGG+"Unhandled legacy flasher value ("+nativeValue+").");
             }
@@ -805,65 +603,65 @@ public class BannerMessage {
         try {
             String nativeValue = this.dbb_light_signal;
 
-            if (nativeValue.equals(this.SIGNALLIGHT_CMD_NONE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_OFF)) {
+            if (nativeValue.equals(fields.SIGNALLIGHT_CMD_NONE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_OFF)) {
                 //TODO
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_STANDBY)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_STANDBY)) {
                 //TODO
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_RED_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_DIM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_DIM)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_DIM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_DIM)) {
                 ret = OmniMessage.FLASHER_BRIGHTNESS_MIN;
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_RED_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_MED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_MED)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_MED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_MED)) {
                 ret = OmniMessage.FLASHER_BRIGHTNESS_MED;
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_BLUE_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_GREEN_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_ORANGE_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PINK_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_PURPLE_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_RED_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITECOOL_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEPURE_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_WHITEWARM_BRI)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_YELLOW_BRI)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_BLUE_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_GREEN_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_ORANGE_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PINK_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_PURPLE_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_RED_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITECOOL_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEPURE_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_WHITEWARM_BRI)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_YELLOW_BRI)) {
                 ret = OmniMessage.FLASHER_BRIGHTNESS_MAX;
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_BLUE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_GREEN)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_ORANGE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_PINK)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_PURPLE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_RED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITECOOL)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITEPURE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_WHITEWARM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FADING_YELLOW)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_BLUE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_GREEN)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_ORANGE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_PINK)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_PURPLE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_RED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITECOOL)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITEPURE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_WHITEWARM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FADING_YELLOW)) {
                 ret = OmniMessage.FLASHER_BRIGHTNESS_MAX;
-            } else if (nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_BLUE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_GREEN)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_ORANGE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_PINK)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_PURPLE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_RED)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITECOOL)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITEPURE)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_WHITEWARM)
-                    || nativeValue.equals(this.SIGNALLIGHT_CMD_FLASHING_YELLOW)) {
+            } else if (nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_BLUE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_GREEN)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_ORANGE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_PINK)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_PURPLE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_RED)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITECOOL)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITEPURE)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_WHITEWARM)
+                    || nativeValue.equals(fields.SIGNALLIGHT_CMD_FLASHING_YELLOW)) {
                 ret = OmniMessage.FLASHER_BRIGHTNESS_MAX;
             } else {
                 logW(TAGG+"Unhandled legacy flasher value ("+nativeValue+").");
@@ -0,0 +1,372 @@
+package com.messagenetsystems.evolution2.models;
+
+/* BannerMessageFields
+ * The field names (JSON keys) and value constants that BannerMessage uses, loaded from resources once and shared by every instance.
+ * They used to be looked up from resources (over a hundred getString calls) every time a BannerMessage was constructed.
+ *
+ * Everything here is final and never changes once loaded, so it's safe to share across threads without locking.
+ * The strings are interned, so there's only ever one copy of each in memory (no matter how many messages we have).
+ *
+ * It also numbers the JSON fields that BannerMessage reads in (see FIELD_* and getFieldId), so BannerMessage can bind a
+ * message's values in one pass over its keys, with a switch, rather than a (throwing, if missing) lookup per field.
+ *
+ * Usage example...
+ *  BannerMessageFields fields = BannerMessageFields.getInstance(context);
+ *  String recnoKey = fields.BANNMSGFIELDNAME_JSON_ZXRECNO;
+ */
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.messagenetsystems.evolution2.R;
+
+import java.util.HashMap;
+
+
+public class BannerMessageFields {
+
+    // Constants...
+    // IDs of the JSON fields that BannerMessage binds (see getFieldId)
+    public static final int FIELD_UNKNOWN = 0;
+    public static final int FIELD_ZXRECNO = 1;
+    public static final int FIELD_RECDTSEC = 2;
+    public static final int FIELD_DURATION = 3;
+    public static final int FIELD_MSGTYPE = 4;
+    public static final int FIELD_MSGTEXT = 5;
+    public static final int FIELD_MSGDETAILS = 6;
+    public static final int FIELD_PLAYTIMEDURATION = 7;
+    public static final int FIELD_FLASHERDURATION = 8;
+    public static final int FIELD_LIGHTSIGNAL = 9;
+    public static final int FIELD_LIGHTDURATION = 10;
+    public static final int FIELD_AUDIOTTSGAIN = 11;
+    public static final int FIELD_FLASHNEWMESSAGE = 12;
+    public static final int FIELD_VISIBLETIME = 13;
+    public static final int FIELD_VISIBLEFREQUENCY = 14;
+    public static final int FIELD_VISIBLEDURATION = 15;
+    public static final int FIELD_RECORDVOICEATLAUNCHSELECTION = 16;
+    public static final int FIELD_RECORDVOICEATLAUNCH = 17;
+    public static final int FIELD_AUDIORECORDEDGAIN = 18;
+    public static final int FIELD_PADELIVERYMODE = 19;
+    public static final int FIELD_AUDIOREPEAT = 20;
+    public static final int FIELD_SPEED = 21;
+    public static final int FIELD_PRIORITY = 22;
+    public static final int FIELD_EXPIREPRIORITY = 23;
+    public static final int FIELD_PRIORITYDURATION = 24;
+    public static final int FIELD_PRIORITYATLAUNCH = 25;
+    public static final int FIELD_PRIORITYTOLERANCE = 26;
+    public static final int FIELD_MULTIMEDIATYPE = 27;
+    public static final int FIELD_WEBPAGEURL = 28;
+    public static final int FIELD_AUDIOGROUPS_HW = 29;
+    public static final int FIELD_AUDIOGROUPS = 30;
+    public static final int FIELD_MMAUDIOGAIN = 31;
+    public static final int FIELD_SEQNUM = 32;
+    public static final int FIELD_LAUNCHPIN = 33;
+    public static final int FIELD_LAUNCHGENDER = 34;
+
+    // Local stuff...
+    private static volatile BannerMessageFields mInstance;              //loaded once (maintains a static reference, like our singletons - gets returned via getInstance)
+    private final HashMap<String, Integer> fieldIdsByJSONKey;           //bound JSON fields' IDs, by their key (never changes once loaded, so it's safe to read from any thread)
+
+    // JSON field names (as the banner server sends them)...
+    public final String BANNMSGFIELDNAME_JSON_ZXRECNO;
+    public final String BANNMSGFIELDNAME_JSON_RECDTSEC;
+    public final String BANNMSGFIELDNAME_JSON_DURATION;
+    public final String BANNMSGFIELDNAME_JSON_MSGTYPE;
+    public final String BANNMSGFIELDNAME_JSON_MSGTEXT;
+    public final String BANNMSGFIELDNAME_JSON_MSGDETAILS;
+    public final String BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION;
+    public final String BANNMSGFIELDNAME_JSON_FLASHERDURATION;
+    public final String BANNMSGFIELDNAME_JSON_LIGHTSIGNAL;
+    public final String BANNMSGFIELDNAME_JSON_LIGHTDURATION;
+    public final String BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN;
+    public final String BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE;
+    public final String BANNMSGFIELDNAME_JSON_VISIBLETIME;
+    public final String BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY;
+    public final String BANNMSGFIELDNAME_JSON_VISIBLEDURATION;
+    public final String BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION;
+    public final String BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH;
+    public final String BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN;
+    public final String BANNMSGFIELDNAME_JSON_PADELIVERYMODE;
+    public final String BANNMSGFIELDNAME_JSON_AUDIOREPEAT;
+    public final String BANNMSGFIELDNAME_JSON_SPEED;
+    public final String BANNMSGFIELDNAME_JSON_PRIORITY;
+    public final String BANNMSGFIELDNAME_JSON_EXPIREPRIORITY;
+    public final String BANNMSGFIELDNAME_JSON_PRIORITYDURATION;
+    public final String BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH;
+    public final String BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE;
+    public final String BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE;
+    public final String BANNMSGFIELDNAME_JSON_WEBPAGEURL;
+    public final String BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW;
+    public final String BANNMSGFIELDNAME_JSON_AUDIOGROUPS;
+    public final String BANNMSGFIELDNAME_JSON_MMAUDIOGAIN;
+    public final String BANNMSGFIELDNAME_JSON_SEQNUM;
+    public final String BANNMSGFIELDNAME_JSON_LAUNCHPIN;
+    public final String BANNMSGFIELDNAME_JSON_LAUNCHGENDER;
+
+    // JSON field names (ours, for values we add or calculate)...
+    public final String JSONFIELDNAME_LAUNCHDATETIME;
+    public final String JSONFIELDNAME_LAUNCHDATETIME_DEVICE;
+    public final String JSONFIELDNAME_EXPIREDATETIME;
+    public final String JSONFIELDNAME_EXPIREDATETIME_DEVICE;
+    public final String JSONFIELDNAME_AUDIOREPEATSREMAINING;
+    public final String JSONFIELDNAME_UUIDLOCAL;
+    public final String JSONFIELDNAME_DELIVERYCOUNT;
+    public final String JSONFIELDNAME_LASTDELIVEREDDATETIME;
+    public final String JSONFIELDNAME_ISBEINGDELIVERED;
+    public final String JSONFIELDNAME_SCROLLCOUNT;
+    public final String JSONFIELDNAME_VIDEOSEEKPOSITION;
+
+    // Multimedia types...
+    public final String MM_TYPE_NONE;
+    public final String MM_TYPE_MESSAGE;
+    public final String MM_TYPE_MESSAGEFS;
+    public final String MM_TYPE_WEBPAGE;
+    public final String MM_TYPE_VIDEO;
+    public final String MM_TYPE_PICTURE;
+    public final String MM_TYPE_PICTURETEXT;
+    public final String MM_TYPE_WEBMEDIA;
+    public final String MM_TYPE_LCDLOCATIONMAP;
+    public final String MM_TYPE_GEOLOCATIONMAP;
+    public final String MM_TYPE_RTSPSTREAM;
+
+    // PA audio repeat values...
+    public final String PA_AUDIO_REPEAT_NONSTOP;
+
+    // Signal light commands...
+    public final String SIGNALLIGHT_CMD_NONE;
+    public final String SIGNALLIGHT_CMD_OFF;
+    public final String SIGNALLIGHT_CMD_STANDBY;
+    public final String SIGNALLIGHT_CMD_BLUE_DIM;
+    public final String SIGNALLIGHT_CMD_BLUE_MED;
+    public final String SIGNALLIGHT_CMD_BLUE_BRI;
+    public final String SIGNALLIGHT_CMD_GREEN_DIM;
+    public final String SIGNALLIGHT_CMD_GREEN_MED;
+    public final String SIGNALLIGHT_CMD_GREEN_BRI;
+    public final String SIGNALLIGHT_CMD_ORANGE_DIM;
+    public final String SIGNALLIGHT_CMD_ORANGE_MED;
+    public final String SIGNALLIGHT_CMD_ORANGE_BRI;
+    public final String SIGNALLIGHT_CMD_PINK_DIM;
+    public final String SIGNALLIGHT_CMD_PINK_MED;
+    public final String SIGNALLIGHT_CMD_PINK_BRI;
+    public final String SIGNALLIGHT_CMD_PURPLE_DIM;
+    public final String SIGNALLIGHT_CMD_PURPLE_MED;
+    public final String SIGNALLIGHT_CMD_PURPLE_BRI;
+    public final String SIGNALLIGHT_CMD_RED_DIM;
+    public final String SIGNALLIGHT_CMD_RED_MED;
+    public final String SIGNALLIGHT_CMD_RED_BRI;
+    public final String SIGNALLIGHT_CMD_WHITECOOL_DIM;
+    public final String SIGNALLIGHT_CMD_WHITECOOL_MED;
+    public final String SIGNALLIGHT_CMD_WHITECOOL_BRI;
+    public final String SIGNALLIGHT_CMD_WHITEPURE_DIM;
+    public final String SIGNALLIGHT_CMD_WHITEPURE_MED;
+    public final String SIGNALLIGHT_CMD_WHITEPURE_BRI;
+    public final String SIGNALLIGHT_CMD_WHITEWARM_DIM;
+    public final String SIGNALLIGHT_CMD_WHITEWARM_MED;
+    public final String SIGNALLIGHT_CMD_WHITEWARM_BRI;
+    public final String SIGNALLIGHT_CMD_YELLOW_DIM;
+    public final String SIGNALLIGHT_CMD_YELLOW_MED;
+    public final String SIGNALLIGHT_CMD_YELLOW_BRI;
+    public final String SIGNALLIGHT_CMD_FADING_BLUE;
+    public final String SIGNALLIGHT_CMD_FADING_GREEN;
+    public final String SIGNALLIGHT_CMD_FADING_ORANGE;
+    public final String SIGNALLIGHT_CMD_FADING_PINK;
+    public final String SIGNALLIGHT_CMD_FADING_PURPLE;
+    public final String SIGNALLIGHT_CMD_FADING_RED;
+    public final String SIGNALLIGHT_CMD_FADING_WHITECOOL;
+    public final String SIGNALLIGHT_CMD_FADING_WHITEPURE;
+    public final String SIGNALLIGHT_CMD_FADING_WHITEWARM;
+    public final String SIGNALLIGHT_CMD_FADING_YELLOW;
+    public final String SIGNALLIGHT_CMD_FLASHING_BLUE;
+    public final String SIGNALLIGHT_CMD_FLASHING_GREEN;
+    public final String SIGNALLIGHT_CMD_FLASHING_ORANGE;
+    public final String SIGNALLIGHT_CMD_FLASHING_PINK;
+    public final String SIGNALLIGHT_CMD_FLASHING_PURPLE;
+    public final String SIGNALLIGHT_CMD_FLASHING_RED;
+    public final String SIGNALLIGHT_CMD_FLASHING_WHITECOOL;
+    public final String SIGNALLIGHT_CMD_FLASHING_WHITEPURE;
+    public final String SIGNALLIGHT_CMD_FLASHING_WHITEWARM;
+    public final String SIGNALLIGHT_CMD_FLASHING_YELLOW;
+
+
+    /** Constructor (private, as there's only ever the one instance; see getInstance) */
+    private BannerMessageFields(Context context) {
+        Resources resources = context.getResources();
+
+        this.BANNMSGFIELDNAME_JSON_ZXRECNO = resources.getString(R.string.BANNMSGFIELDNAME_JSON_ZXRECNO).intern();
+        this.BANNMSGFIELDNAME_JSON_RECDTSEC = resources.getString(R.string.BANNMSGFIELDNAME_JSON_RECDTSEC).intern();
+        this.BANNMSGFIELDNAME_JSON_DURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_DURATION).intern();
+        this.BANNMSGFIELDNAME_JSON_MSGTYPE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MSGTYPE).intern();
+        this.BANNMSGFIELDNAME_JSON_MSGTEXT = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MSGTEXT).intern();
+        this.BANNMSGFIELDNAME_JSON_MSGDETAILS = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MSGDETAILS).intern();
+        this.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION).intern();
+        this.BANNMSGFIELDNAME_JSON_FLASHERDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_FLASHERDURATION).intern();
+        this.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL = resources.getString(R.string.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL).intern();
+        this.BANNMSGFIELDNAME_JSON_LIGHTDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_LIGHTDURATION).intern();
+        this.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN).intern();
+        this.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE).intern();
+        this.BANNMSGFIELDNAME_JSON_VISIBLETIME = resources.getString(R.string.BANNMSGFIELDNAME_JSON_VISIBLETIME).intern();
+        this.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY = resources.getString(R.string.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY).intern();
+        this.BANNMSGFIELDNAME_JSON_VISIBLEDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_VISIBLEDURATION).intern();
+        this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION).intern();
+        this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH = resources.getString(R.string.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH).intern();
+        this.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN).intern();
+        this.BANNMSGFIELDNAME_JSON_PADELIVERYMODE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PADELIVERYMODE).intern();
+        this.BANNMSGFIELDNAME_JSON_AUDIOREPEAT = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIOREPEAT).intern();
+        this.BANNMSGFIELDNAME_JSON_SPEED = resources.getString(R.string.BANNMSGFIELDNAME_JSON_SPEED).intern();
+        this.BANNMSGFIELDNAME_JSON_PRIORITY = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PRIORITY).intern();
+        this.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY = resources.getString(R.string.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY).intern();
+        this.BANNMSGFIELDNAME_JSON_PRIORITYDURATION = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PRIORITYDURATION).intern();
+        this.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH).intern();
+        this.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE).intern();
+        this.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE).intern();
+        this.BANNMSGFIELDNAME_JSON_WEBPAGEURL = resources.getString(R.string.BANNMSGFIELDNAME_JSON_WEBPAGEURL).intern();
+        this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW).intern();
+        this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS = resources.getString(R.string.BANNMSGFIELDNAME_JSON_AUDIOGROUPS).intern();
+        this.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN = resources.getString(R.string.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN).intern();
+        this.BANNMSGFIELDNAME_JSON_SEQNUM = resources.getString(R.string.BANNMSGFIELDNAME_JSON_SEQNUM).intern();
+        this.BANNMSGFIELDNAME_JSON_LAUNCHPIN = resources.getString(R.string.BANNMSGFIELDNAME_JSON_LAUNCHPIN).intern();
+        this.BANNMSGFIELDNAME_JSON_LAUNCHGENDER = resources.getString(R.string.BANNMSGFIELDNAME_JSON_LAUNCHGENDER).intern();
+
+        this.JSONFIELDNAME_LAUNCHDATETIME = resources.getString(R.string.JSONFIELDNAME_LAUNCHDATETIME).intern();
+        this.JSONFIELDNAME_LAUNCHDATETIME_DEVICE = resources.getString(R.string.JSONFIELDNAME_LAUNCHDATETIME_DEVICE).intern();
+        this.JSONFIELDNAME_EXPIREDATETIME = resources.getString(R.string.JSONFIELDNAME_EXPIREDATETIME).intern();
+        this.JSONFIELDNAME_EXPIREDATETIME_DEVICE = resources.getString(R.string.JSONFIELDNAME_EXPIREDATETIME_DEVICE).intern();
+        this.JSONFIELDNAME_AUDIOREPEATSREMAINING = resources.getString(R.string.JSONFIELDNAME_AUDIOREPEATSREMAINING).intern();
+        this.JSONFIELDNAME_UUIDLOCAL = resources.getString(R.string.JSONFIELDNAME_UUIDLOCAL).intern();
+        this.JSONFIELDNAME_DELIVERYCOUNT = resources.getString(R.string.JSONFIELDNAME_DELIVERYCOUNT).intern();
+        this.JSONFIELDNAME_LASTDELIVEREDDATETIME = resources.getString(R.string.JSONFIELDNAME_LASTDELIVEREDDATETIME).intern();
+        this.JSONFIELDNAME_ISBEINGDELIVERED = resources.getString(R.string.JSONFIELDNAME_ISBEINGDELIVERED).intern();
+        this.JSONFIELDNAME_SCROLLCOUNT = resources.getString(R.string.JSONFIELDNAME_SCROLLCOUNT).intern();
+        this.JSONFIELDNAME_VIDEOSEEKPOSITION = resources.getString(R.string.JSONFIELDNAME_VIDEOSEEKPOSITION).intern();
+
+        this.MM_TYPE_NONE = resources.getString(R.string.MM_TYPE_NONE).intern();
+        this.MM_TYPE_MESSAGE = resources.getString(R.string.MM_TYPE_MESSAGE).intern();
+        this.MM_TYPE_MESSAGEFS = resources.getString(R.string.MM_TYPE_MESSAGEFS).intern();
+        this.MM_TYPE_WEBPAGE = resources.getString(R.string.MM_TYPE_WEBPAGE).intern();
+        this.MM_TYPE_VIDEO = resources.getString(R.string.MM_TYPE_VIDEO).intern();
+        this.MM_TYPE_PICTURE = resources.getString(R.string.MM_TYPE_PICTURE).intern();
+        this.MM_TYPE_PICTURETEXT = resources.getString(R.string.MM_TYPE_PICTURETEXT).intern();
+        this.MM_TYPE_WEBMEDIA = resources.getString(R.string.MM_TYPE_WEBMEDIA).intern();
+        this.MM_TYPE_LCDLOCATIONMAP = resources.getString(R.string.MM_TYPE_LCDLOCATIONMAP).intern();
+        this.MM_TYPE_GEOLOCATIONMAP = resources.getString(R.string.MM_TYPE_GEOLOCATIONMAP).intern();
+        this.MM_TYPE_RTSPSTREAM = resources.getString(R.string.MM_TYPE_RTSPSTREAM).intern();
+
+        this.PA_AUDIO_REPEAT_NONSTOP = resources.getString(R.string.PA_AUDIO_REPEAT_NONSTOP).intern();
+
+        this.SIGNALLIGHT_CMD_NONE = resources.getString(R.string.SIGNALLIGHT_CMD_NONE).intern();
+        this.SIGNALLIGHT_CMD_OFF = resources.getString(R.string.SIGNALLIGHT_CMD_OFF).intern();
+        this.SIGNALLIGHT_CMD_STANDBY = resources.getString(R.string.SIGNALLIGHT_CMD_STANDBY).intern();
+        this.SIGNALLIGHT_CMD_BLUE_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_BLUE_DIM).intern();
+        this.SIGNALLIGHT_CMD_BLUE_MED = resources.getString(R.string.SIGNALLIGHT_CMD_BLUE_MED).intern();
+        this.SIGNALLIGHT_CMD_BLUE_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_BLUE_BRI).intern();
+        this.SIGNALLIGHT_CMD_GREEN_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_GREEN_DIM).intern();
+        this.SIGNALLIGHT_CMD_GREEN_MED = resources.getString(R.string.SIGNALLIGHT_CMD_GREEN_MED).intern();
+        this.SIGNALLIGHT_CMD_GREEN_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_GREEN_BRI).intern();
+        this.SIGNALLIGHT_CMD_ORANGE_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_ORANGE_DIM).intern();
+        this.SIGNALLIGHT_CMD_ORANGE_MED = resources.getString(R.string.SIGNALLIGHT_CMD_ORANGE_MED).intern();
+        this.SIGNALLIGHT_CMD_ORANGE_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_ORANGE_BRI).intern();
+        this.SIGNALLIGHT_CMD_PINK_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_PINK_DIM).intern();
+        this.SIGNALLIGHT_CMD_PINK_MED = resources.getString(R.string.SIGNALLIGHT_CMD_PINK_MED).intern();
+        this.SIGNALLIGHT_CMD_PINK_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_PINK_BRI).intern();
+        this.SIGNALLIGHT_CMD_PURPLE_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_PURPLE_DIM).intern();
+        this.SIGNALLIGHT_CMD_PURPLE_MED = resources.getString(R.string.SIGNALLIGHT_CMD_PURPLE_MED).intern();
+        this.SIGNALLIGHT_CMD_PURPLE_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_PURPLE_BRI).intern();
+        this.SIGNALLIGHT_CMD_RED_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_RED_DIM).intern();
+        this.SIGNALLIGHT_CMD_RED_MED = resources.getString(R.string.SIGNALLIGHT_CMD_RED_MED).intern();
+        this.SIGNALLIGHT_CMD_RED_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_RED_BRI).intern();
+        this.SIGNALLIGHT_CMD_WHITECOOL_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_WHITECOOL_DIM).intern();
+        this.SIGNALLIGHT_CMD_WHITECOOL_MED = resources.getString(R.string.SIGNALLIGHT_CMD_WHITECOOL_MED).intern();
+        this.SIGNALLIGHT_CMD_WHITECOOL_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_WHITECOOL_BRI).intern();
+        this.SIGNALLIGHT_CMD_WHITEPURE_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEPURE_DIM).intern();
+        this.SIGNALLIGHT_CMD_WHITEPURE_MED = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEPURE_MED).intern();
+        this.SIGNALLIGHT_CMD_WHITEPURE_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEPURE_BRI).intern();
+        this.SIGNALLIGHT_CMD_WHITEWARM_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEWARM_DIM).intern();
+        this.SIGNALLIGHT_CMD_WHITEWARM_MED = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEWARM_MED).intern();
+        this.SIGNALLIGHT_CMD_WHITEWARM_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_WHITEWARM_BRI).intern();
+        this.SIGNALLIGHT_CMD_YELLOW_DIM = resources.getString(R.string.SIGNALLIGHT_CMD_YELLOW_DIM).intern();
+        this.SIGNALLIGHT_CMD_YELLOW_MED = resources.getString(R.string.SIGNALLIGHT_CMD_YELLOW_MED).intern();
+        this.SIGNALLIGHT_CMD_YELLOW_BRI = resources.getString(R.string.SIGNALLIGHT_CMD_YELLOW_BRI).intern();
+        this.SIGNALLIGHT_CMD_FADING_BLUE = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_BLUE).intern();
+        this.SIGNALLIGHT_CMD_FADING_GREEN = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_GREEN).intern();
+        this.SIGNALLIGHT_CMD_FADING_ORANGE = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_ORANGE).intern();
+        this.SIGNALLIGHT_CMD_FADING_PINK = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_PINK).intern();
+        this.SIGNALLIGHT_CMD_FADING_PURPLE = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_PURPLE).intern();
+        this.SIGNALLIGHT_CMD_FADING_RED = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_RED).intern();
+        this.SIGNALLIGHT_CMD_FADING_WHITECOOL = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_WHITECOOL).intern();
+        this.SIGNALLIGHT_CMD_FADING_WHITEPURE = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_WHITEPURE).intern();
+        this.SIGNALLIGHT_CMD_FADING_WHITEWARM = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_WHITEWARM).intern();
+        this.SIGNALLIGHT_CMD_FADING_YELLOW = resources.getString(R.string.SIGNALLIGHT_CMD_FADING_YELLOW).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_BLUE = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_BLUE).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_GREEN = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_GREEN).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_ORANGE = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_ORANGE).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_PINK = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_PINK).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_PURPLE = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_PURPLE).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_RED = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_RED).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_WHITECOOL = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_WHITECOOL).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_WHITEPURE = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_WHITEPURE).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_WHITEWARM = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_WHITEWARM).intern();
+        this.SIGNALLIGHT_CMD_FLASHING_YELLOW = resources.getString(R.string.SIGNALLIGHT_CMD_FLASHING_YELLOW).intern();
+
+        this.fieldIdsByJSONKey = new HashMap<String, Integer>(68);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_ZXRECNO, FIELD_ZXRECNO);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_RECDTSEC, FIELD_RECDTSEC);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_DURATION, FIELD_DURATION);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_MSGTYPE, FIELD_MSGTYPE);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_MSGTEXT, FIELD_MSGTEXT);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_MSGDETAILS, FIELD_MSGDETAILS);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION, FIELD_PLAYTIMEDURATION);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_FLASHERDURATION, FIELD_FLASHERDURATION);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL, FIELD_LIGHTSIGNAL);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_LIGHTDURATION, FIELD_LIGHTDURATION);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN, FIELD_AUDIOTTSGAIN);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE, FIELD_FLASHNEWMESSAGE);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_VISIBLETIME, FIELD_VISIBLETIME);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY, FIELD_VISIBLEFREQUENCY);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_VISIBLEDURATION, FIELD_VISIBLEDURATION);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION, FIELD_RECORDVOICEATLAUNCHSELECTION);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH, FIELD_RECORDVOICEATLAUNCH);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN, FIELD_AUDIORECORDEDGAIN);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_PADELIVERYMODE, FIELD_PADELIVERYMODE);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_AUDIOREPEAT, FIELD_AUDIOREPEAT);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_SPEED, FIELD_SPEED);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_PRIORITY, FIELD_PRIORITY);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY, FIELD_EXPIREPRIORITY);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_PRIORITYDURATION, FIELD_PRIORITYDURATION);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH, FIELD_PRIORITYATLAUNCH);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE, FIELD_PRIORITYTOLERANCE);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE, FIELD_MULTIMEDIATYPE);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_WEBPAGEURL, FIELD_WEBPAGEURL);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW, FIELD_AUDIOGROUPS_HW);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_AUDIOGROUPS, FIELD_AUDIOGROUPS);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN, FIELD_MMAUDIOGAIN);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_SEQNUM, FIELD_SEQNUM);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_LAUNCHPIN, FIELD_LAUNCHPIN);
+        this.fieldIdsByJSONKey.put(this.BANNMSGFIELDNAME_JSON_LAUNCHGENDER, FIELD_LAUNCHGENDER);
+    }
+
+    /* Static 'instance' method (singleton pattern)
+     * Loads the table from resources the first time, and returns the same one ever after. */
+    public static BannerMessageFields getInstance(Context context) {
+        if (mInstance == null) {
+            synchronized (BannerMessageFields.class) {
+                if (mInstance == null) {
+                    mInstance = new BannerMessageFields(context.getApplicationContext());
+                }
+            }
+        }
+        return mInstance;
+    }
+
+
+    /*============================================================================================*/
+    /* Getter Methods */
+
+    /** Get the ID of the BannerMessage field that the specified JSON key binds to.
+     * @param jsonKey JSON key (as in a message's JSON).
+     * @return One of the FIELD_* constants (FIELD_UNKNOWN if it's not one that BannerMessage reads in).
+     */
+    public int getFieldId(String jsonKey) {
+        Integer fieldId = fieldIdsByJSONKey.get(jsonKey);
+        return fieldId == null ? FIELD_UNKNOWN : fieldId;
+    }
+}
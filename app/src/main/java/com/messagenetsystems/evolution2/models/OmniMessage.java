@@ -106,6 +106,8 @@ public class OmniMessage {
     public final static int EXPIRATION_CALC_METHOD_ABSOLUTE_FROM_SERVER = 3;
     public final static int EXPIRATION_CALC_METHOD_ABSOLUTE_FROM_DEVICE = 4;                        //obeys dtLaunch
 
+    public final static long EXPIRES_AT_MS_NEVER = Long.MAX_VALUE;                                  //expiresAtMs of a message that won't expire (e.g. not delivered yet)
+
     /*============================================================================================*/
     // Logging stuff...
     private final int LOG_SEVERITY_V = 1;
@@ -139,6 +141,7 @@ public class OmniMessage {
 
     private int msgDuration = 0;
     private Date msgExpires = null;
+    private long expiresAtMs = EXPIRES_AT_MS_NEVER;                                                 //cached expiration relative to first delivery (see updateExpiresAtMs)
     private int msgType = MSG_TYPE_UNKNOWN;                                                         //NOTE! This "type" is different than legacy MNS v1 type (which was txt-msg header / emergency severity)
 
     private int msgPriority = 0;
@@ -213,6 +216,7 @@ public class OmniMessage {
 
         msgDuration = om.msgDuration;
         msgExpires = om.msgExpires;
+        expiresAtMs = om.expiresAtMs;
         msgType = om.msgType;
 
         msgPriority = om.msgPriority;
@@ -512,6 +516,7 @@ public class OmniMessage {
                 this.msgPriorityTolerance = bannerMessage.getDbb_priority_tolerance();
                 this.msgDuration = bannerMessage.getDbb_duration();
                 this.msgExpires = bannerMessage.getDtExpiration();
+                updateExpiresAtMs();
 
                 this.msgHeading = bannerMessage.exportOmniMessage_msgHeading();
                 this.msgText = bannerMessage.getMsgText();
@@ -615,10 +620,115 @@ public class OmniMessage {
         final String TAGG = "isExpired: ";
         boolean ret = defaultToReturn;
 
+        // Relative-from-delivery is what we normally use (every message, every pass), so just compare against the cached value
+        // (no logging here either, as building the log string would cost more than the check)
+        if (expirationCalculationMethod == EXPIRATION_CALC_METHOD_RELATIVE_DURATION_FROM_DELIVERY) {
+            return isExpiredAsOf(System.currentTimeMillis());
+        }
+
+        try {
+            Date currentDate = new Date();
+            Date expiryDate = calculateExpiryDate(expirationCalculationMethod, context);
+
+            // Determine whether we are expired or not
+            try {
+                if (currentDate.getTime() >= expiryDate.getTime()) {
+                    //expired
+                    ret = true;
+                } else if (currentDate.getTime() <= expiryDate.getTime()) {
+                    //not yet expired
+                    ret = false;
+                }
+            } catch (Exception e) {
+                logW(TAGG+"Exception caught determining expiration state: "+e.getMessage());
+            }
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+
+        /* OLD... before moving to just using device delivery-start + duration...
+        try {
+            Date currentDate = new Date();
+            if (this.getMsgExpires() != null) {
+                logD(TAGG+"Current time ("+currentDate.toString()+"). Message expiration time("+this.getMsgExpires().toString()+").");
+                if (currentDate.getTime() > this.getMsgExpires().getTime()) {
+                    ret = true;
+                }
+            } else {
+                //we might be using legacy msg data, so check that...
+                BannerMessage bannerMessage = this.getBannerMessage();
+                if (bannerMessage != null) {
+                    //TODO: possible future intelligence/revision around platform-defined-absolute vs on-device-calculated expiration?
+                    if (bannerMessage.getDtExpiration() != null && currentDate.getTime() > bannerMessage.getDtExpiration().getTime()) {
+                        logD(TAGG+"getDtExpiration (absolute) has occurred.");
+                        ret = true;
+                    } else if (bannerMessage.getDtExpiration_device() != null && currentDate.getTime() > bannerMessage.getDtExpiration_device().getTime()) {
+                        logD(TAGG+"getDtExpiration_device (relative) has occurred.");
+                        ret = true;
+                    } else {
+                        logW(TAGG + "Expiration Date is null (for both OmniMessage and legacy BannerMessage), cannot determine.");
+                    }
+                } else {
+                    logW(TAGG + "Expiration Date is null, cannot determine.");
+                }
+            }
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+        */
+
+        logV(TAGG+"Returning "+Boolean.toString(ret)+".");
+        return ret;
+    }
+
+    /** Checks if this message is expired (relative to its first delivery) as of the specified time, using the cached expiration.
+     * @param nowMs Time to check as of, as epoch milliseconds (normally System.currentTimeMillis()).
+     * @return Whether it's expired (never, if it hasn't been delivered yet).
+     */
+    public boolean isExpiredAsOf(long nowMs) {
+        return nowMs >= expiresAtMs;
+    }
+
+    /** Take the delivery progress (first/latest delivery dates, scrolls, speaks, and flasher time done) of the provided message,
+     * and recalculate our expiration from it. For when this message replaces that one (e.g. rebuilt after its raw data changed),
+     * so its delivery doesn't start over (and it doesn't go back to never expiring).
+     * @param omniMessage Message being replaced (with the same UUID).
+     */
+    public void carryOverDeliveryStateFrom(OmniMessage omniMessage) {
+        this.msgFirstDeliveryBeganDate = omniMessage.msgFirstDeliveryBeganDate;
+        this.msgLatestDeliveryBeganDate = omniMessage.msgLatestDeliveryBeganDate;
+        this.msgLatestDeliveryEndedDate = omniMessage.msgLatestDeliveryEndedDate;
+        this.msgTextScrollsDone = omniMessage.msgTextScrollsDone;
+        this.ttsNumberOfSpeaksDone = omniMessage.ttsNumberOfSpeaksDone;
+        this.flasherDurationSecondsDone = omniMessage.flasherDurationSecondsDone;
+        updateExpiresAtMs();
+    }
+
+    /** Recalculate the cached expiration (relative to first delivery), from first-delivery date and duration.
+     * Call this whenever either of those changes (their setters do). It's the same as what calculateExpiryDate works out with
+     * DatetimeUtils (a duration of 0 means no-expire, so it's the max), just in plain arithmetic.
+     * Until it's first delivered, it won't expire (calculateExpiryDate uses a far-off date for that, which is as good as never).
+     */
+    private void updateExpiresAtMs() {
+        if (this.msgFirstDeliveryBeganDate == null) {
+            this.expiresAtMs = EXPIRES_AT_MS_NEVER;
+        } else {
+            int durationSecs = (this.msgDuration == 0 ? Integer.MAX_VALUE - 1 : this.msgDuration);     //banner gives us zero for no-expire (same as DatetimeUtils)
+            this.expiresAtMs = this.msgFirstDeliveryBeganDate.getTime() + (durationSecs * 1000L);
+        }
+    }
+
+    /** Calculates when this message expires (or will, once delivered), according to the specified method.
+     * For relative-from-delivery, a message that hasn't been delivered yet gets a long-out date (implicitly not-yet-expired).
+     * Persist it once it's fixed (e.g. at first delivery), so expiry may be found by an indexed query, without building an OmniMessage.
+     * @return Date of expiration, or null if it could not be determined.
+     */
+    public Date calculateExpiryDate(int expirationCalculationMethod, @Nullable Context context) {
+        final String TAGG = "calculateExpiryDate: ";
+
         try {
             Date baseDate;
             Date expiryDate = null;
-            Date currentDate = new Date();
             DatetimeUtils datetimeUtils = null;
 
             // Get a DatetimeUtils instance somehow
@@ -632,8 +742,8 @@ public class OmniMessage {
                 datetimeUtils = new DatetimeUtils(context, Constants.LOG_METHOD_FILELOGGER);
             } else {
                 //else it's not possible to get a DatetimeUtils instance without a context, so abort
-                logE(TAGG+"Unable to get DatetimeUtils instance due to null context. Aborting and returning "+Boolean.toString(ret)+".");
-                return ret;
+                logE(TAGG+"Unable to get DatetimeUtils instance due to null context. Aborting and returning null.");
+                return null;
             }
 
             // Calculate the proper expiration date
@@ -673,55 +783,12 @@ public class OmniMessage {
                     break;
             }
 
-            // Determine whether we are expired or not
-            try {
-                if (currentDate.getTime() >= expiryDate.getTime()) {
-                    //expired
-                    ret = true;
-                } else if (currentDate.getTime() <= expiryDate.getTime()) {
-                    //not yet expired
-                    ret = false;
-                }
-            } catch (Exception e) {
-                logW(TAGG+"Exception caught determining expiration state: "+e.getMessage());
-            }
-        } catch (Exception e) {
-            logE(TAGG+"Exception caught: "+e.getMessage());
-        }
-
-        /* OLD... before moving to just using device delivery-start + duration...
-        try {
-            Date currentDate = new Date();
-            if (this.getMsgExpires() != null) {
-                logD(TAGG+"Current time ("+currentDate.toString()+"). Message expiration time("+this.getMsgExpires().toString()+").");
-                if (currentDate.getTime() > this.getMsgExpires().getTime()) {
-                    ret = true;
-                }
-            } else {
-                //we might be using legacy msg data, so check that...
-                BannerMessage bannerMessage = this.getBannerMessage();
-                if (bannerMessage != null) {
-                    //TODO: possible future intelligence/revision around platform-defined-absolute vs on-device-calculated expiration?
-                    if (bannerMessage.getDtExpiration() != null && currentDate.getTime() > bannerMessage.getDtExpiration().getTime()) {
-                        logD(TAGG+"getDtExpiration (absolute) has occurred.");
-                        ret = true;
-                    } else if (bannerMessage.getDtExpiration_device() != null && currentDate.getTime() > bannerMessage.getDtExpiration_device().getTime()) {
-                        logD(TAGG+"getDtExpiration_device (relative) has occurred.");
-                        ret = true;
-                    } else {
-                        logW(TAGG + "Expiration Date is null (for both OmniMessage and legacy BannerMessage), cannot determine.");
-                    }
-                } else {
-                    logW(TAGG + "Expiration Date is null, cannot determine.");
-                }
-            }
+            return expiryDate;
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
-        */
 
-        logV(TAGG+"Returning "+Boolean.toString(ret)+".");
-        return ret;
+        return null;
     }
 
 
@@ -1291,6 +1358,7 @@ public class OmniMessage {
 
     public void setMsgFirstDeliveryBeganDate(Date msgFirstDeliveryBeganDate) {
         this.msgFirstDeliveryBeganDate = msgFirstDeliveryBeganDate;
+        updateExpiresAtMs();
         this.thisLastModifiedDate = new Date();
     }
 
@@ -1300,9 +1368,15 @@ public class OmniMessage {
 
     public void setMsgDuration(int msgDuration) {
         this.msgDuration = msgDuration;
+        updateExpiresAtMs();
         this.thisLastModifiedDate = new Date();
     }
 
+    /** @return When this message expires (relative to its first delivery), as epoch milliseconds (EXPIRES_AT_MS_NEVER if not delivered yet). */
+    public long getExpiresAtMs() {
+        return expiresAtMs;
+    }
+
     public long getMediaPlaytime() {
         return mediaPlaytime;
     }
@@ -0,0 +1,150 @@
+package com.messagenetsystems.evolution2.models;
+
+/* OmniMessageExpiryQueue
+ * A priority queue of when deliverable messages expire (soonest first), so whoever expires them can just wait for the next one,
+ * instead of checking every message every pass.
+ *
+ * OmniMessages keeps it in step with its list (see syncWith, which it calls on every change), using each OmniMessage's cached
+ * expiresAtMs. A message whose expiration changes (e.g. at first delivery) just gets a new entry; the old one is left in the
+ * queue and skipped once it comes up (it no longer matches what's scheduled for that UUID), which is cheaper than finding it.
+ * Messages that won't expire (e.g. not delivered yet) are tracked, but aren't in the queue at all.
+ *
+ * Everything here is synchronized (on this queue), so it's safe to sync and poll from different threads.
+ *
+ * Usage example (what MessageDeliverableProcessor does, via OmniMessages)...
+ *  long nextExpiresAtMs = expiryQueue.getNextExpiresAtMs();
+ *  ...wait until then (or until something changes)...
+ *  expiryQueue.pollExpired(System.currentTimeMillis(), expiredUUIDs);
+ */
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+
+public class OmniMessageExpiryQueue {
+
+    // Local stuff...
+    private final PriorityQueue<Entry> queue;                                                       //expirations, soonest first (may include stale ones, see above)
+    private final HashMap<UUID, Long> expiresAtMsByUUID;                                            //what's currently scheduled for each message (the authority on whether an entry is stale)
+
+    /** Constructor */
+    public OmniMessageExpiryQueue() {
+        this.queue = new PriorityQueue<Entry>();
+        this.expiresAtMsByUUID = new HashMap<UUID, Long>();
+    }
+
+
+    /*============================================================================================*/
+    /* Scheduling Methods */
+
+    /** Schedule (or reschedule) a message's expiration. Does nothing (and allocates nothing) if it's already scheduled as such.
+     * @param uuid          UUID of the message.
+     * @param expiresAtMs   When it expires, as epoch milliseconds (OmniMessage.EXPIRES_AT_MS_NEVER if it won't).
+     */
+    public synchronized void schedule(@NonNull UUID uuid, long expiresAtMs) {
+        Long expiresAtMs_scheduled = expiresAtMsByUUID.get(uuid);
+        if (expiresAtMs_scheduled != null && expiresAtMs_scheduled == expiresAtMs) {
+            return;
+        }
+
+        expiresAtMsByUUID.put(uuid, expiresAtMs);
+        if (expiresAtMs != OmniMessage.EXPIRES_AT_MS_NEVER) {
+            queue.add(new Entry(expiresAtMs, uuid));
+        }
+    }
+
+    /** Schedule every message in the provided snapshot, and forget any we have that are no longer in it.
+     * @param omniMessages Snapshot of the messages (as OmniMessages publishes on every change).
+     */
+    public synchronized void syncWith(@NonNull OmniMessagesSnapshot omniMessages) {
+        for (OmniMessage omniMessage : omniMessages) {
+            if (omniMessage != null && omniMessage.getMessageUUID() != null) {
+                schedule(omniMessage.getMessageUUID(), omniMessage.getExpiresAtMs());
+            }
+        }
+
+        // If we're tracking more than there are, some must be gone (their queue entries become stale, and get skipped)
+        if (expiresAtMsByUUID.size() > omniMessages.size()) {
+            Iterator<UUID> iterator = expiresAtMsByUUID.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (!omniMessages.doesOmniMessageExist(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /** Forget everything. */
+    public synchronized void clear() {
+        queue.clear();
+        expiresAtMsByUUID.clear();
+    }
+
+
+    /*============================================================================================*/
+    /* Expiry Methods */
+
+    /** @return When the soonest expiration is, as epoch milliseconds (OmniMessage.EXPIRES_AT_MS_NEVER if there's none). */
+    public synchronized long getNextExpiresAtMs() {
+        discardStaleHead();
+        Entry head = queue.peek();
+        return head == null ? OmniMessage.EXPIRES_AT_MS_NEVER : head.expiresAtMs;
+    }
+
+    /** Take every message that has expired as of the specified time off the schedule, and provide their UUIDs.
+     * @param nowMs         Time to check as of, as epoch milliseconds.
+     * @param expiredUUIDs  List to add the expired messages' UUIDs to.
+     * @return How many have expired.
+     */
+    public synchronized int pollExpired(long nowMs, @NonNull List<UUID> expiredUUIDs) {
+        int ret = 0;
+
+        discardStaleHead();
+        while (!queue.isEmpty() && queue.peek().expiresAtMs <= nowMs) {
+            Entry entry = queue.poll();
+            expiresAtMsByUUID.remove(entry.uuid);
+            expiredUUIDs.add(entry.uuid);
+            ret++;
+            discardStaleHead();
+        }
+
+        return ret;
+    }
+
+    /** Drop entries off the head of the queue that no longer match what's scheduled for their message. */
+    private void discardStaleHead() {
+        while (!queue.isEmpty()) {
+            Entry head = queue.peek();
+            Long expiresAtMs_scheduled = expiresAtMsByUUID.get(head.uuid);
+            if (expiresAtMs_scheduled != null && expiresAtMs_scheduled == head.expiresAtMs) {
+                return;
+            }
+            queue.poll();
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Subclasses... */
+
+    /** A message's expiration, as queued. */
+    private static class Entry implements Comparable<Entry> {
+        final long expiresAtMs;
+        final UUID uuid;
+
+        Entry(long expiresAtMs, UUID uuid) {
+            this.expiresAtMs = expiresAtMs;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public int compareTo(@NonNull Entry other) {
+            return expiresAtMs < other.expiresAtMs ? -1 : (expiresAtMs == other.expiresAtMs ? 0 : 1);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.messagenetsystems.evolution2.models;
 
 /* OmniMessages
  * This is a container for a list of OmniMessage objects.
+ * Being a UUIDIndexedList, finds by UUID are index lookups, and it may be iterated (e.g. by DeliveryService) while the processor threads change it.
+ * Every change also publishes a new OmniMessagesSnapshot (see getSnapshot), for readers that need several checks to agree with each other.
+ * It also keeps an OmniMessageExpiryQueue in step with its messages, so expiry may be waited on (see getNextExpiresAtMs and pollExpired).
  *
  * Revisions:
  *  2019.12.18-19   Chris Rider     Created (used OmniMessages as a template)
@@ -28,11 +31,11 @@ import com.messagenetsystems.evolution2.services.MainService;
 import org.json.JSONObject;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 
-public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastReceiver*/ {
+public class OmniMessages extends UUIDIndexedList<OmniMessage> /*implements BroadcastReceiver*/ {
     private final String TAG = this.getClass().getSimpleName();
 
     // Constants...
@@ -56,6 +59,9 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
     // Local stuff...
     private WeakReference<Context> appContextRef;
     private OmniRawMessages omniRawMessagesToUpdate;
+    private long snapshotVersion = 0;                                                               //version of the last snapshot published (only changed under our lock)
+    private volatile OmniMessagesSnapshot snapshot = OmniMessagesSnapshot.EMPTY;                    //the current snapshot (replaced as a whole, so readers need no lock)
+    private final OmniMessageExpiryQueue expiryQueue = new OmniMessageExpiryQueue();                //when our messages expire (kept in step with every change)
 
 
     /** Constructor
@@ -86,7 +92,7 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
      * @param omniMessage The OmniMessage object to add.
      * @return Whether the object was added.
      */
-    public boolean addOmniMessage(@NonNull OmniMessage omniMessage, @NonNull boolean avoidDuplicates) {
+    public synchronized boolean addOmniMessage(@NonNull OmniMessage omniMessage, @NonNull boolean avoidDuplicates) {
         String TAGG = "addOmniMessage: ";
         try {
             TAGG = "addOmniMessage(" + omniMessage.getMessageUUID().toString() + "): ";
@@ -128,13 +134,8 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
         boolean ret = false;
 
         try {
-            logV(TAGG+"This OmniMessages instance contains "+this.size()+" OmniMessage objects. Will now search for match.");
-            for (OmniMessage om : this) {
-                if (om.getMessageUUID().toString().equals(omniMessage.getMessageUUID().toString())) {
-                    ret = true;
-                    break;
-                }
-            }
+            logV(TAGG+"This OmniMessages instance contains "+this.size()+" OmniMessage objects. Will now look up match.");
+            ret = isIndexed(omniMessage.getMessageUUID());
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -147,13 +148,8 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
         boolean ret = false;
 
         try {
-            logV(TAGG+"This OmniMessages instance contains "+this.size()+" OmniMessage objects. Will now search for match.");
-            for (OmniMessage om : this) {
-                if (om.getMessageUUID().toString().equals(uuid.toString())) {
-                    ret = true;
-                    break;
-                }
-            }
+            logV(TAGG+"This OmniMessages instance contains "+this.size()+" OmniMessage objects. Will now look up match.");
+            ret = isIndexed(uuid);
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -167,17 +163,12 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
      * @param getAsReferenceOrClone The constant to determine whether we return a refernce or a clone of the OmniMessage.
      * @return The OmniMessage object found with the specified UUID, or null if not found.
      */
-    public synchronized OmniMessage getOmniMessage(@NonNull UUID uuid, int getAsReferenceOrClone) {
+    public OmniMessage getOmniMessage(@NonNull UUID uuid, int getAsReferenceOrClone) {
         final String TAGG = "getOmniMessage: ";
         OmniMessage ret = null;
 
         try {
-            for (OmniMessage om : this) {
-                if (om.getMessageUUID().equals(uuid)) {
-                    ret = om;
-                    break;
-                }
-            }
+            ret = getIndexed(uuid);
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -288,12 +279,7 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
         int ret = -1;
 
         try {
-            for (int i = 0; i < this.size(); i++) {
-                if (this.get(i).getMessageUUID().equals(uuid)) {
-                    ret = i;
-                    break;
-                }
-            }
+            ret = findListPosition(uuid);
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -311,12 +297,7 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
         int ret = -1;
 
         try {
-            for (int i = 0; i < this.size(); i++) {
-                if (this.get(i).getMessageUUID().equals(omniMessage.getMessageUUID())) {
-                    ret = i;
-                    break;
-                }
-            }
+            ret = findListPosition(omniMessage.getMessageUUID());
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -420,26 +401,38 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
     public synchronized boolean updateOmniMessage(@NonNull OmniMessage omniMessage) {
         final String TAGG = "updateOmniMessage: ";
         boolean ret;
+        boolean isFirstDelivery = false;
 
         // Find the corresponding message, test equality to that provided, and update the OmniMessage object if needed
         try {
-            // Find the position of the matching existing object
-            int positionOfExistingMatch = getOmniMessageListPosition(omniMessage);
-            if (positionOfExistingMatch < 0 || positionOfExistingMatch >= this.size()) {
-                logW(TAGG+"OmniMessage: Invalid matching position. Cannot continue.");
+            // Find the matching existing object (by index)
+            OmniMessage existingMatch = getIndexed(omniMessage.getMessageUUID());
+            if (existingMatch == null) {
+                logW(TAGG+"OmniMessage: No matching OmniMessage. Cannot continue.");
                 return false;
-            } else {
-                logV(TAGG+"OmniMessage: Matching OmniMessage at position "+String.valueOf(positionOfExistingMatch));
             }
 
             // Check if the object is equal to its matching object already (no need to update if it is)
-            if (this.get(positionOfExistingMatch).equals(omniMessage)) {
+            if (existingMatch.equals(omniMessage)) {
                 logD(TAGG+"OmniMessage: Existing match is the same as provided. No update necessary.");
                 return false;
             } else {
                 logV(TAGG+"OmniMessage: Existing match is different than OmniMessage provided. Updating...");
             }
 
+            // Find the position of the matching existing object
+            int positionOfExistingMatch = findItemListPosition(existingMatch);
+            if (positionOfExistingMatch < 0 || positionOfExistingMatch >= this.size()) {
+                logW(TAGG+"OmniMessage: Invalid matching position. Cannot continue.");
+                return false;
+            } else {
+                logV(TAGG+"OmniMessage: Matching OmniMessage at position "+String.valueOf(positionOfExistingMatch));
+            }
+
+            // Note whether this update is the message's first delivery (that's when its expiration gets fixed)
+            isFirstDelivery = existingMatch.getMsgFirstDeliveryBeganDate() == null
+                    && omniMessage.getMsgFirstDeliveryBeganDate() != null;
+
             // Update the item at the found position (returns previous object that was replaced)
             OmniMessage omniMesssage_orig = this.set(positionOfExistingMatch, omniMessage);
 
@@ -488,6 +481,11 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
                 } else {
                     logW(TAGG + "OmniRawMessage: Corresponding OmniRawMessage NOT updated.");
                 }
+
+                // If it was just delivered for the first time, its expiration is now known, so persist it (expiry is then just an indexed DB query)
+                if (isFirstDelivery && omniMessage.getExpiresAtMs() != OmniMessage.EXPIRES_AT_MS_NEVER) {
+                    omniRawMessagesToUpdate.doFlushExpiresAtToDB(omniMessage.getMessageUUID(), omniMessage.getExpiresAtMs());
+                }
             }
         }
 
@@ -495,6 +493,30 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
         return ret;
     }
 
+    /** Replace an existing OmniMessage with the provided one (matching by UUID), without updating the OmniRawMessages list.
+     * This is for an OmniMessage that was just rebuilt from its OmniRawMessage (so there's nothing new to flush back to it).
+     * Unlike removing and adding, it keeps its place, and is never missing from the list (or its snapshots) in between.
+     * @param omniMessage The rebuilt OmniMessage object.
+     * @return Whether it replaced one (false if there was none with its UUID).
+     */
+    public synchronized boolean replaceOmniMessage(@NonNull OmniMessage omniMessage) {
+        final String TAGG = "replaceOmniMessage: ";
+        boolean ret = false;
+
+        try {
+            int positionOfExistingMatch = findListPosition(omniMessage.getMessageUUID());
+            if (positionOfExistingMatch >= 0) {
+                this.set(positionOfExistingMatch, omniMessage);
+                ret = true;
+            }
+        } catch (Exception e) {
+            logW(TAGG+"Specified OmniMessage could not be replaced: "+e.getMessage());
+        }
+
+        logV(TAGG+"Returning "+Boolean.toString(ret)+".");
+        return ret;
+    }
+
     /** Determine whether there are multiple different priorities in this list of messages.
      * Basically just looks at highest and lowest priorities, and if there is a difference, then we can assume there are multiple different priority messages.
      * @return True if there are different priority messages, or false if not (including no messages).
@@ -522,6 +544,43 @@ public class OmniMessages extends ArrayList<OmniMessage> /*implements BroadcastR
     }
 
 
+    @Override
+    protected UUID getUUIDOf(OmniMessage omniMessage) {
+        return omniMessage.getMessageUUID();
+    }
+
+    /** Publish a snapshot of the list as it now is, and reschedule expirations to match it (UUIDIndexedList calls this after every change, under our lock). */
+    @Override
+    protected void onListChanged() {
+        snapshotVersion++;
+        snapshot = new OmniMessagesSnapshot(snapshotVersion, toArray());
+        expiryQueue.syncWith(snapshot);
+    }
+
+    /** Get the current snapshot of this list, without locking.
+     * It won't change, so everything checked against it agrees (unlike several calls on this list, which may change in between).
+     * @return The current OmniMessagesSnapshot (never null).
+     */
+    public OmniMessagesSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** @return When the soonest expiration of our messages is, as epoch milliseconds (OmniMessage.EXPIRES_AT_MS_NEVER if none will). */
+    public long getNextExpiresAtMs() {
+        return expiryQueue.getNextExpiresAtMs();
+    }
+
+    /** Take every message that has expired as of the specified time off the expiry schedule, and provide their UUIDs.
+     * They're still in this list (it's up to the caller to remove them, as from raw, which is authoritative).
+     * @param nowMs         Time to check as of, as epoch milliseconds.
+     * @param expiredUUIDs  List to add the expired messages' UUIDs to.
+     * @return How many have expired.
+     */
+    public int pollExpired(long nowMs, @NonNull List<UUID> expiredUUIDs) {
+        return expiryQueue.pollExpired(nowMs, expiredUUIDs);
+    }
+
+
     /*============================================================================================*/
     /* Class housekeeping methods */
 
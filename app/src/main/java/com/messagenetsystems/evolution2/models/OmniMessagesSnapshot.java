@@ -0,0 +1,144 @@
+package com.messagenetsystems.evolution2.models;
+
+/* OmniMessagesSnapshot
+ * An immutable, versioned snapshot of an OmniMessages list (i.e. the set of deliverable messages).
+ *
+ * OmniMessages publishes a new one of these (with the next version) every time it changes, while it still holds its lock.
+ * Readers just grab the current one (no locking) and may then make as many checks against it as they like, knowing they'll
+ * all agree with each other -- unlike asking the live list several times, where another thread may change it in between
+ * (e.g. highest priority is found, then the message with it is removed, before we go get the messages of that priority).
+ *
+ * The set (which messages, and in what order) is what's immutable. The OmniMessage objects are the same ones the list holds,
+ * so don't modify them through a snapshot; update them through OmniMessages, as always (which then publishes a new snapshot).
+ *
+ * Usage example...
+ *  OmniMessagesSnapshot deliverables = MainService.omniMessages_deliverable.getSnapshot();
+ *  if (deliverables.doesOmniMessageExist(uuid)) { ... }
+ *  for (OmniMessage omniMessage : deliverables) { ... }
+ */
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+
+public class OmniMessagesSnapshot implements Iterable<OmniMessage> {
+
+    // Constants...
+    public static final OmniMessagesSnapshot EMPTY = new OmniMessagesSnapshot(0, new Object[0]);
+
+    // Local stuff...
+    private final long version;                                                                     //increases with every change to the list (only ever goes up)
+    private final List<OmniMessage> omniMessages;                                                   //the list's items, in its order (unmodifiable)
+    private final Map<UUID, OmniMessage> omniMessagesByUUID;                                        //the list's items, by UUID (unmodifiable)
+    private final int highestPriority;                                                              //-1 if empty
+    private final int lowestPriority;                                                               //-1 if empty
+
+    /** Constructor
+     * @param version   Version of the list this is a snapshot of.
+     * @param items     The list's items (as from its toArray, which is already a copy, so we keep it).
+     */
+    @SuppressWarnings("unchecked")
+    OmniMessagesSnapshot(long version, Object[] items) {
+        this.version = version;
+
+        List<OmniMessage> list = (List<OmniMessage>) (List<?>) Arrays.asList(items);
+        Map<UUID, OmniMessage> map = new HashMap<UUID, OmniMessage>(items.length * 2);
+        int highest = -1;
+        int lowest = -1;
+        for (OmniMessage omniMessage : list) {
+            if (omniMessage == null) {
+                continue;
+            }
+            if (omniMessage.getMessageUUID() != null && !map.containsKey(omniMessage.getMessageUUID())) {
+                map.put(omniMessage.getMessageUUID(), omniMessage);
+            }
+            int priority = omniMessage.getMsgPriority();
+            if (highest < 0 || priority > highest) {
+                highest = priority;
+            }
+            if (lowest < 0 || priority < lowest) {
+                lowest = priority;
+            }
+        }
+
+        this.omniMessages = Collections.unmodifiableList(list);
+        this.omniMessagesByUUID = Collections.unmodifiableMap(map);
+        this.highestPriority = highest;
+        this.lowestPriority = lowest;
+    }
+
+
+    /*============================================================================================*/
+    /* Getter Methods */
+
+    /** @return Version of the list this is a snapshot of (a greater version is a later snapshot). */
+    public long getVersion() {
+        return version;
+    }
+
+    /** @return The messages, in the list's order (unmodifiable). */
+    public List<OmniMessage> getOmniMessages() {
+        return omniMessages;
+    }
+
+    public int size() {
+        return omniMessages.size();
+    }
+
+    public boolean isEmpty() {
+        return omniMessages.isEmpty();
+    }
+
+    @Override
+    public Iterator<OmniMessage> iterator() {
+        return omniMessages.iterator();
+    }
+
+    /** @return The message with the specified UUID (by reference), or null if there's none. */
+    public OmniMessage getOmniMessage(@NonNull UUID uuid) {
+        return omniMessagesByUUID.get(uuid);
+    }
+
+    public boolean doesOmniMessageExist(@NonNull UUID uuid) {
+        return omniMessagesByUUID.containsKey(uuid);
+    }
+
+
+    /*============================================================================================*/
+    /* Priority Methods */
+    // Same as OmniMessages' methods of the same names, but worked out once (when the snapshot was made).
+
+    /** @return Highest priority value of the messages, or -1 if there are none. */
+    public int findHighestPriorityValue() {
+        return highestPriority;
+    }
+
+    /** @return Lowest priority value of the messages, or -1 if there are none. */
+    public int findLowestPriorityValue() {
+        return lowestPriority;
+    }
+
+    /** @return Whether there are messages of different priorities (false if there are none). */
+    public boolean doesContainMultiplePriorities() {
+        return highestPriority != lowestPriority;
+    }
+
+    /** @return The messages of the highest priority, in the list's order. */
+    public List<OmniMessage> getOmniMessagesOfHighestPriority() {
+        List<OmniMessage> ret = new ArrayList<OmniMessage>();
+        for (OmniMessage omniMessage : omniMessages) {
+            if (omniMessage != null && omniMessage.getMsgPriority() == highestPriority) {
+                ret.add(omniMessage);
+            }
+        }
+        return ret;
+    }
+}
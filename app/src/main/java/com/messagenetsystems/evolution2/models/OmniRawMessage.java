@@ -32,6 +32,7 @@ import android.util.Log;
 
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
 
 import org.json.JSONObject;
 
@@ -68,6 +69,7 @@ public class OmniRawMessage {
     private int statusMessageDB;
     private UUID messageUUID;
     private JSONObject messageJSONObject;
+    private long messageJsonHash;                                   //content hash of messageJSONObject, as of when it was set (see setMessageJSONObject)
     private JSONObject metadataJSONObject;
 
 
@@ -101,6 +103,7 @@ public class OmniRawMessage {
         statusMessageDB = omniRawMessageToCopy.statusMessageDB;
         messageUUID = omniRawMessageToCopy.messageUUID;
         messageJSONObject = omniRawMessageToCopy.messageJSONObject;
+        messageJsonHash = omniRawMessageToCopy.messageJsonHash;
         metadataJSONObject = omniRawMessageToCopy.metadataJSONObject;
     }
 
@@ -153,8 +156,16 @@ public class OmniRawMessage {
         return messageJSONObject;
     }
 
+    /** Set the message JSON, and work out its content hash (once, here, so it needn't be worked out every time it's compared).
+     * DEV-NOTE: Don't edit the provided JSONObject in place afterward (set a new one instead), or the hash won't match it. */
     public void setMessageJSONObject(JSONObject messageJSONObject) {
         this.messageJSONObject = messageJSONObject;
+        this.messageJsonHash = ReceivedMessage.computeMessageJsonHash(messageJSONObject == null ? null : messageJSONObject.toString());
+    }
+
+    /** @return Content hash of the message JSON (ReceivedMessage.computeMessageJsonHash of its text, or 0 if there is none). */
+    public long getMessageJsonHash() {
+        return messageJsonHash;
     }
 
     public int getStatus() {
@@ -3,6 +3,9 @@ package com.messagenetsystems.evolution2.models;
 /* OmniRawMessages
  * This is a container for a list of OmniRawMessage objects.
  *
+ * It's a UUIDIndexedList, so finding an item (or checking for a duplicate) doesn't search the list, and iterating it (e.g. for-each) is safe while others change it.
+ * It also keeps a version number that goes up with every change, which a thread may wait on (see awaitChange) instead of polling.
+ *
  * Revisions:
  *  2019.12.09      Chris Rider     Created.
  *  2019.12.10      Chris Rider     Renamed from OmniMessages to OmniRawMessages.
@@ -19,15 +22,15 @@ import android.util.Log;
 
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.databases.PipelineStores;
 import com.messagenetsystems.evolution2.databases.messages.Message;
-import com.messagenetsystems.evolution2.databases.messages.MessageDatabaseClient;
+import com.messagenetsystems.evolution2.databases.messages.MessageStore;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
 import java.util.UUID;
 
 
-public class OmniRawMessages extends ArrayList<OmniRawMessage> {
+public class OmniRawMessages extends UUIDIndexedList<OmniRawMessage> {
     private final String TAG = this.getClass().getSimpleName();
 
     // Constants...
@@ -49,7 +52,8 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
     // Local stuff...
     private WeakReference<Context> appContextRef;
     private boolean doSyncWithDatabase;
-    private MessageDatabaseClient messageDatabaseClient;
+    private MessageStore messageStore;
+    private volatile long version = 0;                  //goes up with every change to the list (only changed under our lock)
 
 
     /** Constructor
@@ -67,13 +71,13 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
         // Prepare possible database access
         if (doSyncWithDatabase) {
             try {
-                this.messageDatabaseClient = MessageDatabaseClient.getInstance(appContext);
+                this.messageStore = PipelineStores.getInstance(appContext).getMessageStore();
             } catch (Exception e) {
                 logE("Exception caught getting database client instance: " + e.getMessage());
-                this.messageDatabaseClient = null;
+                this.messageStore = null;
             }
 
-            if (this.messageDatabaseClient == null) {
+            if (this.messageStore == null) {
                 logE("No available database client instance, disabling sync.");
                 this.doSyncWithDatabase = false;
             }
@@ -90,6 +94,16 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
      * @return Whether the object was added.
      */
     public synchronized boolean addOmniRawMessage(@NonNull OmniRawMessage omniRawMessage, @NonNull boolean avoidDuplicates) {
+        return addOmniRawMessage(omniRawMessage, avoidDuplicates, SYNC_DB_TRUE);
+    }
+
+    /** Add the provided OmniRawMessage object to the collection, specifying whether to add it to DB (if DB sync flag is set).
+     * Specify SYNC_DB_FALSE for a message that didn't come from (and so shouldn't be written back to) the DB, e.g. one restored from RotationSnapshot.
+     * @param omniRawMessage The OmniRawMessage object to add.
+     * @param syncWithDatabase Whether to also add it to DB (SYNC_DB_TRUE or SYNC_DB_FALSE).
+     * @return Whether the object was added.
+     */
+    public synchronized boolean addOmniRawMessage(@NonNull OmniRawMessage omniRawMessage, @NonNull boolean avoidDuplicates, boolean syncWithDatabase) {
         final String TAGG = "addOmniRawMessage: ";
         boolean ret;
 
@@ -110,10 +124,9 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
 
         // Handle possibly adding the provided OmniRawMessage object to the database
         // (the DB back-end/DAO/SQL figure the "possibly" out for us)
-        if (doSyncWithDatabase) {
+        if (doSyncWithDatabase && syncWithDatabase) {
             try {
-                this.messageDatabaseClient.addRecord(this.appContextRef.get(),
-                        omniRawMessage.getMessageUUID().toString(),
+                this.messageStore.addRecord(omniRawMessage.getMessageUUID().toString(),
                         omniRawMessage.getMessageJSONObject().toString(),
                         Message.STATUS_COPIED_FROM_RAM,
                         omniRawMessage.getReceivedAt());
@@ -136,12 +149,7 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
         boolean ret = false;
 
         try {
-            for (OmniRawMessage om : this) {
-                if (om.getMessageUUID().equals(omniRawMessage.getMessageUUID())) {
-                    ret = true;
-                    break;
-                }
-            }
+            ret = isIndexed(omniRawMessage.getMessageUUID());
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -159,12 +167,7 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
         OmniRawMessage ret = null;
 
         try {
-            for (OmniRawMessage om : this) {
-                if (om.getMessageUUID().equals(uuid)) {
-                    ret = om;
-                    break;
-                }
-            }
+            ret = getIndexed(uuid);
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -182,12 +185,7 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
         int ret = -1;
 
         try {
-            for (int i = 0; i < this.size(); i++) {
-                if (this.get(i).getMessageUUID().equals(uuid)) {
-                    ret = i;
-                    break;
-                }
-            }
+            ret = findListPosition(uuid);
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -205,12 +203,7 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
         int ret = -1;
 
         try {
-            for (int i = 0; i < this.size(); i++) {
-                if (this.get(i).getMessageUUID().equals(omniRawMessage.getMessageUUID())) {
-                    ret = i;
-                    break;
-                }
-            }
+            ret = findListPosition(omniRawMessage.getMessageUUID());
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -231,8 +224,7 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
         // (the DB back-end/DAO/SQL figure the "possibly" out for us)
         if (doSyncWithDatabase && omniRawMessage != null) {
             try {
-                this.messageDatabaseClient.deleteRecord(this.appContextRef.get(),
-                        omniRawMessage.getMessageUUID());
+                this.messageStore.deleteRecord(omniRawMessage.getMessageUUID());
             } catch (Exception e) {
                 logE(TAGG + "Provided OmniRawMessage could not be removed from DB."+e.getMessage());
             }
@@ -260,20 +252,25 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
         boolean ret;
 
         try {
-            // Find the position of the matching existing object
-            int positionOfExistingMatch = getOmniRawMessageListPosition(omniRawMessage);
-            if (positionOfExistingMatch < 0 || positionOfExistingMatch >= this.size()) {
-                logW(TAGG+"Invalid matching position. Cannot continue.");
+            // Find the matching existing object (by index), and check if it's equal to that provided already (no need to update if it is)
+            OmniRawMessage existingMatch = getIndexed(omniRawMessage.getMessageUUID());
+            if (existingMatch == null) {
+                logW(TAGG+"No matching existing object. Cannot continue.");
                 return false;
             }
-
-            // Check if the object is equal to its matching object already (no need to update if it is)
-            //logE(TAGG+"\nOrig = \""+this.get(positionOfExistingMatch).getMetadataJSONObject().toString()+"\"\nArg = \""+omniRawMessage.getMetadataJSONObject().toString()+"\""); //TODO REMOVE AFTER DEBUGGING
-            if (this.get(positionOfExistingMatch).equals(omniRawMessage)) {
+            //logE(TAGG+"\nOrig = \""+existingMatch.getMetadataJSONObject().toString()+"\"\nArg = \""+omniRawMessage.getMetadataJSONObject().toString()+"\""); //TODO REMOVE AFTER DEBUGGING
+            if (existingMatch.equals(omniRawMessage)) {
                 logD(TAGG+"Existing match is the same as provided. No update necessary.");
                 return false;
             }
 
+            // Find the position of the matching existing object
+            int positionOfExistingMatch = findItemListPosition(existingMatch);
+            if (positionOfExistingMatch < 0 || positionOfExistingMatch >= this.size()) {
+                logW(TAGG+"Invalid matching position. Cannot continue.");
+                return false;
+            }
+
             // Update the item at the found position (returns previous object that was replaced)
             OmniRawMessage omniRawMesssage_prev = this.set(positionOfExistingMatch, omniRawMessage);
 
@@ -303,14 +300,9 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
 
         if (doSyncWithDatabase) {
             try {
-                this.messageDatabaseClient.updateJsonFor(this.appContextRef.get(),
-                        omniRawMessage.getMessageUUID(),
-                        omniRawMessage.getMessageJSONObject());
-                this.messageDatabaseClient.updateMetaFor(this.appContextRef.get(),
-                        omniRawMessage.getMessageUUID(),
-                        omniRawMessage.getMetadataJSONObject());
-                this.messageDatabaseClient.updateStatusFor(this.appContextRef.get(),
-                        omniRawMessage.getMessageUUID(),
+                this.messageStore.updateJsonMetaStatusFor(omniRawMessage.getMessageUUID(),
+                        omniRawMessage.getMessageJSONObject(),
+                        omniRawMessage.getMetadataJSONObject(),
                         Message.STATUS_COPIED_FROM_RAM);
             } catch (Exception e) {
                 logE(TAGG + "Provided OmniRawMessage could not be updated in DB."+e.getMessage());
@@ -319,6 +311,56 @@ public class OmniRawMessages extends ArrayList<OmniRawMessage> {
     }
 
 
+    /** Save a message's expiration to DB (only takes, if it doesn't already have one).
+     * @param uuid UUID of the message.
+     * @param expiresAtMs When it expires, as epoch milliseconds.
+     */
+    public void doFlushExpiresAtToDB(UUID uuid, long expiresAtMs) {
+        final String TAGG = "doFlushExpiresAtToDB: ";
+
+        if (doSyncWithDatabase) {
+            try {
+                this.messageStore.updateExpiresAtFor(uuid, expiresAtMs);
+            } catch (Exception e) {
+                logE(TAGG + "Expiration could not be updated in DB."+e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    protected UUID getUUIDOf(OmniRawMessage omniRawMessage) {
+        return omniRawMessage.getMessageUUID();
+    }
+
+    /** Bump our version and wake anyone waiting on a change (UUIDIndexedList calls this after every change, under our lock). */
+    @Override
+    protected void onListChanged() {
+        version++;
+        notifyAll();
+    }
+
+    /** @return Current version of this list (a different version means the list has changed, including any update of an item). */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Wait until this list has changed from the specified version, or the timeout has passed (whichever is first).
+     * @param sinceVersion Version to wait for a change from (e.g. as returned by the last call).
+     * @param timeoutMs Longest to wait, in milliseconds.
+     * @return Current version (the same as sinceVersion, if it timed out with no change).
+     * @throws InterruptedException If the waiting thread gets interrupted (just like Thread.sleep).
+     */
+    public synchronized long awaitChange(long sinceVersion, long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        long remainingMs = timeoutMs;
+        while (version == sinceVersion && remainingMs > 0) {
+            wait(remainingMs);
+            remainingMs = deadline - System.currentTimeMillis();
+        }
+        return version;
+    }
+
+
     /*============================================================================================*/
     /* Class housekeeping methods */
 
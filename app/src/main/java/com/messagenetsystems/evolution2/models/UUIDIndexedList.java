@@ -0,0 +1,251 @@
+package com.messagenetsystems.evolution2.models;
+
+/* UUIDIndexedList
+ * A list of items that each have a UUID, with a concurrent index of them by that UUID.
+ * This is what OmniRawMessages and OmniMessages are built on, since nearly everything done with them is a find by UUID.
+ *
+ * The list itself is copy-on-write, so it keeps insertion order (what rotation goes by), and iterating it (e.g. for-each) works
+ * on a snapshot. So readers (like DeliveryService) never get ConcurrentModificationException, and never wait on the sync threads.
+ * Finding an item by UUID (or checking for a duplicate) is an index lookup, rather than a search of the list.
+ *
+ * Every way of changing the list is overridden here to keep the index in step.
+ * A subList is read-only, since changes through it would go around the index (its iterators are already, being copy-on-write).
+ * Bulk changes build a whole new index and swap it in at once, so a reader never finds an item missing that's still in the list.
+ * Writers hold the list's own monitor (every mutator here is a synchronized override, as are subclasses' synchronized methods), so the list and index
+ * change together, as far as other writers go. That monitor is not CopyOnWriteArrayList's internal lock (which only guards each array swap, and which
+ * the overrides take in turn, through super), so it's the overrides, not that lock, that keep writers in step. Readers don't lock at all, so one
+ * may briefly see an item in one and not yet the other (which is no different than it finding a list just before or after a change).
+ * Subclasses may override onListChanged, to be told of every change (while the writer still holds the list's monitor).
+ *
+ * DEV-NOTE...
+ *  We're restricted to Java 7, so the Java 8 List methods (removeIf, replaceAll, and sort) aren't overridden.
+ *  Don't call them on one of these (where a newer runtime has them), since they'd change the list without the index.
+ *
+ * Usage example...
+ *  public class OmniRawMessages extends UUIDIndexedList<OmniRawMessage> {
+ *      @Override
+ *      protected UUID getUUIDOf(OmniRawMessage omniRawMessage) { return omniRawMessage.getMessageUUID(); }
+ *  }
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+public abstract class UUIDIndexedList<E> extends CopyOnWriteArrayList<E> {
+
+    // Local stuff...
+    private volatile ConcurrentHashMap<UUID, E> indexByUUID = new ConcurrentHashMap<UUID, E>();     //the list's items, by UUID (kept in step by the overrides below, and only ever replaced whole by reindexAll)
+
+
+    /** Implement this to provide the UUID that an item is indexed by.
+     * @param item The item (never null).
+     * @return Its UUID (may be null, in which case it's not indexed).
+     */
+    protected abstract UUID getUUIDOf(E item);
+
+    /** Override this to do something whenever the list has changed (e.g. publish a snapshot of it).
+     * It's called by the writer, while it still holds the list's monitor, so changes are seen here one at a time and in order.
+     * (it may occasionally be called more than once for one change, so whatever it does should not mind that)
+     */
+    protected void onListChanged() {
+    }
+
+
+    /*============================================================================================*/
+    /* Lookup Methods */
+
+    /** @return Whether an item with the specified UUID is in the list. */
+    protected boolean isIndexed(UUID uuid) {
+        return uuid != null && indexByUUID.containsKey(uuid);
+    }
+
+    /** @return The item with the specified UUID, or null if there's none. */
+    protected E getIndexed(UUID uuid) {
+        return uuid == null ? null : indexByUUID.get(uuid);
+    }
+
+    /** @return Position in the list of the item with the specified UUID, or -1 if there's none (without searching the list, in that case). */
+    protected int findListPosition(UUID uuid) {
+        E item = getIndexed(uuid);
+        if (item == null) {
+            return -1;
+        }
+        return findItemListPosition(item);
+    }
+
+    /** @return Position in the list of the provided item (the very instance, not just an equal one), or -1 if it's not in the list. */
+    protected int findItemListPosition(E item) {
+        Object[] items = toArray();
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /*============================================================================================*/
+    /* List Methods */
+    // These override every way the underlying list may change, so the index always reflects it.
+    // (we may get called back into from the superclass' own implementations, so index updates are all idempotent)
+
+    @Override
+    public synchronized boolean add(E item) {
+        boolean ret = super.add(item);
+        indexItem(item);
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized void add(int index, E item) {
+        super.add(index, item);
+        indexItem(item);
+        onListChanged();
+    }
+
+    @Override
+    public synchronized boolean addIfAbsent(E item) {
+        boolean ret = super.addIfAbsent(item);
+        indexItem(item);
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends E> collection) {
+        boolean ret = super.addAll(collection);
+        reindexAll();
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized boolean addAll(int index, Collection<? extends E> collection) {
+        boolean ret = super.addAll(index, collection);
+        reindexAll();
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized int addAllAbsent(Collection<? extends E> collection) {
+        int ret = super.addAllAbsent(collection);
+        reindexAll();
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized E set(int index, E item) {
+        E ret = super.set(index, item);
+        UUID uuid = (ret == null ? null : getUUIDOf(ret));
+        if (uuid != null && item != null && uuid.equals(getUUIDOf(item)) && indexByUUID.get(uuid) == ret) {
+            //the usual case (an update), so the new item just takes the old one's place in the index
+            indexByUUID.put(uuid, item);
+        } else {
+            unindexItem(ret);
+            indexItem(item);
+        }
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized E remove(int index) {
+        E ret = super.remove(index);
+        unindexItem(ret);
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);     //(which takes care of index and onListChanged)
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection<?> collection) {
+        boolean ret = super.removeAll(collection);
+        reindexAll();
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection<?> collection) {
+        boolean ret = super.retainAll(collection);
+        reindexAll();
+        onListChanged();
+        return ret;
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        indexByUUID = new ConcurrentHashMap<UUID, E>();
+        onListChanged();
+    }
+
+    /** @return A read-only view of the specified range (changing the list through it would go around the index). */
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+        return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+    }
+
+
+    /*============================================================================================*/
+    /* Index Methods */
+
+    /** Index the provided item, if it has a UUID (if it's a duplicate, the index keeps the one it already has). */
+    private void indexItem(E item) {
+        indexItem(indexByUUID, item);
+    }
+
+    /** Index the provided item in the provided index, if it has a UUID (if it's a duplicate, the index keeps the one it already has). */
+    private void indexItem(ConcurrentHashMap<UUID, E> index, E item) {
+        UUID uuid = (item == null ? null : getUUIDOf(item));
+        if (uuid != null) {
+            index.putIfAbsent(uuid, item);
+        }
+    }
+
+    /** Unindex the provided (just removed or replaced) item, indexing any duplicate of its UUID that's still in the list instead.
+     * Searching the list for that is no worse than what removing from a copy-on-write list costs already.
+     * (a duplicate replaces it in one step, so a reader never finds its UUID missing in between) */
+    private void unindexItem(E item) {
+        UUID uuid = (item == null ? null : getUUIDOf(item));
+        if (uuid == null || indexByUUID.get(uuid) != item) {
+            return;
+        }
+        for (E e : this) {
+            if (e != null && uuid.equals(getUUIDOf(e))) {
+                indexByUUID.put(uuid, e);
+                return;
+            }
+        }
+        indexByUUID.remove(uuid);
+    }
+
+    /** Rebuild the whole index from the list (after bulk changes).
+     * The new index is built aside and swapped in whole, since readers don't lock (clearing and refilling the one they use
+     * would have them miss items that never left the list). */
+    private void reindexAll() {
+        ConcurrentHashMap<UUID, E> newIndexByUUID = new ConcurrentHashMap<UUID, E>();
+        for (E e : this) {
+            indexItem(newIndexByUUID, e);
+        }
+        indexByUUID = newIndexByUUID;
+    }
+}
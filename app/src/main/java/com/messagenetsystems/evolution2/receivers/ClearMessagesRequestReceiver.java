@@ -19,7 +19,8 @@ import android.view.WindowManager;
 import android.widget.Toast;
 
 import com.bosphere.filelogger.FL;
-import com.messagenetsystems.evolution2.databases.messages.MessageDatabaseClient;
+import com.messagenetsystems.evolution2.databases.PipelineStores;
+import com.messagenetsystems.evolution2.databases.messages.MessageStore;
 import com.messagenetsystems.evolution2.services.DeliveryService;
 
 
@@ -74,13 +75,13 @@ public class ClearMessagesRequestReceiver extends BroadcastReceiver {
         final String TAGG = "doDeleteRecords: ";
 
         try {
-            MessageDatabaseClient messageDatabaseClient = MessageDatabaseClient.getInstance(context.getApplicationContext());
-            if (messageDatabaseClient == null) {
+            MessageStore messageStore = PipelineStores.getInstance(context.getApplicationContext()).getMessageStore();
+            if (messageStore == null) {
                 FL.e(TAG, TAGG + "No available database client instance, aborting.");
                 return;
             }
 
-            messageDatabaseClient.deleteAll(context);
+            messageStore.deleteAll();
         } catch (Exception e) {
             FL.e(TAG, TAGG+"Exception caught: "+e.getMessage());
         }
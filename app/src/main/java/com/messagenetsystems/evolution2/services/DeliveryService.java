@@ -83,10 +83,12 @@ import com.messagenetsystems.evolution2.OmniApplication;
 import com.messagenetsystems.evolution2.activities.ClockActivity;
 import com.messagenetsystems.evolution2.activities.DeliverScrollingMsgActivity;
 import com.messagenetsystems.evolution2.activities.DeliverWebpageActivity;
+import com.messagenetsystems.evolution2.databases.messages.RotationSnapshot;
 import com.messagenetsystems.evolution2.models.BannerMessage;
 import com.messagenetsystems.evolution2.models.FlasherLights;
 import com.messagenetsystems.evolution2.models.OmniMessage;
 import com.messagenetsystems.evolution2.models.OmniMessages;
+import com.messagenetsystems.evolution2.models.OmniMessagesSnapshot;
 import com.messagenetsystems.evolution2.threads.DeliveryQueueProcessor;
 import com.messagenetsystems.evolution2.threads.DeliveryRotator;
 import com.messagenetsystems.evolution2.utilities.ThreadUtils;
@@ -679,6 +681,48 @@ public class DeliveryService extends Service {
         return ret;
     }
 
+    /** Load our rotation lists (and last-completed UUID) from the rotation snapshot that MainService restored on startup, if any.
+     * Only messages that are (still) in the deliverables are loaded. The snapshot's loaded data is then forgotten, so this only happens once.
+     * @return Whether rotation was loaded from the snapshot (if not, load it from the deliverables as usual).
+     */
+    private boolean loadRotationFromSnapshot() {
+        final String TAGG = "loadRotationFromSnapshot: ";
+
+        RotationSnapshot rotationSnapshot = RotationSnapshot.getInstance(getApplicationContext());
+        List<RotationSnapshot.Entry> entries = rotationSnapshot.getLoadedEntries();
+        UUID lastCompletedUUID = rotationSnapshot.getLoadedLastCompletedUUID();
+        rotationSnapshot.clearLoaded();
+
+        if (entries.size() == 0) {
+            return false;
+        }
+
+        for (RotationSnapshot.Entry entry : entries) {
+            if (!MainService.omniMessages_deliverable.doesOmniMessageExist(entry.messageUUID)) {
+                logV(TAGG+"Snapshot's \""+entry.messageUUID.toString()+"\" is not in deliverables, leaving it out of rotation.");
+                continue;
+            }
+            if (entry.isNew()) {
+                omniMessageUUIDsToRotate_new.add(entry.messageUUID);
+            } else {
+                omniMessageUUIDsToRotate.add(entry.messageUUID);
+            }
+        }
+
+        if (omniMessageUUIDsToRotate.size() == 0 && omniMessageUUIDsToRotate_new.size() == 0) {
+            logI(TAGG+"None of the snapshot's messages are in deliverables, loading from deliverables instead.");
+            return false;
+        }
+
+        if (lastCompletedUUID != null && omniMessageUUIDsToRotate.contains(lastCompletedUUID)) {
+            omniMessageUuidDelivery_lastCompleted = lastCompletedUUID;
+        }
+
+        logI(TAGG+"Loaded rotation from snapshot ("+omniMessageUUIDsToRotate.size()+" rotating, "+omniMessageUUIDsToRotate_new.size()+" new, last completed "+String.valueOf(omniMessageUuidDelivery_lastCompleted)+").");
+        return true;
+    }
+
+
     /*============================================================================================*/
     /* Delivery-Activity Methods */
 
@@ -1089,21 +1133,30 @@ public class DeliveryService extends Service {
                     tag = "MSGHANDLER_ACTION_LIST_LOAD: ";
 
                     try {
+                        // Get a snapshot of deliverables to work from (so they can't change on us part-way through)
+                        OmniMessagesSnapshot deliverablesToLoad = MainService.omniMessages_deliverable.getSnapshot();
+
                         // Broadcast our number of current deliverables in existence
                         deliveryStatusInformIntent.setAction(Constants.Intents.Actions.UPDATE_NUMBER_DELIVERING_MSGS);
-                        deliveryStatusInformIntent.putExtra(Constants.Intents.ExtrasKeys.MAIN_APP_NUMBER_DELIVERING_MSGS, MainService.omniMessages_deliverable.size());
+                        deliveryStatusInformIntent.putExtra(Constants.Intents.ExtrasKeys.MAIN_APP_NUMBER_DELIVERING_MSGS, deliverablesToLoad.size());
                         sendBroadcast(deliveryStatusInformIntent);
 
                         // Recreate new OmniMessages objects just to make sure we're dealing with freshness
                         omniMessageUUIDsToRotate = new ArrayList<>();
                         omniMessageUUIDsToRotate_new = new ArrayList<>();
 
+                        // If MainService restored a rotation snapshot, pick rotation back up where it was (same order, and after the same last-completed message)
+                        // This only happens once (on startup); any later load goes by the deliverables, below.
+                        if (loadRotationFromSnapshot()) {
+                            break;
+                        }
+
                         // Populate main delivery list with our deliverable-messages data, as-is
                         // On startup, this will always contain at least persisted messages (if any brand-new ones got in, that's ok, as we just started anyway)
                         //TODO: Does this instead need to be highest priority messages??
-                        int sizeOfDeliverablesList = MainService.omniMessages_deliverable.size();
+                        int sizeOfDeliverablesList = deliverablesToLoad.size();
                         if (sizeOfDeliverablesList > 0) {
-                            for (OmniMessage omniMessage_deliverable : MainService.omniMessages_deliverable) {
+                            for (OmniMessage omniMessage_deliverable : deliverablesToLoad) {
                                 logV(TAGG + TAGGG + tag + "Adding \"" + omniMessage_deliverable.getMessageUUID() + "\" from deliverables to queue list...");
                                 omniMessageUUIDsToRotate.add(omniMessage_deliverable.getMessageUUID());
                             }
@@ -1140,14 +1193,19 @@ public class DeliveryService extends Service {
                                 try {
                                     logV(TAGG + TAGGG + tagg + "------------------------------------------------------------------------");
 
+                                    // Get a snapshot of deliverables to work from, so all our checks below agree with each other
+                                    // (the live list may change while we're going, but we'll just pick that up on the next sync)
+                                    final OmniMessagesSnapshot deliverables = MainService.omniMessages_deliverable.getSnapshot();
+                                    logV(TAGG + TAGGG + tagg + "Working from deliverables snapshot v" + deliverables.getVersion() + " (" + deliverables.size() + " message(s)).");
+
                                     // Broadcast our number of current deliverables in existence
                                     deliveryStatusInformIntent.setAction(Constants.Intents.Actions.UPDATE_NUMBER_DELIVERING_MSGS);
-                                    deliveryStatusInformIntent.putExtra(Constants.Intents.ExtrasKeys.MAIN_APP_NUMBER_DELIVERING_MSGS, MainService.omniMessages_deliverable.size());
+                                    deliveryStatusInformIntent.putExtra(Constants.Intents.ExtrasKeys.MAIN_APP_NUMBER_DELIVERING_MSGS, deliverables.size());
                                     sendBroadcast(deliveryStatusInformIntent);
 
                                     // Check whether there are messages in the deliverables list, and proceed accordingly...
                                     // If there are none in deliverables list, then there should be none in rotation lists.
-                                    if (MainService.omniMessages_deliverable.size() == 0) {
+                                    if (deliverables.size() == 0) {
                                         // No deliverables, so just clear the rotation lists and be done for now
                                         logV(TAGG + TAGGG + tagg + "***Deliverables list is empty, so clearing all rotation lists now...");
                                         omniMessageUUIDsToRotate.clear();
@@ -1185,7 +1243,7 @@ public class DeliveryService extends Service {
                                     if (omniMessageUUIDsToRotate.size() == 0) {
                                         // Simply populate the rotation list with deliverables data, as-is.
                                         logV(TAGG + TAGGG + tagg + "***Rotation list is empty but deliverables is not, so loading current highest-priority deliverables' UUIDs into rotation now...");
-                                        for (OmniMessage deliverableOfHighestPriority : MainService.omniMessages_deliverable.getOmniMessagesOfHighestPriority()) {
+                                        for (OmniMessage deliverableOfHighestPriority : deliverables.getOmniMessagesOfHighestPriority()) {
                                             logV(TAGG + TAGGG + tagg + " Adding " + deliverableOfHighestPriority.getMessageUUID().toString() + " to rotation...");
                                             omniMessageUUIDsToRotate.add(deliverableOfHighestPriority.getMessageUUID());
                                         }
@@ -1205,7 +1263,7 @@ public class DeliveryService extends Service {
                                         ArrayList<Integer> indicesToRemove = new ArrayList<>();
                                         for (int i = 0; i < omniMessageUUIDsToRotate.size(); i++) {
                                             UUID uuid = omniMessageUUIDsToRotate.get(i);
-                                            if (MainService.omniMessages_deliverable.doesOmniMessageExist(uuid)) {
+                                            if (deliverables.doesOmniMessageExist(uuid)) {
                                                 continue;
                                             } else {
                                                 logV(TAGG + TAGGG + tagg + "Marking \"" + uuid.toString() + "\" (#" + i + ") for removal from rotation list, as it's no longer in deliverables...");
@@ -1224,7 +1282,7 @@ public class DeliveryService extends Service {
                                         indicesToRemove = new ArrayList<>();
                                         for (int i = 0; i < omniMessageUUIDsToRotate_new.size(); i++) {
                                             UUID uuid = omniMessageUUIDsToRotate_new.get(i);
-                                            if (MainService.omniMessages_deliverable.doesOmniMessageExist(uuid)) {
+                                            if (deliverables.doesOmniMessageExist(uuid)) {
                                                 continue;
                                             } else {
                                                 logV(TAGG + TAGGG + tagg + "Marking \"" + uuid.toString() + "\" (#" + i + ") for removal from rotation_new list, as it's no longer in deliverables...");
@@ -1239,7 +1297,7 @@ public class DeliveryService extends Service {
                                             }
                                         }
 
-                                        int highestPriorityInDeliverables = MainService.omniMessages_deliverable.findHighestPriorityValue();
+                                        int highestPriorityInDeliverables = deliverables.findHighestPriorityValue();
                                         int highestPriorityInRotation = findHighestPriorityValueInRotation();
 
                                         // If deliverables' highest priority is greater than what's currently in rotation, then we need to rotate that instead of current
@@ -1248,7 +1306,7 @@ public class DeliveryService extends Service {
                                             logV(TAGG + TAGGG + tagg + "*Rotation list has " + highestPriorityInRotation + "-priority message(s) but deliverables has " + highestPriorityInDeliverables + "-priority message(s), so loading current highest-priority deliverables' UUIDs into rotation now...");
                                             omniMessageUUIDsToRotate.clear();
                                             omniMessageUUIDsToRotate_new.clear();
-                                            for (OmniMessage deliverableOfHighestPriority : MainService.omniMessages_deliverable.getOmniMessagesOfHighestPriority()) {
+                                            for (OmniMessage deliverableOfHighestPriority : deliverables.getOmniMessagesOfHighestPriority()) {
                                                 logV(TAGG + TAGGG + tagg + " Adding " + deliverableOfHighestPriority.getMessageUUID().toString() + " to rotation...");
                                                 omniMessageUUIDsToRotate.add(deliverableOfHighestPriority.getMessageUUID());
                                             }
@@ -1260,7 +1318,7 @@ public class DeliveryService extends Service {
                                         }
 
                                         // Ensure we don't load lower priority from delivery in with the higher priority messages already in rotation
-                                        if (MainService.omniMessages_deliverable.doesContainMultiplePriorities()) {
+                                        if (deliverables.doesContainMultiplePriorities()) {
                                             //we can't do anything until higher priority message(s) have gone away somehow (closed, expired, etc.)
                                             logV(TAGG + TAGGG + tagg + "*Rotation list already has highest (" + highestPriorityInRotation + ") priority message(s), even though deliverables has other-priority message(s), so just keeping what's in rotation now.");
 
@@ -1274,7 +1332,7 @@ public class DeliveryService extends Service {
                                         if (highestPriorityInDeliverables == highestPriorityInRotation) {
                                             // (looping through deliverables, check for their existence in rotation... if not exists, then it's a new one)
                                             logV(TAGG + TAGGG + tagg + "*Rotation list has same priority message(s) as deliverables (" + highestPriorityInDeliverables + "), so checking for any new messages to inject for delivery...");
-                                            for (OmniMessage deliverable : MainService.omniMessages_deliverable) {
+                                            for (OmniMessage deliverable : deliverables) {
                                                 boolean deliverableFoundInRotation = false;
                                                 UUID deliverableUUID = deliverable.getMessageUUID();
                                                 logV(TAGG + TAGGG + tagg + " Examining deliverable " + deliverableUUID.toString() + "...");
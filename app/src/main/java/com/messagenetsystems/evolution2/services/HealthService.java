@@ -21,6 +21,8 @@ package com.messagenetsystems.evolution2.services;
  *  - Device storage available / clearing old files
  *      - Receiver for getting system broadcasts about storage states -- DEPRECATED
  *      - Thread for getting data not covered by the receiver, and for actually doing stuff with whatever data/flags we have.
+ *  - Database maintenance (retention, vacuum) and size
+ *      - HealthThreadDatabase:         Thread for deleting old records (by storage pressure, from above), giving free pages back, and reporting database size.
  *  - Display monitoring
  *      - Receiver for getting system broadcasts about display/screen states, and setting flags appropriately.
  *      - Thread for getting data not covered by the receiver, and for actually doing stuff with whatever data/flags we have.
@@ -58,6 +60,7 @@ import com.messagenetsystems.evolution2.OmniApplication;
 import com.messagenetsystems.evolution2.models.ProcessStatus;
 import com.messagenetsystems.evolution2.receivers.DisplayStateReceiver;
 import com.messagenetsystems.evolution2.receivers.HealthReceiverEnergyStates;
+import com.messagenetsystems.evolution2.threads.HealthThreadDatabase;
 import com.messagenetsystems.evolution2.threads.HealthThreadEnergy;
 import com.messagenetsystems.evolution2.threads.HealthThreadHeartbeat;
 import com.messagenetsystems.evolution2.threads.HealthThreadProcessStatus;
@@ -79,6 +82,7 @@ public class HealthService extends Service {
     // Constants...
     public static final int HANDLER_ACTION_UPDATE_GLOBAL_VALUES_POWER = 1;
     public static final int HANDLER_ACTION_UPDATE_GLOBAL_VALUES_STORAGE = 2;
+    public static final int HANDLER_ACTION_UPDATE_GLOBAL_VALUES_DATABASE = 3;
 
     public static final int ENERGY_BATTERY_PERCENT_UNKNOWN = -1;
     public static final int ENERGY_VOLTAGE_UNKNOWN = EnergyUtils.VOLTAGE_UNKNOWN;
@@ -99,6 +103,11 @@ public class HealthService extends Service {
 
     public static final String BUNDLE_KEYNAME_STORAGE_BYTES_FREE_EXTERNAL = "storageBytesFreeExternal";
 
+    public static final String BUNDLE_KEYNAME_DATABASE_FILE_BYTES = "databaseFileBytes";
+    public static final String BUNDLE_KEYNAME_DATABASE_PAGE_SIZE_BYTES = "databasePageSizeBytes";
+    public static final String BUNDLE_KEYNAME_DATABASE_PAGE_COUNT = "databasePageCount";
+    public static final String BUNDLE_KEYNAME_DATABASE_FREE_PAGE_COUNT = "databaseFreePageCount";
+
     public static final int DISPLAY_SCREEN_STATE_UNKNOWN = -1;
     public static final int DISPLAY_SCREEN_STATE_ON = 1;
     public static final int DISPLAY_SCREEN_STATE_OFF = 2;
@@ -133,6 +142,12 @@ public class HealthService extends Service {
     public static volatile String storage_hrAvailableBytes_external;
     public static volatile int storage_spaceState_external;
 
+    public static volatile long database_rawFileBytes;                                              //intended to store latest data gathered (database file plus its write-ahead log)
+    public static volatile String database_hrFileBytes;                                             //intended to store latest data gathered, in human-readable / presentable format
+    public static volatile long database_rawPageSizeBytes;
+    public static volatile long database_rawPageCount;
+    public static volatile long database_rawFreePageCount;                                          //pages that are free but still part of the file (until vacuumed)
+
     public static volatile int displayScreenState;
 
     // Local stuff...
@@ -159,6 +174,9 @@ public class HealthService extends Service {
     private HealthThreadStorage healthThreadStorage;
     private int threadFrequencySecs_healthyStorage = 30;                //TODO: move to strings or constants
 
+    private HealthThreadDatabase healthThreadDatabase;
+    private int threadFrequencySecs_healthThreadDatabase = 60;          //TODO: move to strings or constants
+
     public volatile boolean isThreadAlive_healthThreadHeartbeat;
     private HealthThreadHeartbeat healthThreadHeartbeat;
     private int threadFrequencySecs_healthThreadHeartbeat = 10;         //TODO: move to strings or constants
@@ -224,6 +242,12 @@ public class HealthService extends Service {
         storage_hrAvailableBytes_external = "";
         storage_spaceState_external = STORAGE_SPACE_STATE_EXTERNAL_UNKNOWN;
 
+        database_rawFileBytes = -1;
+        database_hrFileBytes = "";
+        database_rawPageSizeBytes = -1;
+        database_rawPageCount = -1;
+        database_rawFreePageCount = -1;
+
         displayScreenState = DISPLAY_SCREEN_STATE_UNKNOWN;
 
         this.healthServiceAndroidMessageHandler = new HealthServiceHandler();
@@ -233,6 +257,8 @@ public class HealthService extends Service {
 
         this.healthThreadStorage = new HealthThreadStorage(getApplicationContext(), logMethod, healthServiceAndroidMessageHandler, threadFrequencySecs_healthyStorage);
 
+        this.healthThreadDatabase = new HealthThreadDatabase(getApplicationContext(), logMethod, healthServiceAndroidMessageHandler, threadFrequencySecs_healthThreadDatabase);
+
         this.healthThreadEnergy = new HealthThreadEnergy(getApplicationContext(), logMethod, healthServiceAndroidMessageHandler, threadFrequencySecs_healthThreadEnergy);
         this.healthReceiverEnergyStates = new HealthReceiverEnergyStates(getApplicationContext(), logMethod, healthServiceAndroidMessageHandler);
         this.healthReceiverEnergyStatesIntentFilter = new IntentFilter();
@@ -250,8 +276,8 @@ public class HealthService extends Service {
         this.healthThreadHeartbeat = new HealthThreadHeartbeat(getApplicationContext(), logMethod, healthServiceAndroidMessageHandler, threadFrequencySecs_healthThreadHeartbeat);
 
         // Inform processStatus about how many children processes there should be here to account for
-        // Count: healthThreadProcessStatus, healthThreadStorage, healthThreadEnergy, healthThreadHeartbeat
-        omniApplication.processStatusList.setNumberOfExpectedChildrenForProcess(this.getClass(), 4);
+        // Count: healthThreadProcessStatus, healthThreadStorage, healthThreadDatabase, healthThreadEnergy, healthThreadHeartbeat
+        omniApplication.processStatusList.setNumberOfExpectedChildrenForProcess(this.getClass(), 5);
     }
 
     /** Service onStart handler **/
@@ -281,6 +307,7 @@ public class HealthService extends Service {
         startThread_heartbeat(true);
         startThread_energy(true);
         startThread_storage(true);
+        startThread_database(true);
 
         // Finish service startup...
         this.hasFullyStarted = true;    //note: this is assumed, as threads above are asynchronous
@@ -320,6 +347,10 @@ public class HealthService extends Service {
             this.healthThreadStorage.cleanup();
             this.healthThreadStorage = null;
         }
+        if (this.healthThreadDatabase != null) {
+            this.healthThreadDatabase.cleanup();
+            this.healthThreadDatabase = null;
+        }
         if (this.healthThreadEnergy != null) {
             this.healthThreadEnergy.cleanup();
             this.healthThreadEnergy = null;
@@ -431,6 +462,32 @@ public class HealthService extends Service {
         }
     }
 
+    private void startThread_database(boolean restartIfRunning) {
+        final String TAGG = "startThread_database: ";
+        logV(TAGG+"Processing start of HealthThreadDatabase.");
+
+        try {
+            if (healthThreadDatabase != null && healthThreadDatabase.isThreadRunning()) {
+                //thread is running...
+                if (restartIfRunning) {
+                    logI(TAGG + "Thread is running, so we will stop/reinitialize/re-start it now...");
+                    healthThreadDatabase.cleanup();
+                } else {
+                    logI(TAGG + "Thread is running, so we will leave it be and do nothing.");
+                    return;
+                }
+            } else {
+                //thread is not running...
+                logI(TAGG+"Thread is not running, so we will initialize and start it anew now...");
+            }
+
+            healthThreadDatabase = new HealthThreadDatabase(appContextRef.get(), logMethod, healthServiceAndroidMessageHandler, threadFrequencySecs_healthThreadDatabase);
+            ThreadUtils.doStartThread(this, healthThreadDatabase, ThreadUtils.SPAWN_NEW_THREAD_TRUE, ThreadUtils.PRIORITY_MINIMUM);
+        } catch (Exception e) {
+            logE(TAGG + "Exception caught: " + e.getMessage());
+        }
+    }
+
     private void startThread_heartbeat(boolean restartIfRunning) {
         final String TAGG = "startThread_heartbeat: ";
         logV(TAGG+"Processing start of HealthThreadHeartbeat.");
@@ -708,6 +765,32 @@ public class HealthService extends Service {
         ThreadUtils.analyzeProcessingTime(this.getClass().getSimpleName(), TAGG, startedTime);
     }
 
+    /** Update the global database-related values with whatever data we have.
+     * @param databaseDataBundle Data from HealthThreadDatabase (required)
+     */
+    private void updateGlobalValues_database(@Nullable Bundle databaseDataBundle) {
+        final String TAGG = "updateGlobalValues_database: ";
+        long startedTime = new Date().getTime();
+
+        if (databaseDataBundle == null) {
+            logE(TAGG+"This method requires a Bundle be provided, aborting.");
+            return;
+        }
+
+        try {
+            // Save values to globals
+            database_rawFileBytes = databaseDataBundle.getLong(BUNDLE_KEYNAME_DATABASE_FILE_BYTES);
+            database_hrFileBytes = StorageUtils.getBytesWithHumanUnit(database_rawFileBytes, 1);
+            database_rawPageSizeBytes = databaseDataBundle.getLong(BUNDLE_KEYNAME_DATABASE_PAGE_SIZE_BYTES);
+            database_rawPageCount = databaseDataBundle.getLong(BUNDLE_KEYNAME_DATABASE_PAGE_COUNT);
+            database_rawFreePageCount = databaseDataBundle.getLong(BUNDLE_KEYNAME_DATABASE_FREE_PAGE_COUNT);
+        } catch (Exception e) {
+            logE(TAGG + "Exception caught: " + e.getMessage());
+        }
+
+        ThreadUtils.analyzeProcessingTime(this.getClass().getSimpleName(), TAGG, startedTime);
+    }
+
     /** Analyze provided data and determine storage space health.
      * @param bytesFree Available free bytes
      * @return An appropriate STORAGE_SPACE_STATE constant defined in HealthService
@@ -775,6 +858,10 @@ public class HealthService extends Service {
                         logI(TAGG+TAGGG+"Updating global storage values.");
                         updateGlobalValues_storage( (Bundle)androidMessage.obj );
                         break;
+                    case HANDLER_ACTION_UPDATE_GLOBAL_VALUES_DATABASE:
+                        logV(TAGG+TAGGG+"Updating global database values.");
+                        updateGlobalValues_database( (Bundle)androidMessage.obj );
+                        break;
                     default:
                         logW(TAGG + TAGGG + "Unhandled case (" + String.valueOf(androidMessage.arg1) + "). Aborting.");
                         return;
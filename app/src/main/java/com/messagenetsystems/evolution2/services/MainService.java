@@ -49,17 +49,26 @@ import android.util.Log;
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
 import com.messagenetsystems.evolution2.OmniApplication;
+import com.messagenetsystems.evolution2.databases.messages.MessagePayloadCodec;
+import com.messagenetsystems.evolution2.databases.messages.RotationSnapshot;
+import com.messagenetsystems.evolution2.models.OmniMessage;
 import com.messagenetsystems.evolution2.models.OmniMessages;
+import com.messagenetsystems.evolution2.models.OmniRawMessage;
 import com.messagenetsystems.evolution2.models.OmniRawMessages;
 import com.messagenetsystems.evolution2.receivers.MainServiceStoppedReceiver;
 import com.messagenetsystems.evolution2.threads.OmniStatusBarThread;
 import com.messagenetsystems.evolution2.threads.ReceivedMessageProcessor;
 import com.messagenetsystems.evolution2.threads.ReceivedRequestProcessor;
+import com.messagenetsystems.evolution2.threads.SocketServerNioThread;
 import com.messagenetsystems.evolution2.threads.SocketServerThread;
+import com.messagenetsystems.evolution2.threads.StatusSnapshotSampler;
 import com.messagenetsystems.evolution2.utilities.SharedPrefsUtils;
 import com.messagenetsystems.evolution2.utilities.ThreadUtils;
 
+import org.json.JSONObject;
+
 import java.lang.ref.WeakReference;
+import java.util.Date;
 
 import static com.messagenetsystems.evolution2.utilities.ThreadUtils.SPAWN_NEW_THREAD_TRUE;
 import static com.messagenetsystems.evolution2.utilities.ThreadUtils.SPAWN_NEW_THREAD_FALSE;
@@ -113,7 +122,9 @@ public class MainService extends Service {
     private MessageService messageService;
     private Intent messageServiceIntent;
 
-    private SocketServerThread socketServerThread;
+    private SocketServerThread socketServerThread;                                                  //only one of these socket servers gets created, depending on configured mode
+    private SocketServerNioThread socketServerNioThread;
+    private StatusSnapshotSampler statusSnapshotSampler;
     private ReceivedRequestProcessor receivedRequestProcessor;
     private ReceivedMessageProcessor receivedMessageProcessor;
 
@@ -171,6 +182,10 @@ public class MainService extends Service {
         omniRawMessages = new OmniRawMessages(getApplicationContext(), logMethod, OmniRawMessages.SYNC_DB_TRUE);
         omniMessages_deliverable = new OmniMessages(getApplicationContext(), logMethod);
 
+        // Restore the active rotation's messages from its snapshot (if any), so delivery can start right away
+        // (rather than after the messages DB has been read into RAM and converted to deliverables, which takes a few poll cycles)
+        restoreRotationMessagesFromSnapshot();
+
         // Initialize our monitoring process
         this.monitorChildProcesses = new MonitorChildProcesses();
 
@@ -182,7 +197,16 @@ public class MainService extends Service {
         this.messageServiceIntent = new Intent(getApplicationContext(), messageService.getClass());
         this.incomingCallService_ajVoIP = new IncomingCallService_AJVoIP();
         this.incomingCallServiceAjvoipIntent = new Intent(getApplicationContext(), incomingCallService_ajVoIP.getClass());
-        this.socketServerThread = new SocketServerThread(getApplicationContext(), this.logMethod, SocketServerThread.PORT_HTTP_NORMAL);
+        if (Constants.Configuration.Network.SOCKET_SERVER_MODE == Constants.Configuration.Network.SOCKET_SERVER_MODE_NIO) {
+            this.socketServerNioThread = new SocketServerNioThread(getApplicationContext(), this.logMethod, SocketServerNioThread.PORT_HTTP_NORMAL);
+            this.socketServerNioThread.setParseThreadCount(Constants.Configuration.Network.SOCKET_SERVER_NIO_PARSE_THREADS);
+            this.socketServerNioThread.setParseQueueDepth(Constants.Configuration.Network.SOCKET_CONN_WORKER_QUEUE_DEPTH);
+        } else {
+            this.socketServerThread = new SocketServerThread(getApplicationContext(), this.logMethod, SocketServerThread.PORT_HTTP_NORMAL);
+            this.socketServerThread.setWorkerThreadCount(Constants.Configuration.Network.SOCKET_CONN_WORKER_THREADS);
+            this.socketServerThread.setWorkerQueueDepth(Constants.Configuration.Network.SOCKET_CONN_WORKER_QUEUE_DEPTH);
+        }
+        this.statusSnapshotSampler = new StatusSnapshotSampler(getApplicationContext(), this.logMethod);
         this.receivedRequestProcessor = new ReceivedRequestProcessor(getApplicationContext(), this.logMethod);
         this.receivedMessageProcessor = new ReceivedMessageProcessor(getApplicationContext(), this.logMethod);
         this.omniStatusBarThread = new OmniStatusBarThread(getApplicationContext(), this.logMethod, null);
@@ -251,7 +275,12 @@ public class MainService extends Service {
 
         ////////////////////////////////////////////////////////////////////////////////////////////
         // Start threads
-        doStartThread(this, socketServerThread, SPAWN_NEW_THREAD_TRUE, PRIORITY_LOW);            //socket server for receiving network requests
+        doStartThread(this, statusSnapshotSampler, SPAWN_NEW_THREAD_TRUE, PRIORITY_MINIMUM);        //status snapshot for ping replies (before socket server, so it's ready as soon as possible)
+        if (socketServerNioThread != null) {
+            doStartThread(this, socketServerNioThread, SPAWN_NEW_THREAD_TRUE, PRIORITY_LOW);     //socket server for receiving network requests (NIO mode)
+        } else {
+            doStartThread(this, socketServerThread, SPAWN_NEW_THREAD_TRUE, PRIORITY_LOW);        //socket server for receiving network requests
+        }
         doStartThread(this, receivedRequestProcessor, SPAWN_NEW_THREAD_TRUE, PRIORITY_LOW);      //processing thread for received requests
         doStartThread(this, receivedMessageProcessor, SPAWN_NEW_THREAD_TRUE, PRIORITY_LOW);      //processing thread for received messages (which are formed by received requests processor thread)
         doStartThread(this, omniStatusBarThread, SPAWN_NEW_THREAD_TRUE, PRIORITY_MINIMUM);          //thread for keeping our custom status bar up-to-date (version, battery, network status, etc.)
@@ -285,7 +314,9 @@ public class MainService extends Service {
 
         // Stop and cleanup any threads
         monitorChildProcesses.cleanup();
-        socketServerThread.cleanup();
+        if (socketServerThread != null) socketServerThread.cleanup();
+        if (socketServerNioThread != null) socketServerNioThread.cleanup();
+        statusSnapshotSampler.cleanup();
         receivedRequestProcessor.cleanup();
         receivedMessageProcessor.cleanup();
         omniStatusBarThread.cleanup();
@@ -297,6 +328,8 @@ public class MainService extends Service {
         // Explicitly release variables (not strictly necessary, but can't hurt to force garbage collection)
         this.monitorChildProcesses = null;
         this.socketServerThread = null;
+        this.socketServerNioThread = null;
+        this.statusSnapshotSampler = null;
         this.receivedRequestProcessor = null;
         this.receivedMessageProcessor = null;
         this.omniApplication = null;
@@ -332,6 +365,71 @@ public class MainService extends Service {
     }
 
 
+    /*============================================================================================*/
+    /* Startup Methods */
+
+    /** Seed our RAM data-stores with the messages in the rotation snapshot (RotationSnapshot), if there's a valid one.
+     * They're added to RAM only (not written back to DB), along with their delivery counters; expired ones are skipped.
+     * DeliveryService then loads its rotation lists from the snapshot, and MessageRawDataProcessor's first DB sync
+     * removes anything restored here that's no longer in the DB (the DB is still authoritative).
+     */
+    private void restoreRotationMessagesFromSnapshot() {
+        final String TAGG = "restoreRotationMessagesFromSnapshot: ";
+
+        try {
+            RotationSnapshot rotationSnapshot = RotationSnapshot.getInstance(getApplicationContext());
+            if (!rotationSnapshot.load()) {
+                logD(TAGG+"No rotation snapshot to restore.");
+                return;
+            }
+
+            int restoredCount = 0;
+            for (RotationSnapshot.Entry entry : rotationSnapshot.getLoadedEntries()) {
+                try {
+                    JSONObject metadataJSONObject = new JSONObject();
+                    metadataJSONObject.put("msgTextScrollsDone", entry.textScrollsDone);
+
+                    OmniRawMessage omniRawMessage = new OmniRawMessage(logMethod);
+                    omniRawMessage.setMessageUUID(entry.messageUUID);
+                    omniRawMessage.setMessageJSONObject(MessagePayloadCodec.decode(entry.messageBin));
+                    omniRawMessage.setMetadataJSONObject(metadataJSONObject);
+                    omniRawMessage.setStatus(OmniRawMessage.STATUS_UNKNOWN);
+                    omniRawMessage.setCreatedAt(new Date());
+                    omniRawMessage.setModifiedAt(omniRawMessage.getCreatedAt());
+                    if (entry.receivedAtMs >= 0) {
+                        omniRawMessage.setReceivedAt(new Date(entry.receivedAtMs));
+                    }
+
+                    OmniMessage omniMessage = new OmniMessage(getApplicationContext(), logMethod);
+                    if (!omniMessage.initWithRawData(omniApplication.getEcosystem(), omniRawMessage)) {
+                        logW(TAGG+"Could not initialize "+entry.messageUUID.toString()+" from snapshot, skipping it.");
+                        continue;
+                    }
+                    omniMessage.setMsgTextScrollsDone(entry.textScrollsDone);
+                    if (entry.firstDeliveryBeganMs >= 0) {
+                        omniMessage.setMsgFirstDeliveryBeganDate(new Date(entry.firstDeliveryBeganMs));
+                    }
+                    if (omniMessage.isExpired(OmniMessage.EXPIRATION_CALC_METHOD_RELATIVE_DURATION_FROM_DELIVERY, false, getApplicationContext())) {
+                        logD(TAGG+entry.messageUUID.toString()+" has expired since the snapshot, skipping it.");
+                        continue;
+                    }
+                    omniMessage.setThisLastModifiedDate(null);                                      //same as MessageDeliverableProcessor does, so sync prefers persisted raw data
+
+                    omniRawMessages.addOmniRawMessage(omniRawMessage, OmniRawMessages.ADD_AVOIDING_DUPLICATES, OmniRawMessages.SYNC_DB_FALSE);
+                    omniMessages_deliverable.addOmniMessage(omniMessage, OmniMessages.ADD_AVOIDING_DUPLICATES);
+                    restoredCount++;
+                } catch (Exception e) {
+                    logW(TAGG+"Exception caught restoring "+entry.messageUUID.toString()+", skipping it: "+e.getMessage());
+                }
+            }
+
+            logI(TAGG+"Restored "+restoredCount+" of "+rotationSnapshot.getLoadedEntries().size()+" rotation messages from snapshot.");
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+    }
+
+
     /*============================================================================================*/
     /* Subclasses */
 
@@ -386,11 +484,21 @@ public class MainService extends Service {
                         ////////////////////////////////////////////////////////////////////////////////
                         // DO THE BULK OF THE ACTUAL WORK HERE...
 
-                        if (!socketServerThread.isAlive()) {
+                        if (socketServerThread != null && !socketServerThread.isAlive()) {
                             logW(TAGG+"SocketServerThread is not alive! Restarting it...");
                             doStartThread(MainService.this, socketServerThread, SPAWN_NEW_THREAD_TRUE, PRIORITY_LOW);
                         }
 
+                        if (socketServerNioThread != null && !socketServerNioThread.isAlive()) {
+                            logW(TAGG+"SocketServerNioThread is not alive! Restarting it...");
+                            doStartThread(MainService.this, socketServerNioThread, SPAWN_NEW_THREAD_TRUE, PRIORITY_LOW);
+                        }
+
+                        if (!statusSnapshotSampler.isAlive()) {
+                            logW(TAGG+"StatusSnapshotSampler is not alive! Restarting it...");
+                            doStartThread(MainService.this, statusSnapshotSampler, SPAWN_NEW_THREAD_TRUE, PRIORITY_MINIMUM);
+                        }
+
                         if (!receivedRequestProcessor.isAlive()) {
                             logW(TAGG+"ReceivedRequestProcessor is not alive! Restarting it...");
                             doStartThread(MainService.this, receivedRequestProcessor, SPAWN_NEW_THREAD_TRUE, PRIORITY_LOW);
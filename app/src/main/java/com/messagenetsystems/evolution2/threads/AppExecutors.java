@@ -23,6 +23,15 @@ package com.messagenetsystems.evolution2.threads;
  *      }
  *  });
  *
+ * Usage example (database query, via the DB clients' Async methods or directly)...
+ *  Future<List<Message>> future = AppExecutors.getInstance().databaseIO().submit(new Callable<List<Message>>() {
+ *      @Override
+ *      public List<Message> call() {
+ *          return messageDatabase.messageDao().getAllRecords();
+ *      }
+ *  });
+ *  List<Message> messages = future.get();                                                         //parks until the result is ready (or carry on, and get it later)
+ *
  * Revisions:
  *  2019.11.25      Chris Rider     Created.
  */
@@ -31,24 +40,34 @@ import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.NonNull;
 
+import com.messagenetsystems.evolution2.Constants;
+
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class AppExecutors {
 
     // For singleton instantiation
     private static final Object LOCK = new Object();
-    private static AppExecutors sInstance;
+    private static volatile AppExecutors sInstance;
     private final Executor diskIO;
     private final Executor mainThread;
     private final Executor networkIO;
+    private final ExecutorService databaseIO;
 
     /** Constructor */
-    private AppExecutors(Executor diskIO, Executor networkIO, Executor mainThread) {
+    private AppExecutors(Executor diskIO, Executor networkIO, Executor mainThread, ExecutorService databaseIO) {
         this.diskIO = diskIO;
         this.networkIO = networkIO;
         this.mainThread = mainThread;
+        this.databaseIO = databaseIO;
     }
 
     /** Singleton support
@@ -57,9 +76,12 @@ public class AppExecutors {
     public static AppExecutors getInstance() {
         if (sInstance == null) {
             synchronized (LOCK) {
-                sInstance = new AppExecutors(Executors.newSingleThreadExecutor(),
-                        Executors.newFixedThreadPool(3),
-                        new MainThreadExecutor());
+                if (sInstance == null) {
+                    sInstance = new AppExecutors(Executors.newSingleThreadExecutor(),
+                            Executors.newFixedThreadPool(3),
+                            new MainThreadExecutor(),
+                            newDatabaseExecutor());
+                }
             }
         }
         return sInstance;
@@ -77,6 +99,35 @@ public class AppExecutors {
         return networkIO;
     }
 
+    /** Executor for Room-DB queries (e.g. the DB clients' find methods).
+     * It has a fixed number of low-priority threads and a bounded queue. If the queue is ever full, the submitting
+     * thread runs the query itself, which naturally slows down whoever is flooding it.
+     */
+    public ExecutorService databaseIO() {
+        return databaseIO;
+    }
+
+    private static ExecutorService newDatabaseExecutor() {
+        return new ThreadPoolExecutor(Constants.Database.DB_EXECUTOR_THREADS,
+                Constants.Database.DB_EXECUTOR_THREADS,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Constants.Database.DB_EXECUTOR_QUEUE_SIZE),
+                new DatabaseThreadFactory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static class DatabaseThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "databaseIO-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);                                                //same as the worker threads the DB clients used to spawn for each query
+            return thread;
+        }
+    }
+
     private static class MainThreadExecutor implements Executor {
         private Handler mainThreadHandler = new Handler(Looper.getMainLooper());
 
@@ -21,6 +21,7 @@ package com.messagenetsystems.evolution2.threads;
  *  On thread start, initially load main for-delivery list with exact copy of deliverables.
  *  Each thread iteration, check for new deliverables and add them to new-for-delivery list.
  *  Each thread iteration, check for removed deliverables and remove them from both for-delivery lists.
+ *  Each thread iteration, save the for-delivery lists to RotationSnapshot if they've changed (so they can be restored quickly on startup).
  *
  * Revisions:
  *  2020.01.06-09   Chris Rider     Created.
@@ -33,8 +34,10 @@ import android.util.Log;
 
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.databases.messages.RotationSnapshot;
 import com.messagenetsystems.evolution2.models.OmniMessage;
 import com.messagenetsystems.evolution2.services.DeliveryService;
+import com.messagenetsystems.evolution2.services.MainService;
 
 import java.lang.ref.WeakReference;
 
@@ -58,6 +61,8 @@ public class DeliveryQueueProcessor extends Thread {
 
     private Handler androidMsgHandler_DeliveryService;  //reference to DeliveryService's OmniMessageRawHandler, so we can send data to there
 
+    private RotationSnapshot rotationSnapshot;          //where we save the rotation whenever it changes
+
     private volatile boolean isStopRequested;           //flag to set/check for the thread to interrupt itself
     private volatile boolean isThreadRunning;           //just a status flag
     private volatile boolean pauseProcessing;           //flag to set if you want to pause processing work (may double as a kind of "is paused" flag)
@@ -79,6 +84,8 @@ public class DeliveryQueueProcessor extends Thread {
         // Get our handlers from parents, so we can send Android-Messages back to them
         this.androidMsgHandler_DeliveryService = deliveryServiceHandler;                            //get our handler from DeliveryService
 
+        this.rotationSnapshot = RotationSnapshot.getInstance(appContext);
+
         // Initialize values
         this.isStopRequested = false;
         this.isThreadRunning = false;
@@ -141,6 +148,9 @@ public class DeliveryQueueProcessor extends Thread {
                     // Command DeliveryService to check for new MainService deliverables and add them to new delivery list
                     sendCommandToDeliveryService(DeliveryService.MSGHANDLER_ACTION_LIST_SYNC, null);
 
+                    // Save the rotation (as of the last sync and deliveries) if it has changed, so it can be picked back up quickly after a restart
+                    saveRotationSnapshot();
+
                     // END THE BULK OF THE ACTUAL WORK HERE...
                     ////////////////////////////////////////////////////////////////////////////////
                 } catch (NullPointerException e) {
@@ -211,6 +221,21 @@ public class DeliveryQueueProcessor extends Thread {
     /*============================================================================================*/
     /* Processing Methods */
 
+    /** Save DeliveryService's rotation lists (along with their messages' delivery counters) to RotationSnapshot, if they've changed since last saved. */
+    private void saveRotationSnapshot() {
+        final String TAGG = "saveRotationSnapshot: ";
+
+        try {
+            if (rotationSnapshot.saveIfChanged(DeliveryService.omniMessageUUIDsToRotate,
+                    DeliveryService.omniMessageUUIDsToRotate_new,
+                    DeliveryService.omniMessageUuidDelivery_lastCompleted,
+                    MainService.omniMessages_deliverable)) {
+                logV(TAGG+"Rotation changed, snapshot saved.");
+            }
+        } catch (Exception e) {
+            logW(TAGG+"Exception caught: "+e.getMessage());
+        }
+    }
 
 
     /** Populate an Android-Message object with our message data from the database and send it to MesssgeService's Handler.
@@ -62,7 +62,7 @@ public class DeliveryRotator extends Thread {
     private final String TAG = this.getClass().getSimpleName();
 
     // Constants..
-
+    private static final int FIRST_PASS_SLEEP_DURATION_MS = 100;                                    //sleep before our first pass (just enough for DeliveryService to load rotation, which may already be restored from RotationSnapshot)
 
     // Logging stuff...
     private final int LOG_SEVERITY_V = 1;
@@ -177,8 +177,10 @@ public class DeliveryRotator extends Thread {
                 logD(TAGG + "(iteration #"+loopIterationCounter+") Processing is paused. Thread continuing to run, but no work is occurring.");
             } else {
                 // Do a short delay to help prevent the thread loop from eating cycles
+                // (our first pass is right away, since there's been no message yet for the clock to delineate)
+                boolean isFirstPass = (loopIterationCounter == 1);
                 try {
-                    Thread.sleep(activeProcessingSleepDuration);
+                    Thread.sleep(isFirstPass ? FIRST_PASS_SLEEP_DURATION_MS : activeProcessingSleepDuration);
                 } catch (InterruptedException e) {
                     logW(TAGG + "Exception caught trying to sleep: " + e.getMessage());
                 }
@@ -198,7 +200,8 @@ public class DeliveryRotator extends Thread {
 
                         try {
                             //if (ClockActivity.activityLastBecameVisible)
-                            if (ClockActivity.activityLastBecameVisible != null
+                            if (!isFirstPass
+                                && ClockActivity.activityLastBecameVisible != null
                                 && datetimeUtils.datesAreWithinMS(
                                         ClockActivity.activityLastBecameVisible,
                                         new Date(),
@@ -0,0 +1,531 @@
+package com.messagenetsystems.evolution2.threads;
+
+/* HealthThreadDatabase
+ * Thread to do scheduled maintenance of the (unified) Room database, and report its size.
+ * This is the one place that age-based deletes happen (processors no longer run their own tidy-DB routines on loop counters).
+ *
+ * Each pass...
+ *  1) Deletes old records from each table, according to a retention policy chosen by storage pressure (HealthService.storage_spaceState_external,
+ *     as derived from what HealthThreadStorage finds). Deletes go in bounded chunks, each its own write (and waited for), so the writer is never
+ *     held up for long by one huge delete, and everybody else's writes get in between chunks.
+ *  2) Gives free pages back to the filesystem with incremental vacuum (also in bounded chunks through the writer). While storage is OK, it
+ *     only bothers once enough pages are free; under pressure, it gives back all it can.
+ *  3) Reports database file size and page numbers to HealthService (so they're available as global values).
+ *
+ * Retention policy (how old a record must be to get deleted)...
+ *                                          OK/UNKNOWN      LOW             FULL
+ *  received_requests (processed)           1 hour          1 minute        1 second
+ *  received_requests (any)                 1 week          1 day           1 hour
+ *  received_messages (any)                 1 week          2 days          1 day
+ *  messages (any)                          1 day           1 day           1 day
+ * Note: received_messages never goes below messages' retention, since it's where active messages' content hashes come from (de-duplication and ActiveMessageDigest).
+ * Note: messages are what we deliver, so pressure doesn't shorten their retention (expired ones are deleted as they expire, by MessageRawDataProcessor).
+ *
+ * Usage Example (declare, create, configure, and run):
+ *  HealthThreadDatabase healthThreadDatabase;
+ *  healthThreadDatabase = new HealthThreadDatabase(getApplicationContext(), Constants.LOG_METHOD_FILELOGGER, parentProcessHandler, 60);
+ *  healthThreadDatabase.start();
+ *
+ * Usage Example (stop the thread-loop and free up resources):
+ *  healthThreadDatabase.cleanup();
+ *
+ * Usage Example (pause processing - may be easily resumed later)
+ *  healthThreadDatabase.pauseProcessing();
+ *
+ * Usage Example (resume processing)
+ *  healthThreadDatabase.resumeProcessing();
+ */
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+
+import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.OmniApplication;
+import com.messagenetsystems.evolution2.databases.OmniDatabaseClient;
+import com.messagenetsystems.evolution2.databases.messages.MessageDatabaseClient;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageDatabaseClient;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestDatabaseClient;
+import com.messagenetsystems.evolution2.models.ProcessStatus;
+import com.messagenetsystems.evolution2.services.HealthService;
+import com.messagenetsystems.evolution2.utilities.StorageUtils;
+
+import java.lang.ref.WeakReference;
+
+
+public class HealthThreadDatabase extends Thread {
+    private final String TAG = this.getClass().getSimpleName();
+
+    // Constants..
+    private static final byte DELETE_TARGET_RECEIVED_REQUESTS_PROCESSED = 1;
+    private static final byte DELETE_TARGET_RECEIVED_REQUESTS_ANY = 2;
+    private static final byte DELETE_TARGET_RECEIVED_MESSAGES_ANY = 3;
+    private static final byte DELETE_TARGET_MESSAGES_ANY = 4;
+
+    // Logging stuff...
+    private final byte LOG_SEVERITY_V = 1;
+    private final byte LOG_SEVERITY_D = 2;
+    private final byte LOG_SEVERITY_I = 3;
+    private final byte LOG_SEVERITY_W = 4;
+    private final byte LOG_SEVERITY_E = 5;
+    private byte logMethod = Constants.LOG_METHOD_LOGCAT;
+
+    // Local stuff...
+    private WeakReference<Context> appContextRef;       //since this thread is very long running, we prefer a weak context reference
+    private OmniApplication omniApplication;
+    private Handler androidMsgHandler_HealthService;    //reference to HealthService's message-handler, so we can send data to there
+
+    private volatile boolean isStopRequested;           //flag to set/check for the thread to interrupt itself
+    private volatile boolean isThreadRunning;           //just a status flag
+    private volatile boolean pauseProcessing;           //flag to set if you want to pause processing work (may double as a kind of "is paused" flag)
+
+    private int activeProcessingSleepDuration;          //duration (in milliseconds) to sleep during active processing (to help ensure CPU cycles aren't eaten like crazy)
+    private int pausedProcessingSleepDuration;          //duration (in milliseconds) to sleep during paused processing (to help ensure CPU cycles aren't eaten like crazy)
+
+    private long loopIterationCounter;
+
+    private boolean isIncrementalAutoVacuumEnsured;     //whether the database is known to be in incremental auto-vacuum mode (so we may vacuum it)
+
+    private OmniDatabaseClient omniDatabaseClient;
+    private ReceivedRequestDatabaseClient receivedRequestDatabaseClient;
+    private ReceivedMessageDatabaseClient receivedMessageDatabaseClient;
+    private MessageDatabaseClient messageDatabaseClient;
+
+
+    /** Constructor */
+    public HealthThreadDatabase(Context appContext, byte logMethod, Handler parentProcessHandler, int frequencySecs) {
+        Log.v(TAG, "Instantiating.");
+
+        this.logMethod = logMethod;
+
+        this.appContextRef = new WeakReference<Context>(appContext);
+
+        try {
+            this.omniApplication = ((OmniApplication) appContext);
+        } catch (Exception e) {
+            logE("Exception caught instantiating "+TAG+": "+e.getMessage());
+            return;
+        }
+
+        // Get our handlers from parents, so we can send Android-Messages back to them
+        this.androidMsgHandler_HealthService = parentProcessHandler;                                //get our handler from HealthService
+
+        // Setup process monitoring
+        omniApplication.processStatusList.addAndRegisterProcess(
+                ProcessStatus.PROCESS_TYPE_THREAD,
+                this.getClass());
+        omniApplication.processStatusList.setMaxHeartbeatIntervalForProcess(this.getClass(), frequencySecs*1000);
+
+        // Initialize values
+        this.isStopRequested = false;
+        this.isThreadRunning = false;
+        this.pauseProcessing = false;
+        this.activeProcessingSleepDuration = frequencySecs * 1000;
+        this.pausedProcessingSleepDuration = 10000;
+        this.loopIterationCounter = 0;
+        this.isIncrementalAutoVacuumEnsured = false;
+
+        // Initialize objects
+        try {
+            this.omniDatabaseClient = OmniDatabaseClient.getInstance(appContext);
+            this.receivedRequestDatabaseClient = ReceivedRequestDatabaseClient.getInstance(appContext);
+            this.receivedMessageDatabaseClient = ReceivedMessageDatabaseClient.getInstance(appContext);
+            this.messageDatabaseClient = MessageDatabaseClient.getInstance(appContext);
+        } catch (Exception e) {
+            logE("Exception caught instantiating "+TAG+": "+e.getMessage());
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Thread Methods */
+
+    /** Main runnable routine... executes once whenever the initialized thread is commanded to start running with .start() or .execute() method call.
+     * Remember that .start() implicitly spawns a thread and calls .execute() to invoke this run() method.
+     * If you directly call .execute(), this run() method will invoke on the same thread you call it from. */
+    @Override
+    public void run() {
+        final String TAGG = "run: ";
+        logV(TAGG+"Invoked.");
+
+        long pid = Thread.currentThread().getId();
+        int tid = android.os.Process.myTid();      //can be used with setThreadOriority, etc.
+        logI(TAGG+"Thread starting as Java process ID #"+ pid +" (OS thread ID #"+tid+")");
+        if (tid == pid) {
+            logW(TAGG+"WARNING: Thread has started in the main thread! Are you sure that's right?");
+        }
+
+        // Inform process monitor that we have started
+        omniApplication.processStatusList.recordProcessStart(this.getClass(), tid);
+
+        // As long as our thread is supposed to be running...
+        while (!Thread.currentThread().isInterrupted()) {
+
+            // Our thread has started or is still running
+            isThreadRunning = true;
+
+            // Inform process monitor that we are still running
+            omniApplication.processStatusList.recordProcessHeartbeat(this.getClass());
+
+            try {
+                if (loopIterationCounter + 1 < Long.MAX_VALUE)
+                    loopIterationCounter++;
+                else
+                    loopIterationCounter = 1;
+            } catch (Exception e) {
+                logW(TAGG+"Exception caught incrementing loop counter. Resetting to 0: "+e.getMessage());
+                loopIterationCounter = 0;
+            }
+
+            // this is the end of the loop-iteration, so check whether we will stop or continue
+            if (Thread.currentThread().isInterrupted()) {
+                logI(TAGG+"Thread will now stop.");
+                isThreadRunning = false;
+            }
+            if (isStopRequested) {
+                logI(TAGG+"Thread has been requested to stop and will now do so.");
+                isThreadRunning = false;
+                break;
+            }
+
+            // Either do nothing (if paused) or allow work to happen (if not paused)...
+            if (pauseProcessing) {
+                // Do a short delay to help prevent the thread loop from eating cycles
+                try {
+                    Thread.sleep(pausedProcessingSleepDuration);
+                } catch (InterruptedException e) {
+                    logW(TAGG + "Exception caught trying to sleep during pause: " + e.getMessage());
+                }
+
+                logD(TAGG + "(iteration #"+loopIterationCounter+") Processing is paused. Thread continuing to run, but no work is occurring.");
+            } else {
+                // Do a short delay to help prevent the thread loop from eating cycles
+                try {
+                    Thread.sleep(activeProcessingSleepDuration);
+                } catch (InterruptedException e) {
+                    logW(TAGG + "Exception caught trying to sleep: " + e.getMessage());
+                }
+
+                logV(TAGG + "(iteration #"+loopIterationCounter+") Processing...");
+
+                try {
+                    ////////////////////////////////////////////////////////////////////////////////
+                    // DO THE BULK OF THE ACTUAL WORK HERE...
+
+                    // Get the storage pressure we're under (as HealthService derived it from what HealthThreadStorage found)
+                    final int storageSpaceState = HealthService.storage_spaceState_external;
+
+                    // Delete old records, according to the retention policy for that pressure
+                    applyRetentionPolicy(storageSpaceState);
+
+                    // Give free pages back to the filesystem
+                    // (the one-time switch to incremental auto-vacuum rewrites the whole file, so it waits until storage isn't full)
+                    if (!isIncrementalAutoVacuumEnsured && storageSpaceState != HealthService.STORAGE_SPACE_STATE_EXTERNAL_FULL) {
+                        isIncrementalAutoVacuumEnsured = omniDatabaseClient.ensureIncrementalAutoVacuum();
+                    }
+                    if (isIncrementalAutoVacuumEnsured) {
+                        reclaimFreePages(storageSpaceState);
+                    }
+
+                    // Report the database's size and page numbers
+                    reportDatabaseStats();
+
+                    // END THE BULK OF THE ACTUAL WORK HERE...
+                    ////////////////////////////////////////////////////////////////////////////////
+                } catch (NullPointerException e) {
+                    logE(TAGG+"Exception caught: "+e.getMessage());
+
+                    // This can happen if parent process dies (taking context reference with it) before this loop breaks
+                    // So, let's make sure that's not what's happening (we can depend on this flag to be set by .cleanup() which should be called upon destruction of parent process)...
+                    if (!isStopRequested) {
+                        logW(TAGG + "Parent process's context has gone AWOL. Parent thread has died? Shutting down!");
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        omniApplication.processStatusList.recordProcessStop(this.getClass());
+    }
+
+    /** Call this to pause processing.
+     * This essentially just sets the pause flag (which prevents any work being done).
+     */
+    public void pauseProcessing() {
+        this.pauseProcessing = true;
+    }
+
+    /** Call this to resume paused processing.
+     * This essentially just resets the pause flag (which allows work to be done).
+     */
+    public void resumeProcessing() {
+        this.pauseProcessing = false;
+    }
+
+    /** Call this to terminate the loop and release resources. */
+    public void cleanup() {
+        final String TAGG = "cleanup: ";
+
+        try {
+            this.isStopRequested = true;
+
+            // Note: At this point, the thread-loop should break on its own, since we check isInterrupted in the while-loop's condition
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught invoking .interrupt(): "+e.getMessage());
+        }
+
+        this.appContextRef = null;
+    }
+
+
+    /*============================================================================================*/
+    /* Processing Methods */
+
+    /** Populate an Android-Message object with data and send it to parent process' Handler.
+     */
+    private void sendCommandToParentService(int actionToRequest, Object dataToSend) {
+        final String TAGG = "sendCommandToParentService: ";
+
+        // Get our handler's message object so we can populate it with our DB data
+        android.os.Message androidMessage = androidMsgHandler_HealthService.obtainMessage();
+
+        // Send what we're wanting the handler to do
+        androidMessage.arg1 = actionToRequest;
+
+        // Supply the provided data object to the handler
+        androidMessage.obj = dataToSend;
+
+        // Actually send the Android-message back to HealthService's handler
+        androidMsgHandler_HealthService.sendMessage(androidMessage);
+    }
+
+    /** Delete old records from each table, according to the retention policy for the given storage pressure (see class comments).
+     * @param storageSpaceState A HealthService.STORAGE_SPACE_STATE_EXTERNAL_* value.
+     */
+    private void applyRetentionPolicy(int storageSpaceState) {
+        final String TAGG = "applyRetentionPolicy: ";
+
+        try {
+            switch (storageSpaceState) {
+                case HealthService.STORAGE_SPACE_STATE_EXTERNAL_FULL:
+                    deleteInChunks(DELETE_TARGET_RECEIVED_REQUESTS_PROCESSED, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1SECOND);
+                    deleteInChunks(DELETE_TARGET_RECEIVED_REQUESTS_ANY, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1HOUR);
+                    deleteInChunks(DELETE_TARGET_RECEIVED_MESSAGES_ANY, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY);
+                    break;
+                case HealthService.STORAGE_SPACE_STATE_EXTERNAL_LOW:
+                    deleteInChunks(DELETE_TARGET_RECEIVED_REQUESTS_PROCESSED, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1MINUTE);
+                    deleteInChunks(DELETE_TARGET_RECEIVED_REQUESTS_ANY, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY);
+                    deleteInChunks(DELETE_TARGET_RECEIVED_MESSAGES_ANY, Constants.Database.SQLITE_DTMOD_OLDERTHAN_2DAYS);
+                    break;
+                case HealthService.STORAGE_SPACE_STATE_EXTERNAL_OK:
+                case HealthService.STORAGE_SPACE_STATE_EXTERNAL_UNKNOWN:
+                default:
+                    deleteInChunks(DELETE_TARGET_RECEIVED_REQUESTS_PROCESSED, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1HOUR);
+                    deleteInChunks(DELETE_TARGET_RECEIVED_REQUESTS_ANY, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1WEEK);
+                    deleteInChunks(DELETE_TARGET_RECEIVED_MESSAGES_ANY, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1WEEK);
+                    break;
+            }
+
+            deleteInChunks(DELETE_TARGET_MESSAGES_ANY, Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY);
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+    }
+
+    /** Delete old records from the given target, a chunk at a time, until there are no more (or we've done as many chunks as we may this pass).
+     * Each chunk is its own write, and is waited for, so other writes get in between them.
+     * @param deleteTarget A DELETE_TARGET_* value.
+     * @param sqliteDatetimeModifier How old a record must be to get deleted.
+     * @return How many records were deleted.
+     */
+    private int deleteInChunks(byte deleteTarget, String sqliteDatetimeModifier) {
+        final String TAGG = "deleteInChunks: ";
+        final int chunkSize = Constants.Database.DB_MAINTENANCE_DELETE_CHUNK_ROWS;
+        int totalDeletedCount = 0;
+        int deletedCount;
+
+        for (int chunk = 0; chunk < Constants.Database.DB_MAINTENANCE_MAX_CHUNKS_PER_PASS; chunk++) {
+            if (isStopRequested) {
+                break;
+            }
+
+            omniApplication.processStatusList.recordProcessHeartbeat(this.getClass());          //a pass with lots to do may take a while, so we let the process monitor know we're still alive
+
+            deletedCount = deleteChunk(deleteTarget, sqliteDatetimeModifier, chunkSize);
+            if (deletedCount < 0) {
+                logW(TAGG+"Delete failed (target #"+deleteTarget+"), will try again next pass.");
+                break;
+            }
+
+            totalDeletedCount += deletedCount;
+            if (deletedCount < chunkSize) {
+                break;
+            }
+        }
+
+        if (totalDeletedCount > 0) {
+            logD(TAGG+"Deleted "+totalDeletedCount+" record(s) older than \""+sqliteDatetimeModifier+"\" (target #"+deleteTarget+").");
+        }
+
+        return totalDeletedCount;
+    }
+
+    /** Delete one chunk of old records from the given target.
+     * @return How many records were deleted, or -1 if it failed.
+     */
+    private int deleteChunk(byte deleteTarget, String sqliteDatetimeModifier, int chunkSize) {
+        switch (deleteTarget) {
+            case DELETE_TARGET_RECEIVED_REQUESTS_PROCESSED:
+                return receivedRequestDatabaseClient.deleteChunkProcessed_olderThan(appContextRef.get(), sqliteDatetimeModifier, chunkSize);
+            case DELETE_TARGET_RECEIVED_REQUESTS_ANY:
+                return receivedRequestDatabaseClient.deleteChunk_olderThan(appContextRef.get(), sqliteDatetimeModifier, chunkSize);
+            case DELETE_TARGET_RECEIVED_MESSAGES_ANY:
+                return receivedMessageDatabaseClient.deleteChunk_olderThan(appContextRef.get(), sqliteDatetimeModifier, chunkSize);
+            case DELETE_TARGET_MESSAGES_ANY:
+                return messageDatabaseClient.deleteChunk_olderThan(appContextRef.get(), sqliteDatetimeModifier, chunkSize);
+            default:
+                return -1;
+        }
+    }
+
+    /** Give free pages back to the filesystem, a chunk at a time.
+     * While storage is OK, this only bothers once enough pages are free (and then does one chunk); under pressure, it gives back all it can this pass.
+     * @param storageSpaceState A HealthService.STORAGE_SPACE_STATE_EXTERNAL_* value.
+     */
+    private void reclaimFreePages(int storageSpaceState) {
+        final String TAGG = "reclaimFreePages: ";
+        final boolean isUnderPressure = storageSpaceState == HealthService.STORAGE_SPACE_STATE_EXTERNAL_LOW
+                || storageSpaceState == HealthService.STORAGE_SPACE_STATE_EXTERNAL_FULL;
+        final int chunkPages = Constants.Database.DB_MAINTENANCE_VACUUM_CHUNK_PAGES;
+        int totalReleasedPageCount = 0;
+        int releasedPageCount;
+
+        try {
+            long freePageCount = omniDatabaseClient.getPragmaValue("freelist_count");
+            if (freePageCount <= 0
+                    || (!isUnderPressure && freePageCount < Constants.Database.DB_MAINTENANCE_VACUUM_MIN_FREE_PAGES)) {
+                return;
+            }
+
+            for (int chunk = 0; chunk < Constants.Database.DB_MAINTENANCE_MAX_CHUNKS_PER_PASS; chunk++) {
+                if (isStopRequested) {
+                    break;
+                }
+
+                omniApplication.processStatusList.recordProcessHeartbeat(this.getClass());      //a pass with lots to do may take a while, so we let the process monitor know we're still alive
+
+                releasedPageCount = omniDatabaseClient.incrementalVacuum(chunkPages);
+                if (releasedPageCount <= 0) {
+                    break;
+                }
+
+                totalReleasedPageCount += releasedPageCount;
+                if (!isUnderPressure || releasedPageCount < chunkPages) {
+                    break;
+                }
+            }
+
+            logD(TAGG+"Gave "+totalReleasedPageCount+" free page(s) back to the filesystem (of "+freePageCount+").");
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+    }
+
+    /** Get the database's size and page numbers, and send them to HealthService to save as global values. */
+    private void reportDatabaseStats() {
+        final String TAGG = "reportDatabaseStats: ";
+
+        try {
+            long fileSizeBytes = omniDatabaseClient.getFileSizeBytes();
+            long pageSizeBytes = omniDatabaseClient.getPragmaValue("page_size");
+            long pageCount = omniDatabaseClient.getPragmaValue("page_count");
+            long freePageCount = omniDatabaseClient.getPragmaValue("freelist_count");
+
+            logD(TAGG+"Database is "+StorageUtils.getBytesWithHumanUnit(fileSizeBytes, 1)+" on disk ("+pageCount+" pages of "+pageSizeBytes+" bytes, "+freePageCount+" free).");
+
+            // Bundle data up so we can pass it easily
+            Bundle dataBundle = new Bundle();
+            dataBundle.putLong(HealthService.BUNDLE_KEYNAME_DATABASE_FILE_BYTES, fileSizeBytes);
+            dataBundle.putLong(HealthService.BUNDLE_KEYNAME_DATABASE_PAGE_SIZE_BYTES, pageSizeBytes);
+            dataBundle.putLong(HealthService.BUNDLE_KEYNAME_DATABASE_PAGE_COUNT, pageCount);
+            dataBundle.putLong(HealthService.BUNDLE_KEYNAME_DATABASE_FREE_PAGE_COUNT, freePageCount);
+
+            // Pass our data to HealthService and let it take care of saving it for us
+            sendCommandToParentService(HealthService.HANDLER_ACTION_UPDATE_GLOBAL_VALUES_DATABASE, dataBundle);
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Getter/Setter Methods */
+
+    public boolean isThreadRunning() {
+        return this.isThreadRunning;
+    }
+
+
+    /*============================================================================================*/
+    /* Logging Methods */
+
+    private void logV(String tagg) {
+        log(LOG_SEVERITY_V, tagg);
+    }
+    private void logD(String tagg) {
+        log(LOG_SEVERITY_D, tagg);
+    }
+    private void logI(String tagg) {
+        log(LOG_SEVERITY_I, tagg);
+    }
+    private void logW(String tagg) {
+        log(LOG_SEVERITY_W, tagg);
+    }
+    private void logE(String tagg) {
+        log(LOG_SEVERITY_E, tagg);
+    }
+    private void log(byte logSeverity, String tagg) {
+        switch (logMethod) {
+            case Constants.LOG_METHOD_LOGCAT:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        Log.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        Log.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        Log.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        Log.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        Log.e(TAG, tagg);
+                        break;
+                }
+                break;
+            case Constants.LOG_METHOD_FILELOGGER:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        FL.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        FL.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        FL.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        FL.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        FL.e(TAG, tagg);
+                        break;
+                }
+                break;
+        }
+    }
+}
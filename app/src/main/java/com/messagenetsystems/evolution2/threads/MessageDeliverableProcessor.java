@@ -19,6 +19,11 @@ package com.messagenetsystems.evolution2.threads;
  * DEV-NOTES...
  *  It's a thread, because it requires no UI thread access.
  *  This also converts OmniRawMessage objects to OmniMessage objects for direct saving to deliverable OmniMessages list.
+ *  That conversion is expensive (BannerMessage parse, etc.), so it's only done when raw messages have changed (we wait on their version),
+ *  and only for a raw message that's new, or whose message JSON content (by hash) has changed since we last converted it (metadata is the OmniMessage's own, flushed back).
+ *  Expiration isn't checked message-by-message either: the deliverables list keeps an expiry queue, and we wait until its soonest expiration
+ *  (or a raw change, whichever is first), then expire whatever is due. A first delivery (the only thing that makes a message expirable) also
+ *  updates raw, which wakes us to take its new expiration into account.
  *  The deliverables list does not care about any particular order for delivery-rotation, it's just purely for message data.
  *
  * Usage Example (declare, create, configure, and run):
@@ -62,13 +67,18 @@ import com.messagenetsystems.evolution2.models.OmniRawMessage;
 import com.messagenetsystems.evolution2.services.MainService;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
 
 
 public class MessageDeliverableProcessor extends Thread {
     private final String TAG = this.getClass().getSimpleName();
 
     // Constants..
-
+    private static final long EXPIRY_WAIT_MAX_MS = 60 * 1000;   //longest we'll wait with nothing changing or due (just insurance, as changes and expirations both wake us)
 
     // Logging stuff...
     private final int LOG_SEVERITY_V = 1;
@@ -91,6 +101,10 @@ public class MessageDeliverableProcessor extends Thread {
 
     private long loopIterationCounter;
 
+    private long rawVersionMaterialized;                                //version of MainService.omniRawMessages we last materialized deliverables from
+    private final HashMap<UUID, Long> materializedMessageJsonHashByUUID = new HashMap<UUID, Long>();          //content hash of the message JSON each deliverable was last materialized from
+    private final List<UUID> expiredUUIDs = new ArrayList<UUID>();     //reused for each expiry poll (so an idle pass allocates nothing)
+
 
     /** Constructor */
     public MessageDeliverableProcessor(Context appContext, int logMethod) {
@@ -114,6 +128,7 @@ public class MessageDeliverableProcessor extends Thread {
         this.activeProcessingSleepDuration = 1000;
         this.pausedProcessingSleepDuration = 5000;
         this.loopIterationCounter = 1;
+        this.rawVersionMaterialized = -1;
     }
 
 
@@ -156,9 +171,14 @@ public class MessageDeliverableProcessor extends Thread {
 
                 logD(TAGG + "Processing is paused. Thread continuing to run, but no work is occurring.");
             } else {
-                // Do a short delay to help prevent the thread loop from eating cycles
+                // Wait for raw messages to change, or for the soonest deliverable to expire, whichever is first
+                // (this also helps prevent the thread loop from eating cycles)
                 try {
-                    Thread.sleep(activeProcessingSleepDuration);
+                    if (MainService.omniRawMessages != null) {
+                        MainService.omniRawMessages.awaitChange(rawVersionMaterialized, calculateWaitDuration());
+                    } else {
+                        Thread.sleep(activeProcessingSleepDuration);
+                    }
                 } catch (InterruptedException e) {
                     logW(TAGG + "Exception caught trying to sleep: " + e.getMessage());
                 }
@@ -172,8 +192,10 @@ public class MessageDeliverableProcessor extends Thread {
 
                     // Sync existence of message records...
                     // MainService.omniRawMessages is authoritative over MainService.omniMessages_deliverable.
-                    // First loop adds records from raw to deliverable.
-                    // Second loop removes records from deliverable where none exist in raw.
+                    // First, we add records from raw to deliverable (only if raw has changed since we last did).
+                    // Then, a loop removes records from deliverable where none exist in raw.
+                    // (get raw's version before we look, so any change made while we're looking gets picked up next time)
+                    final long rawVersion = MainService.omniRawMessages.getVersion();
                     logV(TAGG + "Processing raw->deliverables existence:\n"+
                             "MainService.omniRawMessages contains " + MainService.omniRawMessages.size() + " messages\n"+
                             "MainService.omniMessages_deliverables contains "+MainService.omniMessages_deliverable.size());
@@ -182,26 +204,17 @@ public class MessageDeliverableProcessor extends Thread {
                             clearMessagesInMainService();
                             logV(TAGG + " Cleared MainService.omniMessages_deliverable.");
                         }
+                        materializedMessageJsonHashByUUID.clear();
+                        rawVersionMaterialized = rawVersion;
                     } else {
-                        // First loop, to add recrods from raw to deliverable...
-                        //for (OmniRawMessage omniRawMessage : MainService.omniRawMessages) {           //DEV-NOTE: This was contributing to a ConcurrentModificationException
-                        for (int i = MainService.omniRawMessages.size() - 1; i >= 0; i--) {             //DEV-NOTE: This reverse-loop technique should help out a lot (if not fix it outright)
-                            OmniRawMessage omniRawMessage = MainService.omniRawMessages.get(i);
-
-                            // Ensure it's added to deliverable list (the routine will avoid duplicates)
-                            logV(TAGG + " Ensuring raw message (" + omniRawMessage.getMessageUUID().toString() + ") exists in MainService.omniMessages_deliverable...");
-                            // DEV-NOTE BELOW... this doesn't work for some reason, see note above... you must create a new object.. WHY?!?! oh well, seems to work ok
-                            //omniMessage_reusableObj.initWithRawData(omniApplication.getEcosystem(), omniRawMessage);
-                            //addMessageToMainService(omniMessage_reusableObj);
-                            OmniMessage omniMessage = new OmniMessage(appContextRef.get(), logMethod);
-                            omniMessage.initWithRawData(omniApplication.getEcosystem(), omniRawMessage);
-                            omniMessage.setThisLastModifiedDate(null);  //initially set to null, so sync routine below can know to prefer persisted raw data
-                            addMessageToMainService(omniMessage);
+                        // First, add records from raw to deliverable (only if raw has changed since we last did)...
+                        if (rawVersion != rawVersionMaterialized) {
+                            materializeChangedRawMessages();
+                            rawVersionMaterialized = rawVersion;
                         }
-                        // Second loop, to remove records from deliverable where none exist in raw...
-                        //for (OmniMessage omniMessage : MainService.omniMessages_deliverable) {        //DEV-NOTE: This was contributing to a ConcurrentModificationException
-                        for (int i = MainService.omniMessages_deliverable.size() - 1; i >= 0; i--) {    //DEV-NOTE: This reverse-loop technique should help out a lot (if not fix it outright)
-                            OmniMessage omniMessage = MainService.omniMessages_deliverable.get(i);
+                        // Then loop, to remove records from deliverable where none exist in raw...
+                        //DEV-NOTE: This used to contribute to a ConcurrentModificationException, but the list is copy-on-write now, so this iterates a snapshot (removing as we go is fine)
+                        for (OmniMessage omniMessage : MainService.omniMessages_deliverable) {
 
                             // Check if this OmniMessage exists in raw-list and remove it from deliverables-list if not
                             if (MainService.omniRawMessages.getOmniRawMessage(omniMessage.getMessageUUID()) == null) {
@@ -209,20 +222,12 @@ public class MessageDeliverableProcessor extends Thread {
                                 logV(TAGG + " Removing raw's corresponding OmniMessage (" + omniMessage.getMessageUUID().toString() + ") from MainService.omniMessages_deliverable...");
                                 removeMessageFromMainService(omniMessage);
                             }
-
-                            // While we're here, let's also just go ahead and check expiration...
-                            // This is not in accordance with our rule as established above, but it can't hurt to make sure (it's kinda related).
-                            // (regardless, expired messages don't belong ANYWHERE, so this is insurance)
-                            if (omniMessage.isExpired(OmniMessage.EXPIRATION_CALC_METHOD_RELATIVE_DURATION_FROM_DELIVERY, false, appContextRef.get())) {
-                                logV(TAGG + " Removing expired raw message (" + omniMessage.getMessageUUID().toString() + ") from MainService.omniRawMessages...");
-                                try {
-                                    OmniRawMessage omniRawMessage = MainService.omniRawMessages.getOmniRawMessage(omniMessage.getMessageUUID());
-                                    MainService.omniRawMessages.removeOmniRawMessage(omniRawMessage);
-                                } catch (Exception e) {
-                                    logE(TAGG + "  Exception caught: " + e.getMessage());
-                                }
-                            }
                         }
+
+                        // While we're here, let's also expire whatever is due...
+                        // This is not in accordance with our rule as established above, but it's kinda related.
+                        // (regardless, expired messages don't belong ANYWHERE, so we remove them from raw, and that change then removes them from deliverables)
+                        removeExpiredMessages();
                     }
 
                     // END THE BULK OF THE ACTUAL WORK HERE...
@@ -293,6 +298,99 @@ public class MessageDeliverableProcessor extends Thread {
     /*============================================================================================*/
     /* Processing Methods */
 
+    /** Work out how long to wait for a raw change: until the soonest deliverable expires, but no longer than EXPIRY_WAIT_MAX_MS.
+     * @return Duration to wait, in milliseconds (at least 1, so we always yield).
+     */
+    private long calculateWaitDuration() {
+        long ret = EXPIRY_WAIT_MAX_MS;
+
+        if (MainService.omniMessages_deliverable != null) {
+            final long nextExpiresAtMs = MainService.omniMessages_deliverable.getNextExpiresAtMs();
+            if (nextExpiresAtMs != OmniMessage.EXPIRES_AT_MS_NEVER) {
+                ret = Math.min(ret, nextExpiresAtMs - System.currentTimeMillis());
+            }
+        }
+
+        return Math.max(1, ret);
+    }
+
+    /** Remove every deliverable that has expired (as of now) from raw, which is authoritative (so next pass removes it from deliverables, too).
+     * Only the expiry queue's due entries are looked at, so if nothing has expired, this costs next to nothing (and allocates nothing).
+     */
+    private void removeExpiredMessages() {
+        final String TAGG = "removeExpiredMessages: ";
+
+        expiredUUIDs.clear();
+        if (MainService.omniMessages_deliverable.pollExpired(System.currentTimeMillis(), expiredUUIDs) == 0) {
+            return;
+        }
+
+        for (UUID uuid : expiredUUIDs) {
+            logV(TAGG + "Removing expired raw message (" + uuid.toString() + ") from MainService.omniRawMessages...");
+            try {
+                OmniRawMessage omniRawMessage = MainService.omniRawMessages.getOmniRawMessage(uuid);
+                if (omniRawMessage != null) {
+                    MainService.omniRawMessages.removeOmniRawMessage(omniRawMessage);
+                }
+            } catch (Exception e) {
+                logE(TAGG + "Exception caught: " + e.getMessage());
+            }
+        }
+        expiredUUIDs.clear();
+    }
+
+    /** Build (and add to deliverables) an OmniMessage for each raw message that's new, or whose message JSON has changed since we last did.
+     * Raw messages we've already built from (i.e. same message JSON content, by its hash) are left alone,
+     * since any metadata change there came from the deliverable itself. Content (not instance) is compared, so an equal JSONObject
+     * that's merely been re-parsed (e.g. reloaded from the DB) doesn't cause a rebuild. The hash is the one the raw message worked out
+     * when its JSON was set, so nothing is serialized or hashed here, however often we're woken.
+     * A rebuilt deliverable carries over the delivery state of the one it replaces, so its delivery (and expiration) doesn't start over.
+     */
+    private void materializeChangedRawMessages() {
+        final String TAGG = "materializeChangedRawMessages: ";
+
+        for (OmniRawMessage omniRawMessage : MainService.omniRawMessages) {
+            final UUID uuid = omniRawMessage.getMessageUUID();
+            final long messageJsonHash = omniRawMessage.getMessageJsonHash();
+            final Long messageJsonHash_materialized = materializedMessageJsonHashByUUID.get(uuid);
+            final boolean isDeliverable = MainService.omniMessages_deliverable.doesOmniMessageExist(uuid);
+
+            // Already materialized from this message JSON? (or, built by someone else, like MainService's RotationSnapshot restore, so just adopt it)
+            if (isDeliverable && (messageJsonHash_materialized == null || messageJsonHash_materialized == messageJsonHash)) {
+                if (messageJsonHash_materialized == null) {
+                    materializedMessageJsonHashByUUID.put(uuid, messageJsonHash);
+                }
+                continue;
+            }
+
+            // DEV-NOTE... reusing one OmniMessage object doesn't work for some reason (see note in run), you must create a new object
+            OmniMessage omniMessage = new OmniMessage(appContextRef.get(), logMethod);
+            omniMessage.initWithRawData(omniApplication.getEcosystem(), omniRawMessage);
+            omniMessage.setThisLastModifiedDate(null);  //initially set to null, so sync routine can know to prefer persisted raw data
+
+            if (isDeliverable) {
+                logV(TAGG + "Raw message (" + uuid.toString() + ") has changed, so replacing its deliverable...");
+                OmniMessage omniMessage_replaced = MainService.omniMessages_deliverable.getOmniMessage(uuid, OmniMessages.GET_OMNIMESSAGE_AS_REFERENCE);
+                if (omniMessage_replaced != null) {
+                    omniMessage.carryOverDeliveryStateFrom(omniMessage_replaced);
+                }
+                MainService.omniMessages_deliverable.replaceOmniMessage(omniMessage);
+            } else {
+                logV(TAGG + "Raw message (" + uuid.toString() + ") is new, so adding it to MainService.omniMessages_deliverable...");
+                addMessageToMainService(omniMessage);
+            }
+            materializedMessageJsonHashByUUID.put(uuid, messageJsonHash);
+        }
+
+        // Forget about any raw messages that are gone
+        Iterator<UUID> iterator = materializedMessageJsonHashByUUID.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (MainService.omniRawMessages.getOmniRawMessage(iterator.next()) == null) {
+                iterator.remove();
+            }
+        }
+    }
+
     /** Method to add an OmniMessage to the static OmniMessages resource in MainService.
      * (doing this in protest for now Jan-06, as datatype conversion takes too much time for deadline)
      * @param omniMessage
@@ -7,7 +7,9 @@ package com.messagenetsystems.evolution2.threads;
  *  - When there's nothing in DB that corresponds to RAM, we need to remove from RAM.
  *      [messages DB record] <--(delete)--------  [MainService.omniRawMessages]
  *  - Perform housekeeping (tidy/cleanup) of old/flagged records in "messages" database.
- *      MessageDatabaseClient.deleteAll_withStatus(Message.STATUS_HOUESKEEP_DELETE)
+ *      MessageStore.deleteAll_withStatus(Message.STATUS_HOUESKEEP_DELETE)
+ *  - Delete expired records from "messages" database, when the soonest expiration comes (they're then removed from RAM like any other delete).
+ *      MessageStore.deleteAll_expiredAsOf(now)
  *
  * DEV-NOTES...
  *  It's a thread, because it requires no UI thread access.
@@ -55,10 +57,11 @@ import android.util.Log;
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
 import com.messagenetsystems.evolution2.OmniApplication;
+import com.messagenetsystems.evolution2.databases.PipelineStores;
 import com.messagenetsystems.evolution2.databases.messages.Message;
-import com.messagenetsystems.evolution2.databases.messages.MessageDatabaseClient;
-import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
-import com.messagenetsystems.evolution2.models.OmniMessage;
+import com.messagenetsystems.evolution2.databases.messages.MessageChange;
+import com.messagenetsystems.evolution2.databases.messages.MessageStore;
+import com.messagenetsystems.evolution2.databases.messages.MessagePayloadCodec;
 import com.messagenetsystems.evolution2.models.OmniRawMessage;
 import com.messagenetsystems.evolution2.models.OmniRawMessages;
 import com.messagenetsystems.evolution2.services.MainService;
@@ -67,8 +70,12 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -76,7 +83,8 @@ public class MessageRawDataProcessor extends Thread {
     private final String TAG = this.getClass().getSimpleName();
 
     // Constants..
-
+    private static final int CHANGE_FEED_BATCH_LIMIT = 200;        //max changes to consume per iteration (also keeps the UUID IN-list well within SQLite's parameter limit)
+    private static final long EXPIRY_EVICTION_FOLLOWUP_MS = 2 * Constants.Database.DB_WRITE_BATCH_WINDOW_MS;    //how soon to sync again after an expiry sweep (so its deletes have committed and we can evict them)
 
     // Logging stuff...
     private final int LOG_SEVERITY_V = 1;
@@ -99,7 +107,11 @@ public class MessageRawDataProcessor extends Thread {
 
     private long loopIterationCounter;
 
-    private MessageDatabaseClient messageDatabaseClient;
+    private MessageStore messageStore;
+    private long changeCursor;                          //seq of the last message_changes row we've consumed (-1 means we need a full sync first)
+    private long nextExpiresAtMs;                       //soonest expiration of any message, as epoch milliseconds (Long.MAX_VALUE if none, -1 if we need to look)
+    private long expiryScheduleVersionSeen;             //MessageStore's expiry-schedule version when we last looked for the soonest expiration
+    private boolean isExpiryEvictionPending;            //set when we've just swept expired messages (so we come back soon to evict them from RAM)
 
 
     /** Constructor */
@@ -124,13 +136,17 @@ public class MessageRawDataProcessor extends Thread {
         this.activeProcessingSleepDuration = 1000;
         this.pausedProcessingSleepDuration = 1000;
         this.loopIterationCounter = 1;
+        this.changeCursor = -1;
+        this.nextExpiresAtMs = -1;
+        this.expiryScheduleVersionSeen = 0;
+        this.isExpiryEvictionPending = false;
 
         // Prepare database access
         try {
-            this.messageDatabaseClient = MessageDatabaseClient.getInstance(appContext);
+            this.messageStore = PipelineStores.getInstance(appContext).getMessageStore();
         } catch (Exception e) {
             logE("Exception caught getting database client instance, aborting: "+e.getMessage());
-            this.messageDatabaseClient = null;
+            this.messageStore = null;
         }
     }
 
@@ -146,19 +162,10 @@ public class MessageRawDataProcessor extends Thread {
         final String TAGG = "run: ";
         logV(TAGG+"Invoked.");
 
-        List<ReceivedMessage> dbResults_receivedMessages;
-        ReceivedMessage receivedMessage;
-
-        List<Message> dbResults_messages;
-        Message message_fromDB;
-
-        OmniMessage omniMessage = new OmniMessage(appContextRef.get(), logMethod);
-        int actionCount;
-
         long pid = Thread.currentThread().getId();
         logI(TAGG+"Thread starting as process ID #"+ pid);
 
-        if (messageDatabaseClient == null) {
+        if (messageStore == null) {
             logE(TAGG+"No available database client instance, aborting.");
             return;
         }
@@ -183,9 +190,9 @@ public class MessageRawDataProcessor extends Thread {
 
                 logD(TAGG + "Processing is paused. Thread continuing to run, but no work is occurring.");
             } else {
-                // Do a short delay to help prevent the thread loop from eating cycles
+                // Do a short delay to help prevent the thread loop from eating cycles (or until the next message expires, if that's sooner)
                 try {
-                    Thread.sleep(activeProcessingSleepDuration);
+                    Thread.sleep(calculateActiveSleepDuration());
                 } catch (InterruptedException e) {
                     logW(TAGG + "Exception caught trying to sleep: " + e.getMessage());
                 }
@@ -198,69 +205,27 @@ public class MessageRawDataProcessor extends Thread {
                     // There should be no messages in RAM that aren't in DB... (DB is authoritative, as far as existence of records goes)
 
                     // Tidy up the database so we only work with relevant message records, first
-                    messageDatabaseClient.deleteAll_withStatus(appContextRef.get(), Message.STATUS_HOUSEKEEP_DELETE);
-                    messageDatabaseClient.deleteAll_olderThan(appContextRef.get(), Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY);
-                    dbResults_messages = messageDatabaseClient.findAllRecords(appContextRef.get());
-                    logV(TAGG + "Read DB for deletion of expired messages: messageDatabaseClient found " + dbResults_messages.size() + " results.");
-                    actionCount = 0;
-                    for (int i = 0; i < dbResults_messages.size(); i++) {
-                        message_fromDB = dbResults_messages.get(i);
-
-                        // Extract and model raw message data as an OmniMessage object so we can more easily work with the data
-                        omniMessage.initWithRawData(omniApplication.getEcosystem(), convertDBMsgToOmniRawMsg(message_fromDB));
-
-                        // Determine if message is expired (needs removed and not processed if so)
-                        if (omniMessage.isExpired(OmniMessage.EXPIRATION_CALC_METHOD_RELATIVE_DURATION_FROM_DELIVERY, false, appContextRef.get())) {
-                            removeRawMessageFromRAM(message_fromDB);
-                            messageDatabaseClient.deleteRecord(appContextRef.get(), message_fromDB);
-                            actionCount++;
-                        }
-                    }
-                    logV(TAGG+" "+actionCount+" expired message(s) deleted from MainService.omniRawMessages list.");
+                    // (age-based retention is up to HealthThreadDatabase, which deletes in bounded chunks on its own schedule)
+                    messageStore.deleteAll_withStatus(Message.STATUS_HOUSEKEEP_DELETE);
+
+                    // Delete expired messages...
+                    // Each message's expiration is persisted (expires_at_ms) once it's known, so all we need to know is the soonest one.
+                    // When that time comes (we sleep until then, if it's sooner than our usual interval), everything expired is deleted in one indexed query.
+                    // The deletes are recorded in the change-feed, so the sync below evicts them from RAM (once the write has gone through).
+                    doExpirySweepIfDue();
 
 
                     // Sync existence of message records...
                     // Database is authoritative over RAM.
-                    // First loop adds records from DB to RAM.
-                    // Second loop removes records from RAM where none exist in database.
-                    //dbResults_messages = messageDatabaseClient.findAllRecords(appContextRef.get());
-                    dbResults_messages = messageDatabaseClient.findAllRecords_sortedOrderReceivedAscending(appContextRef.get());
-                    logV(TAGG + "Read DB for RAM existence authority: messageDatabaseClient found " + dbResults_messages.size() + " results.");
-                    if (dbResults_messages.size() == 0) {
-                        if (MainService.omniRawMessages.size() != 0) {
-                            MainService.omniRawMessages.clear();
-                            logV(TAGG + " Cleared MainService.omniRawMessages.");
-                        }
+                    // The first time (or if we lose our place), we read the whole table and make RAM match it.
+                    // After that, we only consume the change-feed (records inserted/deleted since our cursor), so an idle tick costs one small query.
+                    // A full batch means there may be more waiting, so we keep going (rather than leaving the rest for later iterations, a batch each).
+                    if (changeCursor < 0) {
+                        doFullSync();
                     } else {
-                        actionCount = 0;
-                        for (int i = 0; i < dbResults_messages.size(); i++) {
-                            message_fromDB = dbResults_messages.get(i);
-                            logV(TAGG + " #" + i + ") " + message_fromDB.getMsgUUID() + "\n" +
-                                    "          \"" + message_fromDB.getMsgJSON() + "\"\n" +
-                                    "          \"" + message_fromDB.getMetaJSON() + "\""
-                                    );
-
-                            // Ensure it's added to RAM (the routine will avoid duplicates)
-                            logV(TAGG + " Sending DB message (" + message_fromDB.getMsgUUID() + ") to MainService RAM for possible inclusion...");
-                            addRawMessageToRAM(message_fromDB);
-
-                            // Update DB record with status flag to indicate we copied it to RAM
-                            messageDatabaseClient.updateStatusFor(appContextRef.get(), message_fromDB.getMsgUUID(), Message.STATUS_COPIED_TO_RAM);
-                        }
-                        logV(TAGG+" "+actionCount+" messages ensured to be sent to RAM.");
-                        actionCount = 0;
-                        for (int i = 0; i < MainService.omniRawMessages.size(); i++) {
-                            OmniRawMessage omniRawMessage = MainService.omniRawMessages.get(i);
-
-                            //check if this message exists in database and remove it from RAM if not
-                            message_fromDB = messageDatabaseClient.findSpecifiedRecord_uuid(appContextRef.get(), omniRawMessage.getMessageUUID());
-                            if (message_fromDB == null) {
-                                //this RAM message does not exist in database, so we should remove it
-                                logV(TAGG + " Sending DB message (" + message_fromDB.getMsgUUID() + ") to MainService RAM for removal...");
-                                removeRawMessageFromRAM(message_fromDB);
-                            }
+                        while (doIncrementalSync() && !isStopRequested) {
+                            logV(TAGG+"Change-feed batch was full, consuming more...");
                         }
-                        logV(TAGG+" "+actionCount+" DB messages removed to RAM.");
                     }
 
                     // END THE BULK OF THE ACTUAL WORK HERE...
@@ -341,14 +306,14 @@ public class MessageRawDataProcessor extends Thread {
 
         try {
             ret.setMessageUUID(UUID.fromString(message_fromDB.getMsgUUID()));
-            ret.setMessageJSONObject(new JSONObject(message_fromDB.getMsgJSON()));
+            ret.setMessageJSONObject(toJSONObject(message_fromDB.getMsgBin(), message_fromDB.getMsgJSON(), TAGG));
             ret.setStatus(OmniRawMessage.STATUS_UNKNOWN);                                           //NOTE: be sure to set this later when you actually save it
             ret.setStatusMessageDB(message_fromDB.getStatus());
             ret.setCreatedAt(new Date());
             ret.setModifiedAt(ret.getCreatedAt());
 
             try {
-                ret.setMetadataJSONObject(new JSONObject(message_fromDB.getMetaJSON()));
+                ret.setMetadataJSONObject(toJSONObject(message_fromDB.getMetaBin(), message_fromDB.getMetaJSON(), TAGG));
             } catch (JSONException e) {
                 logW(TAGG+"JSON exception caught parsing metadata JSON (this might be OK for undelivered records): "+e.getMessage()+"\n(metadata string from DB = \""+message_fromDB.getMetaJSON()+"\")");
                 ret.setMetadataJSONObject(new JSONObject());
@@ -364,28 +329,222 @@ public class MessageRawDataProcessor extends Thread {
         return ret;
     }
 
-    private void addRawMessageToRAM(Message dbMessage) {
+    /** Get a JSONObject from a record's binary encoding (MessagePayloadCodec) if it has one, otherwise (or if it won't decode) by parsing its JSON text.
+     * @param bin Binary encoding from the record (msg_bin or meta_bin), or null.
+     * @param text JSON text from the record (msg_json or meta_json).
+     * @return The JSONObject.
+     * @throws JSONException if there's no usable encoding and the text won't parse.
+     */
+    private JSONObject toJSONObject(byte[] bin, String text, String tagg) throws JSONException {
+        if (bin != null) {
+            try {
+                return MessagePayloadCodec.decode(bin);
+            } catch (JSONException e) {
+                logW(tagg+"JSON exception caught decoding binary payload (falling back to its JSON text): "+e.getMessage());
+            }
+        }
+        return new JSONObject(text);
+    }
+
+    /** If the soonest expiration has come, delete all expired messages from DB (in one query).
+     * We only look for the soonest expiration again when we've swept, or when some message's expiration has been set since we last looked.
+     */
+    private void doExpirySweepIfDue() {
+        final String TAGG = "doExpirySweepIfDue: ";
+
+        // Look for the soonest expiration, if we don't know it or it may have changed
+        // (get the version first, so anything set while we look makes us look again next time)
+        long expiryScheduleVersion = messageStore.getExpiryScheduleVersion();
+        if (nextExpiresAtMs < 0 || expiryScheduleVersion != expiryScheduleVersionSeen) {
+            expiryScheduleVersionSeen = expiryScheduleVersion;
+            nextExpiresAtMs = messageStore.findNextExpiresAtMs();
+            logV(TAGG+"Soonest expiration is now "+(nextExpiresAtMs == Long.MAX_VALUE ? "none" : String.valueOf(nextExpiresAtMs))+".");
+        }
+
+        long nowMs = System.currentTimeMillis();
+        if (nextExpiresAtMs >= 0 && nowMs >= nextExpiresAtMs) {
+            logD(TAGG+"Expiration time has come ("+nextExpiresAtMs+"). Deleting all expired messages from DB...");
+            messageStore.deleteAll_expiredAsOf(nowMs);
+            nextExpiresAtMs = -1;                       //look again next time (after the delete has gone through)
+            isExpiryEvictionPending = true;
+        }
+    }
+
+    /** Figure how long to sleep before the next iteration: our usual interval, unless the next expiration (or evicting a sweep's deletes) comes sooner. */
+    private long calculateActiveSleepDuration() {
+        long ret = activeProcessingSleepDuration;
+
+        if (isExpiryEvictionPending) {
+            isExpiryEvictionPending = false;
+            ret = Math.min(ret, EXPIRY_EVICTION_FOLLOWUP_MS);
+        } else if (nextExpiresAtMs >= 0) {
+            ret = Math.min(ret, Math.max(0, nextExpiresAtMs - System.currentTimeMillis()));
+        }
+
+        return ret;
+    }
+
+    /** Make RAM match the whole messages table, and start our change-feed cursor from there.
+     * Our cursor is taken before the table is read, so anything that changes in between is just consumed again next time (which is harmless).
+     */
+    private void doFullSync() {
+        final String TAGG = "doFullSync: ";
+
+        long latestChangeSeq = messageStore.findLatestChangeSeq();
+        if (latestChangeSeq < 0) {
+            logW(TAGG+"Could not read change-feed cursor. Will try again next time.");
+            return;
+        }
+
+        List<Message> dbResults_messages = messageStore.findAllRecords_sortedOrderReceivedAscending();
+        if (dbResults_messages == null) {
+            logW(TAGG+"Could not read messages. Will try again next time.");
+            return;
+        }
+        logV(TAGG + "Read DB for RAM existence authority: messageStore found " + dbResults_messages.size() + " results.");
+
+        // Add records from DB to RAM
+        HashSet<UUID> dbUUIDs = new HashSet<UUID>(dbResults_messages.size() * 2);
+        int actionCount = 0;
+        for (Message message_fromDB : dbResults_messages) {
+            try {
+                dbUUIDs.add(UUID.fromString(message_fromDB.getMsgUUID()));
+            } catch (Exception e) {
+                logW(TAGG+"Invalid UUID in DB record: "+e.getMessage());
+                continue;
+            }
+            if (addRawMessageToRAM(message_fromDB)) {
+                actionCount++;
+            }
+        }
+        logV(TAGG+" "+actionCount+" DB messages added to RAM.");
+
+        // Remove records from RAM where none exist in database
+        actionCount = 0;
+        for (OmniRawMessage omniRawMessage : snapshotRawMessagesInRAM()) {
+            if (!dbUUIDs.contains(omniRawMessage.getMessageUUID())) {
+                removeRawMessageFromRAM(omniRawMessage.getMessageUUID());
+                actionCount++;
+            }
+        }
+        logV(TAGG+" "+actionCount+" messages removed from RAM.");
+
+        changeCursor = latestChangeSeq;
+        messageStore.pruneChangesThrough(changeCursor);
+    }
+
+    /** Apply changes from the change-feed (made since our cursor) to RAM, and advance our cursor past them.
+     * Only each UUID's latest change matters (e.g. inserted then deleted is just deleted), except that a record deleted and then
+     * inserted again (i.e. replaced) is removed from RAM before it's re-added, so RAM doesn't keep the old one.
+     * @return Whether a full batch was consumed (so there may be more waiting).
+     */
+    private boolean doIncrementalSync() {
+        final String TAGG = "doIncrementalSync: ";
+
+        List<MessageChange> changes = messageStore.findChangesAfter(changeCursor, CHANGE_FEED_BATCH_LIMIT);
+        if (changes == null) {
+            logW(TAGG+"Could not read change-feed. Will do a full sync next time.");
+            changeCursor = -1;
+            return false;
+        }
+        if (changes.size() == 0) {
+            return false;
+        }
+
+        // Collapse to each UUID's latest change (in order of first appearance), noting which were deleted along the way
+        LinkedHashMap<String, Integer> latestChangeTypeByUUID = new LinkedHashMap<String, Integer>();
+        HashSet<String> deletedUUIDs = new HashSet<String>();
+        for (MessageChange change : changes) {
+            latestChangeTypeByUUID.put(change.getMsgUUID(), change.getChangeType());
+            if (change.getChangeType() == MessageChange.CHANGE_DELETED) {
+                deletedUUIDs.add(change.getMsgUUID());
+            }
+        }
+
+        // Removals (including of replaced records) are done right away; inserted records are read in one query
+        ArrayList<String> insertedUUIDs = new ArrayList<String>();
+        int removedCount = 0;
+        for (Map.Entry<String, Integer> entry : latestChangeTypeByUUID.entrySet()) {
+            if (entry.getValue() == MessageChange.CHANGE_INSERTED) {
+                insertedUUIDs.add(entry.getKey());
+            }
+            if (deletedUUIDs.contains(entry.getKey())) {
+                try {
+                    if (removeRawMessageFromRAM(UUID.fromString(entry.getKey()))) {
+                        removedCount++;
+                    }
+                } catch (Exception e) {
+                    logW(TAGG+"Invalid UUID in change-feed: "+e.getMessage());
+                }
+            }
+        }
+
+        int addedCount = 0;
+        if (insertedUUIDs.size() > 0) {
+            List<Message> dbResults_messages = messageStore.findSpecifiedRecords_uuids(insertedUUIDs);
+            if (dbResults_messages == null) {
+                logW(TAGG+"Could not read inserted messages. Will do a full sync next time.");
+                changeCursor = -1;
+                return false;
+            }
+            for (Message message_fromDB : dbResults_messages) {
+                if (addRawMessageToRAM(message_fromDB)) {
+                    addedCount++;
+                }
+            }
+        }
+
+        changeCursor = changes.get(changes.size() - 1).getSeq();
+        messageStore.pruneChangesThrough(changeCursor);
+
+        logV(TAGG+"Consumed "+changes.size()+" change(s) through #"+changeCursor+": "+addedCount+" message(s) added to RAM, "+removedCount+" removed.");
+
+        return changes.size() >= CHANGE_FEED_BATCH_LIMIT;
+    }
+
+    /** Take a copy of MainService.omniRawMessages to iterate over (so it's free to change while we do).
+     * It's copy-on-write, so copying it takes its current array as is, without locking out (or waiting on) its writers.
+     */
+    private List<OmniRawMessage> snapshotRawMessagesInRAM() {
+        return new ArrayList<OmniRawMessage>(MainService.omniRawMessages);
+    }
+
+    /** Add a DB record to RAM, unless it's already there.
+     * @return Whether it was added (in which case its DB record is flagged as copied to RAM).
+     */
+    private boolean addRawMessageToRAM(Message dbMessage) {
         final String TAGG = "addRawMessageToRAM: ";
 
         try {
             logV(TAGG+"Adding "+dbMessage.getMsgUUID()+" to MainService.omniRawMessages...");
             OmniRawMessage omniRawMessage = convertDBMsgToOmniRawMsg(dbMessage);
-            MainService.omniRawMessages.addOmniRawMessage(omniRawMessage, OmniRawMessages.ADD_AVOIDING_DUPLICATES);
+            if (MainService.omniRawMessages.addOmniRawMessage(omniRawMessage, OmniRawMessages.ADD_AVOIDING_DUPLICATES)) {
+                // Update DB record with status flag to indicate we copied it to RAM
+                messageStore.updateStatusFor(dbMessage.getMsgUUID(), Message.STATUS_COPIED_TO_RAM);
+                return true;
+            }
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
+        return false;
     }
 
-    private void removeRawMessageFromRAM(Message dbMessage) {
+    /** Remove a message from RAM, if it's there.
+     * @return Whether it was removed.
+     */
+    private boolean removeRawMessageFromRAM(UUID messageUUID) {
         final String TAGG = "removeRawMessageFromRAM: ";
 
         try {
-            logV(TAGG+"Removing "+dbMessage.getMsgUUID()+" from MainService.omniRawMessages...");
-            OmniRawMessage omniRawMessage = convertDBMsgToOmniRawMsg(dbMessage);
-            MainService.omniRawMessages.removeOmniRawMessage(omniRawMessage);
+            OmniRawMessage omniRawMessage = MainService.omniRawMessages.getOmniRawMessage(messageUUID);
+            if (omniRawMessage != null) {
+                logV(TAGG+"Removing "+messageUUID.toString()+" from MainService.omniRawMessages...");
+                return MainService.omniRawMessages.removeOmniRawMessage(omniRawMessage);
+            }
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
+        return false;
     }
 
 
@@ -40,14 +40,18 @@ import android.util.Log;
 
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.databases.PipelineStores;
 import com.messagenetsystems.evolution2.databases.messages.Message;
-import com.messagenetsystems.evolution2.databases.messages.MessageDatabaseClient;
+import com.messagenetsystems.evolution2.databases.messages.MessageStore;
 import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
-import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageDatabaseClient;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageStore;
 import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
+import com.messagenetsystems.evolution2.models.ActiveMessageDigest;
 
 import java.lang.ref.WeakReference;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 
@@ -77,10 +81,10 @@ public class ReceivedMessageProcessor extends Thread {
 
     private long loopIterationCounter;
 
-    private int alternateRunIteration_tidyDB;       //every X iterations, run the tidy-DB routine (some things just don't need run every iteration of the loop)
+    private int alternateRunIteration_reconcileDigest;  //every X iterations, reconcile ActiveMessageDigest with the databases (catches bulk deletes, and seeds it after startup)
 
-    private ReceivedMessageDatabaseClient receivedMessageDatabaseClient;
-    private MessageDatabaseClient messageDatabaseClient;
+    private ReceivedMessageStore receivedMessageStore;
+    private MessageStore messageStore;
 
 
     /** Constructor */
@@ -100,15 +104,15 @@ public class ReceivedMessageProcessor extends Thread {
 
         this.loopIterationCounter = 1;
 
-        this.alternateRunIteration_tidyDB = 10;     //every X iterations, run the tidy-DB routine (some things just don't need run every iteration of the loop)
+        this.alternateRunIteration_reconcileDigest = 60;
 
         try {
-            this.receivedMessageDatabaseClient = ReceivedMessageDatabaseClient.getInstance(appContext);
-            this.messageDatabaseClient = MessageDatabaseClient.getInstance(appContext);
+            this.receivedMessageStore = PipelineStores.getInstance(appContext).getReceivedMessageStore();
+            this.messageStore = PipelineStores.getInstance(appContext).getMessageStore();
         } catch (Exception e) {
             logE("Exception caught getting database client instance, aborting: "+e.getMessage());
-            this.receivedMessageDatabaseClient = null;
-            this.messageDatabaseClient = null;
+            this.receivedMessageStore = null;
+            this.messageStore = null;
         }
     }
 
@@ -131,8 +135,8 @@ public class ReceivedMessageProcessor extends Thread {
         logI(TAGG+"Thread starting as process ID #"+ pid);
 
         // Verify database client instance (and thus access to data through its methods)
-        if (receivedMessageDatabaseClient == null
-                || messageDatabaseClient == null) {
+        if (receivedMessageStore == null
+                || messageStore == null) {
             logE(TAGG+"No available database client instance(s), aborting.");
             return;
         }
@@ -161,7 +165,7 @@ public class ReceivedMessageProcessor extends Thread {
 
                     // Find unprocessed (new) requests in received_requests Room-database...
                     // FYI: That is defined by not having any processed-at timestamp data yet.
-                    dbResults = receivedMessageDatabaseClient.findUnprocessedReceivedMessages(appContextRef.get());
+                    dbResults = receivedMessageStore.findUnprocessedReceivedMessages();
                     logV(TAGG + "Found " + dbResults.size() + " unprocessed results.");
                     for (int i = 0; i < dbResults.size(); i++) {
                         receivedMessage = dbResults.get(i);
@@ -173,9 +177,9 @@ public class ReceivedMessageProcessor extends Thread {
                     // Short time for things to stabilize in the DB world, just to be safe...
                     doSleep(100);
 
-                    // Tidy-up the database (this obeys every X iterations as defined, as it does not need to run on every single iteration)...
-                    if (loopIterationCounter % alternateRunIteration_tidyDB == 0) {
-                        tidyDatabase();
+                    // Reconcile our active-message state digest with the databases (first time through, so it's seeded, and every X iterations after)...
+                    if (loopIterationCounter == 1 || loopIterationCounter % alternateRunIteration_reconcileDigest == 0) {
+                        reconcileActiveMessageDigest();
                     }
 
                     // END THE BULK OF THE ACTUAL WORK HERE...
@@ -263,44 +267,55 @@ public class ReceivedMessageProcessor extends Thread {
 
         try {
             // Figure out if ReceivedMessage already exists in Message Room-DB and add it if not...
-            if (messageDatabaseClient.doesMessageExist(appContextRef.get(), receivedMessage.getMessageUUID())) {
+            if (messageStore.doesMessageExist(receivedMessage.getMessageUUID())) {
                 // UUID value already exists, will not insert, so as to avoid duplicates
                 // Note: This is a normal situation and nothing to worry about.
                 logD(TAGG+"A record with the same UUID already exists in the messages database. Not adding.");
+                ActiveMessageDigest.put(receivedMessage.getMessageUUID(), receivedMessage.getMessageJsonHash());
             } else {
                 logD(TAGG+"Received message does not exist in messages database. Adding it there now...");
 
-                // Add the received message as a new record to messages DB...
-                // Note: status will automatically be saved as Message.STATUS_NEW by addRecord!
-                messageDatabaseClient.addRecord(appContextRef.get(),
-                        receivedMessage.getMessageUUID(),
-                        receivedMessage.getMessageJson(),
-                        Message.STATUS_NEW,
-                        receivedMessage.getReceivedAt());   //passing along the original ReceivedRequest.created_at datetime, so we can know when a message was originally received
+                // Add the received message as a new record to messages DB, and flag the received_messages record that we've forwarded it (in one transaction)...
+                // Note: status will automatically be saved as Message.STATUS_NEW, and the original ReceivedRequest.created_at datetime is passed along, so we can know when a message was originally received
+                messageStore.addRecordPromotedFrom(receivedMessage, ReceivedMessage.STATUS_FORWARDED);
 
-                // Update existing record in received_messages database to flag that we've forwarded the data...
+                // Keep our copy in step with what's being written...
                 Date now = new Date();
                 receivedMessage.setStatus(ReceivedMessage.STATUS_FORWARDED);
                 receivedMessage.setRequestProcessedAt(now);
-                receivedMessage.setRequestProcessedAtMs(String.valueOf(now.getTime()));
-                receivedMessageDatabaseClient.updateRecord(appContextRef.get(), receivedMessage);
+                receivedMessage.setRequestProcessedAtMs(now.getTime());
+
+                // It's now part of our active-message state...
+                ActiveMessageDigest.put(receivedMessage.getMessageUUID(), receivedMessage.getMessageJsonHash());
             }
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
     }
 
-    /** Do the work of tidying-up the database. */
-    private void tidyDatabase() {
-        final String TAGG = "tidyDatabase: ";
+    /** Bring ActiveMessageDigest in line with what's actually in the databases.
+     * Active messages are whatever is in the messages DB (and not waiting to be deleted); their content hashes come from received_messages. */
+    private void reconcileActiveMessageDigest() {
+        final String TAGG = "reconcileActiveMessageDigest: ";
 
         try {
-            // Have the database clean out any older stuff that we know has been taken care of.
-            // Remember, we keep it around here for a little bit just in case it's ever needed again for some strange reason.
-            //TODO
+            List<Message> messages = messageStore.findAllRecords();
+            HashSet<String> activeMessageUUIDs = new HashSet<String>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                if (messages.get(i).getStatus() != Message.STATUS_HOUSEKEEP_DELETE) {
+                    activeMessageUUIDs.add(messages.get(i).getMsgUUID());
+                }
+            }
 
-            // Finally, have the database clean out any potentially uncaught leftovers...
-            receivedMessageDatabaseClient.deleteAll_olderThan(appContextRef.get(), Constants.Database.SQLITE_DTMOD_OLDERTHAN_1WEEK);
+            List<ReceivedMessage> receivedMessages = receivedMessageStore.findAllReceivedMessages();
+            HashMap<String, Long> messageJsonHashesByUUID = new HashMap<String, Long>(receivedMessages.size());
+            for (int i = 0; i < receivedMessages.size(); i++) {
+                messageJsonHashesByUUID.put(receivedMessages.get(i).getMessageUUID(), receivedMessages.get(i).getMessageJsonHash());
+            }
+
+            if (ActiveMessageDigest.reconcile(activeMessageUUIDs, messageJsonHashesByUUID)) {
+                logD(TAGG+"Active-message state changed ("+ActiveMessageDigest.size()+" messages, digest "+ActiveMessageDigest.getDigestHex()+").");
+            }
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -1,7 +1,9 @@
 package com.messagenetsystems.evolution2.threads;
 
 /* ReceivedRequestProcessor
- * Periodically reads the received_requests Room-DB and processes whatever is there.
+ * Consumes the received-request ingest journal (and reads the received_requests Room-DB), and processes whatever is there.
+ * Requests normally arrive via ReceivedRequestJournal, which wakes this thread as soon as they're durable (push-based hand-off).
+ * The Room-DB only gets requests that the journal couldn't take, so it is only swept periodically, as a fallback.
  * This processing entails the following:
  *  A) Finds new request records and updates their status flag and processing timestamps.
  *  B) Forwards (copies) new request records to an appropriate database (e.g. messages or configurations), as needed.
@@ -46,23 +48,26 @@ import android.util.Log;
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
 import com.messagenetsystems.evolution2.OmniApplication;
-import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageDatabaseClient;
+import com.messagenetsystems.evolution2.databases.PipelineStores;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessageStore;
 import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
-import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestDatabaseClient;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestStore;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestJournal;
 import com.messagenetsystems.evolution2.services.MainService;
+import com.messagenetsystems.evolution2.utilities.JsonRoutingFields;
 
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
 
-public class ReceivedRequestProcessor extends Thread {
+public class ReceivedRequestProcessor extends Thread implements ReceivedRequestJournal.DurableListener {
     private final String TAG = this.getClass().getSimpleName();
 
     // Constants..
-
+    private static final int JOURNAL_READ_BATCH_SIZE = 100;                                         //max number of journal records to process before committing our offset
+    private static final long DB_SWEEP_INTERVAL_MS = 10 * 1000;                                     //how often to sweep the Room-DB for (fallback) unprocessed requests
+    private static final long JOURNAL_COMMIT_WAIT_MS = 5 * 1000;                                    //longest to wait (each try) for a batch's promotions to be committed, before we commit our journal offset
 
     // Logging stuff...
     private final byte LOG_SEVERITY_V = 1;
@@ -79,15 +84,23 @@ public class ReceivedRequestProcessor extends Thread {
     private volatile boolean isThreadRunning;       //just a status flag
     private volatile boolean pauseProcessing;       //flag to set if you want to pause processing work (may double as a kind of "is paused" flag)
 
-    private int activeProcessingSleepDuration;      //duration (in milliseconds) to sleep during active processing (to help ensure CPU cycles aren't eaten like crazy)
+    private int activeProcessingSleepDuration;      //longest duration (in milliseconds) to wait for a wake-up during active processing
     private int pausedProcessingSleepDuration;      //duration (in milliseconds) to sleep during paused processing (to help ensure CPU cycles aren't eaten like crazy)
 
     private long loopIterationCounter;
 
-    private int alternateRunIteration_tidyDB;       //every X iterations, run the tidy-DB routine (some things just don't need run every iteration of the loop)
+    private final Object wakeLock = new Object();   //what we wait on between iterations (notified when new requests arrive)
+    private boolean isWakePending;                  //set when woken, so a wake-up that comes while we're working isn't missed (guarded by wakeLock)
+
+    private long lastDbSweepMS;                     //when we last swept the Room-DB for unprocessed requests
+
+    private ReceivedRequestRouter receivedRequestRouter;    //dispatch table of what to do with each kind of request
+    private JsonRoutingFields jsonRoutingFields;            //reused for scanning each request's routing fields
+    private boolean isRequestPromoted;                      //set when the request being processed got promoted (its DB record already flagged, in the same transaction)
 
-    private ReceivedRequestDatabaseClient receivedRequestDatabaseClient;
-    private ReceivedMessageDatabaseClient receivedMessageDatabaseClient;
+    private ReceivedRequestJournal receivedRequestJournal;
+    private ReceivedRequestStore receivedRequestStore;
+    private ReceivedMessageStore receivedMessageStore;
     //TODO received-configuration DB client
 
 
@@ -108,17 +121,26 @@ public class ReceivedRequestProcessor extends Thread {
 
         this.loopIterationCounter = 1;
 
-        this.alternateRunIteration_tidyDB = 10;     //every X iterations, run the tidy-DB routine (some things just don't need run every iteration of the loop)
+        this.isWakePending = false;
+
+        this.receivedRequestRouter = new ReceivedRequestRouter();
+        this.jsonRoutingFields = new JsonRoutingFields();
+        registerRoutes();
+        this.lastDbSweepMS = 0;                     //so we sweep right away when starting (picks up anything left from before)
 
         try {
-            this.receivedRequestDatabaseClient = ReceivedRequestDatabaseClient.getInstance(appContext);
-            this.receivedMessageDatabaseClient = ReceivedMessageDatabaseClient.getInstance(appContext);
+            this.receivedRequestJournal = ReceivedRequestJournal.getInstance(appContext);           //may be null, if the journal file couldn't be opened (then everything comes through Room)
+            if (this.receivedRequestJournal != null) {
+                this.receivedRequestJournal.setDurableListener(this);
+            }
+            this.receivedRequestStore = PipelineStores.getInstance(appContext).getReceivedRequestStore();
+            this.receivedMessageStore = PipelineStores.getInstance(appContext).getReceivedMessageStore();
             //TODO received-configuration DB client
             //TODO received-bad-request DB client
         } catch (Exception e) {
             logE("Exception caught getting database client instance, aborting: "+e.getMessage());
-            this.receivedRequestDatabaseClient = null;
-            this.receivedMessageDatabaseClient = null;
+            this.receivedRequestStore = null;
+            this.receivedMessageStore = null;
             //TODO received-configuration DB client
             //TODO received-bad-request DB client
         }
@@ -142,7 +164,7 @@ public class ReceivedRequestProcessor extends Thread {
         logD(TAGG + "Thread started with priority "+Thread.currentThread().getPriority()+" ("+Thread.MIN_PRIORITY+"-"+Thread.MAX_PRIORITY+").");
 
         // Verify database client instance (and thus access to data through its methods)
-        if (receivedRequestDatabaseClient == null) {
+        if (receivedRequestStore == null) {
             logE(TAGG+"No available database client instance, aborting.");
             return;
         }
@@ -160,8 +182,8 @@ public class ReceivedRequestProcessor extends Thread {
 
                 logD(TAGG + "(iteration #"+loopIterationCounter+") Processing is paused. Thread continuing to run, but no work is occurring.");
             } else {
-                // Do a short delay to help prevent the thread loop from eating cycles
-                doSleep(activeProcessingSleepDuration);
+                // Wait until woken by new requests (or until it's time to check anyway)
+                waitForWork(activeProcessingSleepDuration);
 
                 logV(TAGG + "(iteration #"+loopIterationCounter+") Processing...");
 
@@ -169,23 +191,49 @@ public class ReceivedRequestProcessor extends Thread {
                     ////////////////////////////////////////////////////////////////////////////////
                     // DO THE BULK OF THE ACTUAL WORK HERE...
 
-                    // Find unprocessed (new) requests in received_requests Room-database...
-                    // FYI: That is defined by not having any processed-at timestamp data yet.
-                    dbResults = receivedRequestDatabaseClient.findUnprocessedReceivedRequests(appContextRef.get());
-                    logV(TAGG + "Found " + dbResults.size() + " unprocessed results.");
-                    for (int i = 0; i < dbResults.size(); i++) {
-                        receivedRequest = dbResults.get(i);
-                        logV(TAGG + " #" + i + ") " + receivedRequest.getRequestPath() + " " + receivedRequest.getRequestBody());
-
-                        processReceivedRequest(receivedRequest);
+                    // Consume new requests from the ingest journal...
+                    // Promotions are only queued for the database writer, so we wait for them to be committed before committing our offset.
+                    // That way, nothing is lost if we die in between (a batch may get processed again, but duplicates are rejected by content hash).
+                    // If any of the batch's own promotions failed, the batch is read and processed again instead (other writes failing doesn't matter here).
+                    // We're the only ones promoting requests, so any promotion that fails between our before-and-after counts is one of this batch's.
+                    if (receivedRequestJournal != null) {
+                        dbResults = receivedRequestJournal.readUnconsumed(JOURNAL_READ_BATCH_SIZE);
+                        while (dbResults.size() > 0) {
+                            logV(TAGG + "Read " + dbResults.size() + " unconsumed journal records.");
+                            long failedPromotionCountBefore = receivedMessageStore.getFailedPromotionCount();
+                            for (int i = 0; i < dbResults.size(); i++) {
+                                processReceivedRequest(dbResults.get(i));
+                            }
+                            if (!awaitPromotionsSettled(failedPromotionCountBefore)) {
+                                break;                                                              //stopping (offset stays uncommitted, so the batch gets processed again next time we start)
+                            }
+                            if (receivedMessageStore.getFailedPromotionCount() != failedPromotionCountBefore) {
+                                logW(TAGG + "Promotions failed while processing journal records. Leaving them unconsumed, to process them again.");
+                                receivedRequestJournal.rewindToConsumed();
+                                break;                                                              //try again next time we're woken (or after our usual sleep)
+                            }
+                            receivedRequestJournal.commitConsumed();
+                            dbResults = receivedRequestJournal.readUnconsumed(JOURNAL_READ_BATCH_SIZE);
+                        }
                     }
 
-                    // Short time for things to stabilize in the DB world, just to be safe...
-                    doSleep(100);
+                    // Find unprocessed (new) requests in received_requests Room-database (these are only fallback records the journal couldn't take)...
+                    // FYI: That is defined by not having any processed-at timestamp data yet.
+                    // Since this is only a fallback/recovery measure, it runs on its own (longer) interval, not every time we're woken.
+                    if (System.currentTimeMillis() - lastDbSweepMS >= DB_SWEEP_INTERVAL_MS
+                            || receivedRequestJournal == null) {
+                        lastDbSweepMS = System.currentTimeMillis();
+                        dbResults = receivedRequestStore.findUnprocessedReceivedRequests();
+                        logV(TAGG + "Found " + dbResults.size() + " unprocessed results.");
+                        for (int i = 0; i < dbResults.size(); i++) {
+                            receivedRequest = dbResults.get(i);
+                            logV(TAGG + " #" + i + ") " + receivedRequest.getRequestPath() + " " + receivedRequest.getRequestBody());
+
+                            processReceivedRequest(receivedRequest);
+                        }
 
-                    // Tidy-up the database (this obeys every X iterations as defined, as it does not need to run on every single iteration)...
-                    if (loopIterationCounter % alternateRunIteration_tidyDB == 0) {
-                        tidyDatabase();
+                        // Short time for things to stabilize in the DB world, just to be safe...
+                        doSleep(100);
                     }
 
                     // END THE BULK OF THE ACTUAL WORK HERE...
@@ -235,6 +283,58 @@ public class ReceivedRequestProcessor extends Thread {
         }
     }
 
+    /** Wait until we're woken (or the given time elapses), returning immediately if a wake-up already came while we were working. */
+    private void waitForWork(long ms) {
+        synchronized (wakeLock) {
+            if (!isWakePending) {
+                try {
+                    wakeLock.wait(ms);
+                } catch (InterruptedException e) {
+                    logE("waitForWork: Exception caught: "+e.getMessage());
+                }
+            }
+            isWakePending = false;
+        }
+    }
+
+    /** Wait for everything we've promoted so far to be committed to the database, or for a promotion to have failed meanwhile
+     * (trying again as long as it takes, unless we're stopping).
+     * @param failedPromotionCountBefore The failed promotion count from before we promoted anything.
+     * @return Whether it's all settled, i.e. committed, or some promotion failed (check getFailedPromotionCount); false only if we're stopping.
+     */
+    private boolean awaitPromotionsSettled(long failedPromotionCountBefore) {
+        final String TAGG = "awaitPromotionsSettled: ";
+
+        while (!isStopRequested) {
+            try {
+                if (receivedMessageStore.awaitWritesCommitted(JOURNAL_COMMIT_WAIT_MS)
+                        || receivedMessageStore.getFailedPromotionCount() != failedPromotionCountBefore) {
+                    return true;
+                }
+                logW(TAGG+"Promotions not committed within "+JOURNAL_COMMIT_WAIT_MS+"ms, waiting some more before committing journal offset.");
+            } catch (InterruptedException e) {
+                logW(TAGG+"Interrupted while waiting for promotions to be committed.");
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Call this to wake the thread up to process new requests right away. */
+    public void wakeUp() {
+        synchronized (wakeLock) {
+            isWakePending = true;
+            wakeLock.notifyAll();
+        }
+    }
+
+    /** Invoked by ReceivedRequestJournal (on its flusher thread) when new requests are durable. */
+    @Override
+    public void onRequestsDurable(long durableSeq) {
+        wakeUp();
+    }
+
     /** Call this to pause processing.
      * This essentially just sets the pause flag (which prevents any work being done).
      */
@@ -257,6 +357,12 @@ public class ReceivedRequestProcessor extends Thread {
             // Flag the thread-loop to break
             this.isStopRequested = true;
 
+            // Stop getting woken by the journal, and wake up now so we notice the stop request right away
+            if (this.receivedRequestJournal != null) {
+                this.receivedRequestJournal.setDurableListener(null);
+            }
+            wakeUp();
+
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -273,79 +379,40 @@ public class ReceivedRequestProcessor extends Thread {
         final String TAGG = "processReceivedRequest: ";
         byte receivedRequestStatusToSet = ReceivedRequest.STATUS_UNKNOWN;
 
+        isRequestPromoted = false;
+
         try {
             // If the request is a valid type, process it
             logV(TAGG+"Request's content type = \""+receivedRequest.getRequestContentType()+"\"");
             if ((receivedRequest.getRequestContentType().equalsIgnoreCase(ReceivedRequest.CONTENT_TYPE_TYPE_TEXT+"/"+ReceivedRequest.CONTENT_TYPE_SUBTYPE_JSON))
                     || (receivedRequest.getRequestContentType().equalsIgnoreCase(ReceivedRequest.CONTENT_TYPE_TYPE_APPLICATION+"/"+ReceivedRequest.CONTENT_TYPE_SUBTYPE_JSON))) {
 
-                // Determine which API the request is for (defined by the path) and act appropriately
-                if (receivedRequest.getRequestPath().equalsIgnoreCase("/config")) {
-                    logD(TAGG+"Config-API.");
-                    copyRxReqToRxConfig(receivedRequest);
-                    receivedRequestStatusToSet = ReceivedRequest.STATUS_FORWARDED;
-                } else if (receivedRequest.getRequestPath().equalsIgnoreCase("/message")) {
-                    logD(TAGG + "ReceivedMessage-API.");
-                    copyRxReqToRxMsg(receivedRequest);
-                    receivedRequestStatusToSet = ReceivedRequest.STATUS_FORWARDED;
-                } else {
+                // Pull out the fields we route by (in one pass over the body), and find the route for them
+                jsonRoutingFields.scan(receivedRequest.getRequestBody());
+
+                boolean isLegacyEcosystem = false;
+                try {
                     // We could be operating under old MessageNet ecosystem
-                    try {
-                        OmniApplication omniApplication = ((OmniApplication) appContextRef.get());
-                        if (omniApplication.getEcosystem() == OmniApplication.ECOSYSTEM_MESSAGENET_CONNECTIONS_V1) {
-                            /* TODO: Additional legacy commands go here? e.g. stop, clear, etc.  */
-                            if (receivedRequest.getRequestBody().contains("\"bannerpurpose\":\"updateseq\"")) {
-                                logI(TAGG + "Old API, and requestBody contains \"'bannerpurpose':'updateseq'\".");
-
-                                //TODO (handle bannerpurpose updateseq)
-                                receivedRequestStatusToSet = ReceivedRequest.STATUS_PROCESSED;
-                            }
-                            else if (receivedRequest.getRequestBody().contains("\"bannerpurpose\":\"clearsign\"")) {
-                                logI(TAGG + "Old API, and requestBody contains \"'bannerpurpose':'clearsign'\".");
-                                // This is received when the server is certain there should be no messages delivering on the device.
-                                // NOTE: This may be (redundantly) followed by a "stopscrollingmessage" request, as well.
-
-                                //TODO (handle bannerpurpose clearsign)
-                                //TODO DEV-NOTE: In quick testing, the server sends this, even if there are multiple active msgs and you only close one. WTF?!?! -- investigate the banner node for Omni
-                                receivedRequestStatusToSet = ReceivedRequest.STATUS_PROCESSED;
-                            }
-                            else if (receivedRequest.getRequestBody().contains("\"bannerpurpose\":\"stopscrollingmessage\"")) {
-                                logI(TAGG + "Old API, and requestBody contains \"'bannerpurpose':'stopscrollingmessage'\".");
-                                //DEV-NOTE: For now, may be best to ignore clearsign above, and just use ZX recno (dtsec is too hard to obtain and send from server) to lookup msg to stop delivering
-
-                                // Parse ZX record number
-                                // Example request body:   "{"password":"511","bannerpurpose":"stopscrollingmessage","recno_zx":"196"}"
-                                int recno = Integer.parseInt(receivedRequest.getRequestBody().split("\"recno_zx\":\"")[1].split("\"")[0]);
-
-                                // Find matching record in MainService.omniMessages_deliverable
-                                // Goal will be to remove the matching record from that RAM object and have it propagate automatically back toward omniRawMessages and MessageDatabase
-                                try {
-                                    //MainService.omniMessages_deliverable.updateOmniMessage(this.omniMessageToDeliver);
-                                    MainService.omniMessages_deliverable.removeOmniMessage_byBannerRecnoZX(recno);
-                                    receivedRequestStatusToSet = ReceivedRequest.STATUS_PROCESSED;
-                                } catch (Exception e) {
-                                    logE(TAGG+"Exception caught: "+e.getMessage());
-                                    receivedRequestStatusToSet = ReceivedRequest.STATUS_PROCESSING_ERROR;
-                                }
+                    OmniApplication omniApplication = ((OmniApplication) appContextRef.get());
+                    isLegacyEcosystem = (omniApplication.getEcosystem() == OmniApplication.ECOSYSTEM_MESSAGENET_CONNECTIONS_V1);
+                } catch (Exception e) {
+                    logE(TAGG+"Exception caught determining ecosystem: "+e.getMessage());
+                }
 
-                            }
-                            else if (receivedRequest.getRequestBody().contains("\"bannerpurpose\":\"") && receivedRequest.getRequestBody().contains("bannermessage")) {
-                                logI(TAGG + "Old API, and requestBody contains \"bannerpurpose\" and \"bannermessage\", treating as message.");
-                                copyRxReqToRxMsg(receivedRequest);
-                                receivedRequestStatusToSet = ReceivedRequest.STATUS_FORWARDED;
-                            }
-                            else {
-                                logV(TAGG+"Old API, but requestBody contains unhandled data, doing nothing.");
-                                receivedRequestStatusToSet = ReceivedRequest.STATUS_UNKNOWN;
-                            }
-                        } else {
-                            logV(TAGG+"Non-old API, but unhandled requestPath ("+receivedRequest.getRequestPath()+").");
-                            receivedRequestStatusToSet = ReceivedRequest.STATUS_UNKNOWN;
-                        }
+                ReceivedRequestRouter.Route route = receivedRequestRouter.findRoute(receivedRequest.getRequestPath(), jsonRoutingFields, isLegacyEcosystem);
+                if (route != null) {
+                    try {
+                        receivedRequestStatusToSet = route.handle(receivedRequest, jsonRoutingFields);
                     } catch (Exception e) {
                         logE(TAGG+"Exception caught: "+e.getMessage());
                         receivedRequestStatusToSet = ReceivedRequest.STATUS_PROCESSING_ERROR;
                     }
+                } else if (isLegacyEcosystem) {
+                    logV(TAGG+"Old API, but requestBody contains unhandled data, doing nothing.");
+                    receivedRequestStatusToSet = ReceivedRequest.STATUS_UNKNOWN;
+                } else {
+                    logV(TAGG+"Non-old API, but unhandled requestPath ("+receivedRequest.getRequestPath()+").");
+                    receivedRequestStatusToSet = ReceivedRequest.STATUS_UNKNOWN;
                 }
 
             } else {
@@ -361,11 +428,15 @@ public class ReceivedRequestProcessor extends Thread {
             }
 
             // Issue the job to update the received_requests record's "processed" and status fields
+            // (only for records that actually came from the database; journal records are done once we commit our journal offset)
+            // (and not for promoted ones, since that was already done along with the promotion)
             Date now = new Date();
             receivedRequest.setStatus(receivedRequestStatusToSet);
             receivedRequest.setRequestProcessedAt(now);
-            receivedRequest.setRequestProcessedAtMs(String.valueOf(now.getTime()));
-            receivedRequestDatabaseClient.updateRecord(appContextRef.get(), receivedRequest);
+            receivedRequest.setRequestProcessedAtMs(now.getTime());
+            if (receivedRequest.getId() != 0 && !isRequestPromoted) {
+                receivedRequestStore.updateRecord(receivedRequest);
+            }
 
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
@@ -375,6 +446,83 @@ public class ReceivedRequestProcessor extends Thread {
         return receivedRequestStatusToSet;
     }
 
+    /** Build our dispatch table of routes for received requests.
+     * To handle a new API path (e.g. a new v2 schema) or legacy banner purpose, just register a route for it here. */
+    private void registerRoutes() {
+        final String TAGG = "processReceivedRequest: ";                                             //routes run as part of processing a request
+
+        // v2 API (see app/schemas)...
+        receivedRequestRouter.registerPathRoute(ReceivedRequestRouter.PATH_CONFIG, new ReceivedRequestRouter.Route() {
+            @Override
+            public byte handle(ReceivedRequest receivedRequest, JsonRoutingFields jsonRoutingFields) {
+                logD(TAGG+"Config-API.");
+                copyRxReqToRxConfig(receivedRequest);
+                return ReceivedRequest.STATUS_FORWARDED;
+            }
+        });
+        receivedRequestRouter.registerPathRoute(ReceivedRequestRouter.PATH_MESSAGE, new ReceivedRequestRouter.Route() {
+            @Override
+            public byte handle(ReceivedRequest receivedRequest, JsonRoutingFields jsonRoutingFields) {
+                logD(TAGG+"ReceivedMessage-API (command: \""+jsonRoutingFields.getCommand()+"\", uuid: \""+jsonRoutingFields.getUUID()+"\").");
+                copyRxReqToRxMsg(receivedRequest);
+                return ReceivedRequest.STATUS_FORWARDED;
+            }
+        });
+
+        // Legacy (MNS API v1) banner purposes...
+        /* TODO: Additional legacy commands go here? e.g. stop, clear, etc.  */
+        receivedRequestRouter.registerLegacyPurposeRoute(ReceivedRequestRouter.LEGACY_PURPOSE_UPDATESEQ, new ReceivedRequestRouter.Route() {
+            @Override
+            public byte handle(ReceivedRequest receivedRequest, JsonRoutingFields jsonRoutingFields) {
+                logI(TAGG+"Old API, and requestBody contains \"'bannerpurpose':'updateseq'\".");
+
+                //TODO (handle bannerpurpose updateseq)
+                return ReceivedRequest.STATUS_PROCESSED;
+            }
+        });
+        receivedRequestRouter.registerLegacyPurposeRoute(ReceivedRequestRouter.LEGACY_PURPOSE_CLEARSIGN, new ReceivedRequestRouter.Route() {
+            @Override
+            public byte handle(ReceivedRequest receivedRequest, JsonRoutingFields jsonRoutingFields) {
+                logI(TAGG+"Old API, and requestBody contains \"'bannerpurpose':'clearsign'\".");
+                // This is received when the server is certain there should be no messages delivering on the device.
+                // NOTE: This may be (redundantly) followed by a "stopscrollingmessage" request, as well.
+
+                //TODO (handle bannerpurpose clearsign)
+                //TODO DEV-NOTE: In quick testing, the server sends this, even if there are multiple active msgs and you only close one. WTF?!?! -- investigate the banner node for Omni
+                return ReceivedRequest.STATUS_PROCESSED;
+            }
+        });
+        receivedRequestRouter.registerLegacyPurposeRoute(ReceivedRequestRouter.LEGACY_PURPOSE_STOPSCROLLINGMESSAGE, new ReceivedRequestRouter.Route() {
+            @Override
+            public byte handle(ReceivedRequest receivedRequest, JsonRoutingFields jsonRoutingFields) {
+                logI(TAGG+"Old API, and requestBody contains \"'bannerpurpose':'stopscrollingmessage'\".");
+                //DEV-NOTE: For now, may be best to ignore clearsign above, and just use ZX recno (dtsec is too hard to obtain and send from server) to lookup msg to stop delivering
+
+                // Parse ZX record number
+                // Example request body:   "{"password":"511","bannerpurpose":"stopscrollingmessage","recno_zx":"196"}"
+                int recno = Integer.parseInt(jsonRoutingFields.getRecnoZX());
+
+                // Find matching record in MainService.omniMessages_deliverable
+                // Goal will be to remove the matching record from that RAM object and have it propagate automatically back toward omniRawMessages and MessageDatabase
+                try {
+                    MainService.omniMessages_deliverable.removeOmniMessage_byBannerRecnoZX(recno);
+                    return ReceivedRequest.STATUS_PROCESSED;
+                } catch (Exception e) {
+                    logE(TAGG+"Exception caught: "+e.getMessage());
+                    return ReceivedRequest.STATUS_PROCESSING_ERROR;
+                }
+            }
+        });
+        receivedRequestRouter.registerLegacyBannerMessageRoute(new ReceivedRequestRouter.Route() {
+            @Override
+            public byte handle(ReceivedRequest receivedRequest, JsonRoutingFields jsonRoutingFields) {
+                logI(TAGG+"Old API, and requestBody contains \"bannerpurpose\" and \"bannermessage\", treating as message.");
+                copyRxReqToRxMsg(receivedRequest);
+                return ReceivedRequest.STATUS_FORWARDED;
+            }
+        });
+    }
+
     /** Do the work of copying the request to the received_messages database.
      * @param receivedRequest ReceivedRequest object to process.
      */
@@ -385,11 +533,12 @@ public class ReceivedRequestProcessor extends Thread {
             // Get the data we need to forward...
             String messageJson = receivedRequest.getRequestBody();
 
-            // Insert that data to the received_messages database...
-            // Note: the addReceivedMessage method takes care of creating everything else the new records needs
+            // Insert that data to the received_messages database, and flag the request forwarded (in one transaction)...
+            // Note: the addRecordPromotedFrom method takes care of creating everything else the new records needs
             //  - automatically generates a random UUID for the new message
             //  - automatically sets the new record's status to ReceivedMessage.STATUS_NEW
-            receivedMessageDatabaseClient.addRecord(appContextRef.get(), messageJson, receivedRequest.getCreatedAt());
+            receivedMessageStore.addRecordPromotedFrom(messageJson, receivedRequest, ReceivedRequest.STATUS_FORWARDED);
+            isRequestPromoted = true;
         } catch (Exception e) {
             logE(TAGG+"Exception caught: "+e.getMessage());
         }
@@ -408,32 +557,6 @@ public class ReceivedRequestProcessor extends Thread {
         }
     }
 
-    /** Tidy-up the received_requests Room database. */
-    private void tidyDatabase() {
-        final String TAGG = "tidyDatabase: ";
-
-        try {
-            logV(TAGG+"Tidying up database...");
-
-            // Have the database clean out any older stuff that we know has been taken care of by the forwarding process.
-            // Remember, we keep it around here for a little bit just in case it's ever needed again for some strange reason.
-            //receivedRequestDatabaseClient.deleteAllForwarded_olderThan(appContextRef.get(), Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY);
-            receivedRequestDatabaseClient.deleteAllForwarded_olderThan(appContextRef.get(), Constants.Database.SQLITE_DTMOD_OLDERTHAN_1HOUR); //TESTING
-
-            // Finally, have the database clean out any potentially uncaught leftovers...
-            //receivedRequestDatabaseClient.deleteAll_olderThan(appContextRef.get(), Constants.Database.SQLITE_DTMOD_OLDERTHAN_1WEEK);
-            //receivedRequestDatabaseClient.deleteAll_olderThan(appContextRef.get(), Constants.Database.SQLITE_DTMOD_OLDERTHAN_1DAY); //TESTING
-            Calendar cal = Calendar.getInstance();
-            cal.setTime(new Date());
-            cal.add(Calendar.DAY_OF_MONTH, -7);
-            String olderThanDateString = new SimpleDateFormat("yyyy-MM-dd").format(cal.getTime());
-            logV(TAGG+"Deleting all records created before: "+olderThanDateString);
-            receivedRequestDatabaseClient.deleteAll_olderThan(appContextRef.get(), olderThanDateString); //TESTING
-        } catch (Exception e) {
-            logE(TAGG+"Exception caught: "+e.getMessage());
-        }
-    }
-
 
     /*============================================================================================*/
     /* Getter/Setter Methods */
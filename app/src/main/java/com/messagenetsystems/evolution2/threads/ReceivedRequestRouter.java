@@ -0,0 +1,152 @@
+package com.messagenetsystems.evolution2.threads;
+
+/* ReceivedRequestRouter
+ * Dispatch table for ReceivedRequestProcessor, deciding which handler a received (JSON) request goes to.
+ *
+ * Routes are looked up (in this order)...
+ *  1) By request path (e.g. the v2 API's "/config" and "/message" schemas under app/schemas).
+ *  2) For the legacy (MessageNet Connections v1) ecosystem only, by the request body's "bannerpurpose" value.
+ *  3) For the legacy ecosystem only, a catch-all route for any banner message (has "bannerpurpose" and "bannermessages").
+ *
+ * Routing fields come from one pass over the body with JsonRoutingFields, and are handed to the route along with the request,
+ * so handlers don't need to go digging through the body for them again.
+ *
+ * To support a new path or purpose, just register a Route for it (see ReceivedRequestProcessor's constructor).
+ *
+ * Message pushes vs. commands...
+ *  Only message pushes ("/message", or a legacy banner message with no command purpose) may be acknowledged without processing
+ *  when they match our active messages (see isMessagePush, used by SocketConnWorkerThread). Everything else (e.g. "/config",
+ *  or legacy "clearsign", "updateseq", "stopscrollingmessage") is a command, which must always be saved and routed.
+ *  If you register a route for a new command purpose, add it to LEGACY_COMMAND_PURPOSES, too.
+ *
+ * Usage Example (declare, create, and configure):
+ *  ReceivedRequestRouter receivedRequestRouter = new ReceivedRequestRouter();
+ *  receivedRequestRouter.registerPathRoute("/message", new ReceivedRequestRouter.Route() {
+ *      @Override
+ *      public byte handle(ReceivedRequest receivedRequest, JsonRoutingFields jsonRoutingFields) {
+ *          //do something with it
+ *          return ReceivedRequest.STATUS_FORWARDED;
+ *      }
+ *  });
+ *
+ * Usage Example (find a route):
+ *  ReceivedRequestRouter.Route route = receivedRequestRouter.findRoute(receivedRequest.getRequestPath(), jsonRoutingFields, isLegacyEcosystem);
+ */
+
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
+import com.messagenetsystems.evolution2.utilities.JsonRoutingFields;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+
+public class ReceivedRequestRouter {
+
+    // Constants...
+    public static final String PATH_CONFIG = "/config";
+    public static final String PATH_MESSAGE = "/message";
+    public static final String LEGACY_PURPOSE_UPDATESEQ = "updateseq";
+    public static final String LEGACY_PURPOSE_CLEARSIGN = "clearsign";
+    public static final String LEGACY_PURPOSE_STOPSCROLLINGMESSAGE = "stopscrollingmessage";
+    private static final String[] LEGACY_COMMAND_PURPOSES = {                                       //legacy purposes that are commands (not message pushes)
+            LEGACY_PURPOSE_UPDATESEQ,
+            LEGACY_PURPOSE_CLEARSIGN,
+            LEGACY_PURPOSE_STOPSCROLLINGMESSAGE
+    };
+
+    /** Implement this to handle a routed request.
+     * @return Status value to set for the request (ReceivedRequest.STATUS_*)
+     */
+    public interface Route {
+        byte handle(ReceivedRequest receivedRequest, JsonRoutingFields jsonRoutingFields);
+    }
+
+    // Local stuff...
+    private final HashMap<String, Route> pathRoutes;                                                //keyed by lower-case request path
+    private final HashMap<String, Route> legacyPurposeRoutes;                                       //keyed by lower-case bannerpurpose value
+    private Route legacyBannerMessageRoute;                                                         //catch-all for legacy banner messages without a specific purpose route
+
+
+    /** Constructor */
+    public ReceivedRequestRouter() {
+        this.pathRoutes = new HashMap<String, Route>();
+        this.legacyPurposeRoutes = new HashMap<String, Route>();
+        this.legacyBannerMessageRoute = null;
+    }
+
+
+    /*============================================================================================*/
+    /* Registration Methods */
+
+    public void registerPathRoute(String requestPath, Route route) {
+        this.pathRoutes.put(requestPath.toLowerCase(Locale.US), route);
+    }
+
+    public void registerLegacyPurposeRoute(String bannerPurpose, Route route) {
+        this.legacyPurposeRoutes.put(bannerPurpose.toLowerCase(Locale.US), route);
+    }
+
+    public void registerLegacyBannerMessageRoute(Route route) {
+        this.legacyBannerMessageRoute = route;
+    }
+
+
+    /*============================================================================================*/
+    /* Routing Methods */
+
+    /** Find the route for a request.
+     * @param requestPath Request path (matched case-insensitively).
+     * @param jsonRoutingFields Routing fields already scanned from the request body.
+     * @param isLegacyEcosystem Whether we're operating in the legacy (MessageNet Connections v1) ecosystem.
+     * @return The route to handle it with, or null if there isn't one.
+     */
+    public Route findRoute(String requestPath, JsonRoutingFields jsonRoutingFields, boolean isLegacyEcosystem) {
+        Route route = null;
+
+        if (requestPath != null) {
+            route = pathRoutes.get(requestPath.toLowerCase(Locale.US));
+        }
+
+        if (route == null && isLegacyEcosystem) {
+            String bannerPurpose = jsonRoutingFields.getBannerPurpose();
+            if (bannerPurpose != null) {
+                route = legacyPurposeRoutes.get(bannerPurpose.toLowerCase(Locale.US));
+                if (route == null && jsonRoutingFields.hasBannerMessage()) {
+                    route = legacyBannerMessageRoute;
+                }
+            }
+        }
+
+        return route;
+    }
+
+    /** Figure out whether a request is a message push (as opposed to a command), the same way findRoute would route it.
+     * This doesn't need a router instance, so it may be used before a request is even saved (e.g. by SocketConnWorkerThread).
+     * @param requestPath Request path (matched case-insensitively).
+     * @param jsonRoutingFields Routing fields already scanned from the request body (only needed for the legacy ecosystem; may be null otherwise).
+     * @param isLegacyEcosystem Whether we're operating in the legacy (MessageNet Connections v1) ecosystem.
+     * @return Whether it's a message push.
+     */
+    public static boolean isMessagePush(String requestPath, JsonRoutingFields jsonRoutingFields, boolean isLegacyEcosystem) {
+        if (requestPath != null && requestPath.equalsIgnoreCase(PATH_MESSAGE)) {
+            return true;
+        }
+        if (requestPath != null && requestPath.equalsIgnoreCase(PATH_CONFIG)) {
+            return false;
+        }
+        if (!isLegacyEcosystem || jsonRoutingFields == null) {
+            return false;
+        }
+
+        String bannerPurpose = jsonRoutingFields.getBannerPurpose();
+        if (bannerPurpose == null || !jsonRoutingFields.hasBannerMessage()) {
+            return false;
+        }
+        for (String commandPurpose : LEGACY_COMMAND_PURPOSES) {
+            if (commandPurpose.equalsIgnoreCase(bannerPurpose)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
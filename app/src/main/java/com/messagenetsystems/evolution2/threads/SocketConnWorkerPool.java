@@ -0,0 +1,345 @@
+package com.messagenetsystems.evolution2.threads;
+
+/* SocketConnWorkerPool
+ * A bounded pool of worker threads for handling socket connections provided by SocketServerThread or SocketServerNioThread.
+ * Connections are run through SocketConnWorkerThread logic on a fixed number of threads, with a fixed-depth queue of connections waiting behind them.
+ * If both the threads and the queue are full (e.g. broadcast storm), the connection is immediately answered with HTTP 503 and a Retry-After header, and closed.
+ * That way, the device keeps a predictable memory and thread footprint, no matter how many requests come in at once.
+ *
+ * It also owns the utility-class instances (SharedPrefsUtils, SystemUtils, NetUtils) that workers need,
+ * so they are created once and reused across requests, rather than created and cleaned up for every single connection.
+ * Likewise, each worker thread gets its own HttpRequestParser (and its buffer) and JsonRoutingFields that it reuses for every connection it handles.
+ *
+ * DEV-NOTE...
+ *  The utility-class instances are shared by all worker threads, so only use their (effectively stateless) getter methods from workers.
+ *
+ * Usage Example (declare, create, and configure):
+ *  SocketConnWorkerPool socketConnWorkerPool;
+ *  socketConnWorkerPool = new SocketConnWorkerPool(getApplicationContext(), Constants.LOG_METHOD_FILELOGGER, 4, 32);
+ *  socketConnWorkerPool.setRetryAfterSecs(5);                                                      //optional, defaults to Constants.Configuration.Network.SOCKET_CONN_OVERLOAD_RETRY_AFTER_SECS
+ *
+ * Usage Example (hand off an accepted connection):
+ *  socketConnWorkerPool.submit(socket);
+ *
+ * Usage Example (stop taking connections, let queued ones finish, and free up resources):
+ *  socketConnWorkerPool.shutdown();
+ */
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.OmniApplication;
+import com.messagenetsystems.evolution2.utilities.HttpRequestParser;
+import com.messagenetsystems.evolution2.utilities.JsonRoutingFields;
+import com.messagenetsystems.evolution2.utilities.NetUtils;
+import com.messagenetsystems.evolution2.utilities.SharedPrefsUtils;
+import com.messagenetsystems.evolution2.utilities.SystemUtils;
+
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+public class SocketConnWorkerPool {
+    private final String TAG = this.getClass().getSimpleName();
+
+    // Constants..
+    private static final String OVERLOAD_RESPONSE_BODY = "Busy, try again later.";
+
+    // Logging stuff...
+    private final byte LOG_SEVERITY_V = 1;
+    private final byte LOG_SEVERITY_D = 2;
+    private final byte LOG_SEVERITY_I = 3;
+    private final byte LOG_SEVERITY_W = 4;
+    private final byte LOG_SEVERITY_E = 5;
+    private byte logMethod = Constants.LOG_METHOD_LOGCAT;
+
+    // Local stuff...
+    private WeakReference<Context> appContextRef;
+    private ThreadPoolExecutor executor;
+
+    private OmniApplication omniApplication;
+    private SharedPrefsUtils sharedPrefsUtils;
+    private SystemUtils systemUtils;
+    private NetUtils netUtils;
+
+    // One parser per worker thread, so each thread's read buffer gets reused across all the connections it handles
+    private final ThreadLocal<HttpRequestParser> httpRequestParsers = new ThreadLocal<HttpRequestParser>() {
+        @Override
+        protected HttpRequestParser initialValue() {
+            return new HttpRequestParser(Constants.Configuration.Network.HTTP_REQUEST_MAX_HEAD_BYTES, Constants.Configuration.Network.HTTP_REQUEST_MAX_BODY_BYTES);
+        }
+    };
+
+    // Likewise, one routing-field scanner per worker thread (for telling message pushes from commands)
+    private final ThreadLocal<JsonRoutingFields> jsonRoutingFieldsScanners = new ThreadLocal<JsonRoutingFields>() {
+        @Override
+        protected JsonRoutingFields initialValue() {
+            return new JsonRoutingFields();
+        }
+    };
+
+    private int workerThreadCount;
+    private int queueDepth;
+    private int retryAfterSecs;
+    private volatile long rejectedCount;
+
+
+    /** Constructor */
+    public SocketConnWorkerPool(Context appContext, byte logMethod, int workerThreadCount, int queueDepth) {
+        Log.v(TAG, "Instantiating.");
+
+        this.logMethod = logMethod;
+        this.appContextRef = new WeakReference<Context>(appContext);
+
+        this.workerThreadCount = Math.max(1, workerThreadCount);
+        this.queueDepth = Math.max(1, queueDepth);
+        this.retryAfterSecs = Constants.Configuration.Network.SOCKET_CONN_OVERLOAD_RETRY_AFTER_SECS;
+        this.rejectedCount = 0;
+
+        try {
+            this.omniApplication = ((OmniApplication) appContext.getApplicationContext());
+        } catch (Exception e) {
+            logE("Exception caught instantiating "+TAG+": "+e.getMessage());
+        }
+
+        this.sharedPrefsUtils = new SharedPrefsUtils(appContext, logMethod);
+        this.systemUtils = new SystemUtils(appContext, logMethod);
+        this.netUtils = new NetUtils(appContext, logMethod);
+
+        // Fixed number of threads, with a fixed-depth queue behind them (anything more gets rejected, and we answer with 503 below)
+        this.executor = new ThreadPoolExecutor(this.workerThreadCount, this.workerThreadCount,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(this.queueDepth));
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    /** Hand off an accepted connection to be handled by a worker thread.
+     * If the pool is saturated, the connection is answered with an overload response and closed here instead.
+     * @param socket Accepted client connection (must be in blocking mode).
+     * @return Whether the connection was accepted by the pool.
+     */
+    public boolean submit(Socket socket) {
+        return submit(socket, 0, null);
+    }
+
+    /** Hand off a (possibly persistent) connection to be handled by a worker thread.
+     * If the pool is saturated, the connection is answered with an overload response and closed here instead.
+     * @param socket Client connection (must be in blocking mode).
+     * @param requestsServed Number of requests already served on this connection.
+     * @param keepAliveHandoff Where the worker should hand the connection back to, once it's idle (or null for the worker to wait on it itself, briefly).
+     * @return Whether the connection was accepted by the pool.
+     */
+    public boolean submit(Socket socket, int requestsServed, SocketConnWorkerThread.KeepAliveHandoff keepAliveHandoff) {
+        final String TAGG = "submit: ";
+
+        try {
+            executor.execute(new SocketConnWorkerThread(appContextRef.get(), logMethod, socket, this, requestsServed, keepAliveHandoff));
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (rejectedCount + 1 < Long.MAX_VALUE)
+                rejectedCount++;
+            else
+                rejectedCount = 1;
+
+            logW(TAGG+"Worker pool is saturated ("+executor.getActiveCount()+" active, "+executor.getQueue().size()+" queued). Responding with 503 (rejected so far: "+rejectedCount+").");
+            respondOverloaded(socket);
+            return false;
+        }
+    }
+
+    /** Answer the given connection with HTTP 503 and a Retry-After header, and close it.
+     * This is intentionally minimal, since it runs on the accepting thread.
+     * For a channel's socket (SocketServerNioThread), that's the selector thread, so a slow or stalled client must never block it:
+     * the channel is put in non-blocking mode, the reply is written once (whatever fits in the send buffer), and the connection is closed either way.
+     * A plain socket (SocketServerThread) is freshly accepted, so its empty send buffer always takes the whole (small) reply without blocking. */
+    private void respondOverloaded(Socket socket) {
+        final String TAGG = "respondOverloaded: ";
+
+        try {
+            byte[] body = OVERLOAD_RESPONSE_BODY.getBytes(Charset.forName("UTF-8"));
+            String head = "HTTP/1.1 503 Service Unavailable\r\n" +
+                    "Retry-After: " + retryAfterSecs + "\r\n" +
+                    "Content-Type: text/plain; charset=utf-8\r\n" +
+                    "Content-Length: " + body.length + "\r\n" +
+                    "Connection: close\r\n" +
+                    "\r\n";
+            byte[] headBytes = head.getBytes(Charset.forName("US-ASCII"));
+
+            SocketChannel socketChannel = socket.getChannel();
+            if (socketChannel != null) {
+                ByteBuffer response = ByteBuffer.allocate(headBytes.length + body.length);
+                response.put(headBytes).put(body);
+                response.flip();
+
+                socketChannel.configureBlocking(false);
+                socketChannel.write(response);
+                if (response.hasRemaining()) {
+                    logD(TAGG+"Client isn't taking data, so its reply couldn't be flushed at once. Closing without it.");
+                }
+            } else {
+                OutputStream outputStream = socket.getOutputStream();
+                outputStream.write(headBytes);
+                outputStream.write(body);
+                outputStream.flush();
+            }
+        } catch (Exception e) {
+            logW(TAGG+"Exception caught: "+e.getMessage());
+        }
+
+        try {
+            socket.close();
+        } catch (Exception e) {
+            logW(TAGG+"Exception caught closing socket: "+e.getMessage());
+        }
+    }
+
+    /** Call this to stop taking new connections and release resources.
+     * Any connections already running or queued are allowed to finish. */
+    public void shutdown() {
+        final String TAGG = "shutdown: ";
+
+        try {
+            if (this.executor != null) {
+                this.executor.shutdown();
+            }
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+
+        // Note: We don't clean up the shared utility instances here, since queued workers may still be using them.
+        //  They hold nothing but context references, and will be garbage collected along with this pool.
+    }
+
+    public boolean isShutdown() {
+        return this.executor == null || this.executor.isShutdown();
+    }
+
+
+    /*============================================================================================*/
+    /* Getter/Setter Methods */
+
+    OmniApplication getOmniApplication() {
+        return this.omniApplication;
+    }
+
+    SharedPrefsUtils getSharedPrefsUtils() {
+        return this.sharedPrefsUtils;
+    }
+
+    SystemUtils getSystemUtils() {
+        return this.systemUtils;
+    }
+
+    NetUtils getNetUtils() {
+        return this.netUtils;
+    }
+
+    /** Returns the calling worker thread's own HttpRequestParser instance. */
+    HttpRequestParser getHttpRequestParser() {
+        return this.httpRequestParsers.get();
+    }
+
+    /** Returns the calling worker thread's own JsonRoutingFields instance. */
+    JsonRoutingFields getJsonRoutingFields() {
+        return this.jsonRoutingFieldsScanners.get();
+    }
+
+    public int getWorkerThreadCount() {
+        return this.workerThreadCount;
+    }
+
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return this.executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return this.rejectedCount;
+    }
+
+    public void setRetryAfterSecs(int secs) {
+        this.retryAfterSecs = secs;
+    }
+
+
+    /*============================================================================================*/
+    /* Logging Methods */
+
+    private void logV(String tagg) {
+        log(LOG_SEVERITY_V, tagg);
+    }
+    private void logD(String tagg) {
+        log(LOG_SEVERITY_D, tagg);
+    }
+    private void logI(String tagg) {
+        log(LOG_SEVERITY_I, tagg);
+    }
+    private void logW(String tagg) {
+        log(LOG_SEVERITY_W, tagg);
+    }
+    private void logE(String tagg) {
+        log(LOG_SEVERITY_E, tagg);
+    }
+    private void log(byte logSeverity, String tagg) {
+        switch (logMethod) {
+            case Constants.LOG_METHOD_LOGCAT:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        Log.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        Log.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        Log.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        Log.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        Log.e(TAG, tagg);
+                        break;
+                }
+                break;
+            case Constants.LOG_METHOD_FILELOGGER:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        FL.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        FL.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        FL.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        FL.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        FL.e(TAG, tagg);
+                        break;
+                }
+                break;
+        }
+    }
+}
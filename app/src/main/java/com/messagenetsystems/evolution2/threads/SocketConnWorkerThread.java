@@ -5,6 +5,15 @@ package com.messagenetsystems.evolution2.threads;
  * Its purpose is to take the client connection passed in, read its data, and do something with it that data in an asynchronous manner, so SocketServer can resume its primary purpose (listening for connections).
  * That "something" is really just to get the request data given to us, and store it in a Room database for received requests.
  *
+ * Persistent connections (keep-alive)...
+ *  If a request asks for it (Connection: keep-alive), its response is framed as proper HTTP/1.1 (status line and Content-Length),
+ *  and we keep reading further requests (including pipelined ones) on the same connection, answering them in order,
+ *  until the client closes, the connection sits idle too long, or it reaches the maximum number of requests.
+ *  Requests that don't ask for keep-alive get the same unframed "Response: ..." reply as always, and the connection is closed.
+ *  If a KeepAliveHandoff is provided (SocketServerNioThread), an idle persistent connection is handed back to it to wait for more data,
+ *  rather than holding this (pool) thread while it waits. Without one (SocketServerThread, on the pool), we wait on it ourselves,
+ *  but only briefly (HTTP_KEEP_ALIVE_POOLED_IDLE_TIMEOUT_MS), so idle connections can't tie up the few pool threads and push new ones into 503s.
+ *
  * DEV-NOTE...
  *  It's a thread, because it requires no UI thread access.
  *  Consider porting this to AsyncTask, if you need UI thread access?
@@ -18,6 +27,9 @@ package com.messagenetsystems.evolution2.threads;
  * Usage Example (invocation from SocketServerThread):
  *  socketConnectionHandlerRunnable.run(socket);
  *
+ * Usage Example (invocation from SocketConnWorkerPool - runs on a pool thread, reusing the pool's utility-class instances):
+ *  executor.execute(new SocketConnWorkerThread(appContext, logMethod, socket, socketConnWorkerPool));
+ *
  * Revisions:
  *  2019.11.20      Chris Rider     Created (abstracting out ConfigDownloadAsyncTask).
  *  2019.11.21      Chris Rider     Added parsing of JSON string to object and storage to Room database.
@@ -35,11 +47,13 @@ import android.util.Log;
 import com.bosphere.filelogger.FL;
 import com.messagenetsystems.evolution2.Constants;
 import com.messagenetsystems.evolution2.OmniApplication;
-import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestDatabaseClient;
-import com.messagenetsystems.evolution2.services.DeliveryService;
-import com.messagenetsystems.evolution2.services.HealthService;
+import com.messagenetsystems.evolution2.databases.receivedMessages.ReceivedMessage;
+import com.messagenetsystems.evolution2.databases.PipelineStores;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestJournal;
+import com.messagenetsystems.evolution2.models.ActiveMessageDigest;
 import com.messagenetsystems.evolution2.services.MainService;
-import com.messagenetsystems.evolution2.utilities.EnergyUtils;
+import com.messagenetsystems.evolution2.utilities.HttpRequestParser;
+import com.messagenetsystems.evolution2.utilities.JsonRoutingFields;
 import com.messagenetsystems.evolution2.utilities.NetUtils;
 import com.messagenetsystems.evolution2.utilities.NetUtils_fromV1;
 import com.messagenetsystems.evolution2.utilities.SharedPrefsUtils;
@@ -47,12 +61,13 @@ import com.messagenetsystems.evolution2.utilities.SystemUtils;
 
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 
 
 public class SocketConnWorkerThread extends Thread {
@@ -77,6 +92,17 @@ public class SocketConnWorkerThread extends Thread {
     private SharedPrefsUtils sharedPrefsUtils;
     private SystemUtils systemUtils;
     private NetUtils netUtils;
+    private boolean usesSharedUtils;                //whether the utility-class instances above belong to a SocketConnWorkerPool (and so must not be cleaned up by us)
+    private SocketConnWorkerPool socketConnWorkerPool;
+    private KeepAliveHandoff keepAliveHandoff;      //optional, where to hand an idle persistent connection back to (rather than waiting on it ourselves)
+    private int requestsAlreadyServed;              //number of requests already served on this connection (by previous workers) before we got it
+    private int idleTimeoutMS;                      //how long we'll wait on an idle connection before closing it (also what we advertise in Keep-Alive)
+    private JsonRoutingFields jsonRoutingFields;    //reused for every request on our connection, when not pooled (pooled workers use their thread's, from the pool)
+
+    /** Implement this if you can wait for an idle persistent connection's next request more cheaply than a worker thread can (e.g. with a Selector). */
+    public interface KeepAliveHandoff {
+        void handBackForReading(Socket socket, int requestsServed);
+    }
 
     //private ApiData apiDataAdministrative;
 
@@ -102,18 +128,53 @@ public class SocketConnWorkerThread extends Thread {
         this.sharedPrefsUtils = new SharedPrefsUtils(appContext, logMethod);
         this.systemUtils = new SystemUtils(appContext, logMethod);
         this.netUtils = new NetUtils(appContext, logMethod);
+        this.usesSharedUtils = false;
+        this.idleTimeoutMS = Constants.Configuration.Network.HTTP_KEEP_ALIVE_IDLE_TIMEOUT_MS;
 
         //this.apiData = new ApiData(appContext, ApiData.LOG_METHOD_FILELOGGER);
 
         //this.receivedRequestDatabase = Room.databaseBuilder(appContext, ReceivedRequestDatabase.class, "db_receivedRequests").build();
     }
 
+    /** Constructor (for running on a SocketConnWorkerPool, sharing its utility-class instances) */
+    public SocketConnWorkerThread(Context appContext, byte logMethod, Socket clientSocket, SocketConnWorkerPool socketConnWorkerPool) {
+        this(appContext, logMethod, clientSocket, socketConnWorkerPool, 0, null);
+    }
+
+    /** Constructor (for running on a SocketConnWorkerPool, with a persistent connection that may already have served some requests) */
+    public SocketConnWorkerThread(Context appContext, byte logMethod, Socket clientSocket, SocketConnWorkerPool socketConnWorkerPool, int requestsAlreadyServed, KeepAliveHandoff keepAliveHandoff) {
+        logV("Instantiating (pooled).");
+
+        this.logMethod = logMethod;
+        this.appContextRef = new WeakReference<Context>(appContext);
+        this.clientSocket = clientSocket;
+        this.defaultResponse = "Nothing useful received!";  //TODO: modify/stringify?
+
+        this.omniApplication = socketConnWorkerPool.getOmniApplication();
+        this.sharedPrefsUtils = socketConnWorkerPool.getSharedPrefsUtils();
+        this.systemUtils = socketConnWorkerPool.getSystemUtils();
+        this.netUtils = socketConnWorkerPool.getNetUtils();
+        this.usesSharedUtils = true;
+        this.socketConnWorkerPool = socketConnWorkerPool;
+        this.requestsAlreadyServed = requestsAlreadyServed;
+        this.keepAliveHandoff = keepAliveHandoff;
+
+        // Waiting on an idle connection ourselves holds one of the pool's few threads, so don't do it for long
+        if (keepAliveHandoff == null) {
+            this.idleTimeoutMS = Constants.Configuration.Network.HTTP_KEEP_ALIVE_POOLED_IDLE_TIMEOUT_MS;
+        } else {
+            this.idleTimeoutMS = Constants.Configuration.Network.HTTP_KEEP_ALIVE_IDLE_TIMEOUT_MS;
+        }
+    }
+
     /** Call this to stop the socket from listening and release resources. */
     public void cleanup() {
         final String TAGG = "cleanup: ";
 
         try {
-            this.clientSocket.close();
+            if (this.clientSocket != null) {
+                this.clientSocket.close();
+            }
             //this.apiDataAdministrative.cleanup();
         } catch (Exception e) {
             logW(TAGG+"Exception caught: "+e.getMessage());
@@ -126,6 +187,16 @@ public class SocketConnWorkerThread extends Thread {
 
         this.omniApplication = null;
 
+        if (this.usesSharedUtils) {
+            // These belong to the pool and are still in use by other workers, so just let go of our references
+            this.sharedPrefsUtils = null;
+            this.systemUtils = null;
+            this.netUtils = null;
+            this.socketConnWorkerPool = null;
+            this.keepAliveHandoff = null;
+            return;
+        }
+
         if (this.sharedPrefsUtils != null) {
             this.sharedPrefsUtils.cleanup();
             this.sharedPrefsUtils = null;
@@ -147,248 +218,273 @@ public class SocketConnWorkerThread extends Thread {
     /* Thread Methods */
 
     /** Main runnable routine... executes once whenever the initialized thread is commanded to start running with .execute() method call.
-     * Intended to just run once and be done - no loop required. */
+     * Intended to just run once and be done - no loop required (other than for any further requests on a persistent connection). */
     @Override
     public void run() {
-        String TAGG = "run";
-        logV(TAGG+": Invoked.");
-
-        long lineCounter = 1;
+        final String TAGG = "run: ";
+        logV(TAGG+"Invoked.");
 
-        BufferedReader dataInFromSocket;        //data coming in from socket-client
-        BufferedWriter dataOutToSocket;         //data going out to socket-client
+        InputStream dataInFromSocket;           //data coming in from socket-client
+        OutputStream dataOutToSocket;           //data going out to socket-client
 
-        StringBuilder responseBuilder;
+        HttpRequestParser httpRequestParser;
+        byte parseResult;
 
-        String readLine, readChar;
-
-        String line1 = "";
-        String requestMethod = "";
-        String requestPath = "";
-        String requestProtocol = "";
-        String userAgent = "";
-        String contentType = "";
-        long contentLength = 0;
-        String body = "";
-
-        String jsonContent = "";
-        JSONObject jsonObject = null;
-
-        boolean respondWithPong = false;
-        String pongResponse = "pong";
+        int requestsServed = this.requestsAlreadyServed;
+        final int maxRequests = Constants.Configuration.Network.HTTP_KEEP_ALIVE_MAX_REQUESTS;
+        boolean keepConnection;
+        boolean handedBack = false;
 
         try {
-            logD(TAGG + "Thread started for \"" + clientSocket.getRemoteSocketAddress().toString().split("/")[1] + "\" with priority "+Thread.currentThread().getPriority()+" ("+Thread.MIN_PRIORITY+"-"+Thread.MAX_PRIORITY+").");
+            logD(TAGG + "Thread started for \"" + clientSocket.getRemoteSocketAddress().toString().split("/")[1] + "\" with priority "+Thread.currentThread().getPriority()+" ("+Thread.MIN_PRIORITY+"-"+Thread.MAX_PRIORITY+"). Requests already served on connection: "+requestsServed+".");
 
             // Initialize some local stuff...
-            dataInFromSocket = new BufferedReader(new InputStreamReader(this.clientSocket.getInputStream()));
-            dataOutToSocket = new BufferedWriter(new OutputStreamWriter(this.clientSocket.getOutputStream()));
-
-            // Let's start reading the data coming in
-            readLine = dataInFromSocket.readLine();
-            if (readLine == null) {
-                responseBuilder = new StringBuilder(this.defaultResponse);
+            // (a read that waits longer than the idle timeout throws SocketTimeoutException, so no connection can hold us forever)
+            this.clientSocket.setSoTimeout(this.idleTimeoutMS);
+            dataInFromSocket = this.clientSocket.getInputStream();
+            dataOutToSocket = new BufferedOutputStream(this.clientSocket.getOutputStream());
+
+            // Get a parser (pooled workers reuse their thread's parser and its buffer, rather than allocating new ones)
+            if (this.socketConnWorkerPool != null) {
+                httpRequestParser = this.socketConnWorkerPool.getHttpRequestParser();
             } else {
-                responseBuilder = new StringBuilder("Received the following lines:\n");
-
-                while(readLine != null) {
-                    // Since we entered/are-still-in this loop, we are at a valid line, so let's look at it
-                    logV(TAGG + "Raw request line #" + String.valueOf(lineCounter) + ": \"" + readLine + "\".");
-
-                    responseBuilder.append(readLine);
-                    responseBuilder.append("\n");
-
-                    //determine request line #1 stuff
-                    if (lineCounter == 1) {
-                        logD(TAGG+"Parsed first line: \"" + readLine + "\".");
+                httpRequestParser = new HttpRequestParser(Constants.Configuration.Network.HTTP_REQUEST_MAX_HEAD_BYTES, Constants.Configuration.Network.HTTP_REQUEST_MAX_BODY_BYTES);
+            }
+            httpRequestParser.clear();
+
+            // Read, parse and answer requests, for as long as the connection should persist
+            do {
+                keepConnection = false;
+
+                // Let's read and parse the whole request (head, and exactly Content-Length bytes of body)
+                try {
+                    parseResult = httpRequestParser.readRequest(dataInFromSocket);
+                } catch (SocketTimeoutException e) {
+                    logD(TAGG + "Connection was idle for " + this.idleTimeoutMS + "ms. Closing it.");
+                    break;
+                }
 
-                        requestMethod = readLine.split(" ")[0];
-                        logD(TAGG+"Parsed request method: \"" + requestMethod + "\".");
+                if (parseResult == HttpRequestParser.RESULT_COMPLETE) {
+                    requestsServed++;
 
-                        requestPath = readLine.split(" ")[1];
-                        logD(TAGG+"Parsed request path: \"" + requestPath + "\".");
+                    // Client must opt-in to keep-alive (older clients expect our unframed response and a close)
+                    boolean keepAliveRequested = isKeepAliveRequested(httpRequestParser);
+                    keepConnection = keepAliveRequested && requestsServed < maxRequests;
 
-                        requestProtocol = readLine.split(" ")[2];
-                        logD(TAGG+"Parsed request protocol: \"" + requestProtocol + "\".");
+                    handleRequest(httpRequestParser, dataOutToSocket, keepAliveRequested, keepConnection, maxRequests - requestsServed);
 
-                        if (requestMethod.contains("GET") && requestPath.contains("/ping")) {
-                            //check password validity
-                            if (requestPath.contains("password="+omniApplication.getDevicePassword())) {
-                                //for authenticated requestors, we send more details about the system
-                                pongResponse = constructPongReplyStatusJSONString();
-                            } else {
-                                logD(TAGG+"Unhandled requestPath value ("+requestPath+").");
-                            }
+                    // Only flush once there are no more pipelined requests waiting (so they may go out together)
+                    if (!httpRequestParser.hasBufferedBytes()) {
+                        dataOutToSocket.flush();
 
-                            //platform is requesting a pong, so send it with device status
-                            respondWithPong = true;
+                        // If somebody else can wait on the idle connection more cheaply, give it back to them
+                        if (keepConnection && this.keepAliveHandoff != null) {
+                            this.keepAliveHandoff.handBackForReading(this.clientSocket, requestsServed);
+                            this.clientSocket = null;   //no longer ours to close
+                            handedBack = true;
                             break;
                         }
-
-                        // Read the next line...
-                        readLine = dataInFromSocket.readLine();
-                        lineCounter++;
-                        continue;   //jump to next iteration/line
                     }
+                } else if (parseResult == HttpRequestParser.RESULT_ERROR) {
+                    logW(TAGG + "Could not parse request (" + httpRequestParser.getErrorStatusCode() + "): " + httpRequestParser.getErrorReason());
+                    writeErrorResponse(dataOutToSocket, httpRequestParser.getErrorStatusCode());
+                } else if (requestsServed == 0) {
+                    writeTextResponse(dataOutToSocket, this.defaultResponse);
+                } else {
+                    logD(TAGG + "Client closed persistent connection after " + requestsServed + " request(s).");
+                }
+            } while (keepConnection);
 
-                    //determine user-agent
-                    if (readLine.contains("User-Agent:")) {
-                        userAgent = readLine.split(": ")[1];
-                        logD(TAGG+"Parsed User-Agent: \"" + userAgent + "\".");
+            if (!handedBack) {
+                // Close the connection with the client
+                dataOutToSocket.close(); //just to make the server stop trying to send us stuff
+            }
 
-                        // Read the next line...
-                        readLine = dataInFromSocket.readLine();
-                        lineCounter++;
-                        continue;   //jump to next iteration/line
-                    }
+        } catch (Exception e) {
+            logE(TAGG + "Exception caught: "+e.getMessage());
+        }
 
-                    //determine content-type
-                    if (readLine.contains("Content-Type:")) {
-                        contentType = readLine.split(": ")[1];
-                        logD(TAGG+"Parsed Content-type: \"" + contentType + "\".");
+        logD(TAGG + "Thread ending.");
+        cleanup();
+    }
 
-                        // Read the next line...
-                        readLine = dataInFromSocket.readLine();
-                        lineCounter++;
-                        continue;   //jump to next iteration/line
-                    }
 
-                    //determine content-length
-                    if (readLine.contains("Content-Length:")) {
-                        contentLength = Integer.parseInt(readLine.split(": ")[1]);
-                        logD(TAGG+"Parsed Content-Length: " + contentLength + ".");
+    /*============================================================================================*/
+    /* Request Handling Methods */
 
-                        // Read the next line...
-                        readLine = dataInFromSocket.readLine();
-                        lineCounter++;
-                        continue;   //jump to next iteration/line
-                    }
+    /** Do whatever the given (completely parsed) request calls for, and write our response for it (not flushed).
+     * @param framed Whether to frame the response as HTTP/1.1 (status line, Content-Length, etc.) or send it unframed as always.
+     * @param keepConnection Whether we intend to keep the connection open after this response (only meaningful if framed).
+     * @param requestsRemaining How many more requests the client may send on this connection (only meaningful if framed).
+     */
+    private void handleRequest(HttpRequestParser httpRequestParser, OutputStream dataOutToSocket, boolean framed, boolean keepConnection, int requestsRemaining) throws Exception {
+        final String TAGG = "handleRequest: ";
 
-                    //once we reach the header-body separator, figure out what we're dealing with and parse accordingly...
-                    if (readLine.isEmpty()) {
-                        logV(TAGG + "Header-Body separator encountered. Parsing request body...");
+        String requestMethod = httpRequestParser.getMethod();
+        String requestPath = httpRequestParser.getPath();
+        String requestProtocol = httpRequestParser.getProtocol();
+        String userAgent = httpRequestParser.getUserAgent();
+        String contentType = httpRequestParser.getContentType();
+        byte[] body = httpRequestParser.getBody();
 
-                        //TODO: instead of a loop, maybe just a simple assignment from readline??
-                        for (int j = 0; j < contentLength; j++) {
-                            readChar = Character.toString((char) dataInFromSocket.read());
-                            body = body.concat(readChar);
-                        }
-                        logD(TAGG + "Parsed body: \"" + body + "\".");
+        logD(TAGG+"Parsed request: \"" + requestMethod + " " + requestPath + " " + requestProtocol + "\" (User-Agent: \"" + userAgent + "\", Content-Type: \"" + contentType + "\", Content-Length: " + body.length + ").");
 
-                        responseBuilder.append(body);
+        boolean respondWithPong = false;
+        String pongResponse = "pong";
+        byte[] pongReplyBytes = null;
+
+        if (requestMethod.contains("GET") && requestPath.contains("/ping")) {
+            //check password validity
+            if (requestPath.contains("password="+omniApplication.getDevicePassword())) {
+                //for authenticated requestors, we send more details about the system
+                //(use the pre-encoded snapshot that StatusSnapshotSampler keeps ready, and only build it ourselves if there isn't one yet)
+                pongReplyBytes = StatusSnapshotSampler.getPongReplyBytes();
+                if (pongReplyBytes == null) {
+                    pongResponse = constructPongReplyStatusJSONString();
+                }
+            } else {
+                logD(TAGG+"Unhandled requestPath value ("+requestPath+").");
+            }
 
-                        break;
-                    }
+            //platform is requesting a pong, so send it with device status
+            respondWithPong = true;
+        }
 
-                    // Read the next line...
-                    readLine = dataInFromSocket.readLine();
-                    lineCounter++;
+        // The server re-sends its whole active-message set with every ping or command, so most pushes are what we already have...
+        // If this one is (the state digest it carries matches ours, or its content is already an active message), just acknowledge it.
+        // Only message pushes may be shortcut like this; commands (e.g. clearsign, /config) must always be saved and processed.
+        boolean isAlreadyCurrent = false;
+        if (!respondWithPong && body.length > 0 && isMessagePush(requestPath, httpRequestParser)) {
+            if (ActiveMessageDigest.matchesDigest(httpRequestParser.getStateDigest())) {
+                logD(TAGG+"Push carries our current state digest ("+ActiveMessageDigest.getDigestHex()+"), so there's nothing to change. Acknowledging without processing.");
+                isAlreadyCurrent = true;
+            } else if (ActiveMessageDigest.size() > 0
+                    && ActiveMessageDigest.containsMessageJsonHash(ReceivedMessage.computeMessageJsonHash(body))) {
+                logD(TAGG+"Push content is already an active message. Acknowledging without processing.");
+                isAlreadyCurrent = true;
+            }
+        }
 
-                }//end while
+        // Save the received request to the ingest journal (and wait for it to be synced, so it's safe before we respond)...
+        // If the journal is unavailable or full, save it to the received-requests store instead (the body goes as raw bytes, decoded on the database worker thread).
+        // Pings are already fully answered by the pong (ReceivedRequestProcessor ignores them anyway), so they aren't saved at all (no sync per ping).
+        if (!isAlreadyCurrent && !respondWithPong) {
+            ReceivedRequestJournal receivedRequestJournal = ReceivedRequestJournal.getInstance(appContextRef.get());
+            long journalSeq = -1;
+            if (receivedRequestJournal != null) {
+                journalSeq = receivedRequestJournal.append(requestMethod, requestPath, requestProtocol, userAgent, contentType, body);
+            }
+            if (journalSeq < 0) {
+                PipelineStores.getInstance(appContextRef.get()).getReceivedRequestStore().addRecord(requestMethod, requestPath, requestProtocol, userAgent, contentType, body);
+            } else {
+                receivedRequestJournal.awaitDurable(journalSeq, Constants.Database.RECEIVED_REQUEST_JOURNAL_DURABLE_WAIT_MAX_MS);
+            }
+        }
 
+        // Put together the response content
+        ByteArrayOutputStream responseContent = new ByteArrayOutputStream(respondWithPong ? 512 : 256 + body.length);
+        if (respondWithPong && pongReplyBytes != null) {
+            responseContent.write(pongReplyBytes);
+        } else if (respondWithPong) {
+            responseContent.write(("Response: " + pongResponse + "\n").getBytes(HttpRequestParser.CHARSET_UTF8));
+        } else {
+            // Echo back what we received (body bytes are written as-is, with no need to decode them)
+            responseContent.write(("Response: Received the following lines:\n" + httpRequestParser.getHeadAsString()).getBytes(HttpRequestParser.CHARSET_UTF8));
+            responseContent.write(body);
+            responseContent.write('\n');
+        }
 
+        // Send back the finished response to the requester
+        if (framed) {
+            String head = "HTTP/1.1 200 OK\r\n" +
+                    "Content-Type: text/plain; charset=utf-8\r\n" +
+                    "Content-Length: " + responseContent.size() + "\r\n" +
+                    "X-State-Digest: " + ActiveMessageDigest.getDigestHex() + "\r\n";
+            if (keepConnection) {
+                head += "Connection: keep-alive\r\n" +
+                        "Keep-Alive: timeout=" + (this.idleTimeoutMS / 1000) + ", max=" + requestsRemaining + "\r\n";
+            } else {
+                head += "Connection: close\r\n";
             }
+            head += "\r\n";
+            dataOutToSocket.write(head.getBytes(HttpRequestParser.CHARSET_ASCII));
+        }
+        responseContent.writeTo(dataOutToSocket);
+    }
 
-            // Save the received request to database
-            /*
-            ReceivedRequest receivedRequest = new ReceivedRequest();
-            receivedRequest.setRequestMethod(requestMethod);
-            receivedRequest.setRequestPath(requestPath);
-            receivedRequest.setRequestProtocol(requestProtocol);
-            receivedRequest.setRequestUserAgent(userAgent);
-            receivedRequest.setRequestContentType(contentType);
-            receivedRequest.setRequestBody(body);
-            Date date = new Date();
-            receivedRequest.setCreatedAt(date);
-            receivedRequest.setModifiedAt(date);
-            receivedRequestDatabase.receivedRequestDao().addReceivedRequest(receivedRequest);
-            */
-
-            // Save the received request to database...
-            // Since this class is already a background thread, we can do this directly in a blocking manner to the rest of this thread.
-            ReceivedRequestDatabaseClient.getInstance(appContextRef.get()).addRecord(appContextRef.get(), requestMethod, requestPath, requestProtocol, userAgent, contentType, body);
-
-            /* EXPERIMENTAL
-            AppExecutors.getInstance().diskIO().execute(new Runnable() {
-                @Override
-                public void run() {
-                    ReceivedRequestDatabase.receivedRequestDao().addReceivedRequest(receivedRequest);
-                }
-            });
-            */
-
-            // Send back the finished response to the requester
-            if (respondWithPong) {
-                dataOutToSocket.write("Response: "+pongResponse);
+    /** Figure out whether the request is a message push (rather than a command), the same way ReceivedRequestRouter would route it.
+     * Only the legacy ecosystem needs a look at the body for this, and only if the path alone doesn't tell us.
+     * The body bytes are scanned as-is, once, with our reused JsonRoutingFields (no decoding the whole body, no new scanner per request). */
+    private boolean isMessagePush(String requestPath, HttpRequestParser httpRequestParser) {
+        boolean isLegacyEcosystem = (omniApplication.getEcosystem() == OmniApplication.ECOSYSTEM_MESSAGENET_CONNECTIONS_V1);
+
+        JsonRoutingFields jsonRoutingFields = null;
+        if (isLegacyEcosystem
+                && !requestPath.equalsIgnoreCase(ReceivedRequestRouter.PATH_MESSAGE)
+                && !requestPath.equalsIgnoreCase(ReceivedRequestRouter.PATH_CONFIG)) {
+            if (this.socketConnWorkerPool != null) {
+                jsonRoutingFields = this.socketConnWorkerPool.getJsonRoutingFields();
             } else {
-                dataOutToSocket.write("Response: "+responseBuilder.toString());
+                if (this.jsonRoutingFields == null) {
+                    this.jsonRoutingFields = new JsonRoutingFields();
+                }
+                jsonRoutingFields = this.jsonRoutingFields;
             }
-            dataOutToSocket.newLine();
-            dataOutToSocket.flush();
+            jsonRoutingFields.scan(httpRequestParser.getBody());
+        }
 
-            // Close the connection with the client
-            dataOutToSocket.close(); //just to make the server stop trying to send us stuff
+        return ReceivedRequestRouter.isMessagePush(requestPath, jsonRoutingFields, isLegacyEcosystem);
+    }
 
-            // Trigger an update to certain data to get returned on next pong response
-            // We do this at the end (even though it won't result in super-timely data), so we don't hold up the response.
-            omniApplication.updateAppVersions(appContextRef.get().getApplicationContext());
+    /** Figure out whether the client has asked to keep its connection open after our response. */
+    private boolean isKeepAliveRequested(HttpRequestParser httpRequestParser) {
+        String connection = httpRequestParser.getConnection().toLowerCase();
+        return connection.contains("keep-alive") && !connection.contains("close");
+    }
 
-        } catch (Exception e) {
-            logE(TAGG + "Exception caught: "+e.getMessage());
+    private void writeTextResponse(OutputStream dataOutToSocket, String text) throws Exception {
+        dataOutToSocket.write(("Response: " + text + "\n").getBytes(HttpRequestParser.CHARSET_UTF8));
+        dataOutToSocket.flush();
+    }
+
+    /** Write a minimal HTTP error response (for requests we couldn't parse). */
+    private void writeErrorResponse(OutputStream dataOutToSocket, int statusCode) throws Exception {
+        String reason;
+        switch (statusCode) {
+            case 413:
+                reason = "Payload Too Large";
+                break;
+            case 414:
+                reason = "URI Too Long";
+                break;
+            case 431:
+                reason = "Request Header Fields Too Large";
+                break;
+            case 501:
+                reason = "Not Implemented";
+                break;
+            default:
+                statusCode = 400;
+                reason = "Bad Request";
+                break;
         }
 
-        logD(TAGG + "Thread ending.");
-        cleanup();
+        dataOutToSocket.write(("HTTP/1.1 " + statusCode + " " + reason + "\r\n" +
+                "Content-Length: 0\r\n" +
+                "Connection: close\r\n" +
+                "\r\n").getBytes(HttpRequestParser.CHARSET_ASCII));
+        dataOutToSocket.flush();
     }
 
 
     /*============================================================================================*/
     /* Supporting Methods */
 
+    /** Put together the pong status JSON right now (only used until StatusSnapshotSampler has a snapshot ready, since this is slow). */
     private String constructPongReplyStatusJSONString() {
         final String TAGG = "constructPongReplyStatusJSON: ";
 
-        String ret;
-
-        try {
-            /*
-            String ipMode = NetworkUtils.getCurrentIpMethod_wifi(context);
-            */
-            int batteryMilliAmpState = systemUtils.getBatteryNetCurrentNow() / 1000;
-
-            // WARNING!!!!
-            // If adding data to this log, add to end, since some scripts depend on fields being in certain locations!
-            ret = "{" +
-                    "\"rec\":\"" + String.valueOf(sharedPrefsUtils.getStringValueFor(SharedPrefsUtils.spKeyName_thisDeviceRecno, null)) + "\"" +
-                    ",\"msgs\":\"" + DeliveryService.omniMessageUUIDsToRotate.size() + "\"" +
-                    ",\"upHr\":" + String.valueOf(systemUtils.getSystemUptime_hours()) + "" +
-                    ",\"appHr\":" + String.valueOf(omniApplication.getAppRunningHours()) + "" +
-                    ",\"vMA\":\"" + omniApplication.getAppVersion() + "\"" +
-                    ",\"vFL\":\"" + omniApplication.getAppVersion_flashers() + "\"" +
-                    /*
-                    ",\"vWD\":\"" + omniApplication.getAppVersion_watchdog() + "\"" +
-                    ",\"vUD\":\"" + omniApplication.getAppVersion_updater() + "\"" +
-                    ",\"vWW\":\"" + omniApplication.getAppVersion_watcher() + "\"" +
-                    */
-                    ",\"ipAcq\":\"" + netUtils.getCurrentIpMethod_activeInterface() + "\"" +
-                    ",\"ipAdr\":\"" + netUtils.getDeviceIpAddressAsString() + "\"" +
-                    ",\"NIC\":\"" + netUtils.getActiveNIC() + "\"" +
-                    ",\"dBm\":\"" + netUtils.getWifiStrength_dBm() +
-                    ",\"CPU\":\"" + String.format("%.0f%%", systemUtils.readUsageCPU() * 100) + "\"" +
-                    ",\"heapAv\":\"" + String.valueOf(systemUtils.getAppHeapAvailable_MB()) + "MB\"" +
-                    ",\"pwr\":\"" + EnergyUtils.getEnglish_chargePlugState(HealthService.energy_rawPowerSupplyWhichConnected) + "\"" +
-                    ",\"chging\":\"" + Boolean.toString(HealthService.energy_isBatteryCharging) + "\"" +
-                    ",\"chgLvl\":\"" + HealthService.energy_hrBatteryPercent + "\"" +
-                    ",\"mA\":\"" + HealthService.energy_rawMilliAmpsAtBattery + "\"" +
-                    ",\"mv\":\"" + HealthService.energy_rawMilliVoltage + "\"" +
-                    ",\"batt\":\"" + EnergyUtils.getEnglish_batteryHealthState(HealthService.energy_derivedBatteryHealthCondition) + "\"" +
-                    ",\"freeEx\":\"" + HealthService.storage_hrAvailableBytes_external + "\"" +
-                    /* ",\"chgTime\":\"" + systemUtils.getBatteryTimeRemaining(batteryMilliAmpState) + "mins\"" + */
-                    "}";
-        } catch (Exception e) {
-            Log.e(TAG, TAGG+"Exception caught: "+ e.getMessage());
-            ret = "(failed to construct device stats)";
-        }
+        String ret = StatusSnapshotSampler.constructPongReplyStatusJSONString(omniApplication, sharedPrefsUtils, systemUtils, netUtils, systemUtils.getSystemUptime_hours());
 
         logV(TAGG+"Returning: "+ret);
         return ret;
@@ -0,0 +1,583 @@
+package com.messagenetsystems.evolution2.threads;
+
+/* SocketServerNioThread
+ * Serves socket connection requests, using a non-blocking java.nio Selector instead of a blocking ServerSocket.accept().
+ * This is an alternate mode to SocketServerThread (see Constants.Configuration.Network.SOCKET_SERVER_MODE).
+ *
+ * Where SocketServerThread spawns a brand-new worker thread for every accepted connection, this thread
+ * accepts connections and waits for their request data to arrive all on one single selector thread.
+ * Only once a connection actually has data ready to read is it handed to a small, bounded pool of parsing threads (SocketConnWorkerPool).
+ * That way, a burst of server contacts (pings and message pushes) can't create dozens of short-lived threads.
+ *
+ * Persistent (keep-alive) connections are handed back to us by the worker once they go idle (see SocketConnWorkerThread.KeepAliveHandoff),
+ * so waiting for a connection's next request costs only a selector registration, not a parse thread.
+ *
+ * DEV-NOTE...
+ *  It's a thread, because it requires no UI thread access.
+ *  The actual request parsing and storing is still done by SocketConnWorkerThread (run on the pool, rather than started as its own thread).
+ *
+ * Usage Example (declare, create, configure, and run):
+ *  SocketServerNioThread socketServerNioThread;
+ *  socketServerNioThread = new SocketServerNioThread(getApplicationContext(), Constants.LOG_METHOD_FILELOGGER, SocketServerNioThread.PORT_HTTP_NORMAL);
+ *  socketServerNioThread.setSocketReceiveBufferSize(64000);                                        //optional, defaults to 64000
+ *  socketServerNioThread.setSocketMaxBacklog(50);                                                  //optional, defaults to 50
+ *  socketServerNioThread.setParseThreadCount(2);                                                   //optional, defaults to 2 (must be done before starting)
+ *  socketServerNioThread.setParseQueueDepth(32);                                                   //optional, defaults to 32 (must be done before starting)
+ *  socketServerNioThread.start();                                                                  //starts the thread loop, and allows the selector to begin accepting connections
+ *
+ * Usage Example (close the socket, stop the thread-loop, and free up resources):
+ *  socketServerNioThread.cleanup();
+ *
+ * Usage Example (pause listening - may be easily resumed later)
+ *  socketServerNioThread.pauseListening();
+ *
+ * Usage Example (resume listening)
+ *  socketServerNioThread.resumeListening();
+ */
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.Constants;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+public class SocketServerNioThread extends Thread implements SocketConnWorkerThread.KeepAliveHandoff {
+    private final String TAG = this.getClass().getSimpleName();
+
+    // Constants..
+    public static final int PORT_HTTP_NORMAL = SocketServerThread.PORT_HTTP_NORMAL;
+    public static final int IMPORTANCE_MIN = SocketServerThread.IMPORTANCE_MIN;
+    public static final int IMPORTANCE_MID = SocketServerThread.IMPORTANCE_MID;
+    public static final int IMPORTANCE_MAX = SocketServerThread.IMPORTANCE_MAX;
+
+    // Logging stuff...
+    private final byte LOG_SEVERITY_V = 1;
+    private final byte LOG_SEVERITY_D = 2;
+    private final byte LOG_SEVERITY_I = 3;
+    private final byte LOG_SEVERITY_W = 4;
+    private final byte LOG_SEVERITY_E = 5;
+    private byte logMethod = Constants.LOG_METHOD_LOGCAT;
+
+    // Local stuff...
+    private WeakReference<Context> appContextRef;   //since this thread is very long running, we prefer a weak context reference
+    private Selector selector;
+    private ServerSocketChannel serverSocketChannel;
+    private SocketConnWorkerPool socketConnWorkerPool;  //small bounded pool of threads that actually read and parse requests
+    private ConcurrentLinkedQueue<ConnectionState> pendingReadRegistrations;   //idle keep-alive connections handed back by workers, waiting to be registered with the selector
+
+    private volatile boolean isStopRequested;       //flag to set/check for the thread to interrupt itself
+    private volatile boolean isThreadRunning;
+    private volatile boolean isSocketListening;
+    private volatile boolean pauseListening;
+    private int portToListenOn;
+    private int socketReceiveBufferSize;
+    private int socketMaxBacklog;                   //maximum length of the queue of incoming connections before socket rejects incoming requests
+    private int socketPerfPrefConnectionTime;       //an int expressing the relative importance of a short connection time
+    private int socketPerfPrefLatency;              //an int expressing the relative importance of low latency
+    private int socketPerfPrefBandwidth;            //an int expressing the relative importance of high bandwidth
+    private int parseThreadCount;                   //number of threads in the parse pool
+    private int parseQueueDepth;                    //number of connections that may wait for a parse thread before we respond with 503
+    private int selectTimeoutMS;                    //how long the selector may block before we come up for air (to check flags, idle connections, etc.)
+    private int connectionIdleTimeoutMS;            //how long an accepted (or kept-alive) connection may sit without sending anything before we close it
+
+    /** What we remember about each connection while it waits on the selector. */
+    private static class ConnectionState {
+        final SocketChannel socketChannel;
+        final long idleSinceMS;
+        final int requestsServed;
+
+        ConnectionState(SocketChannel socketChannel, long idleSinceMS, int requestsServed) {
+            this.socketChannel = socketChannel;
+            this.idleSinceMS = idleSinceMS;
+            this.requestsServed = requestsServed;
+        }
+    }
+
+
+    /** Constructor */
+    public SocketServerNioThread(Context appContext, byte logMethod, int port) {
+        Log.v(TAG, "Instantiating.");
+
+        this.logMethod = logMethod;
+
+        this.appContextRef = new WeakReference<Context>(appContext);
+
+        this.isStopRequested = false;
+        this.isThreadRunning = false;
+        this.isSocketListening = false;
+        this.pauseListening = false;
+        this.portToListenOn = port | PORT_HTTP_NORMAL;
+        this.socketReceiveBufferSize = 64000;
+        this.socketMaxBacklog = 50;                                 //maximum length of the queue of incoming connections before socket rejects incoming requests
+        this.socketPerfPrefConnectionTime = IMPORTANCE_MID;         //relative importance of short connection time
+        this.socketPerfPrefLatency = IMPORTANCE_MAX;                //relative importance of low latency
+        this.socketPerfPrefBandwidth = IMPORTANCE_MIN;              //relative importance of high bandwidth
+        this.parseThreadCount = 2;
+        this.parseQueueDepth = 32;
+        this.selectTimeoutMS = 1000;
+        this.connectionIdleTimeoutMS = Constants.Configuration.Network.HTTP_KEEP_ALIVE_IDLE_TIMEOUT_MS;
+        this.pendingReadRegistrations = new ConcurrentLinkedQueue<ConnectionState>();
+    }
+
+
+    /*============================================================================================*/
+    /* Thread Methods */
+
+    /** Main runnable routine... executes once whenever the initialized thread is commanded to start running with .execute() method call */
+    @Override
+    public void run() {
+        final String TAGG = "run: ";
+        logV(TAGG+"Invoked.");
+
+        long pid = Thread.currentThread().getId();
+        logD(TAGG+"Thread starting as process ID #"+ pid);
+
+        // Initialize our selector and parse pool
+        try {
+            this.selector = Selector.open();
+            if (this.socketConnWorkerPool == null || this.socketConnWorkerPool.isShutdown()) {
+                this.socketConnWorkerPool = new SocketConnWorkerPool(appContextRef.get(), logMethod, parseThreadCount, parseQueueDepth);
+            }
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught! Thread will not start.");
+            Thread.currentThread().interrupt();
+        }
+
+        // As long as our thread is supposed to be running...
+        while (!Thread.currentThread().isInterrupted()) {
+
+            isThreadRunning = true;
+
+            // Either sleep a short bit or allow selector to accept and read connections...
+            if (pauseListening) {
+                if (isSocketListening) {
+                    logI(TAGG + "Listening is paused. Thread will continue to run, but selector won't accept connections.");
+                    stopListening();
+                }
+
+                // Do a short delay to help prevent the thread loop from eating cycles
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    logW(TAGG + "Exception caught trying to sleep: " + e.getMessage());
+                }
+            } else {
+                try {
+                    // Make sure our server channel is bound and registered (it may have been closed by a pause)
+                    if (!isSocketListening) {
+                        initializeSocketServerAsConfigured();
+                        logI(TAGG + "Listening for socket connections.");
+                    }
+
+                    // Register any keep-alive connections that workers have handed back to us
+                    registerPendingReads();
+
+                    // Wait for something to happen (unless there are already keys left over from the last hand-off)
+                    if (selector.selectedKeys().isEmpty()) {
+                        selector.select(selectTimeoutMS);
+                    }
+
+                    processSelectedKeys();
+                    closeIdleConnections();
+
+                } catch (NullPointerException e) {
+                    // This can happen if MainService dies (taking context reference with it) before this loop breaks
+                    // So, let's make sure that's not what's happening (we can depend on this flag to be set by .cleanup() which is called on MainService destruction)...
+                    if (!isStopRequested) {
+                        logW(TAGG + "MainService's context reference has gone AWOL. Context is required for this thread to run; shutting down!");
+                        Thread.currentThread().interrupt();
+                    }
+                } catch (ClosedSelectorException e) {
+                    //this can happen if cleanup() is called from another thread
+                    logI(TAGG+"ClosedSelectorException caught: "+ e.getMessage());
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    logE(TAGG+"IOException caught: "+ e.getMessage());
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    logE(TAGG+"Exception caught: "+ e.getMessage());
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            // this is the end of the loop-iteration, so check whether we will stop or continue
+            if (Thread.currentThread().isInterrupted()) {
+                logI(TAGG+"Thread will now stop.");
+                stopListening();
+                isThreadRunning = false;
+                isSocketListening = false;
+            }
+            if (isStopRequested) {
+                logI(TAGG+"Thread has been requested to stop and will now do so.");
+                stopListening();
+                isThreadRunning = false;
+                break;
+            }
+        }
+
+        // The thread loop is done, so release the selector as well
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (Exception e) {
+            logW(TAGG+"Exception caught closing selector: "+e.getMessage());
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    private void initializeSocketServerAsConfigured() throws Exception {
+        final String TAGG = "initializeSocketServerAsConfigured: ";
+
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.configureBlocking(false);
+
+        serverSocketChannel.socket().setReceiveBufferSize(socketReceiveBufferSize);
+        serverSocketChannel.socket().setPerformancePreferences(socketPerfPrefConnectionTime, socketPerfPrefLatency, socketPerfPrefBandwidth);   //NOTE: must be done before binding to an address happens
+        serverSocketChannel.socket().setReuseAddress(true); //true allows the socket to be bound even though a previous connection is in a timeout state
+
+        serverSocketChannel.socket().bind(new InetSocketAddress(portToListenOn), socketMaxBacklog);
+        serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        isSocketListening = true;
+
+        logD(TAGG+"serverSocketChannel instantiated...\n" +
+                "Local Port:     " + serverSocketChannel.socket().getLocalPort() +"\n" +
+                "Rx Buffer Size: " + serverSocketChannel.socket().getReceiveBufferSize() +"\n" +
+                "Parse Threads:  " + parseThreadCount);
+    }
+
+    /** Go through whatever keys the selector has readied, and accept or hand-off their connections.
+     * Accepted connections are registered for reading (no thread is spent on them while they wait).
+     * Readable connections are deregistered, switched to blocking mode, and handed to the parse pool.
+     */
+    private void processSelectedKeys() throws IOException {
+        final String TAGG = "processSelectedKeys: ";
+
+        List<ConnectionState> connectionsToHandOff = new ArrayList<ConnectionState>();
+
+        Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+        while (keyIterator.hasNext()) {
+            SelectionKey key = keyIterator.next();
+            keyIterator.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isAcceptable()) {
+                SocketChannel socketChannel = ((ServerSocketChannel) key.channel()).accept();
+                if (socketChannel == null) {
+                    continue;
+                }
+
+                socketChannel.configureBlocking(false);
+                socketChannel.socket().setKeepAlive(true);
+
+                // Remember when we accepted it, so we can close it if it never sends us anything
+                socketChannel.register(selector, SelectionKey.OP_READ, new ConnectionState(socketChannel, new Date().getTime(), 0));
+
+                logD(TAGG + "A socket connection was accepted from \"" + socketChannel.socket().getRemoteSocketAddress().toString().split("/")[1] + "\". Waiting for its request data.");
+            } else if (key.isReadable()) {
+                // Data is ready, so this connection no longer needs the selector...
+                // (the channel may only be put back into blocking mode after its key's cancellation has been flushed by the selector, below)
+                key.cancel();
+                connectionsToHandOff.add((ConnectionState) key.attachment());
+            }
+        }
+
+        if (connectionsToHandOff.isEmpty()) {
+            return;
+        }
+
+        // Flush cancelled keys, so channels may be put back into blocking mode
+        selector.selectNow();
+
+        for (ConnectionState connectionState : connectionsToHandOff) {
+            SocketChannel socketChannel = connectionState.socketChannel;
+            try {
+                socketChannel.configureBlocking(true);
+
+                // Pass the socket connection to our parse pool to handle the communication (it will respond with 503 itself, if saturated)
+                // If the connection is kept alive, the worker will hand it back to us (handBackForReading) once it's idle again.
+                socketConnWorkerPool.submit(socketChannel.socket(), connectionState.requestsServed, this);
+            } catch (NullPointerException e) {
+                throw e;
+            } catch (Exception e) {
+                logW(TAGG + "Exception caught handing connection off to parse pool (closing it): " + e.getMessage());
+                closeQuietly(socketChannel);
+            }
+        }
+    }
+
+    /** Register, for reading, any idle keep-alive connections that workers have handed back to us.
+     * Must be called from the selector thread (the thread loop). */
+    private void registerPendingReads() {
+        final String TAGG = "registerPendingReads: ";
+
+        ConnectionState connectionState;
+        while ((connectionState = pendingReadRegistrations.poll()) != null) {
+            try {
+                connectionState.socketChannel.configureBlocking(false);
+                connectionState.socketChannel.register(selector, SelectionKey.OP_READ, connectionState);
+            } catch (Exception e) {
+                logW(TAGG + "Exception caught registering kept-alive connection (closing it): " + e.getMessage());
+                closeQuietly(connectionState.socketChannel);
+            }
+        }
+    }
+
+    /** Workers call this (from their own thread) to give us an idle keep-alive connection to wait on for its next request. */
+    @Override
+    public void handBackForReading(Socket socket, int requestsServed) {
+        SocketChannel socketChannel = socket.getChannel();
+        if (socketChannel == null || isStopRequested || pauseListening) {
+            try {
+                socket.close();
+            } catch (Exception e) {
+                logW("handBackForReading: Exception caught closing socket: " + e.getMessage());
+            }
+            return;
+        }
+
+        pendingReadRegistrations.add(new ConnectionState(socketChannel, new Date().getTime(), requestsServed));
+        selector.wakeup();
+    }
+
+    /** Close any accepted or kept-alive connections that have sat around too long without sending us anything. */
+    private void closeIdleConnections() {
+        final String TAGG = "closeIdleConnections: ";
+
+        long nowMS = new Date().getTime();
+
+        for (SelectionKey key : selector.keys()) {
+            if (!key.isValid() || !(key.attachment() instanceof ConnectionState)) {
+                continue;
+            }
+
+            if (nowMS - ((ConnectionState) key.attachment()).idleSinceMS > connectionIdleTimeoutMS) {
+                logD(TAGG + "Closing connection that has been idle for more than " + connectionIdleTimeoutMS + "ms.");
+                key.cancel();
+                closeQuietly((SocketChannel) key.channel());
+            }
+        }
+    }
+
+    private void closeQuietly(SocketChannel socketChannel) {
+        try {
+            socketChannel.close();
+        } catch (Exception e) {
+            logW("closeQuietly: Exception caught: " + e.getMessage());
+        }
+    }
+
+    /** Close the server channel (and any connections still waiting on the selector), so that no new connections are accepted.
+     * Must be called from the selector thread (the thread loop), since it touches the selector's key set.
+     */
+    private void stopListening() {
+        final String TAGG = "stopListening: ";
+
+        try {
+            if (selector != null && selector.isOpen()) {
+                for (SelectionKey key : selector.keys()) {
+                    key.cancel();
+                    if (key.channel() instanceof SocketChannel) {
+                        closeQuietly((SocketChannel) key.channel());
+                    }
+                }
+            }
+
+            ConnectionState connectionState;
+            while ((connectionState = pendingReadRegistrations.poll()) != null) {
+                closeQuietly(connectionState.socketChannel);
+            }
+
+            if (serverSocketChannel != null) {
+                serverSocketChannel.close();
+                serverSocketChannel = null;
+            }
+        } catch (Exception e) {
+            logW(TAGG+"Exception caught: "+e.getMessage());
+        }
+
+        isSocketListening = false;
+    }
+
+    /** Call this to pause listening.
+     * This sets the pause flag and wakes the selector, so the thread loop will unbind the server channel on its next iteration.
+     */
+    public void pauseListening() {
+        final String TAGG = "pauseListening: ";
+
+        try {
+            pauseListening = true;
+
+            if (selector != null) {
+                selector.wakeup();
+            }
+
+            // Note: From here on, with the pause-flag set, the thread loop won't accept connections, but thread loop will continue to run every second
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+    }
+
+    /** Call this to resume paused listening.
+     * This essentially just resets the pause flag (which allows the thread loop to rebind the server channel)
+     */
+    public void resumeListening() {
+        pauseListening = false;
+    }
+
+    /** Call this to stop the socket from listening, terminate the loop, and release resources. */
+    public void cleanup() {
+        final String TAGG = "cleanup: ";
+
+        try {
+            this.isStopRequested = true;
+
+            // Wake the selector so the thread-loop may iterate, notice the stop request, and break on its own
+            if (selector != null) {
+                selector.wakeup();
+            }
+
+            // Let any requests already handed off finish, but don't take any new ones
+            if (socketConnWorkerPool != null) {
+                socketConnWorkerPool.shutdown();
+            }
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught: "+e.getMessage());
+        }
+
+        this.appContextRef = null;
+    }
+
+
+    /*============================================================================================*/
+    /* Getter/Setter Methods */
+
+    public boolean isThreadRunning() {
+        return this.isThreadRunning;
+    }
+
+    public boolean isSocketListening() {
+        return this.isSocketListening;
+    }
+
+    public boolean isSocketListeningPaused() {
+        return this.pauseListening;
+    }
+
+    public void setSocketReceiveBufferSize(int size) {
+        this.socketReceiveBufferSize = size;
+    }
+
+    public void setSocketMaxBacklog(int maxConnections) {
+        this.socketMaxBacklog = maxConnections;
+    }
+
+    public void setSocketConnectionTimeImportance(int importance) {
+        this.socketPerfPrefConnectionTime = importance;
+    }
+
+    public void setSocketLatencyImportance(int importance) {
+        this.socketPerfPrefLatency = importance;
+    }
+
+    public void setSocketBandwidthImportance(int importance) {
+        this.socketPerfPrefBandwidth = importance;
+    }
+
+    public void setParseThreadCount(int count) {
+        this.parseThreadCount = Math.max(1, count);
+    }
+
+    public void setParseQueueDepth(int depth) {
+        this.parseQueueDepth = Math.max(1, depth);
+    }
+
+    public void setConnectionIdleTimeoutMS(int ms) {
+        this.connectionIdleTimeoutMS = ms;
+    }
+
+
+    /*============================================================================================*/
+    /* Logging Methods */
+
+    private void logV(String tagg) {
+        log(LOG_SEVERITY_V, tagg);
+    }
+    private void logD(String tagg) {
+        log(LOG_SEVERITY_D, tagg);
+    }
+    private void logI(String tagg) {
+        log(LOG_SEVERITY_I, tagg);
+    }
+    private void logW(String tagg) {
+        log(LOG_SEVERITY_W, tagg);
+    }
+    private void logE(String tagg) {
+        log(LOG_SEVERITY_E, tagg);
+    }
+    private void log(byte logSeverity, String tagg) {
+        switch (logMethod) {
+            case Constants.LOG_METHOD_LOGCAT:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        Log.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        Log.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        Log.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        Log.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        Log.e(TAG, tagg);
+                        break;
+                }
+                break;
+            case Constants.LOG_METHOD_FILELOGGER:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        FL.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        FL.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        FL.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        FL.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        FL.e(TAG, tagg);
+                        break;
+                }
+                break;
+        }
+    }
+}
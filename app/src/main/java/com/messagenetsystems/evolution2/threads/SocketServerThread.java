@@ -2,7 +2,7 @@ package com.messagenetsystems.evolution2.threads;
 
 /* SocketServerThread
  * Serves socket connection requests.
- * Hands connections off to worker thread instances as they come in (SocketConnWorkerThread).
+ * Hands connections off to a bounded pool of worker threads as they come in (SocketConnWorkerPool, running SocketConnWorkerThread).
  * Once executed, it will remain running and waiting for requests on the socket, until you stop it or tell it otherwise.
  *
  * DEV-NOTE...
@@ -16,6 +16,8 @@ package com.messagenetsystems.evolution2.threads;
  *  socketServerThread.setSocketConnectionTimeImportance(SocketServerThread.IMPORTANCE_MID);        //optional, defaults to SocketServerThread.IMPORTANCE_MID
  *  socketServerThread.setSocketLatencyImportance(SocketServerThread.IMPORTANCE_MAX);               //optional, defaults to SocketServerThread.IMPORTANCE_MAX
  *  socketServerThread.setSocketBandwidthImportance(SocketServerThread.IMPORTANCE_MIN);             //optional, defaults to SocketServerThread.IMPORTANCE_MIN
+ *  socketServerThread.setWorkerThreadCount(4);                                                     //optional, defaults to 4 (must be done before starting)
+ *  socketServerThread.setWorkerQueueDepth(32);                                                     //optional, defaults to 32 (must be done before starting)
  *  socketServerThread.start();                                                                     //starts the thread loop, and allows SocketServer to begin listening for connections
  *
  * Usage Example (close the socket, stop the thread-loop, and free up resources):
@@ -67,6 +69,7 @@ public class SocketServerThread extends Thread {
     // Local stuff...
     private WeakReference<Context> appContextRef;   //since this thread is very long running, we prefer a weak context reference
     private ServerSocket serverSocket;
+    private SocketConnWorkerPool socketConnWorkerPool;
 
     private volatile boolean isStopRequested;       //flag to set/check for the thread to interrupt itself
     private volatile boolean isThreadRunning;
@@ -78,6 +81,8 @@ public class SocketServerThread extends Thread {
     private int socketPerfPrefConnectionTime;       //an int expressing the relative importance of a short connection time
     private int socketPerfPrefLatency;              //an int expressing the relative importance of low latency
     private int socketPerfPrefBandwidth;            //an int expressing the relative importance of high bandwidth
+    private int workerThreadCount;                  //number of threads that may handle connections at once
+    private int workerQueueDepth;                   //number of connections that may wait for a worker thread before we respond with 503
 
 
     /** Constructor */
@@ -104,6 +109,8 @@ public class SocketServerThread extends Thread {
         this.socketPerfPrefConnectionTime = IMPORTANCE_MID;         //relative importance of short connection time
         this.socketPerfPrefLatency = IMPORTANCE_MAX;                //relative importance of low latency
         this.socketPerfPrefBandwidth = IMPORTANCE_MIN;              //relative importance of high bandwidth
+        this.workerThreadCount = 4;
+        this.workerQueueDepth = 32;
     }
 
 
@@ -121,8 +128,11 @@ public class SocketServerThread extends Thread {
         long pid = Thread.currentThread().getId();
         logD(TAGG+"Thread starting as process ID #"+ pid);
 
-        // Initialize and setup our SocketServer instance
+        // Initialize and setup our SocketServer instance and its worker pool
         try {
+            if (socketConnWorkerPool == null || socketConnWorkerPool.isShutdown()) {
+                socketConnWorkerPool = new SocketConnWorkerPool(appContextRef.get(), logMethod, workerThreadCount, workerQueueDepth);
+            }
             initializeSocketServerAsConfigured();
         } catch (Exception e) {
             logE(TAGG+"Exception caught! Thread will not start.");
@@ -161,9 +171,9 @@ public class SocketServerThread extends Thread {
                     //socket.setTcpNoDelay(true);       //(not necessary; don't seem to hurt) disable Nagle's algorithm (a buffering scheme that delays things) by setting TCP_NODELAY on the socket
                     //socket.setTrafficClass(0x10);     //IPTOS_LOWDELAY (probably only obeyed by nearest router... maybe not at all)
 
-                    // Pass the socket connection to our worker thread to handle the communication, and start it (starts a new thread and runs it there)
-                    Log.d(TAG, TAGG + "A socket connection was received from \"" + socket.getRemoteSocketAddress().toString().split("/")[1] + "\". Passing it to worker thread for processing, so SocketServer may resume listening for connections.");
-                    new SocketConnWorkerThread(appContextRef.get(), logMethod, socket).start();
+                    // Pass the socket connection to our worker pool to handle the communication (it will respond with 503 itself, if saturated)
+                    Log.d(TAG, TAGG + "A socket connection was received from \"" + socket.getRemoteSocketAddress().toString().split("/")[1] + "\". Passing it to worker pool for processing, so SocketServer may resume listening for connections.");
+                    socketConnWorkerPool.submit(socket);
 
                 } catch (NullPointerException e) {
                     // This can happen if MainService dies (taking context reference with it) before this loop breaks
@@ -288,6 +298,11 @@ public class SocketServerThread extends Thread {
             logE(TAGG+"Exception caught calling stopListening(): "+e.getMessage());
         }
 
+        if (this.socketConnWorkerPool != null) {
+            this.socketConnWorkerPool.shutdown();
+            this.socketConnWorkerPool = null;
+        }
+
         this.appContextRef = null;
         this.serverSocket = null;
     }
@@ -328,6 +343,14 @@ public class SocketServerThread extends Thread {
         this.socketPerfPrefBandwidth = importance;
     }
 
+    public void setWorkerThreadCount(int count) {
+        this.workerThreadCount = count;
+    }
+
+    public void setWorkerQueueDepth(int depth) {
+        this.workerQueueDepth = depth;
+    }
+
 
     /*============================================================================================*/
     /* Logging Methods */
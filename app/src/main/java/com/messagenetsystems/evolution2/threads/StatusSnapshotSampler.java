@@ -0,0 +1,416 @@
+package com.messagenetsystems.evolution2.threads;
+
+/* StatusSnapshotSampler
+ * Periodically samples device status (uptime, CPU, network, energy, storage, etc.) and keeps a ready-to-send
+ * snapshot of the pong reply, so that SocketConnWorkerThread can answer /ping requests without doing any of that work itself.
+ *
+ * Some of these samples are expensive (e.g. uptime forks a super-user shell, and CPU usage sleeps for a few hundred milliseconds),
+ * so doing them on every ping made pongs slow. Now they're done here, in the background, on a configurable cadence,
+ * and the resulting reply is kept pre-encoded as bytes (only re-encoded when the snapshot actually changes).
+ *
+ * DEV-NOTE...
+ *  It's a thread, because it requires no UI thread access.
+ *  The snapshot is static, so any worker may get it without needing a reference to this instance.
+ *
+ * Usage Example (declare, create, configure, and run):
+ *  StatusSnapshotSampler statusSnapshotSampler;
+ *  statusSnapshotSampler = new StatusSnapshotSampler(getApplicationContext(), Constants.LOG_METHOD_FILELOGGER);
+ *  statusSnapshotSampler.setSampleIntervalMS(10000);                                               //optional, defaults to Constants.Configuration.Network.STATUS_SNAPSHOT_SAMPLE_INTERVAL_MS
+ *  statusSnapshotSampler.start();
+ *
+ * Usage Example (get the latest pre-encoded pong reply, from anywhere):
+ *  byte[] pongReplyBytes = StatusSnapshotSampler.getPongReplyBytes();                              //null if no snapshot has been taken yet
+ *
+ * Usage Example (stop the thread-loop and free up resources):
+ *  statusSnapshotSampler.cleanup();
+ *
+ * Usage Example (pause processing - may be easily resumed later)
+ *  statusSnapshotSampler.pauseProcessing();
+ *
+ * Usage Example (resume processing)
+ *  statusSnapshotSampler.resumeProcessing();
+ */
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bosphere.filelogger.FL;
+import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.OmniApplication;
+import com.messagenetsystems.evolution2.models.ActiveMessageDigest;
+import com.messagenetsystems.evolution2.services.DeliveryService;
+import com.messagenetsystems.evolution2.services.HealthService;
+import com.messagenetsystems.evolution2.utilities.EnergyUtils;
+import com.messagenetsystems.evolution2.utilities.HttpRequestParser;
+import com.messagenetsystems.evolution2.utilities.NetUtils;
+import com.messagenetsystems.evolution2.utilities.SharedPrefsUtils;
+import com.messagenetsystems.evolution2.utilities.SystemUtils;
+
+import java.lang.ref.WeakReference;
+
+
+public class StatusSnapshotSampler extends Thread {
+    private final String TAG = this.getClass().getSimpleName();
+
+    // Constants..
+    private static final String PONG_REPLY_PREFIX = "Response: ";
+    private static final String PONG_REPLY_SUFFIX = "\n";
+
+    // Logging stuff...
+    private final byte LOG_SEVERITY_V = 1;
+    private final byte LOG_SEVERITY_D = 2;
+    private final byte LOG_SEVERITY_I = 3;
+    private final byte LOG_SEVERITY_W = 4;
+    private final byte LOG_SEVERITY_E = 5;
+    private byte logMethod = Constants.LOG_METHOD_LOGCAT;
+
+    // The latest snapshot...
+    // These are only ever replaced (never modified), so readers always see a complete and consistent reply.
+    private static volatile String pongReplyJSON;                                                   //latest status JSON string (as sent after "Response: ")
+    private static volatile byte[] pongReplyBytes;                                                  //latest complete pong reply, already encoded and ready to write to a socket
+    private static volatile long pongReplySampledAtMS;                                              //when the latest snapshot was taken
+
+    // Local stuff...
+    private WeakReference<Context> appContextRef;   //since this thread is very long running, we prefer a weak context reference
+    private OmniApplication omniApplication;
+    private SharedPrefsUtils sharedPrefsUtils;
+    private SystemUtils systemUtils;
+    private NetUtils netUtils;
+
+    private volatile boolean isStopRequested;       //flag to set/check for the thread to interrupt itself
+    private volatile boolean isThreadRunning;       //just a status flag
+    private volatile boolean pauseProcessing;       //flag to set if you want to pause processing work (may double as a kind of "is paused" flag)
+
+    private int activeProcessingSleepDuration;      //duration (in milliseconds) to sleep between samples (this is the sampling cadence)
+    private int pausedProcessingSleepDuration;      //duration (in milliseconds) to sleep during paused processing (to help ensure CPU cycles aren't eaten like crazy)
+    private int slowSampleEveryIterations;          //how many iterations between samples of very expensive (and slow-changing) values, like uptime
+
+    private int lastSystemUptimeHours;              //most recent (slowly sampled) uptime value
+
+    private long loopIterationCounter;
+
+
+    /** Constructor */
+    public StatusSnapshotSampler(Context appContext, byte logMethod) {
+        Log.v(TAG, "Instantiating.");
+
+        this.logMethod = logMethod;
+
+        this.appContextRef = new WeakReference<Context>(appContext);
+
+        try {
+            this.omniApplication = ((OmniApplication) appContext.getApplicationContext());
+        } catch (Exception e) {
+            logE("Exception caught instantiating "+TAG+": "+e.getMessage());
+        }
+
+        this.sharedPrefsUtils = new SharedPrefsUtils(appContext, logMethod);
+        this.systemUtils = new SystemUtils(appContext, logMethod);
+        this.netUtils = new NetUtils(appContext, logMethod);
+
+        this.isStopRequested = false;
+        this.isThreadRunning = false;
+        this.pauseProcessing = false;
+
+        this.activeProcessingSleepDuration = Constants.Configuration.Network.STATUS_SNAPSHOT_SAMPLE_INTERVAL_MS;
+        this.pausedProcessingSleepDuration = 1000;
+        this.slowSampleEveryIterations = Constants.Configuration.Network.STATUS_SNAPSHOT_SLOW_SAMPLE_EVERY;
+
+        this.lastSystemUptimeHours = 0;
+
+        this.loopIterationCounter = 1;
+    }
+
+
+    /*============================================================================================*/
+    /* Thread Methods */
+
+    /** Main runnable routine... executes once whenever the initialized thread is commanded to start running with .start() or .execute() method call.
+     * Remember that .start() implicitly spawns a thread and calls .execute() to invoke this run() method.
+     * If you directly call .execute(), this run() method will invoke on the same thread you call it from. */
+    @Override
+    public void run() {
+        final String TAGG = "run: ";
+        logV(TAGG+"Invoked.");
+
+        long pid = Thread.currentThread().getId();
+        logI(TAGG+"Thread starting as process ID #"+ pid);
+
+        // As long as our thread is supposed to be running...
+        while (!Thread.currentThread().isInterrupted()) {
+
+            // Our thread has started or is still running
+            isThreadRunning = true;
+
+            // Either do nothing (if paused) or allow work to happen (if not paused)...
+            if (pauseProcessing) {
+                // Do a short delay to help prevent the thread loop from eating cycles
+                try {
+                    Thread.sleep(pausedProcessingSleepDuration);
+                } catch (InterruptedException e) {
+                    logW(TAGG + "Exception caught trying to sleep during pause: " + e.getMessage());
+                }
+
+                logD(TAGG + "(iteration #"+loopIterationCounter+") Processing is paused. Thread continuing to run, but no work is occurring.");
+            } else {
+                logV(TAGG + "(iteration #"+loopIterationCounter+") Processing...");
+
+                try {
+                    ////////////////////////////////////////////////////////////////////////////////
+                    // DO THE BULK OF THE ACTUAL WORK HERE...
+
+                    // Sample the very expensive stuff only every so often (and always on the first iteration)
+                    if (loopIterationCounter == 1 || loopIterationCounter % slowSampleEveryIterations == 0) {
+                        lastSystemUptimeHours = systemUtils.getSystemUptime_hours();
+                        omniApplication.updateAppVersions(appContextRef.get().getApplicationContext());
+                    }
+
+                    takeSnapshot();
+
+                    // END THE BULK OF THE ACTUAL WORK HERE...
+                    ////////////////////////////////////////////////////////////////////////////////
+                } catch (NullPointerException e) {
+                    // This can happen if parent process dies (taking context reference with it) before this loop breaks
+                    // So, let's make sure that's not what's happening (we can depend on this flag to be set by .cleanup() which should be called upon destruction of parent process)...
+                    if (!isStopRequested) {
+                        logW(TAGG + "Parent process's context has gone AWOL. Context is required for this thread to run; shutting down!");
+                        Thread.currentThread().interrupt();
+                    }
+                } catch (Exception e) {
+                    logE(TAGG + "Exception caught: " + e.getMessage());
+                }
+
+                // Wait until it's time for the next sample (we sleep after, so the first snapshot is available as soon as possible)
+                try {
+                    Thread.sleep(activeProcessingSleepDuration);
+                } catch (InterruptedException e) {
+                    logW(TAGG + "Exception caught trying to sleep: " + e.getMessage());
+                }
+            }
+
+            try {
+                if (loopIterationCounter + 1 < Long.MAX_VALUE)
+                    loopIterationCounter++;
+                else
+                    loopIterationCounter = 1;
+            } catch (Exception e) {
+                logW(TAGG+"Exception caught incrementing loop counter. Resetting to 1: "+e.getMessage());
+                loopIterationCounter = 1;
+            }
+
+            // this is the end of the loop-iteration, so check whether we will stop or continue
+            if (Thread.currentThread().isInterrupted()) {
+                logI(TAGG+"Thread will now stop.");
+                isThreadRunning = false;
+            }
+            if (isStopRequested) {
+                logI(TAGG+"Thread has been requested to stop and will now do so.");
+                isThreadRunning = false;
+                break;
+            }
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    /** Sample current status, and replace the static snapshot with it (re-encoding the reply bytes only if something changed). */
+    private void takeSnapshot() {
+        final String TAGG = "takeSnapshot: ";
+
+        String json = constructPongReplyStatusJSONString(omniApplication, sharedPrefsUtils, systemUtils, netUtils, lastSystemUptimeHours);
+
+        if (!json.equals(pongReplyJSON)) {
+            pongReplyBytes = (PONG_REPLY_PREFIX + json + PONG_REPLY_SUFFIX).getBytes(HttpRequestParser.CHARSET_UTF8);
+            pongReplyJSON = json;
+            logV(TAGG+"Snapshot changed, and pong reply has been re-encoded: "+json);
+        }
+        pongReplySampledAtMS = System.currentTimeMillis();
+    }
+
+    /** Put together the status JSON string returned for authenticated pings.
+     * Note: CPU usage sampling blocks for a few hundred milliseconds, so never call this from a request-handling thread if you can avoid it.
+     * @param systemUptimeHours Uptime value to include (sampled separately, since it's very expensive to get).
+     */
+    public static String constructPongReplyStatusJSONString(OmniApplication omniApplication, SharedPrefsUtils sharedPrefsUtils, SystemUtils systemUtils, NetUtils netUtils, int systemUptimeHours) {
+        final String TAGG = "constructPongReplyStatusJSONString: ";
+
+        String ret;
+
+        try {
+            /*
+            String ipMode = NetworkUtils.getCurrentIpMethod_wifi(context);
+            */
+
+            // WARNING!!!!
+            // If adding data to this log, add to end, since some scripts depend on fields being in certain locations!
+            ret = "{" +
+                    "\"rec\":\"" + String.valueOf(sharedPrefsUtils.getStringValueFor(SharedPrefsUtils.spKeyName_thisDeviceRecno, null)) + "\"" +
+                    ",\"msgs\":\"" + DeliveryService.omniMessageUUIDsToRotate.size() + "\"" +
+                    ",\"upHr\":" + String.valueOf(systemUptimeHours) + "" +
+                    ",\"appHr\":" + String.valueOf(omniApplication.getAppRunningHours()) + "" +
+                    ",\"vMA\":\"" + omniApplication.getAppVersion() + "\"" +
+                    ",\"vFL\":\"" + omniApplication.getAppVersion_flashers() + "\"" +
+                    /*
+                    ",\"vWD\":\"" + omniApplication.getAppVersion_watchdog() + "\"" +
+                    ",\"vUD\":\"" + omniApplication.getAppVersion_updater() + "\"" +
+                    ",\"vWW\":\"" + omniApplication.getAppVersion_watcher() + "\"" +
+                    */
+                    ",\"ipAcq\":\"" + netUtils.getCurrentIpMethod_activeInterface() + "\"" +
+                    ",\"ipAdr\":\"" + netUtils.getDeviceIpAddressAsString() + "\"" +
+                    ",\"NIC\":\"" + netUtils.getActiveNIC() + "\"" +
+                    ",\"dBm\":\"" + netUtils.getWifiStrength_dBm() +
+                    ",\"CPU\":\"" + String.format("%.0f%%", systemUtils.readUsageCPU() * 100) + "\"" +
+                    ",\"heapAv\":\"" + String.valueOf(systemUtils.getAppHeapAvailable_MB()) + "MB\"" +
+                    ",\"pwr\":\"" + EnergyUtils.getEnglish_chargePlugState(HealthService.energy_rawPowerSupplyWhichConnected) + "\"" +
+                    ",\"chging\":\"" + Boolean.toString(HealthService.energy_isBatteryCharging) + "\"" +
+                    ",\"chgLvl\":\"" + HealthService.energy_hrBatteryPercent + "\"" +
+                    ",\"mA\":\"" + HealthService.energy_rawMilliAmpsAtBattery + "\"" +
+                    ",\"mv\":\"" + HealthService.energy_rawMilliVoltage + "\"" +
+                    ",\"batt\":\"" + EnergyUtils.getEnglish_batteryHealthState(HealthService.energy_derivedBatteryHealthCondition) + "\"" +
+                    ",\"freeEx\":\"" + HealthService.storage_hrAvailableBytes_external + "\"" +
+                    ",\"msgDgst\":\"" + ActiveMessageDigest.getDigestHex() + "\"" +
+                    /* ",\"chgTime\":\"" + systemUtils.getBatteryTimeRemaining(batteryMilliAmpState) + "mins\"" + */
+                    "}";
+        } catch (Exception e) {
+            Log.e(StatusSnapshotSampler.class.getSimpleName(), TAGG+"Exception caught: "+ e.getMessage());
+            ret = "(failed to construct device stats)";
+        }
+
+        return ret;
+    }
+
+    /** Call this to pause processing.
+     * This essentially just sets the pause flag (which prevents any work being done).
+     */
+    public void pauseProcessing() {
+        this.pauseProcessing = true;
+    }
+
+    /** Call this to resume paused processing.
+     * This essentially just resets the pause flag (which allows work to be done).
+     */
+    public void resumeProcessing() {
+        this.pauseProcessing = false;
+    }
+
+    /** Call this to terminate the loop and release resources. */
+    public void cleanup() {
+        final String TAGG = "cleanup: ";
+
+        try {
+            this.isStopRequested = true;
+
+            // Note: At this point, the thread-loop should break on its own, since we check isInterrupted in the while-loop's condition
+        } catch (Exception e) {
+            logE(TAGG+"Exception caught invoking .interrupt(): "+e.getMessage());
+        }
+
+        if (this.sharedPrefsUtils != null) {
+            this.sharedPrefsUtils.cleanup();
+            this.sharedPrefsUtils = null;
+        }
+
+        if (this.systemUtils != null) {
+            this.systemUtils.cleanup();
+            this.systemUtils = null;
+        }
+
+        if (this.netUtils != null) {
+            this.netUtils.cleanup();
+            this.netUtils = null;
+        }
+
+        this.omniApplication = null;
+        this.appContextRef = null;
+    }
+
+
+    /*============================================================================================*/
+    /* Getter/Setter Methods */
+
+    /** Returns the latest complete pong reply ("Response: {...}\n"), already encoded, or null if no snapshot has been taken yet.
+     * Do not modify the returned array (it's shared by all callers until the next snapshot change). */
+    public static byte[] getPongReplyBytes() {
+        return pongReplyBytes;
+    }
+
+    public static String getPongReplyJSON() {
+        return pongReplyJSON;
+    }
+
+    public static long getPongReplySampledAtMS() {
+        return pongReplySampledAtMS;
+    }
+
+    public boolean isThreadRunning() {
+        return this.isThreadRunning;
+    }
+
+    public void setSampleIntervalMS(int ms) {
+        this.activeProcessingSleepDuration = ms;
+    }
+
+
+    /*============================================================================================*/
+    /* Logging Methods */
+
+    private void logV(String tagg) {
+        log(LOG_SEVERITY_V, tagg);
+    }
+    private void logD(String tagg) {
+        log(LOG_SEVERITY_D, tagg);
+    }
+    private void logI(String tagg) {
+        log(LOG_SEVERITY_I, tagg);
+    }
+    private void logW(String tagg) {
+        log(LOG_SEVERITY_W, tagg);
+    }
+    private void logE(String tagg) {
+        log(LOG_SEVERITY_E, tagg);
+    }
+    private void log(byte logSeverity, String tagg) {
+        switch (logMethod) {
+            case Constants.LOG_METHOD_LOGCAT:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        Log.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        Log.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        Log.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        Log.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        Log.e(TAG, tagg);
+                        break;
+                }
+                break;
+            case Constants.LOG_METHOD_FILELOGGER:
+                switch (logSeverity) {
+                    case LOG_SEVERITY_V:
+                        FL.v(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_D:
+                        FL.d(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_I:
+                        FL.i(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_W:
+                        FL.w(TAG, tagg);
+                        break;
+                    case LOG_SEVERITY_E:
+                        FL.e(TAG, tagg);
+                        break;
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.messagenetsystems.evolution2.utilities;
+
+/* HttpRequestParser
+ * Incremental, byte-level HTTP/1.x request parser for our socket server (SocketConnWorkerThread).
+ *
+ * It reads from an InputStream into one reusable byte buffer, finds lines and header fields by scanning bytes
+ * (no readLine/split/contains, and no per-character String allocation), reads exactly Content-Length bytes of body,
+ * and hands the body off as a byte[] (decode it as UTF-8 only when/where you actually need a String).
+ *
+ * Any bytes read past the end of one request are kept in the buffer for the next call to readRequest,
+ * so it's safe to call readRequest repeatedly on the same connection.
+ *
+ * DEV-NOTE...
+ *  This has no Android dependencies, on purpose, so it may be exercised on a plain JVM.
+ *  An instance is NOT thread-safe; use one per thread (SocketConnWorkerPool keeps one per worker thread).
+ *  Chunked transfer-encoding is not supported (our backend always sends Content-Length).
+ *
+ * Usage Example (create, and read a request):
+ *  HttpRequestParser httpRequestParser = new HttpRequestParser(16 * 1024, 8 * 1024 * 1024);
+ *  httpRequestParser.clear();                                                                      //new connection, so forget any leftover bytes from a previous one
+ *  if (httpRequestParser.readRequest(socket.getInputStream()) == HttpRequestParser.RESULT_COMPLETE) {
+ *      String path = httpRequestParser.getPath();
+ *      byte[] body = httpRequestParser.getBody();
+ *  }
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+
+public class HttpRequestParser {
+
+    // Constants...
+    public static final byte RESULT_COMPLETE = 1;                                                   //a whole request (head and exactly Content-Length body bytes) was read
+    public static final byte RESULT_END_OF_STREAM = 2;                                              //the stream ended cleanly before any byte of a new request arrived
+    public static final byte RESULT_ERROR = 3;                                                      //the request was malformed, too large, or truncated (see getErrorStatusCode)
+
+    public static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+    public static final Charset CHARSET_ASCII = Charset.forName("US-ASCII");
+    public static final Charset CHARSET_ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte SP = ' ';
+    private static final byte HT = '\t';
+    private static final byte COLON = ':';
+
+    private static final byte[] HEADER_CONTENT_LENGTH = "content-length".getBytes(CHARSET_ASCII);
+    private static final byte[] HEADER_CONTENT_TYPE = "content-type".getBytes(CHARSET_ASCII);
+    private static final byte[] HEADER_USER_AGENT = "user-agent".getBytes(CHARSET_ASCII);
+    private static final byte[] HEADER_CONNECTION = "connection".getBytes(CHARSET_ASCII);
+    private static final byte[] HEADER_TRANSFER_ENCODING = "transfer-encoding".getBytes(CHARSET_ASCII);
+    private static final byte[] HEADER_X_STATE_DIGEST = "x-state-digest".getBytes(CHARSET_ASCII);
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private static final byte STATE_REQUEST_LINE = 1;
+    private static final byte STATE_HEADERS = 2;
+
+    // Local stuff...
+    private final int maxHeadBytes;                 //maximum size of request-line plus headers (431 if exceeded)
+    private final int maxBodyBytes;                 //maximum Content-Length we'll accept (413 if exceeded)
+
+    private byte[] buf;                             //reusable buffer (holds the current request's head, plus any bytes read beyond it)
+    private int headStart;                          //index in buf where the current request began
+    private int headEnd;                            //index in buf just past the current request's blank line
+    private int pos;                                //index in buf of the next unconsumed byte
+    private int limit;                              //index in buf just past the last valid byte read
+
+    private String method;
+    private String path;
+    private String protocol;
+    private String userAgent;
+    private String contentType;
+    private String connection;
+    private String stateDigest;
+    private long contentLength;
+    private byte[] body;
+
+    private int errorStatusCode;
+    private String errorReason;
+
+
+    /** Constructor */
+    public HttpRequestParser(int maxHeadBytes, int maxBodyBytes) {
+        this.maxHeadBytes = maxHeadBytes;
+        this.maxBodyBytes = maxBodyBytes;
+        this.buf = new byte[Math.min(INITIAL_BUFFER_SIZE, maxHeadBytes)];
+        clear();
+    }
+
+
+    /*============================================================================================*/
+    /* Main Routines... */
+
+    /** Forget everything, including any leftover bytes (call this when starting on a new connection). */
+    public void clear() {
+        this.pos = 0;
+        this.limit = 0;
+        reset();
+    }
+
+    /** Forget the current request's parsed values, but keep any leftover bytes that were read beyond it. */
+    public void reset() {
+        this.headStart = this.pos;
+        this.headEnd = this.pos;
+        this.method = "";
+        this.path = "";
+        this.protocol = "";
+        this.userAgent = "";
+        this.contentType = "";
+        this.connection = "";
+        this.stateDigest = "";
+        this.contentLength = 0;
+        this.body = EMPTY_BODY;
+        this.errorStatusCode = 0;
+        this.errorReason = null;
+    }
+
+    /** Read and parse one whole request from the stream.
+     * This blocks until the request is complete, the stream ends, or an error is found.
+     * @param in Stream to read from (e.g. a socket's input stream).
+     * @return One of RESULT_COMPLETE, RESULT_END_OF_STREAM, or RESULT_ERROR.
+     * @throws IOException If reading the stream fails (e.g. socket timeout or reset).
+     */
+    public byte readRequest(InputStream in) throws IOException {
+        compact();
+        reset();
+
+        byte state = STATE_REQUEST_LINE;
+        int lineStart = pos;
+
+        while (true) {
+            // Find the end of the next line, reading more bytes if needed
+            int lf = indexOf(LF, pos, limit);
+            if (lf < 0) {
+                pos = limit;
+                if (limit >= maxHeadBytes) {
+                    return error(state == STATE_REQUEST_LINE ? 414 : 431, "Request head exceeds " + maxHeadBytes + " bytes");
+                }
+                if (!fill(in)) {
+                    if (state == STATE_REQUEST_LINE && limit == headStart) {
+                        return RESULT_END_OF_STREAM;
+                    }
+                    return error(400, "Stream ended in request head");
+                }
+                continue;
+            }
+
+            int lineEnd = (lf > lineStart && buf[lf - 1] == CR) ? lf - 1 : lf;             //tolerate bare LF line endings
+            pos = lf + 1;
+
+            if (state == STATE_REQUEST_LINE) {
+                if (lineEnd == lineStart) {
+                    // Ignore blank lines ahead of the request line (permitted by RFC 7230, section 3.5)
+                    headStart = pos;
+                    lineStart = pos;
+                    continue;
+                }
+                if (!parseRequestLine(lineStart, lineEnd)) {
+                    return error(400, "Malformed request line");
+                }
+                state = STATE_HEADERS;
+            } else {
+                if (lineEnd == lineStart) {
+                    // Header-Body separator encountered
+                    headEnd = pos;
+                    break;
+                }
+                if (!parseHeaderLine(lineStart, lineEnd)) {
+                    return error(errorStatusCode != 0 ? errorStatusCode : 400, errorReason != null ? errorReason : "Malformed header line");
+                }
+            }
+
+            lineStart = pos;
+        }
+
+        return readBody(in);
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    /** Read exactly contentLength bytes of body (some may already be in our buffer). */
+    private byte readBody(InputStream in) throws IOException {
+        if (contentLength <= 0) {
+            return RESULT_COMPLETE;
+        }
+
+        body = new byte[(int) contentLength];
+
+        int alreadyBuffered = Math.min(limit - pos, body.length);
+        System.arraycopy(buf, pos, body, 0, alreadyBuffered);
+        pos += alreadyBuffered;
+
+        int filled = alreadyBuffered;
+        while (filled < body.length) {
+            int n = in.read(body, filled, body.length - filled);
+            if (n < 0) {
+                return error(400, "Stream ended after " + filled + " of " + body.length + " body bytes");
+            }
+            filled += n;
+        }
+
+        return RESULT_COMPLETE;
+    }
+
+    /** Parse "METHOD SP PATH SP PROTOCOL" from buf[start, end). */
+    private boolean parseRequestLine(int start, int end) {
+        int sp1 = indexOf(SP, start, end);
+        if (sp1 <= start) return false;
+        int sp2 = indexOf(SP, sp1 + 1, end);
+        if (sp2 <= sp1 + 1 || sp2 >= end - 1) return false;
+
+        method = new String(buf, start, sp1 - start, CHARSET_ASCII);
+        path = new String(buf, sp1 + 1, sp2 - sp1 - 1, CHARSET_UTF8);
+        protocol = new String(buf, sp2 + 1, end - sp2 - 1, CHARSET_ASCII);
+        return true;
+    }
+
+    /** Parse "Name: value" from buf[start, end), keeping only the header fields we care about. */
+    private boolean parseHeaderLine(int start, int end) {
+        int colon = indexOf(COLON, start, end);
+        if (colon <= start) return false;
+
+        // Trim optional whitespace around the value
+        int valueStart = colon + 1;
+        while (valueStart < end && (buf[valueStart] == SP || buf[valueStart] == HT)) valueStart++;
+        int valueEnd = end;
+        while (valueEnd > valueStart && (buf[valueEnd - 1] == SP || buf[valueEnd - 1] == HT)) valueEnd--;
+
+        if (nameEquals(HEADER_CONTENT_LENGTH, start, colon)) {
+            long parsed = parseNonNegativeLong(valueStart, valueEnd);
+            if (parsed < 0) {
+                errorReason = "Invalid Content-Length";
+                return false;
+            }
+            if (parsed > maxBodyBytes) {
+                errorStatusCode = 413;
+                errorReason = "Content-Length " + parsed + " exceeds " + maxBodyBytes + " bytes";
+                return false;
+            }
+            contentLength = parsed;
+        } else if (nameEquals(HEADER_CONTENT_TYPE, start, colon)) {
+            contentType = new String(buf, valueStart, valueEnd - valueStart, CHARSET_ISO_8859_1);
+        } else if (nameEquals(HEADER_USER_AGENT, start, colon)) {
+            userAgent = new String(buf, valueStart, valueEnd - valueStart, CHARSET_ISO_8859_1);
+        } else if (nameEquals(HEADER_CONNECTION, start, colon)) {
+            connection = new String(buf, valueStart, valueEnd - valueStart, CHARSET_ISO_8859_1);
+        } else if (nameEquals(HEADER_X_STATE_DIGEST, start, colon)) {
+            stateDigest = new String(buf, valueStart, valueEnd - valueStart, CHARSET_ISO_8859_1);
+        } else if (nameEquals(HEADER_TRANSFER_ENCODING, start, colon)) {
+            errorStatusCode = 501;
+            errorReason = "Transfer-Encoding is not supported";
+            return false;
+        }
+
+        return true;
+    }
+
+    /** Case-insensitively compare a lowercase ASCII header name to buf[start, end). */
+    private boolean nameEquals(byte[] lowercaseName, int start, int end) {
+        if (end - start != lowercaseName.length) return false;
+        for (int i = 0; i < lowercaseName.length; i++) {
+            byte b = buf[start + i];
+            if (b >= 'A' && b <= 'Z') b = (byte) (b + ('a' - 'A'));
+            if (b != lowercaseName[i]) return false;
+        }
+        return true;
+    }
+
+    /** Parse buf[start, end) as a decimal number, or return -1 if it isn't one. */
+    private long parseNonNegativeLong(int start, int end) {
+        if (end <= start || end - start > 18) return -1;
+        long ret = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9') return -1;
+            ret = ret * 10 + (b - '0');
+        }
+        return ret;
+    }
+
+    private int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) return i;
+        }
+        return -1;
+    }
+
+    /** Move any leftover (unconsumed) bytes to the front of the buffer, so the next request starts at index 0. */
+    private void compact() {
+        if (pos == 0) return;
+        int remaining = limit - pos;
+        if (remaining > 0) {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+        }
+        pos = 0;
+        limit = remaining;
+    }
+
+    /** Read more bytes into the buffer (growing it, up to maxHeadBytes, if it's full).
+     * Callers make sure limit is below maxHeadBytes, so there's always room for at least one more byte.
+     * @return False if the stream has ended. */
+    private boolean fill(InputStream in) throws IOException {
+        if (limit == buf.length) {
+            byte[] bigger = new byte[Math.min(buf.length * 2, maxHeadBytes)];
+            System.arraycopy(buf, 0, bigger, 0, limit);
+            buf = bigger;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private byte error(int statusCode, String reason) {
+        this.errorStatusCode = statusCode;
+        this.errorReason = reason;
+        return RESULT_ERROR;
+    }
+
+
+    /*============================================================================================*/
+    /* Getter Methods */
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** Value of the Connection header (e.g. "keep-alive" or "close"), or empty if none was sent. */
+    public String getConnection() {
+        return connection;
+    }
+
+    /** Value of the X-State-Digest header (the sender's digest of the state it's pushing), or empty if none was sent. */
+    public String getStateDigest() {
+        return stateDigest;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /** The request body, exactly Content-Length bytes (never null). */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /** The request body decoded as UTF-8 (only call this if you really need a String). */
+    public String getBodyAsString() {
+        return new String(body, CHARSET_UTF8);
+    }
+
+    /** The request-line and headers as received (with line endings normalized to "\n").
+     * Only valid until the next call to readRequest. */
+    public String getHeadAsString() {
+        if (headEnd <= headStart) return "";
+        return new String(buf, headStart, headEnd - headStart, CHARSET_ISO_8859_1).replace("\r\n", "\n");
+    }
+
+    /** Whether bytes of a further (pipelined) request have already been read into the buffer. */
+    public boolean hasBufferedBytes() {
+        return limit > pos;
+    }
+
+    /** HTTP status code describing why the last readRequest returned RESULT_ERROR (e.g. 400, 413, 431). */
+    public int getErrorStatusCode() {
+        return errorStatusCode;
+    }
+
+    public String getErrorReason() {
+        return errorReason;
+    }
+}
@@ -0,0 +1,344 @@
+package com.messagenetsystems.evolution2.utilities;
+
+/* JsonRoutingFields
+ * One-pass tokenizer that pulls just the fields we route received requests by, out of a JSON request body.
+ *
+ * It walks the body once, character by character, looking only at the top-level object's keys.
+ * Values of the keys we care about (bannerpurpose, recno_zx, command, uuid) are kept; everything else
+ * (including whole nested objects and arrays, like bannermessages) is skipped over without building anything.
+ * That way, routing a request no longer means scanning the full body several times with contains/split,
+ * or building a whole JSONObject just to look at one or two fields.
+ *
+ * It may scan either text, or the raw (UTF-8) body bytes as they came off the socket.
+ * Scanning bytes skips decoding the whole body to a String; only the values we keep get decoded.
+ * (This works because every character JSON structure depends on is ASCII, and no byte of a multi-byte UTF-8 sequence is.)
+ *
+ * DEV-NOTE...
+ *  This has no Android dependencies, on purpose, so it may be exercised on a plain JVM.
+ *  An instance is NOT thread-safe, but may be reused (each scan resets it).
+ *  Number, boolean, and null values of the fields we keep are returned as their literal text (e.g. recno_zx may be 196 or "196").
+ *
+ * Usage Example:
+ *  JsonRoutingFields jsonRoutingFields = new JsonRoutingFields();
+ *  if (jsonRoutingFields.scan(requestBody)) {
+ *      String purpose = jsonRoutingFields.getBannerPurpose();                                      //e.g. "stopscrollingmessage" (or null if not present)
+ *      String recno = jsonRoutingFields.getRecnoZX();                                              //e.g. "196"
+ *  }
+ *
+ * Usage Example (straight from the body bytes, e.g. HttpRequestParser.getBody()):
+ *  jsonRoutingFields.scan(bodyBytes);
+ */
+
+import java.nio.charset.Charset;
+
+
+public class JsonRoutingFields {
+
+    // Constants...
+    public static final String KEY_BANNERPURPOSE = "bannerpurpose";
+    public static final String KEY_RECNO_ZX = "recno_zx";
+    public static final String KEY_COMMAND = "command";
+    public static final String KEY_UUID = "uuid";
+    public static final String KEY_PREFIX_BANNERMESSAGE = "bannermessage";                          //legacy message requests carry "bannermessages" (we accept any key starting with this)
+
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+
+    // Local stuff...
+    private CharSequence json;                                                                      //what's being scanned (the text itself, or utf8Bytes)
+    private final Utf8Bytes utf8Bytes = new Utf8Bytes();                                            //reused view of body bytes being scanned
+    private int pos;
+
+    private boolean isObject;
+    private String bannerPurpose;
+    private String recnoZX;
+    private String command;
+    private String uuid;
+    private boolean hasBannerMessage;
+
+
+    /** Constructor */
+    public JsonRoutingFields() {
+        reset();
+    }
+
+
+    /*============================================================================================*/
+    /* Main Methods */
+
+    /** Scan the given JSON text for our routing fields.
+     * @return Whether it was a well-formed JSON object (fields found before any malformed part are still available either way).
+     */
+    public boolean scan(String json) {
+        reset();
+        return scanJson(json);
+    }
+
+    /** Scan the given UTF-8 encoded JSON bytes for our routing fields (only the values we keep get decoded).
+     * @return Whether it was a well-formed JSON object (fields found before any malformed part are still available either way).
+     */
+    public boolean scan(byte[] jsonBytes) {
+        reset();
+        if (jsonBytes == null) {
+            return false;
+        }
+        utf8Bytes.bytes = jsonBytes;
+        try {
+            return scanJson(utf8Bytes);
+        } finally {
+            utf8Bytes.bytes = null;
+        }
+    }
+
+    private boolean scanJson(CharSequence json) {
+        this.json = json;
+
+        if (json == null) {
+            return false;
+        }
+
+        try {
+            skipWhitespace();
+            if (!consume('{')) {
+                return false;
+            }
+            isObject = true;
+
+            skipWhitespace();
+            if (consume('}')) {
+                return true;
+            }
+
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                if (key == null) return false;
+
+                skipWhitespace();
+                if (!consume(':')) return false;
+                skipWhitespace();
+
+                if (KEY_BANNERPURPOSE.equals(key)) {
+                    bannerPurpose = readScalar();
+                    if (bannerPurpose == null && !skipValue()) return false;
+                } else if (KEY_RECNO_ZX.equals(key)) {
+                    recnoZX = readScalar();
+                    if (recnoZX == null && !skipValue()) return false;
+                } else if (KEY_COMMAND.equals(key)) {
+                    command = readScalar();
+                    if (command == null && !skipValue()) return false;
+                } else if (KEY_UUID.equals(key)) {
+                    uuid = readScalar();
+                    if (uuid == null && !skipValue()) return false;
+                } else {
+                    if (key.startsWith(KEY_PREFIX_BANNERMESSAGE)) {
+                        hasBannerMessage = true;
+                    }
+                    if (!skipValue()) return false;
+                }
+
+                skipWhitespace();
+                if (consume(',')) continue;
+                return consume('}');
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Ran off the end of truncated input
+            return false;
+        } catch (NumberFormatException e) {
+            // Bad unicode escape
+            return false;
+        } finally {
+            this.json = null;
+        }
+    }
+
+    /** Forget everything from the last scan. */
+    public void reset() {
+        this.json = null;
+        this.pos = 0;
+        this.isObject = false;
+        this.bannerPurpose = null;
+        this.recnoZX = null;
+        this.command = null;
+        this.uuid = null;
+        this.hasBannerMessage = false;
+    }
+
+
+    /*============================================================================================*/
+    /* Tokenizing Methods */
+
+    private void skipWhitespace() {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') break;
+            pos++;
+        }
+    }
+
+    private boolean consume(char c) {
+        if (pos < json.length() && json.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /** Read a string token (at the current position) and return its unescaped value, or null if there isn't one. */
+    private String readString() {
+        if (!consume('"')) return null;
+
+        int start = pos;
+        StringBuilder sb = null;                                                                    //only needed if there are escapes
+
+        while (true) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                String ret = (sb == null) ? json.subSequence(start, pos).toString() : sb.append(json.subSequence(start, pos)).toString();
+                pos++;
+                return ret;
+            }
+            if (c == '\\') {
+                if (sb == null) sb = new StringBuilder();
+                sb.append(json.subSequence(start, pos));
+                char e = json.charAt(pos + 1);
+                switch (e) {
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        sb.append((char) Integer.parseInt(json.subSequence(pos + 2, pos + 6).toString(), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(e); break;                                                   //covers \" \\ and \/
+                }
+                pos += 2;
+                start = pos;
+                continue;
+            }
+            pos++;
+        }
+    }
+
+    /** Read a scalar value (string, number, true/false/null) as text, or return null (without moving) if the value is an object or array (or missing). */
+    private String readScalar() {
+        char c = json.charAt(pos);
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            return null;
+        }
+        int start = pos;
+        while (pos < json.length()) {
+            c = json.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\r' || c == '\n') break;
+            pos++;
+        }
+        return (pos > start) ? json.subSequence(start, pos).toString() : null;
+    }
+
+    /** Skip over whatever value is at the current position (including whole nested objects/arrays).
+     * @return Whether a value was there to skip.
+     */
+    private boolean skipValue() {
+        char c = json.charAt(pos);
+        if (c == '"') {
+            return readStringSkip();
+        }
+        if (c != '{' && c != '[') {
+            return readScalar() != null;
+        }
+
+        // Nested object/array: just track depth, minding strings (which may contain brackets)
+        int depth = 0;
+        while (true) {
+            c = json.charAt(pos);
+            if (c == '"') {
+                if (!readStringSkip()) return false;
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    pos++;
+                    return true;
+                }
+            }
+            pos++;
+        }
+    }
+
+    /** Like readString, but without building the value. */
+    private boolean readStringSkip() {
+        if (!consume('"')) return false;
+        while (true) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                pos++;
+                return true;
+            }
+            pos += (c == '\\') ? 2 : 1;
+        }
+    }
+
+
+    /** Lets the tokenizer walk UTF-8 bytes as if they were text.
+     * Each byte reads as one char (structural characters are all ASCII), and only a sub-sequence being kept is actually decoded. */
+    private static class Utf8Bytes implements CharSequence {
+        byte[] bytes;
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, start, end - start, CHARSET_UTF8);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, CHARSET_UTF8);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Getter Methods */
+
+    /** Whether the last scanned text started as a JSON object. */
+    public boolean isObject() {
+        return isObject;
+    }
+
+    public String getBannerPurpose() {
+        return bannerPurpose;
+    }
+
+    public String getRecnoZX() {
+        return recnoZX;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getUUID() {
+        return uuid;
+    }
+
+    /** Whether the top-level object has a bannermessage(s) key (as legacy message requests do). */
+    public boolean hasBannerMessage() {
+        return hasBannerMessage;
+    }
+}
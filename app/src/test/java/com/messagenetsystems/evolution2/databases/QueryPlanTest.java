@@ -0,0 +1,355 @@
+package com.messagenetsystems.evolution2.databases;
+
+/* QueryPlanTest
+ * Plain-JVM checks that the DAO queries on the pipeline tables are served by an index, not by scanning the whole table.
+ *
+ * The schema is the one Room exports for OmniDatabase (its newest app/schemas JSON), created in an in-memory SQLite database.
+ * Each DAO's @Query strings are read out of its source (string literals and Constants.Database references, joined with "+"),
+ * so what's checked is exactly what Room compiles. Every query then gets EXPLAIN QUERY PLAN, and each step on a table must be
+ * a SEARCH or SCAN using an index (or the integer primary key), with no temporary b-tree for sorting.
+ * Queries that read or delete a whole table by design are listed in WHOLE_TABLE_QUERIES, and skipped.
+ *
+ * DEV-NOTE...
+ *  This needs the SQLite JDBC driver (org.xerial:sqlite-jdbc) on the unit-test classpath, and the schema JSON, which Room
+ *  exports on build. Paths are tried relative to the app module (as Gradle runs unit tests) and then to the project root.
+ */
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class QueryPlanTest {
+
+    private static final String SCHEMA_DIRECTORY = "schemas/com.messagenetsystems.evolution2.databases.OmniDatabase";
+    private static final String SOURCE_DIRECTORY = "src/main/java/com/messagenetsystems/evolution2/databases";
+    private static final String CONSTANTS_DATABASE_CLASS = "com.messagenetsystems.evolution2.Constants$Database";
+
+    // DAO method names whose queries read or delete the whole table by design (so there's no index to use)
+    private static final Set<String> WHOLE_TABLE_QUERIES = new HashSet<String>(Arrays.asList(
+            "MessageDao.getAllRecords",
+            "MessageDao.deleteAll",
+            "ReceivedMessageDao.getAllReceivedMessages",
+            "ReceivedMessageDao.getAllProcessedReceivedMessages",                                   //(processed ones are most of the table, so scanning is cheaper)
+            "ReceivedMessageDao.getAllReceivedMessagesContainingJSON",                              //(a LIKE search through the JSON)
+            "ReceivedMessageDao.getAllReceivedMessagesWithMatchingWholeJSON",                       //(de-duplication is by message_json_hash now)
+            "ReceivedMessageDao.countReceivedMessagesWithMatchingWholeJSON",
+            "ReceivedRequestDao.getAllReceivedRequests",
+            "ReceivedRequestDao.getAllProcessedReceivedRequests"                                    //(processed ones are most of the table, so scanning is cheaper)
+    ));
+
+    // DAO method names whose queries take the MIN or MAX of the integer primary key, which SQLite plans as a bare "SEARCH table"
+    // (elsewhere, that's also how it plans MIN or MAX of a column without an index, which is really a scan)
+    private static final Set<String> PRIMARY_KEY_MIN_MAX_QUERIES = new HashSet<String>(Arrays.asList(
+            "MessageDao.getLatestChangeSeq"
+    ));
+
+    private static final Pattern BIND_PARAMETER = Pattern.compile(":\\w+");
+    private static final Pattern METHOD_NAME = Pattern.compile("\\s*(?:@\\w+\\s*)*[\\w<>\\[\\], ]+?\\s+(\\w+)\\s*\\(");
+
+    private static Connection connection;
+
+
+    /*============================================================================================*/
+    /* Setup */
+
+    @BeforeClass
+    public static void createSchema() throws Exception {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+
+        JSONObject database = new JSONObject(readFile(newestSchemaFile())).getJSONObject("database");
+        JSONArray entities = database.getJSONArray("entities");
+        Statement statement = connection.createStatement();
+        for (int i = 0; i < entities.length(); i++) {
+            JSONObject entity = entities.getJSONObject(i);
+            String tableName = entity.getString("tableName");
+            statement.execute(entity.getString("createSql").replace("${TABLE_NAME}", tableName));
+
+            JSONArray indices = entity.optJSONArray("indices");
+            for (int j = 0; indices != null && j < indices.length(); j++) {
+                statement.execute(indices.getJSONObject(j).getString("createSql").replace("${TABLE_NAME}", tableName));
+            }
+        }
+        statement.close();
+    }
+
+    @AfterClass
+    public static void closeConnection() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Query plans */
+
+    @Test
+    public void messageQueriesUseIndexes() throws Exception {
+        assertQueriesUseIndexes("MessageDao", "messages/MessageDao.java");
+    }
+
+    @Test
+    public void receivedMessageQueriesUseIndexes() throws Exception {
+        assertQueriesUseIndexes("ReceivedMessageDao", "receivedMessages/ReceivedMessageDao.java");
+    }
+
+    @Test
+    public void receivedRequestQueriesUseIndexes() throws Exception {
+        assertQueriesUseIndexes("ReceivedRequestDao", "receivedRequests/ReceivedRequestDao.java");
+    }
+
+    @Test
+    public void listedQueriesAreStillThere() throws Exception {
+        Set<String> queryNames = new HashSet<String>();
+        queryNames.addAll(prefixed("MessageDao", readQueries("messages/MessageDao.java")).keySet());
+        queryNames.addAll(prefixed("ReceivedMessageDao", readQueries("receivedMessages/ReceivedMessageDao.java")).keySet());
+        queryNames.addAll(prefixed("ReceivedRequestDao", readQueries("receivedRequests/ReceivedRequestDao.java")).keySet());
+
+        for (String name : WHOLE_TABLE_QUERIES) {
+            assertTrue(name + " is gone (take it off WHOLE_TABLE_QUERIES)", queryNames.contains(name));
+        }
+        for (String name : PRIMARY_KEY_MIN_MAX_QUERIES) {
+            assertTrue(name + " is gone (take it off PRIMARY_KEY_MIN_MAX_QUERIES)", queryNames.contains(name));
+        }
+    }
+
+    private static void assertQueriesUseIndexes(String daoName, String daoSourcePath) throws Exception {
+        Map<String, String> queries = prefixed(daoName, readQueries(daoSourcePath));
+        assertFalse("No @Query found in " + daoSourcePath, queries.isEmpty());
+
+        List<String> failures = new ArrayList<String>();
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            if (WHOLE_TABLE_QUERIES.contains(query.getKey())) {
+                continue;
+            }
+
+            List<String> plan = explainQueryPlan(query.getValue());
+            String problem = findPlanProblem(plan, PRIMARY_KEY_MIN_MAX_QUERIES.contains(query.getKey()));
+            if (problem != null) {
+                failures.add(query.getKey() + ": " + problem + "\n    " + query.getValue() + "\n    " + plan);
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            fail(failures.size() + " quer" + (failures.size() == 1 ? "y doesn't" : "ies don't") + " use an index...\n" + join(failures));
+        }
+    }
+
+    /** @return What's wrong with the plan, or null if every table step uses an index. */
+    private static String findPlanProblem(List<String> plan, boolean isPrimaryKeyMinMax) {
+        boolean hasTableStep = false;
+
+        for (String step : plan) {
+            if (step.startsWith("USE TEMP B-TREE")) {
+                return "sorts with a temporary b-tree";
+            }
+            if ((!step.startsWith("SCAN ") && !step.startsWith("SEARCH ")) || step.startsWith("SCAN CONSTANT ROW")) {
+                continue;   //(e.g. "SCALAR SUBQUERY 1", "LIST SUBQUERY 1")
+            }
+            hasTableStep = true;
+            if (isPrimaryKeyMinMax && step.startsWith("SEARCH ") && !step.contains(" USING ")) {
+                continue;
+            }
+            if (!step.contains(" USING INDEX ")
+                    && !step.contains(" USING COVERING INDEX ")
+                    && !step.contains(" USING INTEGER PRIMARY KEY ")
+                    && !step.contains(" USING PRIMARY KEY ")) {
+                return "\"" + step + "\" doesn't use an index";
+            }
+        }
+
+        return hasTableStep ? null : "has no SEARCH or SCAN step";
+    }
+
+    /** @return The detail of each step of the query's plan (bind parameters left unbound, as Room prepares them). */
+    private static List<String> explainQueryPlan(String sql) throws SQLException {
+        List<String> ret = new ArrayList<String>();
+
+        PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + BIND_PARAMETER.matcher(sql).replaceAll("?"));
+        int parameterCount = statement.getParameterMetaData().getParameterCount();
+        for (int i = 1; i <= parameterCount; i++) {
+            statement.setNull(i, java.sql.Types.NULL);
+        }
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()) {
+            ret.add(resultSet.getString("detail"));
+        }
+        resultSet.close();
+        statement.close();
+
+        return ret;
+    }
+
+
+    /*============================================================================================*/
+    /* Reading the schema and the DAO sources */
+
+    private static File newestSchemaFile() {
+        File directory = findFile(SCHEMA_DIRECTORY);
+        assertNotNull("No exported Room schema found for OmniDatabase (Room exports it to " + SCHEMA_DIRECTORY + " on build)", directory);
+
+        File ret = null;
+        int retVersion = -1;
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            String name = files[i].getName();
+            if (name.matches("\\d+\\.json") && Integer.parseInt(name.substring(0, name.indexOf('.'))) > retVersion) {
+                ret = files[i];
+                retVersion = Integer.parseInt(name.substring(0, name.indexOf('.')));
+            }
+        }
+        assertNotNull("No schema JSON in " + directory, ret);
+        return ret;
+    }
+
+    /** @return The DAO's @Query strings, by the name of the method each is on (in source order). */
+    private static Map<String, String> readQueries(String daoSourcePath) throws Exception {
+        File file = findFile(SOURCE_DIRECTORY + "/" + daoSourcePath);
+        assertNotNull("Can't find " + daoSourcePath, file);
+        String source = readFile(file);
+
+        Map<String, String> ret = new LinkedHashMap<String, String>();
+        int at = 0;
+        while ((at = source.indexOf("@Query(", at)) >= 0) {
+            int end = findClosingParenthesis(source, at + "@Query".length());
+            String sql = evaluateStringExpression(source.substring(at + "@Query(".length(), end));
+
+            Matcher matcher = METHOD_NAME.matcher(source);
+            assertTrue("No method after @Query at " + at + " in " + daoSourcePath, matcher.find(end + 1));
+            String methodName = matcher.group(1);
+            assertFalse("Two @Query methods named " + methodName + " in " + daoSourcePath, ret.containsKey(methodName));
+
+            ret.put(methodName, sql);
+            at = end;
+        }
+
+        return ret;
+    }
+
+    /** @return Position of the parenthesis closing the one at the specified position (skipping any in string literals). */
+    private static int findClosingParenthesis(String source, int openAt) {
+        int depth = 0;
+        for (int i = openAt; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '"') {
+                i = findClosingQuote(source, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unbalanced parentheses from " + openAt);
+    }
+
+    private static int findClosingQuote(String source, int openAt) {
+        for (int i = openAt + 1; i < source.length(); i++) {
+            if (source.charAt(i) == '\\') {
+                i++;
+            } else if (source.charAt(i) == '"') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string from " + openAt);
+    }
+
+    /** Evaluate an annotation value of string literals and Constants.Database references, joined with "+". */
+    private static String evaluateStringExpression(String expression) throws Exception {
+        StringBuilder ret = new StringBuilder();
+
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c) || c == '+') {
+                i++;
+            } else if (c == '"') {
+                int end = findClosingQuote(expression, i);
+                ret.append(expression.substring(i + 1, end).replace("\\\"", "\"").replace("\\\\", "\\"));
+                i = end + 1;
+            } else if (expression.startsWith("Constants.Database.", i)) {
+                int end = i + "Constants.Database.".length();
+                while (end < expression.length() && Character.isJavaIdentifierPart(expression.charAt(end))) {
+                    end++;
+                }
+                String fieldName = expression.substring(i + "Constants.Database.".length(), end);
+                ret.append(Class.forName(CONSTANTS_DATABASE_CLASS).getField(fieldName).get(null));
+                i = end;
+            } else {
+                throw new IllegalArgumentException("Can't evaluate @Query value: " + expression);
+            }
+        }
+
+        return ret.toString();
+    }
+
+    private static Map<String, String> prefixed(String daoName, Map<String, String> queries) {
+        Map<String, String> ret = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            ret.put(daoName + "." + query.getKey(), query.getValue());
+        }
+        return ret;
+    }
+
+    /** @return The file at the specified path, relative to the app module or else the project root (or null if it's at neither). */
+    private static File findFile(String path) {
+        File file = new File(path);
+        if (!file.exists()) {
+            file = new File("app", path);
+        }
+        return file.exists() ? file : null;
+    }
+
+    private static String readFile(File file) throws IOException {
+        StringBuilder ret = new StringBuilder();
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            Reader reader = new InputStreamReader(inputStream, "UTF-8");
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                ret.append(buffer, 0, n);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return ret.toString();
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder ret = new StringBuilder();
+        for (String line : lines) {
+            ret.append(line).append('\n');
+        }
+        return ret.toString();
+    }
+}
@@ -0,0 +1,264 @@
+package com.messagenetsystems.evolution2.databases.messages;
+
+/* MessageMemoryStoreTest
+ * Plain-JVM unit tests for MessageMemoryStore (records, and its change-feed: order, no gaps, pruning, and concurrent appends).
+ *
+ * The change-feed's contract is what MessageRawDataProcessor depends on: every insert and delete shows up once, in the order
+ * it happened, with seqs that have no gaps, so a consumer may move its cursor past whatever it has read without ever skipping
+ * something that shows up later.
+ */
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class MessageMemoryStoreTest {
+
+    private static final int WRITER_COUNT = 4;
+    private static final int RECORDS_PER_WRITER = 5000;
+    private static final int CONSUMER_BATCH_LIMIT = 200;
+
+
+    /*============================================================================================*/
+    /* Records */
+
+    @Test
+    public void duplicateUUIDsAreRejected() {
+        MessageMemoryStore messageStore = new MessageMemoryStore(null);
+        String uuid = UUID.randomUUID().toString();
+
+        messageStore.addRecord(uuid, "{\"msgtext\":\"first\"}", Message.STATUS_NEW, new Date(1000));
+        messageStore.addRecord(uuid, "{\"msgtext\":\"second\"}", Message.STATUS_NEW, new Date(2000));
+
+        assertEquals(1, messageStore.size());
+        assertEquals("{\"msgtext\":\"first\"}", messageStore.findAllRecords().get(0).getMsgJSON());
+        assertEquals(1, messageStore.findLatestChangeSeq());
+    }
+
+    @Test
+    public void recordsAreCopiedInAndOut() throws Exception {
+        MessageMemoryStore messageStore = new MessageMemoryStore(null);
+        UUID uuid = UUID.randomUUID();
+        messageStore.addRecord(uuid.toString(), "{}", Message.STATUS_NEW, new Date(1000));
+
+        messageStore.findAllRecords().get(0).setStatus(Message.STATUS_HOUSEKEEP_DELETE);
+        assertEquals(Message.STATUS_NEW, messageStore.findAllRecords().get(0).getStatus());
+
+        messageStore.updateJsonMetaStatusFor(uuid, new JSONObject("{\"msgtext\":\"edited\"}"), new JSONObject(), Message.STATUS_COPIED_FROM_RAM);
+        Message message = messageStore.findAllRecords().get(0);
+        assertEquals(Message.STATUS_COPIED_FROM_RAM, message.getStatus());
+        assertEquals("{\"msgtext\":\"edited\"}", message.getMsgJSON());
+        assertNull(message.getMsgBin());
+        assertEquals("updates aren't inserts or deletes, so they aren't in the change-feed", 1, messageStore.findLatestChangeSeq());
+    }
+
+    @Test
+    public void expirationIsOnlySetOnce() {
+        MessageMemoryStore messageStore = new MessageMemoryStore(null);
+        UUID uuid = UUID.randomUUID();
+        messageStore.addRecord(uuid.toString(), "{}", Message.STATUS_NEW, new Date(1000));
+        assertEquals(Long.MAX_VALUE, messageStore.findNextExpiresAtMs());
+
+        messageStore.updateExpiresAtFor(uuid, 5000);
+        messageStore.updateExpiresAtFor(uuid, 3000);
+        messageStore.updateExpiresAtFor(UUID.randomUUID(), 1000);
+
+        assertEquals(5000, messageStore.findNextExpiresAtMs());
+        assertEquals("only the expiration that was actually set bumps the schedule", 1, messageStore.getExpiryScheduleVersion());
+
+        messageStore.deleteAll_expiredAsOf(4999);
+        assertEquals(1, messageStore.size());
+        messageStore.deleteAll_expiredAsOf(5000);
+        assertEquals(0, messageStore.size());
+    }
+
+
+    /*============================================================================================*/
+    /* Change-Feed */
+
+    @Test
+    public void changeFeedRecordsInsertsAndDeletesInOrder() {
+        MessageMemoryStore messageStore = new MessageMemoryStore(null);
+        String a = UUID.randomUUID().toString();
+        String b = UUID.randomUUID().toString();
+        assertEquals(0, messageStore.findLatestChangeSeq());
+        assertTrue(messageStore.findChangesAfter(0, 100).isEmpty());
+
+        messageStore.addRecord(a, "{}", Message.STATUS_NEW, new Date(1000));
+        messageStore.addRecord(b, "{}", Message.STATUS_NEW, new Date(2000));
+        messageStore.updateStatusFor(a, Message.STATUS_HOUSEKEEP_DELETE);
+        messageStore.deleteAll_withStatus(Message.STATUS_HOUSEKEEP_DELETE);
+        messageStore.addRecord(a, "{}", Message.STATUS_NEW, new Date(3000));
+        messageStore.deleteAll();
+
+        List<MessageChange> changes = messageStore.findChangesAfter(0, 100);
+        assertEquals(6, changes.size());
+        assertEquals(6, messageStore.findLatestChangeSeq());
+        assertChange(changes.get(0), 1, a, MessageChange.CHANGE_INSERTED);
+        assertChange(changes.get(1), 2, b, MessageChange.CHANGE_INSERTED);
+        assertChange(changes.get(2), 3, a, MessageChange.CHANGE_DELETED);
+        assertChange(changes.get(3), 4, a, MessageChange.CHANGE_INSERTED);
+
+        //deleteAll goes in ID order (b was added before the re-added a)
+        assertChange(changes.get(4), 5, b, MessageChange.CHANGE_DELETED);
+        assertChange(changes.get(5), 6, a, MessageChange.CHANGE_DELETED);
+    }
+
+    @Test
+    public void findChangesAfterHonorsItsCursorAndLimit() {
+        MessageMemoryStore messageStore = new MessageMemoryStore(null);
+        for (int i = 0; i < 10; i++) {
+            messageStore.addRecord(UUID.randomUUID().toString(), "{}", Message.STATUS_NEW, new Date(i));
+        }
+
+        List<MessageChange> changes = messageStore.findChangesAfter(3, 4);
+        assertEquals(4, changes.size());
+        for (int i = 0; i < changes.size(); i++) {
+            assertEquals(4 + i, changes.get(i).getSeq());
+        }
+        assertTrue(messageStore.findChangesAfter(10, 100).isEmpty());
+        assertEquals(10, messageStore.findChangesAfter(0, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void pruningDropsConsumedChangesButNeverReusesSeqs() {
+        MessageMemoryStore messageStore = new MessageMemoryStore(null);
+        for (int i = 0; i < 5; i++) {
+            messageStore.addRecord(UUID.randomUUID().toString(), "{}", Message.STATUS_NEW, new Date(i));
+        }
+
+        messageStore.pruneChangesThrough(2);
+        List<MessageChange> changes = messageStore.findChangesAfter(0, 100);
+        assertEquals(3, changes.size());
+        assertEquals(3, changes.get(0).getSeq());
+
+        messageStore.pruneChangesThrough(2);                                                        //(again, which does nothing)
+        messageStore.pruneChangesThrough(1);                                                        //(behind what's already pruned, which does nothing)
+        assertEquals(3, messageStore.findChangesAfter(0, 100).size());
+
+        messageStore.pruneChangesThrough(Long.MAX_VALUE);
+        assertTrue(messageStore.findChangesAfter(0, 100).isEmpty());
+        assertEquals("the latest seq survives pruning, like AUTOINCREMENT's", 5, messageStore.findLatestChangeSeq());
+
+        String uuid = UUID.randomUUID().toString();
+        messageStore.addRecord(uuid, "{}", Message.STATUS_NEW, new Date(5));
+        changes = messageStore.findChangesAfter(5, 100);
+        assertEquals(1, changes.size());
+        assertChange(changes.get(0), 6, uuid, MessageChange.CHANGE_INSERTED);
+    }
+
+    /** Writers add (and delete half of) their own records, while a consumer reads the feed as MessageRawDataProcessor does
+     * (moving its cursor past each batch, and pruning behind it); it must see every change exactly once, with no gaps,
+     * and each record's insert before its delete. */
+    @Test
+    public void concurrentAppendsAreSeenInOrderWithoutGaps() throws InterruptedException {
+        final MessageMemoryStore messageStore = new MessageMemoryStore(null);
+        final AtomicBoolean isWritingDone = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<MessageChange> consumed = new ArrayList<MessageChange>();
+
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int w = 0; w < WRITER_COUNT; w++) {
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < RECORDS_PER_WRITER; i++) {
+                            UUID uuid = UUID.randomUUID();
+                            messageStore.addRecord(uuid.toString(), "{}", Message.STATUS_NEW, new Date(i));
+                            if (i % 2 == 0) {
+                                messageStore.deleteRecord(uuid);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    long cursor = 0;
+                    while (true) {
+                        boolean isLastPass = isWritingDone.get();                                   //(read before the feed, so a last pass sees everything)
+                        List<MessageChange> changes = messageStore.findChangesAfter(cursor, CONSUMER_BATCH_LIMIT);
+                        for (MessageChange change : changes) {
+                            assertEquals("A gap (or reordering) in the change-feed", cursor + 1, change.getSeq());
+                            cursor = change.getSeq();
+                            consumed.add(change);
+                        }
+                        messageStore.pruneChangesThrough(cursor);
+                        if (changes.isEmpty() && isLastPass) {
+                            return;
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+
+        consumer.start();
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        try {
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        } finally {
+            isWritingDone.set(true);
+            consumer.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        final int insertCount = WRITER_COUNT * RECORDS_PER_WRITER;
+        final int deleteCount = WRITER_COUNT * ((RECORDS_PER_WRITER + 1) / 2);
+        assertEquals(insertCount + deleteCount, consumed.size());
+        assertEquals(insertCount + deleteCount, messageStore.findLatestChangeSeq());
+        assertEquals(insertCount - deleteCount, messageStore.size());
+
+        Map<String, Integer> lastChangeTypeByUUID = new HashMap<String, Integer>();
+        for (MessageChange change : consumed) {
+            Integer lastChangeType = lastChangeTypeByUUID.put(change.getMsgUUID(), change.getChangeType());
+            if (change.getChangeType() == MessageChange.CHANGE_INSERTED) {
+                assertNull("Inserted twice", lastChangeType);
+            } else {
+                assertEquals("Deleted before it was inserted", Integer.valueOf(MessageChange.CHANGE_INSERTED), lastChangeType);
+            }
+        }
+        assertEquals(insertCount, lastChangeTypeByUUID.size());
+        for (Message message : messageStore.findAllRecords()) {
+            assertEquals(Integer.valueOf(MessageChange.CHANGE_INSERTED), lastChangeTypeByUUID.get(message.getMsgUUID()));
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Helpers */
+
+    private static void assertChange(MessageChange change, long seq, String msgUUID, int changeType) {
+        assertEquals(seq, change.getSeq());
+        assertEquals(msgUUID, change.getMsgUUID());
+        assertEquals(changeType, change.getChangeType());
+    }
+}
@@ -0,0 +1,346 @@
+package com.messagenetsystems.evolution2.databases.messages;
+
+/* MessagePayloadCodecTest
+ * Plain-JVM unit tests for MessagePayloadCodec (round-trips, the pinned version 1 layout, and malformed or unknown encodings).
+ *
+ * DEV-NOTE...
+ *  These only use the parts of org.json that Android's copy and the reference one share, so they run against either.
+ */
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class MessagePayloadCodecTest {
+
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int TIMED_ROUNDS = 20;
+    private static final int DECODES_PER_ROUND = 500;
+
+    /*============================================================================================*/
+    /* Round-trips */
+
+    @Test
+    public void roundTripsEveryValueType() throws JSONException {
+        JSONObject nested = new JSONObject();
+        nested.put("msgtext", "Fire drill \u2603 \ud83d\ude00");
+        nested.put("dbb_priority", 7);
+
+        JSONArray array = new JSONArray();
+        array.put(nested);
+        array.put("two");
+        array.put(3);
+        array.put(JSONObject.NULL);
+        array.put(new JSONArray());
+
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("bannerpurpose", "newmessage");
+        jsonObject.put("bannermessages", array);
+        jsonObject.put("int", -123456);
+        jsonObject.put("long", 5000000000L);
+        jsonObject.put("double", 1.5);
+        jsonObject.put("true", true);
+        jsonObject.put("false", false);
+        jsonObject.put("null", JSONObject.NULL);
+        jsonObject.put("empty_object", new JSONObject());
+        jsonObject.put("empty_string", "");
+
+        assertRoundTrips(jsonObject);
+    }
+
+    @Test
+    public void roundTripsDecimalStringsExactlyAsWritten() throws JSONException {
+        String[] strings = {"196", "0", "-12", "007", "-0", "+5", "1.0", "1e3", " 1", "-",
+                "123456789012345678", "1234567890123456789", "99999999999999999999999"};
+
+        for (String string : strings) {
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("recno_zx", string);
+
+            JSONObject decoded = MessagePayloadCodec.decode(MessagePayloadCodec.encode(jsonObject));
+            assertEquals(string, String.class, decoded.get("recno_zx").getClass());
+            assertEquals(string, decoded.get("recno_zx"));
+        }
+    }
+
+    @Test
+    public void roundTripsKeysThatAreNotInTheDictionary() throws JSONException {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("some_future_field", "x");
+        jsonObject.put("", "empty key");
+        jsonObject.put("\u00fcber", 1);
+        jsonObject.put("msgtext", "known key");
+
+        assertRoundTrips(jsonObject);
+    }
+
+    @Test
+    public void encodesDictionaryKeysSmallerThanText() throws JSONException {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("dbb_record_voice_at_launch_selection", "1");
+        jsonObject.put("flasherDurationSecondsDone", 12);
+
+        assertTrue(MessagePayloadCodec.encode(jsonObject).length < jsonObject.toString().length() / 4);
+    }
+
+
+    /*============================================================================================*/
+    /* Schema versions */
+
+    @Test
+    public void startsWithSchemaVersion() throws JSONException {
+        assertEquals(MessagePayloadCodec.SCHEMA_VERSION, MessagePayloadCodec.encode(new JSONObject())[0]);
+    }
+
+    @Test
+    public void keepsVersion1LayoutAndDictionary() throws JSONException {
+        // Records already on flash depend on these exact bytes (see the class's DEV-NOTE), so this must never change
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("password", "196");
+
+        assertArrayEquals(new byte[] {1, 8, 1, 1, 7, (byte) 0x88, 0x03}, MessagePayloadCodec.encode(jsonObject));
+
+        assertEquals("password", singleKeyOf(decodeVersion1WithKey(1)));
+        assertEquals("recno_zx", singleKeyOf(decodeVersion1WithKey(15)));
+        assertEquals("date_launch", singleKeyOf(decodeVersion1WithKey(52)));
+        assertEquals("msgTextScrollsDone", singleKeyOf(decodeVersion1WithKey(63)));
+        assertEquals("flasherDurationSecondsDone", singleKeyOf(decodeVersion1WithKey(64)));
+    }
+
+    @Test
+    public void rejectsKeyIndexesBeyondWhatItsVersionKnows() {
+        assertDecodeFails(new byte[] {1, 8, 1, 65, 0});
+        assertDecodeFails(new byte[] {1, 8, 1, (byte) 0xFF, 0x7F, 0});
+    }
+
+    @Test
+    public void rejectsUnknownSchemaVersions() {
+        assertDecodeFails(new byte[] {0, 8, 0});
+        assertDecodeFails(new byte[] {(byte) (MessagePayloadCodec.SCHEMA_VERSION + 1), 8, 0});
+        assertDecodeFails(new byte[] {-1, 8, 0});
+    }
+
+
+    /*============================================================================================*/
+    /* Malformed encodings */
+
+    @Test
+    public void rejectsEmptyEncodings() {
+        assertDecodeFails(null);
+        assertDecodeFails(new byte[0]);
+    }
+
+    @Test
+    public void rejectsTopLevelValuesOtherThanObjects() {
+        assertDecodeFails(new byte[] {1, 9, 0});
+        assertDecodeFails(new byte[] {1, 0});
+    }
+
+    @Test
+    public void rejectsUnknownValueTags() {
+        assertDecodeFails(new byte[] {1, 8, 1, 1, 42});
+    }
+
+    @Test
+    public void rejectsEveryTruncation() throws JSONException {
+        JSONObject nested = new JSONObject();
+        nested.put("msgtext", "hello");
+        nested.put("double", 2.25);
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("bannermessages", new JSONArray().put(nested).put(5000000000L));
+        jsonObject.put("inline_key", "value");
+
+        byte[] encoded = MessagePayloadCodec.encode(jsonObject);
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(encoded, 0, truncated, 0, length);
+            assertDecodeFails(truncated);
+        }
+    }
+
+    @Test
+    public void rejectsLengthsLongerThanTheEncoding() {
+        assertDecodeFails(new byte[] {1, 8, 1, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        assertDecodeFails(new byte[] {1, 8, 1, 0, 0, 6, 100, 'a'});
+    }
+
+    @Test
+    public void rejectsOverlongVarints() {
+        assertDecodeFails(new byte[] {1, 8, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0});
+    }
+
+
+    /*============================================================================================*/
+    /* Measurements */
+
+    /** Bytes on flash and decode time of the codec, against the JSON text it replaces (and parsing that text), for payloads
+     * like the ones the server actually sends (see backend/support_evolution.c and backend/smajax.c). */
+    @Test
+    public void measuresDecodeTimeAndSizeAgainstJson() throws Exception {
+        JSONObject[] payloads = {
+                bannerMessagesRequest(1, false),
+                bannerMessagesRequest(1, true),
+                bannerMessagesRequest(5, true),
+                new JSONObject("{\"msgTextScrollsDone\":3,\"flasherDurationSecondsDone\":12}")};
+        String[] descriptions = {
+                "1 message (support_evolution.c example)",
+                "1 message (all smajax.c fields)",
+                "5 messages (all smajax.c fields)",
+                "metadata"};
+
+        System.out.println("MessagePayloadCodec vs JSON text, bytes and best decode time of " + TIMED_ROUNDS + " rounds of " + DECODES_PER_ROUND + ":");
+        for (int i = 0; i < payloads.length; i++) {
+            final String text = payloads[i].toString();
+            final byte[] textBytes = text.getBytes(CHARSET_UTF8);
+            final byte[] encoded = MessagePayloadCodec.encode(payloads[i]);
+            assertRoundTrips(payloads[i]);
+
+            long codecNanos = bestDecodeNanos(new Decoder() {
+                @Override
+                public JSONObject decode() throws JSONException {
+                    return MessagePayloadCodec.decode(encoded);
+                }
+            });
+            long jsonNanos = bestDecodeNanos(new Decoder() {
+                @Override
+                public JSONObject decode() throws JSONException {
+                    return new JSONObject(new String(textBytes, CHARSET_UTF8));
+                }
+            });
+
+            System.out.println(String.format(Locale.US, "  %-40s %5d bytes vs %5d (%3.0f%%), %7.2f us vs %7.2f us (%.1fx)",
+                    descriptions[i], encoded.length, textBytes.length, 100.0 * encoded.length / textBytes.length,
+                    codecNanos / 1e3, jsonNanos / 1e3, (double) jsonNanos / codecNanos));
+
+            assertTrue(descriptions[i], encoded.length < textBytes.length);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    private interface Decoder {
+        JSONObject decode() throws JSONException;
+    }
+
+    /** @return The best (least noisy) time per decode, of TIMED_ROUNDS rounds after WARMUP_ROUNDS. */
+    private static long bestDecodeNanos(Decoder decoder) throws JSONException {
+        long bestNanos = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < DECODES_PER_ROUND; i++) {
+                assertTrue(decoder.decode().length() > 0);
+            }
+            if (round >= WARMUP_ROUNDS) {
+                bestNanos = Math.min(bestNanos, (System.nanoTime() - startNanos) / DECODES_PER_ROUND);
+            }
+        }
+        return bestNanos;
+    }
+
+    /** @return A bannermessages request, as the server sends it, with the provided number of messages.
+     * Without all fields, each message is the example in backend/support_evolution.c; with them, it has everything smajax.c writes. */
+    private static JSONObject bannerMessagesRequest(int messageCount, boolean isWithAllFields) throws JSONException {
+        JSONArray bannerMessages = new JSONArray();
+        for (int i = 0; i < messageCount; i++) {
+            JSONObject bannerMessage = new JSONObject("{\"signseqnum\":" + (i + 1) + ",\"dbb_rec_dtsec\":\"1188659674\","
+                    + "\"recno_zx\":\"" + (345 + i) + "\",\"recno_template\":\"305\",\"dbb_duration\":50,\"msgtype\":\"ANNOUNCEMENT\","
+                    + "\"msgtext\":\"Test " + (i + 2) + " |X|Admin System\",\"msgdetails\":\"\",\"dbb_audio_groups\":[],"
+                    + "\"dbb_playtime_duration\":0,\"dbb_flasher_duration\":0,\"dbb_light_signal\":\" \",\"dbb_light_duration\":0,"
+                    + "\"dbb_audio_tts_gain\":0,\"dbb_flash_new_message\":\"N\",\"dbb_visible_time\":\"0\",\"dbb_visible_frequency\":\"A\","
+                    + "\"dbb_visible_duration\":\"0\",\"dbb_record_voice_at_launch_selection\":0,\"dbb_record_voice_at_launch\":\"N\","
+                    + "\"dbb_audio_recorded_gain\":0,\"dbb_pa_delivery_mode\":\"0\",\"dbb_audio_repeat\":\"1\",\"dbb_speed\":4,"
+                    + "\"dbb_priority\":200,\"dbb_expire_priority\":200,\"dbb_priority_duration\":50,\"multimediatype\":\"Message\","
+                    + "\"dbb_multimedia_audio_gain\":0,\"webpageurl\":\"FALSE\"}");
+            if (isWithAllFields) {
+                bannerMessage.put("msgtext", "Severe weather warning for the north campus. All students and staff please move away from windows " + i);
+                bannerMessage.put("dsi_audio_group_name", new JSONArray().put("ALL BUILDINGS").put("NORTH CAMPUS"));
+                bannerMessage.put("dbb_audio_groups", new JSONArray().put("12").put("17"));
+                bannerMessage.put("dbb_launch_pin", "1234");
+                bannerMessage.put("dss_gender", "F");
+            }
+            bannerMessages.put(bannerMessage);
+        }
+
+        JSONObject request = new JSONObject();
+        request.put("password", "196");
+        if (isWithAllFields) {
+            request.put("bannerpurpose", "newmessage");
+            request.put("hardware_deviceid", "00:1B:44:11:3A:B7");
+        }
+        request.put("bannermessages", bannerMessages);
+        return request;
+    }
+
+    private static void assertRoundTrips(JSONObject jsonObject) throws JSONException {
+        assertJsonEquals(jsonObject, MessagePayloadCodec.decode(MessagePayloadCodec.encode(jsonObject)));
+    }
+
+    private static void assertDecodeFails(byte[] bytes) {
+        try {
+            MessagePayloadCodec.decode(bytes);
+            fail("Decoded a malformed encoding");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+
+    private static JSONObject decodeVersion1WithKey(int keyCode) throws JSONException {
+        return MessagePayloadCodec.decode(new byte[] {1, 8, 1, (byte) keyCode, 0});
+    }
+
+    private static String singleKeyOf(JSONObject jsonObject) {
+        assertEquals(1, jsonObject.length());
+        return jsonObject.keys().next();
+    }
+
+    /** Compare two JSON values: same keys (in the same order), same elements, and same value types and values. */
+    private static void assertJsonEquals(Object expected, Object actual) throws JSONException {
+        if (expected instanceof JSONObject) {
+            assertTrue(actual instanceof JSONObject);
+            JSONObject expectedObject = (JSONObject) expected;
+            JSONObject actualObject = (JSONObject) actual;
+            List<String> expectedKeys = keysOf(expectedObject);
+            assertEquals(expectedKeys, keysOf(actualObject));
+            for (String key : expectedKeys) {
+                assertJsonEquals(expectedObject.get(key), actualObject.get(key));
+            }
+        } else if (expected instanceof JSONArray) {
+            assertTrue(actual instanceof JSONArray);
+            JSONArray expectedArray = (JSONArray) expected;
+            JSONArray actualArray = (JSONArray) actual;
+            assertEquals(expectedArray.length(), actualArray.length());
+            for (int i = 0; i < expectedArray.length(); i++) {
+                assertJsonEquals(expectedArray.get(i), actualArray.get(i));
+            }
+        } else {
+            assertEquals(expected.getClass(), actual.getClass());
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static List<String> keysOf(JSONObject jsonObject) {
+        List<String> keys = new ArrayList<String>();
+        Iterator<String> iterator = jsonObject.keys();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,154 @@
+package com.messagenetsystems.evolution2.databases.receivedMessages;
+
+/* ReceivedMessageMemoryStoreTest
+ * Plain-JVM unit tests for ReceivedMessageMemoryStore (and the ReceivedRequestMemoryStore it flags): promotions, duplicate
+ * rejection by content hash, what's found as unprocessed, and concurrent promotions.
+ */
+
+import com.messagenetsystems.evolution2.databases.messages.MessageMemoryStore;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequest;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestMemoryStore;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ReceivedMessageMemoryStoreTest {
+
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+    private static final int PROMOTER_COUNT = 4;
+    private static final int DISTINCT_MESSAGE_COUNT = 2000;
+
+
+    @Test
+    public void promotionFlagsItsRequest() {
+        ReceivedRequestMemoryStore receivedRequestStore = new ReceivedRequestMemoryStore();
+        ReceivedMessageMemoryStore receivedMessageStore = new ReceivedMessageMemoryStore(receivedRequestStore);
+        addRequest(receivedRequestStore, "{\"msgtext\":\"one\"}");
+        addRequest(receivedRequestStore, "{\"msgtext\":\"two\"}");
+
+        List<ReceivedRequest> receivedRequests = receivedRequestStore.findUnprocessedReceivedRequests();
+        assertEquals(2, receivedRequests.size());
+        receivedMessageStore.addRecordPromotedFrom(receivedRequests.get(0).getRequestBody(), receivedRequests.get(0), ReceivedRequest.STATUS_FORWARDED);
+
+        receivedRequests = receivedRequestStore.findUnprocessedReceivedRequests();
+        assertEquals(1, receivedRequests.size());
+        assertEquals("{\"msgtext\":\"two\"}", receivedRequests.get(0).getRequestBody());
+
+        List<ReceivedMessage> receivedMessages = receivedMessageStore.findUnprocessedReceivedMessages();
+        assertEquals(1, receivedMessages.size());
+        ReceivedMessage receivedMessage = receivedMessages.get(0);
+        assertEquals("{\"msgtext\":\"one\"}", receivedMessage.getMessageJson());
+        assertEquals(ReceivedMessage.computeMessageJsonHash("{\"msgtext\":\"one\"}"), receivedMessage.getMessageJsonHash());
+        assertEquals(ReceivedMessage.STATUS_NEW, receivedMessage.getStatus());
+        assertEquals(Integer.valueOf(1), receivedMessage.getReceivedRequestId());
+        assertNotNull(receivedMessage.getMessageUUID());
+    }
+
+    @Test
+    public void duplicateJsonIsRejectedButItsRequestIsStillFlagged() {
+        ReceivedRequestMemoryStore receivedRequestStore = new ReceivedRequestMemoryStore();
+        ReceivedMessageMemoryStore receivedMessageStore = new ReceivedMessageMemoryStore(receivedRequestStore);
+        addRequest(receivedRequestStore, "{\"msgtext\":\"same\"}");
+        addRequest(receivedRequestStore, "{\"msgtext\":\"same\"}");
+
+        for (ReceivedRequest receivedRequest : receivedRequestStore.findUnprocessedReceivedRequests()) {
+            receivedMessageStore.addRecordPromotedFrom(receivedRequest.getRequestBody(), receivedRequest, ReceivedRequest.STATUS_FORWARDED);
+        }
+
+        assertEquals(1, receivedMessageStore.size());
+        assertEquals(2, receivedRequestStore.size());
+        assertTrue(receivedRequestStore.findUnprocessedReceivedRequests().isEmpty());
+    }
+
+    @Test
+    public void promotionToMessagesMakesItProcessed() {
+        ReceivedRequestMemoryStore receivedRequestStore = new ReceivedRequestMemoryStore();
+        ReceivedMessageMemoryStore receivedMessageStore = new ReceivedMessageMemoryStore(receivedRequestStore);
+        MessageMemoryStore messageStore = new MessageMemoryStore(receivedMessageStore);
+        receivedMessageStore.addRecordPromotedFrom("{\"msgtext\":\"one\"}", new ReceivedRequest(), ReceivedRequest.STATUS_FORWARDED);
+
+        ReceivedMessage receivedMessage = receivedMessageStore.findUnprocessedReceivedMessages().get(0);
+        assertNull("a request without an ID (e.g. from the journal) has nothing to link to", receivedMessage.getReceivedRequestId());
+        messageStore.addRecordPromotedFrom(receivedMessage, ReceivedMessage.STATUS_FORWARDED);
+
+        assertTrue(receivedMessageStore.findUnprocessedReceivedMessages().isEmpty());
+        ReceivedMessage processed = receivedMessageStore.findAllReceivedMessages().get(0);
+        assertEquals(ReceivedMessage.STATUS_FORWARDED, processed.getStatus());
+        assertNotNull(processed.getRequestProcessedAtMs());
+        assertEquals(receivedMessage.getMessageUUID(), messageStore.findAllRecords().get(0).getMsgUUID());
+        assertEquals(Integer.valueOf(receivedMessage.getId()), messageStore.findAllRecords().get(0).getReceivedMessageId());
+    }
+
+    /** Promoters race to promote the same messages; each distinct one must end up once (with its own ID), and every request flagged. */
+    @Test
+    public void concurrentPromotionsKeepOneOfEachMessage() throws InterruptedException {
+        final ReceivedRequestMemoryStore receivedRequestStore = new ReceivedRequestMemoryStore();
+        final ReceivedMessageMemoryStore receivedMessageStore = new ReceivedMessageMemoryStore(receivedRequestStore);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int p = 0; p < PROMOTER_COUNT; p++) {
+            for (int i = 0; i < DISTINCT_MESSAGE_COUNT; i++) {
+                addRequest(receivedRequestStore, "{\"msgtext\":\"message " + i + "\"}");
+            }
+        }
+        final List<ReceivedRequest> receivedRequests = receivedRequestStore.findUnprocessedReceivedRequests();
+
+        List<Thread> promoters = new ArrayList<Thread>();
+        for (int p = 0; p < PROMOTER_COUNT; p++) {
+            final int promoter = p;
+            promoters.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = promoter; i < receivedRequests.size(); i += PROMOTER_COUNT) {
+                            ReceivedRequest receivedRequest = receivedRequests.get(i);
+                            receivedMessageStore.addRecordPromotedFrom(receivedRequest.getRequestBody(), receivedRequest, ReceivedRequest.STATUS_FORWARDED);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        for (Thread promoter : promoters) {
+            promoter.start();
+        }
+        for (Thread promoter : promoters) {
+            promoter.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(receivedRequestStore.findUnprocessedReceivedRequests().isEmpty());
+
+        List<ReceivedMessage> receivedMessages = receivedMessageStore.findUnprocessedReceivedMessages();
+        assertEquals(DISTINCT_MESSAGE_COUNT, receivedMessages.size());
+        assertEquals(DISTINCT_MESSAGE_COUNT, receivedMessageStore.size());
+        Set<Integer> ids = new HashSet<Integer>();
+        Set<String> messageJsons = new HashSet<String>();
+        for (ReceivedMessage receivedMessage : receivedMessages) {
+            assertTrue(ids.add(receivedMessage.getId()));
+            assertTrue(messageJsons.add(receivedMessage.getMessageJson()));
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Helpers */
+
+    private static void addRequest(ReceivedRequestMemoryStore receivedRequestStore, String body) {
+        receivedRequestStore.addRecord("POST", "/message", "HTTP/1.1", "curl/7.35.0", "application/json", body.getBytes(CHARSET_UTF8));
+    }
+}
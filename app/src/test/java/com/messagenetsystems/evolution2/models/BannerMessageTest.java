@@ -0,0 +1,350 @@
+package com.messagenetsystems.evolution2.models;
+
+/* BannerMessageTest
+ * Unit tests for BannerMessage's binding of message JSON (bindFields), against the getter-per-field code it replaced, and a
+ * measurement of how many BannerMessages can be constructed per second, before and after BannerMessageFields.
+ *
+ * DEV-NOTE...
+ *  BannerMessageFields reads every field name from string resources, so these give it a Resources that returns each
+ *  R.string field's own name (the keys in these tests come from the same table, so they don't depend on strings.xml).
+ *  BannerMessage logs through android.util.Log, and Resources is constructed from the unit-test android.jar, so these
+ *  need testOptions.unitTests.returnDefaultValues.
+ *  In the "before" measurement, resource lookups are just map lookups (not the AssetManager lookups they are on a device),
+ *  so it understates how much the old constructor cost there; and it's today's constructor plus the old one's extra work
+ *  (so it binds twice, though the second pass is a small part of it).
+ */
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.messagenetsystems.evolution2.OmniApplication;
+import com.messagenetsystems.evolution2.R;
+import com.messagenetsystems.evolution2.utilities.DatetimeUtils;
+import com.messagenetsystems.evolution2.utilities.PlatformUtilsMessageNet;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class BannerMessageTest {
+
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int TIMED_ROUNDS = 10;
+    private static final int CONSTRUCTIONS_PER_ROUND = 500;
+
+    // The fields that bindFields (and the old getters) set, by name
+    private static final String[] BOUND_FIELD_NAMES = {
+            "recno", "dbb_rec_dtsec", "dbb_duration", "msgType", "msgText", "msgDetails", "dbb_playtime_duration",
+            "dbb_flasher_duration", "dbb_light_signal", "dbb_light_duration", "dbb_audio_tts_gain", "dbb_flash_new_message",
+            "dbb_visible_time", "dbb_visible_frequency", "dbb_visible_duration", "dbb_record_voice_at_launch_selection",
+            "dbb_record_voice_at_launch", "dbb_audio_recorded_gain", "dbb_pa_delivery_mode", "dbb_audio_repeat", "dbb_speed",
+            "dbb_priority", "dbb_expire_priority", "dbb_priority_duration", "dbb_page_priority_at_launch",
+            "dbb_priority_tolerance", "multimediatype", "webpageurl", "dsi_audio_group_name", "dbb_audio_groups",
+            "dbb_multimedia_audio_gain", "sequence_number", "dbb_launch_pin", "dss_gender"};
+
+    private static final JSONArray UNSET_JSONARRAY = new JSONArray();
+
+    private static Context context;
+    private static BannerMessageFields fields;
+
+
+    @BeforeClass
+    public static void setUpResources() throws Exception {
+        final Map<Integer, String> namesById = new HashMap<Integer, String>();
+        for (Field field : R.string.class.getFields()) {
+            namesById.put(field.getInt(null), field.getName());
+        }
+
+        final Resources resources = new Resources(null, null, null) {
+            @Override
+            public String getString(int id) {
+                return namesById.get(id);
+            }
+        };
+        context = new OmniApplication() {
+            @Override
+            public Resources getResources() {
+                return resources;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+        };
+        fields = BannerMessageFields.getInstance(context);
+    }
+
+
+    /*============================================================================================*/
+    /* Binding */
+
+    @Test
+    public void bindsTheSameAsTheOldGetters_wellTypedValues() throws Exception {
+        JSONObject msg = supportEvolutionExample();
+        msg.put(fields.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH, 250);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE, 10);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW, new JSONArray().put("ALL BUILDINGS"));
+        msg.put(fields.BANNMSGFIELDNAME_JSON_AUDIOGROUPS, new JSONArray().put("12").put("17"));
+        msg.put(fields.BANNMSGFIELDNAME_JSON_LAUNCHPIN, "1234");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_LAUNCHGENDER, "F");
+
+        assertBindsTheSameAsTheOldGetters(msg);
+
+        BannerMessage bannerMessage = newBlankBannerMessage();
+        bannerMessage.bindFields(msg);
+        assertEquals(345, bannerMessage.recno);
+        assertEquals("Test 2 |X|Admin System", bannerMessage.msgText);
+        assertEquals(Long.valueOf(50), bannerMessage.dbb_priority_duration);
+        assertEquals(250, bannerMessage.dbb_page_priority_at_launch);
+        assertEquals("F", bannerMessage.dss_gender);
+    }
+
+    @Test
+    public void bindsTheSameAsTheOldGetters_wrongTypedValues() throws Exception {
+        Object[] values = {"abc", "345", "", " ", 3.7, -1, 5000000000L, true, JSONObject.NULL,
+                new JSONArray(), new JSONArray().put(1), new JSONObject()};
+
+        for (Object value : values) {
+            JSONObject msg = new JSONObject();
+            for (String key : boundKeys()) {
+                msg.put(key, value);
+            }
+            assertBindsTheSameAsTheOldGetters(msg);
+        }
+    }
+
+    @Test
+    public void bindsTheSameAsTheOldGetters_missingAndUnknownKeys() throws Exception {
+        assertBindsTheSameAsTheOldGetters(new JSONObject());
+
+        JSONObject msg = new JSONObject();
+        msg.put(fields.BANNMSGFIELDNAME_JSON_MSGTEXT, "only this");
+        msg.put("some_future_field", 1);
+        msg.put(fields.JSONFIELDNAME_LAUNCHDATETIME_DEVICE, "not bound");
+        msg.put(fields.MM_TYPE_VIDEO, "a constant, not a key");
+        assertBindsTheSameAsTheOldGetters(msg);
+    }
+
+    @Test
+    public void bindsEveryKeyTheOldGettersRead() throws Exception {
+        List<String> boundKeys = boundKeys();
+        assertEquals(BOUND_FIELD_NAMES.length, boundKeys.size());
+        for (String key : boundKeys) {
+            assertTrue(key, fields.getFieldId(key) != BannerMessageFields.FIELD_UNKNOWN);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Measurements */
+
+    @Test
+    public void measuresConstructionsPerSecond() throws Exception {
+        final JSONObject msg = supportEvolutionExample();
+        final int[] oldResourceIds = resourceIdsOfFieldsTable();
+
+        double constructionsPerSecond_before = bestConstructionsPerSecond(new Runnable() {
+            @Override
+            public void run() {
+                constructTheOldWay(msg, oldResourceIds);
+            }
+        });
+        double constructionsPerSecond_after = bestConstructionsPerSecond(new Runnable() {
+            @Override
+            public void run() {
+                new BannerMessage(context, BannerMessage.LOG_METHOD_LOGCAT, msg);
+            }
+        });
+
+        System.out.println(String.format(Locale.US, "BannerMessage constructions per second (best of %d rounds of %d):", TIMED_ROUNDS, CONSTRUCTIONS_PER_ROUND));
+        System.out.println(String.format(Locale.US, "  before (%d resource lookups, 2 new utilities, a getter per field): %.0f", oldResourceIds.length, constructionsPerSecond_before));
+        System.out.println(String.format(Locale.US, "  after (shared BannerMessageFields, bindFields):                   %.0f (%.1fx)", constructionsPerSecond_after, constructionsPerSecond_after / constructionsPerSecond_before));
+
+        assertTrue(constructionsPerSecond_after > constructionsPerSecond_before);
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    /** Bind the provided JSON with bindFields and with the old getters (each into a blank BannerMessage), and compare every bound field. */
+    private static void assertBindsTheSameAsTheOldGetters(JSONObject msg) throws Exception {
+        BannerMessage viaBindFields = newBlankBannerMessage();
+        BannerMessage viaOldGetters = newBlankBannerMessage();
+
+        viaBindFields.bindFields(msg);
+        bindWithOldGetters(viaOldGetters, msg);
+
+        for (String fieldName : BOUND_FIELD_NAMES) {
+            Field field = BannerMessage.class.getField(fieldName);
+            assertEquals(fieldName + " from " + msg, field.get(viaOldGetters), field.get(viaBindFields));
+        }
+    }
+
+    /** @return A BannerMessage whose bound fields all have values that no JSON in these tests binds (so a field that's
+     * left alone can't be mistaken for one that was set to its type's default). */
+    private static BannerMessage newBlankBannerMessage() throws Exception {
+        BannerMessage bannerMessage = new BannerMessage(context, BannerMessage.LOG_METHOD_LOGCAT, new JSONObject());
+        for (String fieldName : BOUND_FIELD_NAMES) {
+            Field field = BannerMessage.class.getField(fieldName);
+            if (field.getType() == int.class) {
+                field.setInt(bannerMessage, -7);
+            } else if (field.getType() == Long.class) {
+                field.set(bannerMessage, -7L);
+            } else if (field.getType() == String.class) {
+                field.set(bannerMessage, "unset");
+            } else {
+                field.set(bannerMessage, UNSET_JSONARRAY);
+            }
+        }
+        return bannerMessage;
+    }
+
+    /** Bind the provided JSON's values to the provided BannerMessage's fields, the way BannerMessage's constructor used to
+     * (a lookup per field, whether the JSON has it or not, with its value read by the same typed getter). */
+    private static void bindWithOldGetters(BannerMessage m, JSONObject msg) {
+        try {m.recno = msg.getInt(fields.BANNMSGFIELDNAME_JSON_ZXRECNO);} catch (JSONException e) {}
+        try {m.dbb_rec_dtsec = msg.getString(fields.BANNMSGFIELDNAME_JSON_RECDTSEC);} catch (JSONException e) {}
+        try {m.dbb_duration = msg.getInt(fields.BANNMSGFIELDNAME_JSON_DURATION);} catch (JSONException e) {}
+        try {m.msgType = msg.getString(fields.BANNMSGFIELDNAME_JSON_MSGTYPE);} catch (JSONException e) {}
+        try {m.msgText = msg.getString(fields.BANNMSGFIELDNAME_JSON_MSGTEXT);} catch (JSONException e) {}
+        try {m.msgDetails = msg.getString(fields.BANNMSGFIELDNAME_JSON_MSGDETAILS);} catch (JSONException e) {}
+        try {m.dbb_playtime_duration = msg.getLong(fields.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION);} catch (JSONException e) {}
+        try {m.dbb_flasher_duration = msg.getInt(fields.BANNMSGFIELDNAME_JSON_FLASHERDURATION);} catch (JSONException e) {}
+        try {m.dbb_light_signal = msg.getString(fields.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL);} catch (JSONException e) {}
+        try {m.dbb_light_duration = msg.getInt(fields.BANNMSGFIELDNAME_JSON_LIGHTDURATION);} catch (JSONException e) {}
+        try {m.dbb_audio_tts_gain = msg.getInt(fields.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN);} catch (JSONException e) {}
+        try {m.dbb_flash_new_message = msg.getString(fields.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE);} catch (JSONException e) {}
+        try {m.dbb_visible_time = msg.getString(fields.BANNMSGFIELDNAME_JSON_VISIBLETIME);} catch (JSONException e) {}
+        try {m.dbb_visible_frequency = msg.getString(fields.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY);} catch (JSONException e) {}
+        try {m.dbb_visible_duration = msg.getString(fields.BANNMSGFIELDNAME_JSON_VISIBLEDURATION);} catch (JSONException e) {}
+        try {m.dbb_record_voice_at_launch_selection = msg.getInt(fields.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION);} catch (JSONException e) {}
+        try {m.dbb_record_voice_at_launch = msg.getString(fields.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH);} catch (JSONException e) {}
+        try {m.dbb_audio_recorded_gain = msg.getInt(fields.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN);} catch (JSONException e) {}
+        try {m.dbb_pa_delivery_mode = msg.getString(fields.BANNMSGFIELDNAME_JSON_PADELIVERYMODE);} catch (JSONException e) {}
+        try {m.dbb_audio_repeat = msg.getString(fields.BANNMSGFIELDNAME_JSON_AUDIOREPEAT);} catch (JSONException e) {}
+        try {m.dbb_speed = msg.getInt(fields.BANNMSGFIELDNAME_JSON_SPEED);} catch (JSONException e) {}
+        try {m.dbb_priority = msg.getInt(fields.BANNMSGFIELDNAME_JSON_PRIORITY);} catch (JSONException e) {}
+        try {m.dbb_expire_priority = msg.getInt(fields.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY);} catch (JSONException e) {}
+        try {m.dbb_priority_duration = msg.getLong(fields.BANNMSGFIELDNAME_JSON_PRIORITYDURATION);} catch (JSONException e) {}
+        try {m.dbb_page_priority_at_launch = msg.getInt(fields.BANNMSGFIELDNAME_JSON_PRIORITYATLAUNCH);} catch (JSONException e) {}
+        try {m.dbb_priority_tolerance = msg.getInt(fields.BANNMSGFIELDNAME_JSON_PRIORITYTOLERANCE);} catch (JSONException e) {}
+        try {m.multimediatype = msg.getString(fields.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE);} catch (JSONException e) {}
+        try {m.webpageurl = msg.getString(fields.BANNMSGFIELDNAME_JSON_WEBPAGEURL);} catch (JSONException e) {}
+        try {m.dsi_audio_group_name = msg.getJSONArray(fields.BANNMSGFIELDNAME_JSON_AUDIOGROUPS_HW);} catch (JSONException e) {}
+        try {m.dbb_audio_groups = msg.getJSONArray(fields.BANNMSGFIELDNAME_JSON_AUDIOGROUPS);} catch (JSONException e) {}
+        try {m.dbb_multimedia_audio_gain = msg.getInt(fields.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN);} catch (JSONException e) {}
+        try {m.sequence_number = msg.getInt(fields.BANNMSGFIELDNAME_JSON_SEQNUM);} catch (JSONException e) {}
+        try {m.dbb_launch_pin = msg.getString(fields.BANNMSGFIELDNAME_JSON_LAUNCHPIN);} catch (JSONException e) {}
+        try {m.dss_gender = msg.getString(fields.BANNMSGFIELDNAME_JSON_LAUNCHGENDER);} catch (JSONException e) {}
+    }
+
+    /** Construct a BannerMessage with the work the old constructor did on every construction, on top of today's: look up
+     * every field name and constant from resources, create its own utilities, and bind with a getter per field. */
+    private static BannerMessage constructTheOldWay(JSONObject msg, int[] oldResourceIds) {
+        Resources resources = context.getResources();
+        int lookedUpLength = 0;
+        for (int resourceId : oldResourceIds) {
+            lookedUpLength += resources.getString(resourceId).length();
+        }
+        new DatetimeUtils(context.getApplicationContext(), DatetimeUtils.LOG_METHOD_FILELOGGER);
+        new PlatformUtilsMessageNet(context.getApplicationContext(), PlatformUtilsMessageNet.LOG_METHOD_FILELOGGER);
+
+        BannerMessage bannerMessage = new BannerMessage(context, BannerMessage.LOG_METHOD_LOGCAT, msg);
+        bindWithOldGetters(bannerMessage, msg);
+        bannerMessage.sequence_number += lookedUpLength - lookedUpLength;                           //(so the lookups can't be optimized away)
+        return bannerMessage;
+    }
+
+    /** @return The best (least noisy) rate of TIMED_ROUNDS rounds after WARMUP_ROUNDS. */
+    private static double bestConstructionsPerSecond(Runnable construction) {
+        long bestNanos = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < CONSTRUCTIONS_PER_ROUND; i++) {
+                construction.run();
+            }
+            if (round >= WARMUP_ROUNDS) {
+                bestNanos = Math.min(bestNanos, System.nanoTime() - startNanos);
+            }
+        }
+        return CONSTRUCTIONS_PER_ROUND / (bestNanos / 1e9);
+    }
+
+    /** @return The resource IDs of every string in BannerMessageFields (nearly everything the old constructor looked up every time). */
+    private static int[] resourceIdsOfFieldsTable() throws Exception {
+        List<Integer> resourceIds = new ArrayList<Integer>();
+        for (Field field : BannerMessageFields.class.getFields()) {
+            if (field.getType() == String.class && !Modifier.isStatic(field.getModifiers())) {
+                resourceIds.add(R.string.class.getField(field.getName()).getInt(null));
+            }
+        }
+
+        int[] ret = new int[resourceIds.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = resourceIds.get(i);
+        }
+        return ret;
+    }
+
+    /** @return The JSON keys of every bound field (from the shared table). */
+    private static List<String> boundKeys() throws Exception {
+        List<String> keys = new ArrayList<String>();
+        for (Field field : BannerMessageFields.class.getFields()) {
+            if (field.getName().startsWith("BANNMSGFIELDNAME_JSON_") && !Modifier.isStatic(field.getModifiers())) {
+                keys.add((String) field.get(fields));
+            }
+        }
+        return keys;
+    }
+
+    /** @return A banner message, like the example in backend/support_evolution.c (with the keys from the shared table). */
+    private static JSONObject supportEvolutionExample() throws JSONException {
+        JSONObject msg = new JSONObject();
+        msg.put(fields.BANNMSGFIELDNAME_JSON_SEQNUM, 1);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_RECDTSEC, "1188659674");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_ZXRECNO, "345");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_DURATION, 50);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_MSGTYPE, "ANNOUNCEMENT");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_MSGTEXT, "Test 2 |X|Admin System");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_MSGDETAILS, "");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_AUDIOGROUPS, new JSONArray());
+        msg.put(fields.BANNMSGFIELDNAME_JSON_PLAYTIMEDURATION, 0);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_FLASHERDURATION, 0);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_LIGHTSIGNAL, " ");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_LIGHTDURATION, 0);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_AUDIOTTSGAIN, 0);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_FLASHNEWMESSAGE, "N");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_VISIBLETIME, "0");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_VISIBLEFREQUENCY, "A");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_VISIBLEDURATION, "0");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCHSELECTION, 0);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_RECORDVOICEATLAUNCH, "N");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_AUDIORECORDEDGAIN, 0);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_PADELIVERYMODE, "0");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_AUDIOREPEAT, "1");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_SPEED, 4);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_PRIORITY, 200);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_EXPIREPRIORITY, 200);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_PRIORITYDURATION, 50);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_MULTIMEDIATYPE, "Message");
+        msg.put(fields.BANNMSGFIELDNAME_JSON_MMAUDIOGAIN, 0);
+        msg.put(fields.BANNMSGFIELDNAME_JSON_WEBPAGEURL, "FALSE");
+        return msg;
+    }
+}
@@ -0,0 +1,73 @@
+package com.messagenetsystems.evolution2.models;
+
+/* OmniMessageTest
+ * Unit tests for OmniMessage's delivery state carrying over to the message that replaces it (as MessageDeliverableProcessor
+ * does when a raw message's JSON changes), so its expiration doesn't start over.
+ *
+ * OmniMessage logs through android.util.Log, so these need the unit-test android.jar to return defaults
+ * (testOptions.unitTests.returnDefaultValues) rather than throw.
+ */
+
+import com.messagenetsystems.evolution2.Constants;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class OmniMessageTest {
+
+    private static final long FIRST_DELIVERY_MS = 1000000L;
+
+    @Test
+    public void replacementCarriesOverDeliveryState() {
+        UUID uuid = UUID.randomUUID();
+        OmniMessage delivered = newOmniMessage(uuid, 60);
+        delivered.setMsgFirstDeliveryBeganDate(new Date(FIRST_DELIVERY_MS));
+        delivered.setMsgTextScrollsDone(3);
+        delivered.setTtsNumberOfSpeaksDone(2);
+        delivered.setFlasherDurationSecondsDone(12);
+
+        OmniMessage replacement = newOmniMessage(uuid, 90);
+        assertEquals(OmniMessage.EXPIRES_AT_MS_NEVER, replacement.getExpiresAtMs());
+        replacement.carryOverDeliveryStateFrom(delivered);
+
+        assertEquals(new Date(FIRST_DELIVERY_MS), replacement.getMsgFirstDeliveryBeganDate());
+        assertEquals(3, replacement.getMsgTextScrollsDone());
+        assertEquals(2, replacement.getTtsNumberOfSpeaksDone());
+        assertEquals(12, replacement.getFlasherDurationSecondsDone());
+        assertEquals("expires relative to its first delivery, by its own (new) duration", FIRST_DELIVERY_MS + 90 * 1000L, replacement.getExpiresAtMs());
+    }
+
+    @Test
+    public void replacementInTheListKeepsItsExpiryScheduled() {
+        UUID uuid = UUID.randomUUID();
+        OmniMessages omniMessages = new OmniMessages(null, Constants.LOG_METHOD_LOGCAT, null);
+        OmniMessage delivered = newOmniMessage(uuid, 60);
+        delivered.setMsgFirstDeliveryBeganDate(new Date(FIRST_DELIVERY_MS));
+        omniMessages.addOmniMessage(delivered, OmniMessages.ADD_AVOIDING_DUPLICATES);
+        assertEquals(FIRST_DELIVERY_MS + 60 * 1000L, omniMessages.getNextExpiresAtMs());
+
+        OmniMessage replacement = newOmniMessage(uuid, 60);
+        replacement.carryOverDeliveryStateFrom(omniMessages.getOmniMessage(uuid, OmniMessages.GET_OMNIMESSAGE_AS_REFERENCE));
+        assertTrue(omniMessages.replaceOmniMessage(replacement));
+
+        assertEquals(FIRST_DELIVERY_MS + 60 * 1000L, omniMessages.getNextExpiresAtMs());
+    }
+
+
+    /*============================================================================================*/
+    /* Helpers */
+
+    private static OmniMessage newOmniMessage(UUID uuid, int durationSecs) {
+        OmniMessage omniMessage = new OmniMessage(null, Constants.LOG_METHOD_LOGCAT);
+        omniMessage.setMessageUUID(uuid);
+        omniMessage.setMsgText(uuid.toString());
+        omniMessage.setMsgDuration(durationSecs);
+        return omniMessage;
+    }
+}
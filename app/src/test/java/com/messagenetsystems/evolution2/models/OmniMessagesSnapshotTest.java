@@ -0,0 +1,248 @@
+package com.messagenetsystems.evolution2.models;
+
+/* OmniMessagesSnapshotTest
+ * Unit tests for OmniMessages' snapshot publishing (that every snapshot agrees with itself and with its version, however
+ * many threads are changing the list while others read it).
+ *
+ * OmniMessages and OmniMessage log through android.util.Log, so these need the unit-test android.jar to return defaults
+ * (testOptions.unitTests.returnDefaultValues) rather than throw.
+ */
+
+import com.messagenetsystems.evolution2.Constants;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class OmniMessagesSnapshotTest {
+
+    private static final int WRITER_COUNT = 3;
+    private static final int READER_COUNT = 3;
+    private static final int MESSAGES_PER_WRITER = 8;
+    private static final int CHANGES_PER_WRITER = 20000;
+
+
+    /*============================================================================================*/
+    /* Single-threaded */
+
+    @Test
+    public void everyChangePublishesTheNextVersion() {
+        OmniMessages omniMessages = newOmniMessages();
+        OmniMessage a = newOmniMessage(UUID.randomUUID(), 2);
+        OmniMessage b = newOmniMessage(UUID.randomUUID(), 5);
+        assertSame(OmniMessagesSnapshot.EMPTY, omniMessages.getSnapshot());
+
+        omniMessages.addOmniMessage(a, OmniMessages.ADD_AVOIDING_DUPLICATES);
+        omniMessages.addOmniMessage(b, OmniMessages.ADD_AVOIDING_DUPLICATES);
+        OmniMessagesSnapshot before = omniMessages.getSnapshot();
+        omniMessages.replaceOmniMessage(copyOf(a, 7));
+        omniMessages.removeOmniMessage(b);
+        OmniMessagesSnapshot after = omniMessages.getSnapshot();
+
+        assertEquals(2, before.getVersion());
+        assertEquals(2, before.size());
+        assertEquals(5, before.findHighestPriorityValue());
+        assertSame(b, before.getOmniMessage(b.getMessageUUID()));
+
+        assertEquals(4, after.getVersion());
+        assertEquals(1, after.size());
+        assertEquals(7, after.findHighestPriorityValue());
+        assertFalse(after.doesOmniMessageExist(b.getMessageUUID()));
+        assertNull(after.getOmniMessage(b.getMessageUUID()));
+    }
+
+
+    /*============================================================================================*/
+    /* Concurrent */
+
+    /** Writers change the list (recording, under its lock, what each version they publish holds) while readers check every
+     * snapshot they get for consistency, and record what each version they saw held; afterwards, the two must agree. */
+    @Test
+    public void snapshotsAgreeWithTheirVersionWhileWritersRace() throws InterruptedException {
+        final OmniMessages omniMessages = newOmniMessages();
+        final ConcurrentHashMap<Long, Long> publishedFingerprints = new ConcurrentHashMap<Long, Long>();
+        final ConcurrentHashMap<Long, Long> observedFingerprints = new ConcurrentHashMap<Long, Long>();
+        final AtomicBoolean isDone = new AtomicBoolean(false);
+        final AtomicInteger readCount = new AtomicInteger(0);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int w = 0; w < WRITER_COUNT; w++) {
+            final long seed = w;
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        write(omniMessages, new Random(seed), publishedFingerprints);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int r = 0; r < READER_COUNT; r++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        long lastVersion = -1;
+                        while (!isDone.get()) {
+                            OmniMessagesSnapshot snapshot = omniMessages.getSnapshot();
+                            assertTrue("Version went backwards", snapshot.getVersion() >= lastVersion);
+                            lastVersion = snapshot.getVersion();
+
+                            long fingerprint = checkSnapshot(snapshot);
+                            Long fingerprint_seen = observedFingerprints.putIfAbsent(snapshot.getVersion(), fingerprint);
+                            assertTrue("Version " + snapshot.getVersion() + " read differently twice",
+                                    fingerprint_seen == null || fingerprint_seen == fingerprint);
+                            readCount.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        try {
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        } finally {
+            isDone.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(WRITER_COUNT * CHANGES_PER_WRITER, omniMessages.getSnapshot().getVersion());
+        assertEquals(WRITER_COUNT * CHANGES_PER_WRITER, publishedFingerprints.size());
+        assertTrue(readCount.get() > 0);
+        for (Long version : observedFingerprints.keySet()) {
+            if (version == 0) {
+                continue;   //(EMPTY, from before any writer ran)
+            }
+            assertEquals("Version " + version + " held something other than what was published as it",
+                    publishedFingerprints.get(version), observedFingerprints.get(version));
+        }
+    }
+
+    /** Make CHANGES_PER_WRITER changes to the list, with messages of our own (so every change really changes it). */
+    private static void write(OmniMessages omniMessages, Random random, ConcurrentHashMap<Long, Long> publishedFingerprints) {
+        OmniMessage[] own = new OmniMessage[MESSAGES_PER_WRITER];
+        boolean[] isListed = new boolean[MESSAGES_PER_WRITER];
+        for (int i = 0; i < own.length; i++) {
+            own[i] = newOmniMessage(UUID.randomUUID(), 1 + random.nextInt(5));
+        }
+
+        for (int change = 0; change < CHANGES_PER_WRITER; change++) {
+            int i = random.nextInt(own.length);
+
+            synchronized (omniMessages) {
+                long versionBefore = omniMessages.getSnapshot().getVersion();
+                if (!isListed[i]) {
+                    assertTrue(omniMessages.addOmniMessage(own[i], OmniMessages.ADD_AVOIDING_DUPLICATES));
+                    isListed[i] = true;
+                } else if (random.nextBoolean()) {
+                    own[i] = copyOf(own[i], 1 + random.nextInt(5));
+                    assertTrue(omniMessages.replaceOmniMessage(own[i]));
+                } else {
+                    assertTrue(omniMessages.removeOmniMessage(own[i]));
+                    isListed[i] = false;
+                }
+
+                OmniMessagesSnapshot snapshot = omniMessages.getSnapshot();
+                assertEquals("A change didn't publish exactly one version", versionBefore + 1, snapshot.getVersion());
+                publishedFingerprints.put(snapshot.getVersion(), fingerprintOf(omniMessages));
+            }
+        }
+    }
+
+    /** Check that everything a snapshot says about itself agrees (and that iterating it never throws).
+     * @return Its fingerprint. */
+    private static long checkSnapshot(OmniMessagesSnapshot snapshot) {
+        List<OmniMessage> iterated = new ArrayList<OmniMessage>();
+        int highest = -1;
+        int lowest = -1;
+        for (OmniMessage omniMessage : snapshot) {
+            iterated.add(omniMessage);
+            assertSame(omniMessage, snapshot.getOmniMessage(omniMessage.getMessageUUID()));
+            if (highest < 0 || omniMessage.getMsgPriority() > highest) {
+                highest = omniMessage.getMsgPriority();
+            }
+            if (lowest < 0 || omniMessage.getMsgPriority() < lowest) {
+                lowest = omniMessage.getMsgPriority();
+            }
+        }
+
+        assertEquals(snapshot.size(), iterated.size());
+        assertEquals(snapshot.getOmniMessages(), iterated);
+        assertEquals(highest, snapshot.findHighestPriorityValue());
+        assertEquals(lowest, snapshot.findLowestPriorityValue());
+        for (OmniMessage omniMessage : snapshot.getOmniMessagesOfHighestPriority()) {
+            assertEquals(highest, omniMessage.getMsgPriority());
+        }
+        return fingerprintOf(iterated);
+    }
+
+    /** @return A hash of which messages (by UUID and priority) are in the list, in its order. */
+    private static long fingerprintOf(List<OmniMessage> omniMessages) {
+        long ret = 17;
+        for (OmniMessage omniMessage : omniMessages) {
+            ret = ret * 31 + omniMessage.getMessageUUID().getMostSignificantBits();
+            ret = ret * 31 + omniMessage.getMessageUUID().getLeastSignificantBits();
+            ret = ret * 31 + omniMessage.getMsgPriority();
+        }
+        return ret;
+    }
+
+
+    /*============================================================================================*/
+    /* Helpers */
+
+    private static OmniMessages newOmniMessages() {
+        return new OmniMessages(null, Constants.LOG_METHOD_LOGCAT, null);
+    }
+
+    /** @return A message with the specified UUID and priority (and its own text, since OmniMessage.equals, which the list
+     * removes by, compares content rather than UUID; real ones differ by their raw JSON). */
+    private static OmniMessage newOmniMessage(UUID uuid, int priority) {
+        OmniMessage omniMessage = new OmniMessage(null, Constants.LOG_METHOD_LOGCAT);
+        omniMessage.setMessageUUID(uuid);
+        omniMessage.setMsgText(uuid.toString());
+        omniMessage.setMsgPriority(priority);
+        return omniMessage;
+    }
+
+    /** @return A rebuilt message (same UUID) with the specified priority, as MessageDeliverableProcessor replaces them with. */
+    private static OmniMessage copyOf(OmniMessage omniMessage, int priority) {
+        OmniMessage ret = new OmniMessage(omniMessage);
+        ret.setMsgPriority(priority);
+        return ret;
+    }
+}
@@ -0,0 +1,283 @@
+package com.messagenetsystems.evolution2.models;
+
+/* UUIDIndexedListTest
+ * Plain-JVM unit tests for UUIDIndexedList (that every way of changing the list keeps its UUID index in step).
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class UUIDIndexedListTest {
+
+    private final Item a = new Item(UUID.randomUUID(), "a");
+    private final Item b = new Item(UUID.randomUUID(), "b");
+    private final Item c = new Item(UUID.randomUUID(), "c");
+    private final Item d = new Item(UUID.randomUUID(), "d");
+
+
+    /*============================================================================================*/
+    /* Adding */
+
+    @Test
+    public void addsAreIndexed() {
+        ItemList list = new ItemList();
+
+        list.add(a);
+        list.add(0, b);
+        list.addIfAbsent(c);
+        list.addIfAbsent(c);
+
+        assertEquals(Arrays.asList(b, a, c), list);
+        assertIndexMatches(list, a, b, c, d);
+        assertEquals(2, list.findListPosition(c.uuid));
+        assertTrue(list.changeCount >= 3);                                                          //at least once per change (see onListChanged)
+    }
+
+    @Test
+    public void bulkAddsAreIndexed() {
+        ItemList list = new ItemList();
+
+        list.addAll(Arrays.asList(a, b));
+        list.addAll(0, Collections.singletonList(c));
+        list.addAllAbsent(Arrays.asList(a, d));
+
+        assertEquals(Arrays.asList(c, a, b, d), list);
+        assertIndexMatches(list, a, b, c, d);
+    }
+
+    @Test
+    public void itemsWithoutUUIDsAreListedButNotIndexed() {
+        ItemList list = new ItemList();
+        Item noUUID = new Item(null, "none");
+
+        list.add(noUUID);
+        list.add(null);
+        list.add(a);
+
+        assertEquals(3, list.size());
+        assertIndexMatches(list, a, b);
+        assertTrue(list.remove(noUUID));
+        assertIndexMatches(list, a, b);
+    }
+
+
+    /*============================================================================================*/
+    /* Replacing */
+
+    @Test
+    public void setWithSameUUIDReplacesIndexedItem() {
+        ItemList list = listOf(a, b);
+        Item newerA = new Item(a.uuid, "a2");
+
+        assertSame(a, list.set(0, newerA));
+
+        assertSame(newerA, list.getIndexed(a.uuid));
+        assertIndexMatches(list, a, b);
+    }
+
+    @Test
+    public void setWithOtherUUIDReindexesBoth() {
+        ItemList list = listOf(a, b);
+
+        list.set(0, c);
+
+        assertEquals(Arrays.asList(c, b), list);
+        assertIndexMatches(list, a, b, c);
+    }
+
+
+    /*============================================================================================*/
+    /* Removing */
+
+    @Test
+    public void removesAreUnindexed() {
+        ItemList list = listOf(a, b, c, d);
+
+        assertSame(b, list.remove(1));
+        assertTrue(list.remove(d));
+        assertFalse(list.remove(d));
+
+        assertEquals(Arrays.asList(a, c), list);
+        assertIndexMatches(list, a, b, c, d);
+        assertEquals(-1, list.findListPosition(d.uuid));
+    }
+
+    @Test
+    public void bulkRemovesAreUnindexed() {
+        ItemList list = listOf(a, b, c, d);
+
+        list.removeAll(Collections.singletonList(a));
+        assertIndexMatches(list, a, b, c, d);
+
+        list.retainAll(Arrays.asList(b, c));
+        assertEquals(Arrays.asList(b, c), list);
+        assertIndexMatches(list, a, b, c, d);
+    }
+
+    @Test
+    public void readersNeverMissItemsThatStayDuringBulkRemoves() throws InterruptedException {
+        final ItemList list = listOf(a, b);
+        final Item[] churn = new Item[50];
+        for (int i = 0; i < churn.length; i++) {
+            churn[i] = new Item(UUID.randomUUID(), "churn" + i);
+        }
+        final AtomicBoolean isDone = new AtomicBoolean(false);
+        final AtomicInteger missCount = new AtomicInteger(0);
+
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while (!isDone.get()) {
+                    if (list.getIndexed(a.uuid) == null || !list.isIndexed(b.uuid)) {
+                        missCount.incrementAndGet();
+                    }
+                }
+            }
+        };
+        reader.start();
+        try {
+            for (int round = 0; round < 2000; round++) {
+                list.addAll(Arrays.asList(churn));
+                list.removeAll(Arrays.asList(churn));
+                list.addAll(Arrays.asList(churn));
+                list.retainAll(Arrays.asList(a, b));
+            }
+        } finally {
+            isDone.set(true);
+            reader.join();
+        }
+
+        assertEquals(0, missCount.get());
+        assertIndexMatches(list, a, b, churn[0]);
+    }
+
+    @Test
+    public void clearEmptiesIndex() {
+        ItemList list = listOf(a, b);
+
+        list.clear();
+
+        assertTrue(list.isEmpty());
+        assertIndexMatches(list, a, b);
+    }
+
+    @Test
+    public void removingOneOfTwoDuplicatesIndexesTheOther() {
+        ItemList list = listOf(a, b);
+        Item duplicateA = new Item(a.uuid, "a-duplicate");
+        list.add(duplicateA);
+        assertSame(a, list.getIndexed(a.uuid));
+
+        list.remove(a);
+
+        assertSame(duplicateA, list.getIndexed(a.uuid));
+        assertIndexMatches(list, a, b);
+    }
+
+
+    /*============================================================================================*/
+    /* Views */
+
+    @Test
+    public void subListIsReadOnly() {
+        ItemList list = listOf(a, b, c);
+        List<Item> subList = list.subList(0, 2);
+
+        assertEquals(Arrays.asList(a, b), subList);
+        try {
+            subList.clear();
+            fail("Changed the list through a subList");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(3, list.size());
+        assertIndexMatches(list, a, b, c);
+    }
+
+    @Test
+    public void iteratingSeesSnapshotWhileListChanges() {
+        ItemList list = listOf(a, b);
+
+        Iterator<Item> iterator = list.iterator();
+        list.remove(a);
+        list.add(c);
+
+        assertSame(a, iterator.next());
+        assertSame(b, iterator.next());
+        assertFalse(iterator.hasNext());
+        assertIndexMatches(list, a, b, c);
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    private ItemList listOf(Item... items) {
+        ItemList list = new ItemList();
+        list.addAll(Arrays.asList(items));
+        return list;
+    }
+
+    /** Assert that each of the provided items' UUIDs is indexed exactly when (and as) an item with that UUID is in the list. */
+    private static void assertIndexMatches(ItemList list, Item... items) {
+        Set<UUID> listedUUIDs = new HashSet<UUID>();
+        for (Item item : list) {
+            if (item != null && item.uuid != null) {
+                listedUUIDs.add(item.uuid);
+            }
+        }
+
+        for (Item item : items) {
+            if (!listedUUIDs.contains(item.uuid)) {
+                assertFalse(item.name, list.isIndexed(item.uuid));
+                assertNull(item.name, list.getIndexed(item.uuid));
+                continue;
+            }
+            Item indexed = list.getIndexed(item.uuid);
+            assertTrue(item.name, list.isIndexed(item.uuid));
+            assertEquals(item.name, item.uuid, indexed.uuid);
+            assertTrue(item.name, list.findItemListPosition(indexed) >= 0);
+        }
+    }
+
+    private static class Item {
+        final UUID uuid;
+        final String name;
+
+        Item(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
+        }
+    }
+
+    private static class ItemList extends UUIDIndexedList<Item> {
+        int changeCount = 0;
+
+        @Override
+        protected UUID getUUIDOf(Item item) {
+            return item.uuid;
+        }
+
+        @Override
+        protected void onListChanged() {
+            changeCount++;
+        }
+    }
+}
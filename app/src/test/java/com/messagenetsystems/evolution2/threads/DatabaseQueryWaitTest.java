@@ -0,0 +1,192 @@
+package com.messagenetsystems.evolution2.threads;
+
+/* DatabaseQueryWaitTest
+ * Plain-JVM microbenchmark of what it costs a DB client's caller to wait for a query: the old way (a new thread per query,
+ * busy-spun on until it's done) against the current way (a Callable on AppExecutors.databaseIO, parked on with Future.get).
+ * Measured as the calling thread's own CPU time per query, and wall time per query.
+ *
+ * Two kinds of query are timed: a real one (SQLite, in memory, reading every row of a messages-like table), which is all CPU,
+ * and one that only waits (standing in for a query that's waiting on flash).
+ *
+ * DEV-NOTE...
+ *  The real query needs org.xerial:sqlite-jdbc as a test dependency (as QueryPlanTest does).
+ *  AppExecutors creates a Handler for its main-thread executor, so this needs testOptions.unitTests.returnDefaultValues.
+ */
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class DatabaseQueryWaitTest {
+
+    private static final int ROW_COUNT = 2000;
+    private static final int WARMUP_QUERIES = 50;
+    private static final int TIMED_QUERIES = 200;
+    private static final long SIMULATED_FLASH_WAIT_MS = 5;
+
+    private static Connection connection;
+
+
+    @BeforeClass
+    public static void setUpDatabase() throws Exception {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE messages (id INTEGER PRIMARY KEY AUTOINCREMENT, msg_uuid TEXT, msg_json TEXT, status INTEGER, received_at_ms INTEGER)");
+        statement.close();
+
+        PreparedStatement insert = connection.prepareStatement("INSERT INTO messages (msg_uuid, msg_json, status, received_at_ms) VALUES (?, ?, ?, ?)");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            insert.setString(1, UUID.randomUUID().toString());
+            insert.setString(2, "{\"bannermessages\":[{\"recno_zx\":\"" + i + "\",\"msgtext\":\"Test " + i + " |X|Admin System\",\"dbb_priority\":200}]}");
+            insert.setInt(3, 2);
+            insert.setLong(4, 1000L * i);
+            insert.executeUpdate();
+        }
+        insert.close();
+    }
+
+    @AfterClass
+    public static void tearDownDatabase() throws Exception {
+        connection.close();
+    }
+
+
+    @Test
+    public void measuresCallerCpuTimePerQuery() throws Exception {
+        Callable<Integer> readAllRows = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return readAllRows();
+            }
+        };
+        Callable<Integer> waitOnFlash = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                Thread.sleep(SIMULATED_FLASH_WAIT_MS);
+                return ROW_COUNT;
+            }
+        };
+
+        Measurement spinning_read = measure(readAllRows, true);
+        Measurement parking_read = measure(readAllRows, false);
+        Measurement spinning_wait = measure(waitOnFlash, true);
+        Measurement parking_wait = measure(waitOnFlash, false);
+
+        System.out.println("Database query wait, caller CPU / wall time per query (" + TIMED_QUERIES + " queries each):");
+        System.out.println("  read " + ROW_COUNT + " rows, spin-wait (old):  " + spinning_read);
+        System.out.println("  read " + ROW_COUNT + " rows, Future.get (new): " + parking_read);
+        System.out.println("  " + SIMULATED_FLASH_WAIT_MS + " ms flash wait, spin-wait (old):  " + spinning_wait);
+        System.out.println("  " + SIMULATED_FLASH_WAIT_MS + " ms flash wait, Future.get (new): " + parking_wait);
+
+        //a spinning caller burns about as much CPU as the wait lasts, while a parked one burns next to none
+        assertTrue(parking_wait.cpuNanosPerQuery * 10 < spinning_wait.cpuNanosPerQuery);
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    /** Run the query WARMUP_QUERIES times, and then TIMED_QUERIES times while measuring this (calling) thread's CPU time. */
+    private static Measurement measure(Callable<Integer> query, boolean isSpinning) throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            assertEquals(ROW_COUNT, (int) runQuery(query, isSpinning));
+        }
+
+        long startCpuNanos = threadMXBean.getCurrentThreadCpuTime();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < TIMED_QUERIES; i++) {
+            assertEquals(ROW_COUNT, (int) runQuery(query, isSpinning));
+        }
+        return new Measurement((threadMXBean.getCurrentThreadCpuTime() - startCpuNanos) / TIMED_QUERIES,
+                (System.nanoTime() - startNanos) / TIMED_QUERIES);
+    }
+
+    private static Integer runQuery(Callable<Integer> query, boolean isSpinning) throws Exception {
+        if (isSpinning) {
+            SpinWaitedQuery spinWaitedQuery = new SpinWaitedQuery(query);
+            spinWaitedQuery.start();
+            while (!spinWaitedQuery.isDone) {
+                //wait here until it's done (as the DB clients used to)
+            }
+            return spinWaitedQuery.result;
+        } else {
+            return AppExecutors.getInstance().databaseIO().submit(query).get();
+        }
+    }
+
+    /** Read every row (like MessageDao.getAllRecords, with Room building an object for each).
+     * @return How many rows were read. */
+    private static int readAllRows() throws Exception {
+        List<Object[]> rows = new ArrayList<Object[]>(ROW_COUNT);
+        synchronized (connection) {
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT id, msg_uuid, msg_json, status, received_at_ms FROM messages ORDER BY received_at_ms ASC");
+            while (resultSet.next()) {
+                rows.add(new Object[] {resultSet.getInt(1), resultSet.getString(2), resultSet.getString(3), resultSet.getInt(4), resultSet.getLong(5)});
+            }
+            resultSet.close();
+            statement.close();
+        }
+        return rows.size();
+    }
+
+
+    /*============================================================================================*/
+    /* Subclasses... */
+
+    /** A query on its own new thread, as the DB clients' finders used to be (e.g. MessageDatabaseClient.FindAllRecords). */
+    private static class SpinWaitedQuery extends Thread {
+        private final Callable<Integer> query;
+        Integer result = null;
+        volatile boolean isDone = false;
+
+        SpinWaitedQuery(Callable<Integer> query) {
+            this.query = query;
+            this.setPriority(Thread.MIN_PRIORITY);
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.result = query.call();
+            } catch (Exception e) {
+                this.result = null;
+            }
+            this.isDone = true;
+        }
+    }
+
+    private static class Measurement {
+        final long cpuNanosPerQuery;
+        final long wallNanosPerQuery;
+
+        Measurement(long cpuNanosPerQuery, long wallNanosPerQuery) {
+            this.cpuNanosPerQuery = cpuNanosPerQuery;
+            this.wallNanosPerQuery = wallNanosPerQuery;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.3f ms CPU, %.3f ms wall", cpuNanosPerQuery / 1e6, wallNanosPerQuery / 1e6);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.messagenetsystems.evolution2.threads;
+
+/* PipelineThroughputTest
+ * Plain-JVM throughput harness for the message pipeline's threads, running on the in-memory stores (PipelineStores.createInMemory).
+ * Requests are appended to ReceivedRequestJournal (as SocketConnWorkerThread does), and ReceivedRequestProcessor,
+ * ReceivedMessageProcessor, and MessageRawDataProcessor carry them through to MainService.omniRawMessages.
+ *
+ * DEV-NOTE...
+ *  It stops at MainService.omniRawMessages. The next stage (MessageDeliverableProcessor) builds each OmniMessage through
+ *  BannerMessage, whose BannerMessageFields reads every JSON field name from string resources (R.string.BANNMSGFIELDNAME_*),
+ *  and the unit-test android.jar has no resources to read them from (getResources just returns null), so that stage needs
+ *  an instrumented test.
+ *  The threads log through android.util.Log, so this needs testOptions.unitTests.returnDefaultValues.
+ */
+
+import android.content.Context;
+
+import com.messagenetsystems.evolution2.Constants;
+import com.messagenetsystems.evolution2.OmniApplication;
+import com.messagenetsystems.evolution2.databases.PipelineStores;
+import com.messagenetsystems.evolution2.databases.messages.Message;
+import com.messagenetsystems.evolution2.databases.receivedRequests.ReceivedRequestJournal;
+import com.messagenetsystems.evolution2.models.OmniRawMessages;
+import com.messagenetsystems.evolution2.services.MainService;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+
+public class PipelineThroughputTest {
+
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+    private static final int MESSAGE_COUNT = 10000;                                                 //(small enough to all fit in the journal, so none wait for its fallback sweep)
+    private static final long TIMEOUT_MS = 60 * 1000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        MainService.omniRawMessages = null;
+        PipelineStores.setInstance(null);
+    }
+
+
+    @Test
+    public void measuresIngestToRawMessagesThroughput() throws Exception {
+        final File filesDir = temporaryFolder.newFolder();
+        OmniApplication appContext = new OmniApplication() {
+            @Override
+            public File getFilesDir() {
+                return filesDir;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+        };
+
+        PipelineStores pipelineStores = PipelineStores.createInMemory();
+        PipelineStores.setInstance(pipelineStores);
+        MainService.omniRawMessages = new OmniRawMessages(appContext, Constants.LOG_METHOD_LOGCAT, OmniRawMessages.SYNC_DB_TRUE);
+        ReceivedRequestJournal receivedRequestJournal = ReceivedRequestJournal.getInstance(appContext);
+        assertNotNull(receivedRequestJournal);
+
+        ReceivedRequestProcessor receivedRequestProcessor = new ReceivedRequestProcessor(appContext, (byte) Constants.LOG_METHOD_LOGCAT);
+        ReceivedMessageProcessor receivedMessageProcessor = new ReceivedMessageProcessor(appContext, (byte) Constants.LOG_METHOD_LOGCAT);
+        MessageRawDataProcessor messageRawDataProcessor = new MessageRawDataProcessor(appContext, Constants.LOG_METHOD_LOGCAT);
+        receivedRequestProcessor.start();
+        receivedMessageProcessor.start();
+        messageRawDataProcessor.start();
+
+        try {
+            long startNanos = System.nanoTime();
+            int fallbackCount = 0;
+            for (int i = 0; i < MESSAGE_COUNT; i++) {
+                byte[] body = bannerMessageRequestBody(i).getBytes(CHARSET_UTF8);
+                if (receivedRequestJournal.append("POST", ReceivedRequestRouter.PATH_MESSAGE, "HTTP/1.1", "curl/7.35.0", "application/json", body) < 0) {
+                    pipelineStores.getReceivedRequestStore().addRecord("POST", ReceivedRequestRouter.PATH_MESSAGE, "HTTP/1.1", "curl/7.35.0", "application/json", body);
+                    fallbackCount++;
+                }
+            }
+            long ingestNanos = System.nanoTime() - startNanos;
+
+            long deadlineMS = System.currentTimeMillis() + TIMEOUT_MS;
+            while (MainService.omniRawMessages.size() < MESSAGE_COUNT && System.currentTimeMillis() < deadlineMS) {
+                Thread.sleep(10);
+            }
+            long elapsedNanos = System.nanoTime() - startNanos;
+
+            assertEquals(MESSAGE_COUNT, MainService.omniRawMessages.size());
+            for (Message message : pipelineStores.getMessageStore().findAllRecords()) {
+                assertEquals(Message.STATUS_COPIED_TO_RAM, message.getStatus());
+            }
+
+            System.out.println(String.format(Locale.US, "Pipeline (in memory): %d messages journaled in %d ms (%d fell back to the store), in omniRawMessages after %d ms, %.0f messages/s",
+                    MESSAGE_COUNT, ingestNanos / 1000000, fallbackCount, elapsedNanos / 1000000, MESSAGE_COUNT / (elapsedNanos / 1e9)));
+        } finally {
+            receivedRequestProcessor.cleanup();
+            receivedMessageProcessor.cleanup();
+            messageRawDataProcessor.cleanup();
+            receivedRequestProcessor.join(TIMEOUT_MS);
+            receivedMessageProcessor.join(TIMEOUT_MS);
+            messageRawDataProcessor.join(TIMEOUT_MS);
+        }
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    /** @return A legacy banner message request body, like the server sends (see backend/support_evolution.c), made unique by its record number. */
+    private static String bannerMessageRequestBody(int i) {
+        return "{\"password\":\"511\",\"bannermessages\":[{\"signseqnum\":1,"
+                + "\"dbb_rec_dtsec\":\"1188659674\",\"recno_zx\":\"" + i + "\",\"recno_template\":\"305\",\"dbb_duration\":50,"
+                + "\"msgtype\":\"ANNOUNCEMENT\",\"msgtext\":\"Test " + i + " |X|Admin System\",\"msgdetails\":\"\",\"dbb_audio_groups\":[],"
+                + "\"dbb_playtime_duration\":0,\"dbb_flasher_duration\":0,\"dbb_light_signal\":\" \",\"dbb_light_duration\":0,"
+                + "\"dbb_audio_tts_gain\":0,\"dbb_flash_new_message\":\"N\",\"dbb_visible_time\":\"0\",\"dbb_visible_frequency\":\"A\","
+                + "\"dbb_visible_duration\":\"0\",\"dbb_record_voice_at_launch_selection\":0,\"dbb_record_voice_at_launch\":\"N\","
+                + "\"dbb_audio_recorded_gain\":0,\"dbb_pa_delivery_mode\":\"0\",\"dbb_audio_repeat\":\"1\",\"dbb_speed\":4,"
+                + "\"dbb_priority\":200,\"dbb_expire_priority\":200,\"dbb_priority_duration\":50,\"multimediatype\":\"Message\","
+                + "\"dbb_multimedia_audio_gain\":0,\"webpageurl\":\"FALSE\"}]}";
+    }
+}
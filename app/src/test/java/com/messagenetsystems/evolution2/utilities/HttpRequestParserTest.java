@@ -0,0 +1,389 @@
+package com.messagenetsystems.evolution2.utilities;
+
+/* HttpRequestParserTest
+ * Plain-JVM unit tests for HttpRequestParser (complete, pipelined, truncated, and malformed requests, fuzzed input, and
+ * a throughput measurement for a large body).
+ */
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class HttpRequestParserTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAX_HEAD_BYTES = 1024;
+    private static final int MAX_BODY_BYTES = 64;
+
+    private static final long FUZZ_SEED = 20261016L;                                                //fixed, so a failure can be reproduced
+    private static final int FUZZ_ITERATIONS = 20000;
+    private static final String MUTATION_CHARACTERS = "\r\n\t :0-9aZ\u0000\u00ff";                  //bytes worth inserting (delimiters, digits, and extremes)
+
+    // Well-formed requests for the fuzz tests to truncate and mutate
+    private static final String[] FUZZ_CORPUS = {
+            "GET /status HTTP/1.1\r\n\r\n",
+            "POST /message HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: 11\r\n\r\n{\"a\":\"bcd\"}",
+            "POST /config HTTP/1.1\r\nUser-Agent: Omni\r\nConnection: keep-alive\r\nX-State-Digest: abc123\r\nContent-Length: 2\r\n\r\n{}",
+            "GET / HTTP/1.0\nHost: x\n\n",
+    };
+
+
+    /*============================================================================================*/
+    /* Complete requests */
+
+    @Test
+    public void readsRequestWithoutBody() throws IOException {
+        HttpRequestParser parser = newParser();
+
+        assertEquals(HttpRequestParser.RESULT_COMPLETE, parser.readRequest(stream("GET /status HTTP/1.1\r\nUser-Agent: test\r\n\r\n")));
+        assertEquals("GET", parser.getMethod());
+        assertEquals("/status", parser.getPath());
+        assertEquals("HTTP/1.1", parser.getProtocol());
+        assertEquals("test", parser.getUserAgent());
+        assertEquals(0, parser.getContentLength());
+        assertEquals(0, parser.getBody().length);
+    }
+
+    @Test
+    public void readsBodyOfExactlyContentLength() throws IOException {
+        HttpRequestParser parser = newParser();
+        String body = "{\"a\":\"\u00e9\"}";
+        byte[] bodyBytes = body.getBytes(UTF8);
+
+        String request = "POST /msg HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: " + bodyBytes.length + "\r\n\r\n" + body;
+        assertEquals(HttpRequestParser.RESULT_COMPLETE, parser.readRequest(stream(request)));
+        assertEquals("application/json", parser.getContentType());
+        assertEquals(bodyBytes.length, parser.getContentLength());
+        assertArrayEquals(bodyBytes, parser.getBody());
+        assertEquals(body, parser.getBodyAsString());
+    }
+
+    @Test
+    public void readsRequestArrivingOneByteAtATime() throws IOException {
+        HttpRequestParser parser = newParser();
+
+        InputStream in = new OneByteAtATimeInputStream("POST /msg HTTP/1.1\r\nContent-Length: 5\r\n\r\nhello".getBytes(UTF8));
+        assertEquals(HttpRequestParser.RESULT_COMPLETE, parser.readRequest(in));
+        assertEquals("/msg", parser.getPath());
+        assertEquals("hello", parser.getBodyAsString());
+    }
+
+    @Test
+    public void matchesHeaderNamesCaseInsensitivelyAndTrimsValues() throws IOException {
+        HttpRequestParser parser = newParser();
+
+        assertEquals(HttpRequestParser.RESULT_COMPLETE, parser.readRequest(stream("GET / HTTP/1.1\r\ncOnTeNt-LeNgTh:\t 2 \r\nCONNECTION: close\r\n\r\nok")));
+        assertEquals(2, parser.getContentLength());
+        assertEquals("close", parser.getConnection());
+        assertEquals("ok", parser.getBodyAsString());
+    }
+
+    @Test
+    public void toleratesBareLineFeedsAndLeadingBlankLines() throws IOException {
+        HttpRequestParser parser = newParser();
+
+        assertEquals(HttpRequestParser.RESULT_COMPLETE, parser.readRequest(stream("\r\n\nGET /x HTTP/1.0\nContent-Length: 1\n\nz")));
+        assertEquals("/x", parser.getPath());
+        assertEquals("HTTP/1.0", parser.getProtocol());
+        assertEquals("z", parser.getBodyAsString());
+        assertEquals("GET /x HTTP/1.0\nContent-Length: 1\n\n", parser.getHeadAsString());
+    }
+
+    @Test
+    public void readsPipelinedRequestsInOrder() throws IOException {
+        HttpRequestParser parser = newParser();
+        InputStream in = stream("POST /one HTTP/1.1\r\nContent-Length: 3\r\n\r\nabc" +
+                "GET /two HTTP/1.1\r\n\r\n");
+
+        assertEquals(HttpRequestParser.RESULT_COMPLETE, parser.readRequest(in));
+        assertEquals("/one", parser.getPath());
+        assertEquals("abc", parser.getBodyAsString());
+        assertTrue(parser.hasBufferedBytes());
+
+        assertEquals(HttpRequestParser.RESULT_COMPLETE, parser.readRequest(in));
+        assertEquals("/two", parser.getPath());
+        assertEquals(0, parser.getBody().length);
+        assertFalse(parser.hasBufferedBytes());
+
+        assertEquals(HttpRequestParser.RESULT_END_OF_STREAM, parser.readRequest(in));
+    }
+
+    @Test
+    public void growsBufferForHeadsLongerThanItsInitialSize() throws IOException {
+        HttpRequestParser parser = new HttpRequestParser(16 * 1024, MAX_BODY_BYTES);
+        String longValue = repeat('x', 6000);
+
+        assertEquals(HttpRequestParser.RESULT_COMPLETE, parser.readRequest(stream("GET / HTTP/1.1\r\nUser-Agent: " + longValue + "\r\n\r\n")));
+        assertEquals(longValue, parser.getUserAgent());
+    }
+
+
+    /*============================================================================================*/
+    /* Truncated requests */
+
+    @Test
+    public void reportsEndOfStreamWhenNothingArrives() throws IOException {
+        HttpRequestParser parser = newParser();
+
+        assertEquals(HttpRequestParser.RESULT_END_OF_STREAM, parser.readRequest(stream("")));
+    }
+
+    @Test
+    public void rejectsStreamEndingInRequestLine() throws IOException {
+        assertError(400, "GET /stat");
+    }
+
+    @Test
+    public void rejectsStreamEndingInHeaders() throws IOException {
+        assertError(400, "GET / HTTP/1.1\r\nContent-Length: 3\r\n");
+    }
+
+    @Test
+    public void rejectsStreamEndingInBody() throws IOException {
+        assertError(400, "POST / HTTP/1.1\r\nContent-Length: 10\r\n\r\nshort");
+    }
+
+
+    /*============================================================================================*/
+    /* Malformed or oversized requests */
+
+    @Test
+    public void rejectsMalformedRequestLines() throws IOException {
+        assertError(400, "GET\r\n\r\n");
+        assertError(400, "GET /\r\n\r\n");
+        assertError(400, " / HTTP/1.1\r\n\r\n");
+        assertError(400, "GET  HTTP/1.1\r\n\r\n");
+    }
+
+    @Test
+    public void rejectsHeaderLineWithoutName() throws IOException {
+        assertError(400, "GET / HTTP/1.1\r\nno colon here\r\n\r\n");
+        assertError(400, "GET / HTTP/1.1\r\n: value\r\n\r\n");
+    }
+
+    @Test
+    public void rejectsInvalidContentLength() throws IOException {
+        assertError(400, "POST / HTTP/1.1\r\nContent-Length: 12a\r\n\r\n");
+        assertError(400, "POST / HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+        assertError(400, "POST / HTTP/1.1\r\nContent-Length:\r\n\r\n");
+    }
+
+    @Test
+    public void rejectsBodyLargerThanLimit() throws IOException {
+        assertError(413, "POST / HTTP/1.1\r\nContent-Length: " + (MAX_BODY_BYTES + 1) + "\r\n\r\n");
+    }
+
+    @Test
+    public void rejectsTransferEncoding() throws IOException {
+        assertError(501, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n");
+    }
+
+    @Test
+    public void rejectsRequestLineLongerThanLimit() throws IOException {
+        assertError(414, "GET /" + repeat('a', MAX_HEAD_BYTES) + " HTTP/1.1\r\n\r\n");
+    }
+
+    @Test
+    public void rejectsHeadersLongerThanLimit() throws IOException {
+        assertError(431, "GET / HTTP/1.1\r\nUser-Agent: " + repeat('a', MAX_HEAD_BYTES) + "\r\n\r\n");
+    }
+
+
+    /*============================================================================================*/
+    /* Fuzzing */
+
+    @Test
+    public void rejectsEveryTruncationOfWellFormedRequests() throws IOException {
+        for (String request : FUZZ_CORPUS) {
+            byte[] bytes = request.getBytes(UTF8);
+            for (int length = 1; length < bytes.length; length++) {
+                byte[] truncated = Arrays.copyOf(bytes, length);
+
+                HttpRequestParser parser = newParser();
+                assertRejectedWith4xx(truncated, parser.readRequest(new ByteArrayInputStream(truncated)), parser);
+                parser.clear();
+                assertRejectedWith4xx(truncated, parser.readRequest(new OneByteAtATimeInputStream(truncated)), parser);
+            }
+        }
+    }
+
+    @Test
+    public void neverThrowsOnMutatedOrRandomInput() throws IOException {
+        Random random = new Random(FUZZ_SEED);
+        HttpRequestParser parser = newParser();
+
+        for (int i = 0; i < FUZZ_ITERATIONS; i++) {
+            byte[] input = (i % 4 == 3 ? randomBytes(random) : mutate(FUZZ_CORPUS[random.nextInt(FUZZ_CORPUS.length)].getBytes(UTF8), random));
+            InputStream in = (random.nextBoolean() ? new ByteArrayInputStream(input) : new OneByteAtATimeInputStream(input));
+
+            parser.clear();
+            try {
+                // Read requests until the stream's used up, as a connection would (at most one per input byte, so this ends)
+                for (int j = 0; j <= input.length; j++) {
+                    byte result = parser.readRequest(in);
+                    if (result == HttpRequestParser.RESULT_ERROR) {
+                        assertRejectedWith4xx(input, result, parser);
+                        break;
+                    }
+                    assertTrue(describe(input), result == HttpRequestParser.RESULT_COMPLETE || result == HttpRequestParser.RESULT_END_OF_STREAM);
+                    if (result == HttpRequestParser.RESULT_END_OF_STREAM) {
+                        break;
+                    }
+                    assertTrue(describe(input), parser.getBody().length == parser.getContentLength());
+                }
+            } catch (RuntimeException e) {
+                throw new AssertionError("Threw " + e + " on " + describe(input), e);
+            }
+        }
+    }
+
+    /** Assert the result is an error, with a 4xx status and a reason (or a 501 if the input asked for a transfer-encoding). */
+    private static void assertRejectedWith4xx(byte[] input, byte result, HttpRequestParser parser) {
+        assertEquals(describe(input), HttpRequestParser.RESULT_ERROR, result);
+        int statusCode = parser.getErrorStatusCode();
+        boolean isTransferEncoding = new String(input, HttpRequestParser.CHARSET_ISO_8859_1).toLowerCase().contains("transfer-encoding");
+        assertTrue(describe(input) + " got " + statusCode,
+                (statusCode >= 400 && statusCode < 500) || (statusCode == 501 && isTransferEncoding));
+        assertTrue(describe(input), parser.getErrorReason() != null);
+    }
+
+    /** @return A copy of the request with a few random bytes flipped, inserted, deleted, or cut off the end. */
+    private static byte[] mutate(byte[] request, Random random) {
+        byte[] ret = request;
+        int mutationCount = 1 + random.nextInt(4);
+        for (int m = 0; m < mutationCount && ret.length > 0; m++) {
+            int at = random.nextInt(ret.length);
+            switch (random.nextInt(4)) {
+                case 0:
+                    ret = Arrays.copyOf(ret, ret.length);
+                    ret[at] = (byte) random.nextInt(256);
+                    break;
+                case 1:
+                    byte[] inserted = new byte[ret.length + 1];
+                    System.arraycopy(ret, 0, inserted, 0, at);
+                    inserted[at] = (byte) MUTATION_CHARACTERS.charAt(random.nextInt(MUTATION_CHARACTERS.length()));
+                    System.arraycopy(ret, at, inserted, at + 1, ret.length - at);
+                    ret = inserted;
+                    break;
+                case 2:
+                    byte[] deleted = new byte[ret.length - 1];
+                    System.arraycopy(ret, 0, deleted, 0, at);
+                    System.arraycopy(ret, at + 1, deleted, at, ret.length - at - 1);
+                    ret = deleted;
+                    break;
+                default:
+                    ret = Arrays.copyOf(ret, at);
+                    break;
+            }
+        }
+        return ret;
+    }
+
+    private static byte[] randomBytes(Random random) {
+        byte[] ret = new byte[random.nextInt(2 * MAX_HEAD_BYTES)];
+        random.nextBytes(ret);
+        return ret;
+    }
+
+    private static String describe(byte[] input) {
+        return Arrays.toString(input) + " (\"" + new String(input, HttpRequestParser.CHARSET_ISO_8859_1).replace("\r", "\\r").replace("\n", "\\n") + "\")";
+    }
+
+
+    /*============================================================================================*/
+    /* Throughput */
+
+    /** Read a large body, as it arrives from a socket (a segment at a time), and report the rate (it's not asserted, as that
+     * depends on the machine; it's here to compare before and after a change to the parser). */
+    @Test
+    public void measuresThroughputForLargeBody() throws IOException {
+        final int bodyBytes = 8 * 1024 * 1024;
+        final int rounds = 10;
+        byte[] head = ("POST /message HTTP/1.1\r\nContent-Length: " + bodyBytes + "\r\n\r\n").getBytes(UTF8);
+        byte[] request = Arrays.copyOf(head, head.length + bodyBytes);
+        for (int i = head.length; i < request.length; i++) {
+            request[i] = (byte) ('a' + i % 26);
+        }
+        HttpRequestParser parser = new HttpRequestParser(MAX_HEAD_BYTES, bodyBytes);
+
+        long bestNanos = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            InputStream in = new SegmentedInputStream(request, 1460);
+            parser.clear();
+
+            long startNanos = System.nanoTime();
+            byte result = parser.readRequest(in);
+            long elapsedNanos = System.nanoTime() - startNanos;
+
+            assertEquals(HttpRequestParser.RESULT_COMPLETE, result);
+            assertEquals(bodyBytes, parser.getBody().length);
+            assertEquals(request[request.length - 1], parser.getBody()[bodyBytes - 1]);
+            bestNanos = Math.min(bestNanos, elapsedNanos);
+        }
+
+        System.out.println("HttpRequestParser: " + (bodyBytes / (1024 * 1024)) + " MiB body in " + (bestNanos / 1000) + " us (best of " + rounds + "), "
+                + String.format("%.0f", (bodyBytes / (1024.0 * 1024.0)) / (bestNanos / 1e9)) + " MiB/s");
+    }
+
+
+    /*============================================================================================*/
+    /* Supporting Methods */
+
+    private static HttpRequestParser newParser() {
+        return new HttpRequestParser(MAX_HEAD_BYTES, MAX_BODY_BYTES);
+    }
+
+    private static InputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(UTF8));
+    }
+
+    private static void assertError(int expectedStatusCode, String request) throws IOException {
+        HttpRequestParser parser = newParser();
+
+        assertEquals(request, HttpRequestParser.RESULT_ERROR, parser.readRequest(stream(request)));
+        assertEquals(request, expectedStatusCode, parser.getErrorStatusCode());
+        assertTrue(request, parser.getErrorReason() != null);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /** A stream that never returns more than one byte per read (like a slow socket). */
+    private static class OneByteAtATimeInputStream extends SegmentedInputStream {
+        OneByteAtATimeInputStream(byte[] bytes) {
+            super(bytes, 1);
+        }
+    }
+
+    /** A stream that never returns more than a segment's worth of bytes per read (like a socket, a TCP segment at a time). */
+    private static class SegmentedInputStream extends ByteArrayInputStream {
+        private final int segmentBytes;
+
+        SegmentedInputStream(byte[] bytes, int segmentBytes) {
+            super(bytes);
+            this.segmentBytes = segmentBytes;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, segmentBytes));
+        }
+    }
+}
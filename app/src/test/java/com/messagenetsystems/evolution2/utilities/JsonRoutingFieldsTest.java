@@ -0,0 +1,166 @@
+package com.messagenetsystems.evolution2.utilities;
+
+/* JsonRoutingFieldsTest
+ * Plain-JVM unit tests for JsonRoutingFields (which fields it keeps, what it skips, and malformed input).
+ */
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class JsonRoutingFieldsTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /*============================================================================================*/
+    /* Well-formed objects */
+
+    @Test
+    public void keepsTopLevelRoutingFields() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertTrue(fields.scan("{\"bannerpurpose\":\"stopscrollingmessage\",\"recno_zx\":\"196\",\"command\":\"ping\",\"uuid\":\"abc\"}"));
+        assertTrue(fields.isObject());
+        assertEquals("stopscrollingmessage", fields.getBannerPurpose());
+        assertEquals("196", fields.getRecnoZX());
+        assertEquals("ping", fields.getCommand());
+        assertEquals("abc", fields.getUUID());
+        assertFalse(fields.hasBannerMessage());
+    }
+
+    @Test
+    public void returnsNumberBooleanAndNullValuesAsTheirLiteralText() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertTrue(fields.scan("{ \"recno_zx\" : 196 , \"command\" : true , \"uuid\" : null }"));
+        assertEquals("196", fields.getRecnoZX());
+        assertEquals("true", fields.getCommand());
+        assertEquals("null", fields.getUUID());
+    }
+
+    @Test
+    public void skipsNestedValuesWithoutLookingInsideThem() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertTrue(fields.scan("{\"bannermessages\":[{\"recno_zx\":\"1\",\"text\":\"a } ] \\\" b\"}],\"other\":{\"command\":\"x\"},\"recno_zx\":\"2\"}"));
+        assertTrue(fields.hasBannerMessage());
+        assertEquals("2", fields.getRecnoZX());
+        assertNull(fields.getCommand());
+    }
+
+    @Test
+    public void skipsRoutingKeysWhoseValuesAreNested() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertTrue(fields.scan("{\"command\":{\"name\":\"ping\"},\"uuid\":[1,2]}"));
+        assertNull(fields.getCommand());
+        assertNull(fields.getUUID());
+    }
+
+    @Test
+    public void unescapesKeptStrings() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertTrue(fields.scan("{\"command\":\"a\\\"b\\\\c\\/d\\n\\u00e9\"}"));
+        assertEquals("a\"b\\c/d\n\u00e9", fields.getCommand());
+    }
+
+    @Test
+    public void acceptsEmptyObject() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertTrue(fields.scan(" {} "));
+        assertTrue(fields.isObject());
+        assertNull(fields.getBannerPurpose());
+    }
+
+    @Test
+    public void forgetsPreviousScanWhenReused() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertTrue(fields.scan("{\"command\":\"ping\",\"bannermessages\":[]}"));
+        assertTrue(fields.scan("{\"uuid\":\"abc\"}"));
+        assertNull(fields.getCommand());
+        assertFalse(fields.hasBannerMessage());
+        assertEquals("abc", fields.getUUID());
+    }
+
+
+    /*============================================================================================*/
+    /* Malformed input */
+
+    @Test
+    public void rejectsNonObjects() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertFalse(fields.scan((String) null));
+        assertFalse(fields.scan(""));
+        assertFalse(fields.scan("[{\"command\":\"ping\"}]"));
+        assertFalse(fields.isObject());
+        assertFalse(fields.scan("command=ping"));
+    }
+
+    @Test
+    public void rejectsTruncatedObjectsButKeepsFieldsFoundBeforeTheEnd() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertFalse(fields.scan("{\"command\":\"ping\",\"uuid\":\"ab"));
+        assertEquals("ping", fields.getCommand());
+        assertNull(fields.getUUID());
+
+        assertFalse(fields.scan("{\"command\":\"ping\",\"bannermessages\":[{\"a\":1}"));
+        assertFalse(fields.scan("{\"command\":\"ping\""));
+        assertFalse(fields.scan("{\"command\":"));
+        assertFalse(fields.scan("{\"command\""));
+    }
+
+    @Test
+    public void rejectsMissingSeparators() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertFalse(fields.scan("{\"command\" \"ping\"}"));
+        assertFalse(fields.scan("{\"command\":\"ping\" \"uuid\":\"abc\"}"));
+        assertFalse(fields.scan("{command:\"ping\"}"));
+    }
+
+    @Test
+    public void rejectsBadUnicodeEscapes() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertFalse(fields.scan("{\"command\":\"\\uZZZZ\"}"));
+    }
+
+
+    /*============================================================================================*/
+    /* UTF-8 bytes */
+
+    @Test
+    public void scansBytesTheSameAsText() {
+        String json = "{\"bannermessages\":[{\"text\":\"caf\u00e9 \u2603 \ud83d\ude00\"}],\"command\":\"\u00fcber \\u00e9 \u2603\",\"recno_zx\":196,\"uuid\":\"abc\"}";
+        JsonRoutingFields fromText = new JsonRoutingFields();
+        JsonRoutingFields fromBytes = new JsonRoutingFields();
+
+        assertTrue(fromText.scan(json));
+        assertTrue(fromBytes.scan(json.getBytes(UTF8)));
+        assertEquals("\u00fcber \u00e9 \u2603", fromBytes.getCommand());
+        assertEquals(fromText.getCommand(), fromBytes.getCommand());
+        assertEquals(fromText.getRecnoZX(), fromBytes.getRecnoZX());
+        assertEquals(fromText.getUUID(), fromBytes.getUUID());
+        assertEquals(fromText.hasBannerMessage(), fromBytes.hasBannerMessage());
+    }
+
+    @Test
+    public void rejectsNullOrTruncatedBytes() {
+        JsonRoutingFields fields = new JsonRoutingFields();
+
+        assertFalse(fields.scan((byte[]) null));
+        assertFalse(fields.scan("{\"command\":\"caf\u00e9".getBytes(UTF8)));
+        assertFalse(fields.scan(new byte[0]));
+    }
+}